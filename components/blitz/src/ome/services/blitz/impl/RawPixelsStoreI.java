@@ -32,6 +32,7 @@ import omero.api.AMD_RawPixelsStore_getStack;
 import omero.api.AMD_RawPixelsStore_getStackOffset;
 import omero.api.AMD_RawPixelsStore_getStackSize;
 import omero.api.AMD_RawPixelsStore_getTile;
+import omero.api.AMD_RawPixelsStore_getTiles;
 import omero.api.AMD_RawPixelsStore_getTimepoint;
 import omero.api.AMD_RawPixelsStore_getTimepointOffset;
 import omero.api.AMD_RawPixelsStore_getTimepointSize;
@@ -279,6 +280,15 @@ public class RawPixelsStoreI extends AbstractPyramidServant implements
         callInvokerOnRawArgs(__cb, __current, z, c, t, x, y, w, h);
     }
 
+    /* (non-Javadoc)
+     * @see omero.api._RawPixelsStoreOperations#getTiles_async(omero.api.AMD_RawPixelsStore_getTiles, int[][], boolean, Ice.Current)
+     */
+    public void getTiles_async(AMD_RawPixelsStore_getTiles __cb, int[][] tiles,
+            boolean compress, Current __current) throws ServerError
+    {
+        callInvokerOnRawArgs(__cb, __current, tiles, compress);
+    }
+
     /* (non-Javadoc)
      * @see omero.api._RawPixelsStoreOperations#setTile_async(omero.api.AMD_RawPixelsStore_setTile, byte[], int, int, int, int, int, int, int, Ice.Current)
      */
@@ -4,7 +4,9 @@
  */
 package ome.services.blitz.impl;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -47,6 +49,7 @@ import omero.api.AMD_RenderingEngine_removeCodomainMapFromChannel;
 import omero.api.AMD_RenderingEngine_render;
 import omero.api.AMD_RenderingEngine_renderAsPackedInt;
 import omero.api.AMD_RenderingEngine_renderCompressed;
+import omero.api.AMD_RenderingEngine_renderCompressedPlanes;
 import omero.api.AMD_RenderingEngine_renderProjectedAsPackedInt;
 import omero.api.AMD_RenderingEngine_renderProjectedCompressed;
 import omero.api.AMD_RenderingEngine_resetDefaultSettings;
@@ -354,6 +357,20 @@ public class RenderingEngineI extends AbstractPyramidServant implements
         callInvokerOnRawArgs(__cb, __current, def);
     }
 
+    public void renderCompressedPlanes_async(
+            AMD_RenderingEngine_renderCompressedPlanes __cb, List<PlaneDef> defs,
+            Current __current) throws ServerError {
+        final IceMapper mapper = new IceMapper(IceMapper.UNMAPPED);
+        List<omeis.providers.re.data.PlaneDef> pds = null;
+        if (defs != null) {
+            pds = new ArrayList<omeis.providers.re.data.PlaneDef>(defs.size());
+            for (PlaneDef def : defs) {
+                pds.add(def == null ? null : IceMapper.convert(def));
+            }
+        }
+        callInvokerOnMappedArgs(mapper, __cb, __current, pds);
+    }
+
     public void renderProjectedAsPackedInt_async(
             AMD_RenderingEngine_renderProjectedAsPackedInt __cb, 
             ProjectionType algorithm, int timepoint, int stepping, int start, 
@@ -7,10 +7,9 @@
 
 package ome.services.blitz.impl;
 
-import java.awt.Color;
-import java.awt.Point;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import static omero.rtypes.rint;
+import static omero.rtypes.rlong;
+
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -21,10 +20,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import javax.imageio.ImageIO;
-
-import ome.api.IQuery;
-import ome.api.IUpdate;
 import ome.model.IObject;
 import ome.model.core.OriginalFile;
 import ome.parameters.Filter;
@@ -32,6 +27,7 @@ import ome.services.blitz.util.BlitzExecutor;
 import ome.services.blitz.util.BlitzOnly;
 import ome.services.blitz.util.ServiceFactoryAware;
 import ome.services.roi.GeomTool;
+import ome.services.roi.LabelMasks;
 import ome.services.throttling.Adapter;
 import ome.services.util.Executor.SimpleWork;
 import ome.system.ServiceFactory;
@@ -41,6 +37,8 @@ import omero.ServerError;
 import omero.api.AMD_IRoi_findByImage;
 import omero.api.AMD_IRoi_findByPlane;
 import omero.api.AMD_IRoi_findByRoi;
+import omero.api.AMD_IRoi_findShapesByImages;
+import omero.api.AMD_IRoi_findShapesByPlate;
 import omero.api.AMD_IRoi_getMeasuredRois;
 import omero.api.AMD_IRoi_getMeasuredRoisMap;
 import omero.api.AMD_IRoi_getPoints;
@@ -53,6 +51,8 @@ import omero.api.AMD_IRoi_getTable;
 import omero.api.AMD_IRoi_uploadMask;
 import omero.api.RoiOptions;
 import omero.api.RoiResult;
+import omero.api.ShapeBatch;
+import omero.api.ShapeBatchOptions;
 import omero.api._IRoiOperations;
 import omero.constants.namespaces.NSMEASUREMENT;
 import omero.model.OriginalFileI;
@@ -76,12 +76,27 @@ import Ice.Current;
 public class RoiI extends AbstractAmdServant implements _IRoiOperations,
         ServiceFactoryAware, BlitzOnly {
 
+    /** The number of shapes returned by default by {@link #findShapesByImages_async}. */
+    public static final int DEFAULT_SHAPE_BATCH = 1000;
+
+    /** The maximum number of shapes returned by {@link #findShapesByImages_async}. */
+    public static final int MAX_SHAPE_BATCH = 10000;
+
+    /** The properties of the shapes not returned if only their geometry is. */
+    private static final Set<String> STYLE_PROPERTIES = new HashSet<String>(
+            Arrays.asList("textValue", "fillColor", "fillRule", "strokeColor",
+                    "strokeDashArray", "strokeWidth", "fontFamily", "fontSize",
+                    "fontStyle", "markerStart", "markerEnd"));
+
     protected ServiceFactoryI factory;
 
     protected final GeomTool geomTool;
     
     protected final SqlAction sql;
 
+    /** If uploaded masks are split into their connected components. */
+    protected boolean splitMaskComponents = false;
+
     public RoiI(BlitzExecutor be, GeomTool geomTool, SqlAction sql) {
     	super(null, be);
         this.geomTool = geomTool;
@@ -92,6 +107,15 @@ public class RoiI extends AbstractAmdServant implements _IRoiOperations,
         this.factory = sf;
     }
 
+    /**
+     * Sets if {@link #uploadMask_async} creates one ROI per connected
+     * component of each label rather than one per label.
+     * @param splitMaskComponents See above.
+     */
+    public void setSplitMaskComponents(boolean splitMaskComponents) {
+        this.splitMaskComponents = splitMaskComponents;
+    }
+
     // ~ Service methods
     // =========================================================================
 
@@ -179,6 +203,52 @@ public class RoiI extends AbstractAmdServant implements _IRoiOperations,
         }));
     }
 
+    public void findShapesByImages_async(AMD_IRoi_findShapesByImages __cb,
+            final List<Long> imageIds, ShapeBatchOptions opts,
+            Current __current) throws ServerError {
+
+        final ShapeBatchOptions batch = batchOptions(opts);
+        final IceMapper mapper = new ShapeBatchMapper(batch);
+
+        runnableCall(__current, new Adapter(__cb, __current, mapper, factory
+                .getExecutor(), factory.principal, new SimpleWork(this,
+                "findShapesByImages", imageIds, batch.after) {
+
+            @Transactional(readOnly = true)
+            public Object doWork(Session session, ServiceFactory sf) {
+                if (imageIds == null || imageIds.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                final QueryBuilder qb = new ShapeBatchQueryBuilder(batch);
+                qb.and("r.image.id in (:ids)");
+                qb.paramList("ids", imageIds);
+                return qb.query(session).list();
+            }
+        }));
+    }
+
+    public void findShapesByPlate_async(AMD_IRoi_findShapesByPlate __cb,
+            final long plateId, ShapeBatchOptions opts, Current __current)
+            throws ServerError {
+
+        final ShapeBatchOptions batch = batchOptions(opts);
+        final IceMapper mapper = new ShapeBatchMapper(batch);
+
+        runnableCall(__current, new Adapter(__cb, __current, mapper, factory
+                .getExecutor(), factory.principal, new SimpleWork(this,
+                "findShapesByPlate", plateId, batch.after) {
+
+            @Transactional(readOnly = true)
+            public Object doWork(Session session, ServiceFactory sf) {
+                final QueryBuilder qb = new ShapeBatchQueryBuilder(batch);
+                qb.and("r.image.id in (select ws.image.id from WellSample ws "
+                        + "where ws.well.plate.id = :plate)");
+                qb.param("plate", plateId);
+                return qb.query(session).list();
+            }
+        }));
+    }
+
     public void getPoints_async(AMD_IRoi_getPoints __cb, final long shapeId,
             Current __current) throws ServerError {
 
@@ -396,112 +466,6 @@ public class RoiI extends AbstractAmdServant implements _IRoiOperations,
         }));
     }
 
-    class MaskClass
-    {
-    	Set<Point> points;
-    	int colour;
-    	Point min, max;
-    	int width;
-		int height;
-	 
-    	MaskClass(int value)
-    	{
-    		points = new HashSet<Point>();
-    		colour = value;
-    	}
-    	
-    	public Color getColour()
-    	{
-    		return new Color(colour);
-    	}
-    	
-    	
-    	public byte[] asBytes() throws IOException
-    	{
-    	   		
-    		byte[] data = new byte[(int) Math.ceil((double)width*(double)height/8.0)];
-    		int offset = 0;
-    		for(int y = min.y ; y < max.y + 1 ; y++)
-    		{
-    			for(int x = min.x ; x < max.x + 1 ; x++)
-    			{
-    				if(points.contains(new Point(x,y)))
-    					setBit(data, offset, 1);
-    				else
-    					setBit(data, offset, 0);
-    				offset++;
-    			}
-    		}
-    		return data;
-    	}
-    	
-    	public void add(Point p)
-    	{
-    		if(points.size()==0)
-    		{
-    			min = new Point(p);
-    			max = new Point(p);
-    		}
-    		else
-    		{
-    			min.x = Math.min(p.x, min.x);
-    			min.y = Math.min(p.y, min.y);
-    			max.x = Math.max(p.x, max.x);
-    			max.y = Math.max(p.y, max.y);
-    		}
-   			width = max.x-min.x+1;
-			height = max.y-min.y+1;
-    		points.add(p);
-    	}
-    	
-    	public ome.model.roi.Mask asMaskI(int z, int t) throws IOException
-    	{
-    		ome.model.roi.Mask mask = new ome.model.roi.Mask();
-    		mask.setX((double)min.x);
-    		mask.setY((double)min.y);
-    		mask.setWidth((double)width);
-    		mask.setHeight((double)height);
-    		mask.setLocked(true);
-    		mask.setTheT(t);
-    		mask.setTheZ(z);
-    		byte[] theseBytes;
-    		theseBytes = this.asBytes();
-    		mask.setBytes(theseBytes);
-    		return mask;
-    	}
-    	
-    	/** 
-    	 * Set the bit value in a byte array at position bit to be the value
-    	 * value.
-    	 * @param data See above.
-    	 * @param bit See above.
-    	 * @param val See above.
-    	 */
-    	private void setBit(byte[] data, int bit, int val) 
-    	{
-    		int bytePosition = bit/8;
-    		int bitPosition = 7-bit%8;
-    		data[bytePosition] = (byte) ((byte)(data[bytePosition]&
-    									(~(byte)(0x1<<bitPosition)))|
-    									(byte)(val<<bitPosition));
-    	}
-
-    	/** 
-    	 * Set the bit value in a byte array at position bit to be the value
-    	 * value.
-    	 * @param data See above.
-    	 * @param bit See above.
-    	 * @param val See above.
-    	 */
-    	private byte getBit(byte[] data, int bit) 
-    	{
-    		int bytePosition = bit/8;
-    		int bitPosition = 7-bit%8;
-    		return (byte) ((byte)(data[bytePosition] & (0x1<<bitPosition))!=0 ? (byte)1 : (byte)0);
-    	}
-
-    }
-    
     @SuppressWarnings("unchecked")
     private <T extends IObject> T safeReverse(Object o, IceMapper mapper) {
         try {
@@ -520,58 +484,34 @@ public class RoiI extends AbstractAmdServant implements _IRoiOperations,
 
 		runnableCall(__current, new Adapter(__cb, __current, mapper, factory
 				.getExecutor(), factory.principal, new SimpleWork(this,
-				"uploadMask", bytes)
+				"uploadMask", imageId, z, t)
 		{
 
 			@Transactional(readOnly = false)
 			public Object doWork(Session session, ServiceFactory sf)
 			{
-				IUpdate update = sf.getUpdateService();
-				
-				ome.model.core.Image image;
-				ome.model.roi.Roi roi;
-				ByteArrayInputStream s = new ByteArrayInputStream(bytes);
-				IQuery query = sf.getQueryService();
-				IObject o =  query.findByQuery("from Image as i left outer join " +
-						"fetch i.pixels as p where i.id = "+imageId, null);
-				
+				final List<ome.model.roi.Mask> masks;
 				try
 				{
-					image = (ome.model.core.Image) o;
-					BufferedImage inputImage = ImageIO.read(s);
-					Map<Integer, MaskClass> map = new HashMap<Integer, MaskClass>();
-					MaskClass mask;
-					int value;
-					for (int x = 0; x < inputImage.getWidth(); x++)
-						for (int y = 0; y < inputImage.getHeight(); y++)
-						{
-							value = inputImage.getRGB(x, y);
-							if(value==Color.black.getRGB())
-								continue;
-							if (!map.containsKey(value))
-							{
-								mask = new MaskClass(value);
-								map.put(value, mask);
-							}
-							else
-								mask = map.get(value);
-							mask.add(new Point(x, y));
-						}
-					Iterator<Integer> maskIterator = map.keySet().iterator();
-					while (maskIterator.hasNext())
-					{
-						int colour = maskIterator.next();
-						mask = map.get(colour);
-						roi = new ome.model.roi.Roi();
-						roi.setImage(image);
-						ome.model.roi.Mask  toSaveMask = mask.asMaskI(z, t);
-						roi.addShape(toSaveMask);
-						ome.model.roi.Roi newROI  = update.saveAndReturnObject(roi);
-					}
-					return null;
-				} catch (Exception e)
+					masks = new LabelMasks(splitMaskComponents).read(bytes, z, t);
+				} catch (IOException e)
 				{
-					__cb.ice_exception(e);
+					throw new ome.conditions.ApiUsageException(
+							"Cannot read mask: " + e.getMessage());
+				}
+				final ome.model.core.Image image =
+						new ome.model.core.Image(imageId, false);
+				final IObject[] rois = new IObject[masks.size()];
+				for (int i = 0; i < rois.length; i++)
+				{
+					ome.model.roi.Roi roi = new ome.model.roi.Roi();
+					roi.setImage(image);
+					roi.addShape(masks.get(i));
+					rois[i] = roi;
+				}
+				if (rois.length > 0)
+				{
+					sf.getUpdateService().saveAndReturnIds(rois);
 				}
 				return null;
 			}
@@ -629,6 +569,107 @@ public class RoiI extends AbstractAmdServant implements _IRoiOperations,
 
     }
 
+    /**
+     * Copies the given options for a batch of shapes, setting the limit to
+     * its default if missing or out of range.
+     */
+    private static ShapeBatchOptions batchOptions(ShapeBatchOptions opts) {
+        final ShapeBatchOptions batch = opts == null ? new ShapeBatchOptions()
+                : (ShapeBatchOptions) opts.clone();
+        if (batch.limit == null || batch.limit.getValue() <= 0) {
+            batch.limit = rint(DEFAULT_SHAPE_BATCH);
+        } else if (batch.limit.getValue() > MAX_SHAPE_BATCH) {
+            batch.limit = rint(MAX_SHAPE_BATCH);
+        }
+        return batch;
+    }
+
+    /**
+     * Queries a batch of shapes, fetching their Roi, in order of id.
+     * Callers add the restriction on the images.
+     */
+    private static class ShapeBatchQueryBuilder extends QueryBuilder {
+
+        final ShapeBatchOptions opts;
+
+        ShapeBatchQueryBuilder(ShapeBatchOptions opts) {
+            this.opts = opts;
+            this.select("s");
+            this.from("Shape", "s");
+            this.join("s.roi", "r", false, true);
+            this.join("s.transform", "transform", true, true);
+            this.where();
+            if (opts.after != null) {
+                this.and("s.id > :after");
+                this.param("after", opts.after.getValue());
+            }
+        }
+
+        @Override
+        public Query query(Session session) {
+            Filter f = new Filter();
+            if (opts.userId != null) {
+                f.owner(opts.userId.getValue());
+            }
+            if (opts.groupId != null) {
+                f.group(opts.groupId.getValue());
+            }
+            f.page(null, opts.limit.getValue());
+            this.filter("s", f);
+            this.filterNow();
+            this.order("s.id", true); // keyset pagination
+            return super.queryWithoutFilter(session);
+        }
+
+    }
+
+    public static class ShapeBatchMapper extends IceMapper {
+        public ShapeBatchMapper(ShapeBatchOptions opts) {
+            super(new ShapeBatchReturnMapper(opts));
+        }
+    }
+
+    public static class ShapeBatchReturnMapper implements
+            IceMapper.ReturnMapping {
+
+        private final ShapeBatchOptions opts;
+
+        public ShapeBatchReturnMapper(ShapeBatchOptions opts) {
+            this.opts = opts;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object mapReturnValue(IceMapper mapper, Object value)
+                throws Ice.UserException {
+            ShapeBatch batch = new ShapeBatch();
+            batch.opts = opts;
+            List<ome.model.roi.Shape> shapes = value == null ? Collections
+                    .<ome.model.roi.Shape> emptyList()
+                    : (List<ome.model.roi.Shape>) value;
+
+            if (opts.geometryOnly) {
+                // The shapes are detached by now.
+                for (ome.model.roi.Shape shape : shapes) {
+                    for (Object field : shape.fields()) {
+                        String property = ((String) field).substring(
+                                ((String) field).indexOf('_') + 1);
+                        if (STYLE_PROPERTIES.contains(property)) {
+                            shape.putAt((String) field, null);
+                        }
+                    }
+                }
+            }
+
+            batch.shapes = (List<Shape>) IceMapper.FILTERABLE_COLLECTION
+                    .mapReturnValue(mapper, shapes);
+            if (shapes.size() == opts.limit.getValue()) {
+                batch.next = rlong(shapes.get(shapes.size() - 1)
+                        .getId());
+            }
+            return batch;
+        }
+    }
+
     public static class RoiResultMapper extends IceMapper {
         public RoiResultMapper(RoiOptions opts) {
             super(new RoiResultReturnMapper(opts));
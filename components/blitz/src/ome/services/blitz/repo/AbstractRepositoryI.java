@@ -245,6 +245,13 @@ public abstract class AbstractRepositoryI extends _InternalRepositoryDisp
         return repoUuid;
     }
 
+    /**
+     * @return the servant of the repository, initialized once taken over.
+     */
+    PublicRepositoryI getServant() {
+        return servant;
+    }
+
     public final Ice.Communicator getCommunicator() {
         return oa.getCommunicator();
     }
@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.blitz.repo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ome.services.blitz.repo.path.FsFile;
+import ome.services.blitz.repo.path.ServerFilePathTransformer;
+import ome.services.blitz.util.ChecksumAlgorithmMapper;
+import ome.services.util.Executor;
+import ome.util.SqlAction;
+import ome.util.SqlAction.RepoFileHash;
+import ome.util.checksum.ChecksumProvider;
+import ome.util.checksum.ChecksumProviderFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Verifies in the background that the files of a repository still match the
+ * hash recorded for them when they were uploaded.
+ *
+ * The files are walked in the order of their ids, batch by batch, and hashed
+ * by a pool of threads whose overall reading rate is limited. The progress is
+ * stored in the configuration table after each batch so that a pass over the
+ * repository resumes where it stopped after a restart. A file which was
+ * verified by the previous complete pass is not hashed again if its size is
+ * unchanged and it was not modified since that pass started.
+ *
+ * The files which do not match, or which cannot be read, are recorded in the
+ * configuration table under {@link #PREFIX}<code>&lt;repo&gt;.mismatch.</code>
+ * followed by their id, until a later pass finds them matching again.
+ *
+ * @since 5.4.0
+ */
+public class ChecksumVerifier {
+
+    private final static Logger log = LoggerFactory.getLogger(ChecksumVerifier.class);
+
+    /** Prefix of the names of the entries in the configuration table. */
+    public static final String PREFIX = "CHECKSUM_VERIFY.";
+
+    /** The last file id handled by the current pass. */
+    static final String CURSOR = ".cursor";
+
+    /** When the current pass started, in ms. */
+    static final String PASS_START = ".pass_start";
+
+    /** The last file id handled by the previous complete pass. */
+    static final String VERIFIED_ID = ".verified_id";
+
+    /** When the previous complete pass started, in ms. */
+    static final String VERIFIED_START = ".verified_start";
+
+    /** Followed by the file id, the files which failed verification. */
+    static final String MISMATCH = ".mismatch.";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** The coarsest resolution of the modification times of files, in ms. */
+    private static final long MTIME_RESOLUTION = 2000;
+
+    private final AbstractRepositoryI repository;
+
+    private final Executor executor;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    private final RateLimiter bandwidth;
+
+    private volatile boolean stopped = false;
+
+    /**
+     * @param repository the repository whose files are verified, once it has
+     *            been taken over by this process.
+     * @param executor to access the database.
+     * @param threads the number of files hashed at once, 0 to disable the
+     *            verification.
+     * @param bandwidth the maximum number of bytes read per second by all the
+     *            threads together, 0 for no limit.
+     * @param batchSize the number of files listed at once, and after which
+     *            the progress is recorded.
+     */
+    public ChecksumVerifier(AbstractRepositoryI repository, Executor executor,
+            int threads, long bandwidth, int batchSize) {
+        if (threads < 0 || bandwidth < 0 || batchSize < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "invalid threads=%d, bandwidth=%d or batchSize=%d",
+                    threads, bandwidth, batchSize));
+        }
+        this.repository = repository;
+        this.executor = executor;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.bandwidth = bandwidth == 0 ? null : RateLimiter.create(bandwidth);
+        if (threads == 0) {
+            log.info("Background verification of the repository files is disabled");
+        }
+    }
+
+    /**
+     * Stops a running verification after the files being hashed. The
+     * progress of the batch is lost.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Verifies the files of the repository until the end of the current
+     * pass, if the repository is served by this process. Invoked
+     * periodically, each time after a complete pass starting a new one.
+     */
+    public void run() {
+        if (threads == 0) {
+            return; // Disabled: the trigger still fires but nothing is read.
+        }
+        final PublicRepositoryI servant = repository.getServant();
+        final String repoUuid = servant.getRepoUuid();
+        if (repoUuid == null) {
+            return; // Not taken over by this process.
+        }
+        try {
+            verify(repoUuid, servant.serverPaths,
+                    servant.checksumProviderFactory);
+        } catch (RuntimeException e) {
+            log.error("Verification of the files of repository {} failed",
+                    repoUuid, e);
+        }
+    }
+
+    /**
+     * Runs one pass over the files of the given repository, resuming the
+     * current pass if any.
+     * @param repoUuid the UUID of the repository.
+     * @param serverPaths maps the paths of the files to the server.
+     * @param factory provides the checksum providers.
+     * @return if the pass completed, <code>false</code> if it was stopped.
+     */
+    public boolean verify(final String repoUuid,
+            final ServerFilePathTransformer serverPaths,
+            final ChecksumProviderFactory factory) {
+        final String key = PREFIX + repoUuid;
+        final Map<String, String> state = sql(new Executor.SimpleSqlWork(this,
+                "loadVerificationState", repoUuid) {
+            @Transactional(readOnly = true)
+            public Object doWork(SqlAction sql) {
+                return sql.configValuesByPrefix(key + ".");
+            }
+        });
+        final long verifiedId = get(state, key + VERIFIED_ID, -1);
+        final long verifiedStart = get(state, key + VERIFIED_START, -1);
+        long cursor = get(state, key + CURSOR, -1);
+        long passStart = get(state, key + PASS_START, -1);
+        if (passStart < 0) {
+            passStart = System.currentTimeMillis();
+            cursor = -1;
+            log.info("Starting verification of the files of repository {}",
+                    repoUuid);
+        }
+        // The mismatches of the files yet to be listed, those left at the
+        // end of the pass are of files since deleted.
+        final Set<String> unlisted = new HashSet<String>();
+        for (String name : state.keySet()) {
+            if (name.startsWith(key + MISMATCH) && Long.parseLong(
+                    name.substring(key.length() + MISMATCH.length())) > cursor) {
+                unlisted.add(name);
+            }
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            int verified = 0, skipped = 0, mismatched = 0;
+            while (!stopped) {
+                final long after = cursor;
+                final List<RepoFileHash> files = sql(new Executor.SimpleSqlWork(
+                        this, "findRepoFilesToVerify", repoUuid, after) {
+                    @Transactional(readOnly = true)
+                    public Object doWork(SqlAction sql) {
+                        return sql.findRepoFilesToVerify(repoUuid, after,
+                                batchSize);
+                    }
+                });
+                if (files.isEmpty()) {
+                    break;
+                }
+
+                final List<Future<String>> results =
+                        new ArrayList<Future<String>>(files.size());
+                for (final RepoFileHash file : files) {
+                    final File serverFile = serverPaths
+                            .getServerFileFromFsFile(new FsFile(file.path
+                                    + file.name));
+                    unlisted.remove(key + MISMATCH + file.id);
+                    if (file.id <= verifiedId
+                            && !state.containsKey(key + MISMATCH + file.id)
+                            && isUnchanged(file, serverFile, verifiedStart)) {
+                        results.add(null);
+                    } else {
+                        results.add(pool.submit(new Callable<String>() {
+                            public String call() {
+                                return check(file, serverFile, factory);
+                            }
+                        }));
+                    }
+                }
+
+                final Map<Long, String> mismatches = new HashMap<Long, String>();
+                for (int i = 0; i < files.size(); i++) {
+                    if (results.get(i) == null) {
+                        skipped++;
+                        continue;
+                    }
+                    verified++;
+                    final String mismatch = get(results.get(i));
+                    if (mismatch != null) {
+                        log.warn("File {} of repository {} failed verification: {}",
+                                files.get(i).id, repoUuid, mismatch);
+                        mismatched++;
+                    }
+                    mismatches.put(files.get(i).id, mismatch);
+                }
+                if (stopped) {
+                    return false;
+                }
+                cursor = files.get(files.size() - 1).id;
+                record(key, state, mismatches, cursor, passStart);
+            }
+            if (stopped) {
+                return false;
+            }
+            complete(key, cursor, passStart, unlisted);
+            log.info("Verified the files of repository {}: {} hashed, "
+                    + "{} unchanged, {} mismatched", repoUuid, verified,
+                    skipped, mismatched);
+            return true;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * If the file was not modified since the given time and still has the
+     * size recorded in the database.
+     */
+    private static boolean isUnchanged(RepoFileHash file, File serverFile,
+            long since) {
+        return file.size != null && serverFile.length() == file.size
+                && serverFile.lastModified() < since - MTIME_RESOLUTION;
+    }
+
+    /**
+     * Hashes the given file.
+     * @return <code>null</code> if it matches, otherwise a description of
+     *         the mismatch.
+     */
+    private String check(RepoFileHash file, File serverFile,
+            ChecksumProviderFactory factory) {
+        final ChecksumProvider provider;
+        try {
+            provider = factory.getProvider(ChecksumAlgorithmMapper
+                    .getChecksumType(ChecksumAlgorithmMapper
+                            .getChecksumAlgorithm(file.hasher)));
+        } catch (IllegalArgumentException e) {
+            return "unknown hasher " + file.hasher;
+        }
+        if (!serverFile.isFile()) {
+            return "missing " + serverFile;
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = null;
+        try {
+            in = new FileInputStream(serverFile);
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                if (stopped) {
+                    return null;
+                }
+                if (bandwidth != null) {
+                    bandwidth.acquire(read);
+                }
+                provider.putBytes(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return "unreadable " + serverFile + ": " + e.getMessage();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close {}", serverFile, e);
+                }
+            }
+        }
+        final String actual = provider.checksumAsString();
+        if (actual.equalsIgnoreCase(file.hash)) {
+            return null;
+        }
+        return String.format("%s hash is %s, expected %s", file.hasher,
+                actual, file.hash);
+    }
+
+    /**
+     * Records the result of a batch, updating the known mismatches.
+     * @param mismatches the description of each mismatch by file id,
+     *            <code>null</code> for the files found matching.
+     */
+    private void record(final String key, final Map<String, String> state,
+            final Map<Long, String> mismatches, final long cursor,
+            final long passStart) {
+        sql(new Executor.SimpleSqlWork(this, "recordVerification", key, cursor) {
+            @Transactional(readOnly = false)
+            public Object doWork(SqlAction sql) {
+                for (Map.Entry<Long, String> file : mismatches.entrySet()) {
+                    final String name = key + MISMATCH + file.getKey();
+                    if (file.getValue() != null) {
+                        sql.updateOrInsertConfigValue(name, file.getValue());
+                        state.put(name, file.getValue());
+                    } else if (state.remove(name) != null) {
+                        sql.delConfigValue(name);
+                    }
+                }
+                sql.updateOrInsertConfigValue(key + PASS_START,
+                        Long.toString(passStart));
+                sql.updateOrInsertConfigValue(key + CURSOR,
+                        Long.toString(cursor));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Records the end of a pass, the next one starting from the first file.
+     * @param deleted the mismatches of the files no longer listed.
+     */
+    private void complete(final String key, final long cursor,
+            final long passStart, final Set<String> deleted) {
+        sql(new Executor.SimpleSqlWork(this, "completeVerification", key) {
+            @Transactional(readOnly = false)
+            public Object doWork(SqlAction sql) {
+                for (String name : deleted) {
+                    sql.delConfigValue(name);
+                }
+                sql.updateOrInsertConfigValue(key + VERIFIED_ID,
+                        Long.toString(cursor));
+                sql.updateOrInsertConfigValue(key + VERIFIED_START,
+                        Long.toString(passStart));
+                sql.delConfigValue(key + CURSOR);
+                sql.delConfigValue(key + PASS_START);
+                return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T sql(Executor.SqlWork work) {
+        return (T) executor.executeSql(work);
+    }
+
+    private static long get(Map<String, String> state, String name,
+            long defaultValue) {
+        final String value = state.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}={}", name, value);
+            return defaultValue;
+        }
+    }
+
+    private String get(Future<String> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            return null;
+        } catch (ExecutionException e) {
+            return "failed: " + e.getCause();
+        }
+    }
+
+}
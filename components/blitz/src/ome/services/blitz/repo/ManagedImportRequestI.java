@@ -40,6 +40,7 @@ import ome.formats.importer.ImportSize;
 import ome.formats.importer.OMEROWrapper;
 import ome.formats.importer.targets.ServerTemplateImportTarget;
 import ome.formats.importer.util.ErrorHandler;
+import ome.io.nio.PixelsService;
 import ome.io.nio.TileSizes;
 import ome.services.blitz.fire.Registry;
 import ome.system.EventContext;
@@ -51,6 +52,7 @@ import omero.cmd.HandlePrx;
 import omero.cmd.Helper;
 import omero.cmd.IRequest;
 import omero.cmd.Response;
+import omero.cmd.fs.OriginalMetadataSnapshot;
 import omero.constants.namespaces.NSAUTOCLOSE;
 import omero.constants.namespaces.NSTARGETTEMPLATE;
 import omero.grid.ImportRequest;
@@ -122,6 +124,8 @@ public class ManagedImportRequestI extends ImportRequest implements IRequest {
 
     private Resources resources = null;
 
+    private PixelsService pixelsService = null;
+
     private Resources.Entry resourcesEntry = null;
 
     private Map<String, String> callContext = null;
@@ -189,6 +193,14 @@ public class ManagedImportRequestI extends ImportRequest implements IRequest {
         this.resources = resources;
     }
 
+    /**
+     * Late injection of the service whose memo files are prewarmed once the
+     * import has completed.
+     */
+    public void setPixelsService(PixelsService pixelsService) {
+        this.pixelsService = pixelsService;
+    }
+
     /**
      * @param callContext the call context to set
      */
@@ -571,7 +583,10 @@ public class ManagedImportRequestI extends ImportRequest implements IRequest {
 
     @Override
     public void finish() throws Cancel {
-        // no-op
+        if (pixelsService != null && pixList != null && !pixList.isEmpty()) {
+            // Generate the memo file now rather than on first access.
+            pixelsService.prewarmMemo(fileName);
+        }
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -690,6 +705,8 @@ public class ManagedImportRequestI extends ImportRequest implements IRequest {
             store.populateMinMax();
         }
 
+        writeMetadataSnapshots();
+
 
         return null;
     }
@@ -894,6 +911,51 @@ public class ManagedImportRequestI extends ImportRequest implements IRequest {
         }
     }
 
+    /**
+     * Writes the {@link OriginalMetadataSnapshot} of each series while the
+     * reader is open so that the original metadata can later be served
+     * without initializing a reader. The global metadata is the same for
+     * every series so is written once, next to the pixels set with the
+     * lowest id. Failures are only logged since the snapshots are otherwise
+     * written on first request.
+     */
+    private void writeMetadataSnapshots() {
+        if (pixelsService == null) {
+            return;
+        }
+        long first = Long.MAX_VALUE;
+        for (final Pixels pixels : pixList) {
+            first = Math.min(first, pixels.getId().getValue());
+        }
+        final File global = new File(pixelsService.getPixelsPath(first)
+                + PixelsService.FILESET_METADATA_SUFFIX);
+        try {
+            global.getParentFile().mkdirs();
+            OriginalMetadataSnapshot.write(global,
+                    reader.getGlobalMetadata(), null);
+        } catch (Exception e) {
+            log.warn("Cannot write original metadata of fileset", e);
+        }
+        final int current = reader.getSeries();
+        try {
+            for (int series = 0; series < pixList.size(); series++) {
+                final long id = pixList.get(series).getId().getValue();
+                final File file = new File(pixelsService.getPixelsPath(id)
+                        + PixelsService.METADATA_SUFFIX);
+                try {
+                    reader.setSeries(series);
+                    file.getParentFile().mkdirs();
+                    OriginalMetadataSnapshot.write(file, null,
+                            reader.getSeriesMetadata());
+                } catch (Exception e) {
+                    log.warn("Cannot write original metadata of pixels " + id, e);
+                }
+            }
+        } finally {
+            reader.setSeries(current);
+        }
+    }
+
     /**
      * Retrieves how many bytes per pixel the current plane or section has.
      * @return the number of bytes per pixel.
@@ -268,6 +268,13 @@ public class PublicRepositoryI implements _RepositoryOperations, ApplicationCont
         return repositoryDao.treeList(repoUuid, checked, __current);
     }
 
+    public RMap treeListPage(String path, int depth, int offset, int limit,
+            Current __current) throws ServerError {
+        final CheckedPath checked = checkPath(path, null, __current);
+        return repositoryDao.treeList(repoUuid, checked, depth, offset, limit,
+                __current);
+    }
+
 
     /**
      * Register an OriginalFile using its path
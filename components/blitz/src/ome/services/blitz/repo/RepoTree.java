@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.blitz.repo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ome.services.blitz.repo.path.FsFile;
+import omero.RMap;
+import omero.RType;
+
+/**
+ * Builds the nested {@link RMap} returned by
+ * {@link PublicRepositoryI#treeList(String, Ice.Current)} from the flat list
+ * of the files below a directory, as loaded by a single query rather than
+ * directory by directory.
+ *
+ * The files are ordered by their full path. A page of them may be selected,
+ * in which case the directories containing the files of the page are listed
+ * too so that the result nests as usual.
+ *
+ * @since 5.4.0
+ */
+public class RepoTree {
+
+    private static class Entry {
+        final long id;
+        final String path;
+        final String name;
+        final String mimetype;
+        final Long size;
+
+        Entry(long id, String path, String name, String mimetype, Long size) {
+            this.id = id;
+            this.path = path;
+            this.name = name;
+            this.mimetype = mimetype;
+            this.size = size;
+        }
+
+        String fullPath() {
+            return path + name;
+        }
+
+        boolean isDirectory() {
+            return PublicRepositoryI.DIRECTORY_MIMETYPE.equals(mimetype);
+        }
+    }
+
+    private static final Comparator<Entry> BY_PATH = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            final int cmp = e1.path.compareTo(e2.path);
+            return cmp != 0 ? cmp : e1.name.compareTo(e2.name);
+        }
+    };
+
+    /** The directory whose files are listed, with a trailing separator. */
+    private final String dirname;
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * @param dirname the path of the listed directory, including its name
+     *            and a trailing separator, as the path of its files.
+     */
+    public RepoTree(String dirname) {
+        this.dirname = dirname;
+    }
+
+    /**
+     * Adds a file below the listed directory.
+     * @param id the id of the {@link ome.model.core.OriginalFile}.
+     * @param path its path.
+     * @param name its name.
+     * @param mimetype its mimetype.
+     * @param size its size, may be <code>null</code>.
+     * @return if the file is a directory.
+     */
+    public boolean add(long id, String path, String name, String mimetype,
+            Long size) {
+        final Entry entry = new Entry(id, path, name, mimetype, size);
+        entries.add(entry);
+        return entry.isDirectory();
+    }
+
+    /**
+     * Returns the number of files added.
+     * @return See above.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the files as nested {@link RMap}s keyed by name, each with the
+     * id, mimetype, size and, for directories, files of the file.
+     * Files whose directory was not added, e.g. because it cannot be read,
+     * are left out.
+     * @param offset the number of files to skip, in the order of their
+     *            paths.
+     * @param limit the maximum number of files to list, negative for all.
+     * @return See above.
+     */
+    public RMap files(int offset, int limit) {
+        Collections.sort(entries, BY_PATH);
+        final Map<String, Entry> directories = new HashMap<String, Entry>();
+        for (Entry entry : entries) {
+            if (entry.isDirectory()) {
+                directories.put(entry.fullPath() + FsFile.separatorChar, entry);
+            }
+        }
+
+        final RMap files = omero.rtypes.rmap();
+        // The files maps of the directories listed so far, by dirname.
+        final Map<String, RMap> listed = new HashMap<String, RMap>();
+        listed.put(dirname, files);
+        final int end = limit < 0 ? entries.size()
+                : (int) Math.min(entries.size(), (long) offset + limit);
+        for (int i = Math.max(offset, 0); i < end; i++) {
+            list(entries.get(i), directories, listed);
+        }
+        return files;
+    }
+
+    /**
+     * Lists the given file in the files of its directory, listing the
+     * directory first if needed.
+     * @return the map of the file, <code>null</code> if its directory is
+     *         missing.
+     */
+    private Map<String, RType> list(Entry entry,
+            Map<String, Entry> directories, Map<String, RMap> listed) {
+        RMap parent = listed.get(entry.path);
+        if (parent == null) {
+            final Entry directory = directories.get(entry.path);
+            if (directory == null) {
+                return null;
+            }
+            final Map<String, RType> map = list(directory, directories, listed);
+            if (map == null) {
+                return null;
+            }
+            parent = (RMap) map.get("files");
+        }
+        final RMap file = omero.rtypes.rmap();
+        final Map<String, RType> map = file.getValue();
+        map.put("id", omero.rtypes.rlong(entry.id));
+        map.put("mimetype", omero.rtypes.rstring(entry.mimetype));
+        if (entry.size != null) {
+            map.put("size", omero.rtypes.rlong(entry.size));
+        }
+        if (entry.isDirectory()) {
+            final RMap subFiles = omero.rtypes.rmap();
+            map.put("files", subFiles);
+            listed.put(entry.fullPath() + FsFile.separatorChar, subFiles);
+        }
+        parent.put(entry.name, file);
+        return map;
+    }
+
+}
@@ -76,6 +76,22 @@ public interface RepositoryDao {
     RMap treeList(String repoUuid, CheckedPath checked, Current __current)
             throws ServerError;
 
+    /**
+     * As {@link #treeList(String, CheckedPath, Current)} but limited to the
+     * given number of levels below the directory and to a page of its files.
+     *
+     * @param repoUuid the repository.
+     * @param checked the file to list.
+     * @param depth the number of levels to list, negative for all.
+     * @param offset the number of files to skip, in the order of their paths.
+     * @param limit the maximum number of files to list, negative for all.
+     * @param __current
+     * @return See above.
+     * @throws ServerError
+     */
+    RMap treeList(String repoUuid, CheckedPath checked, int depth, int offset,
+            int limit, Current __current) throws ServerError;
+
     /**
      * Checks that the given {@link CheckedPath} objects exist (via
      * {@link #findRepoFile(String, CheckedPath, String, Ice.Current)})
@@ -100,6 +100,11 @@ public class RepositoryDaoImpl implements RepositoryDao {
     private static final String LOAD_ORIGINAL_FILE =
     "select f from OriginalFile as f left outer join fetch f.hasher where ";
 
+    /* query to list the files of a repository, for treeList */
+    private static final String LIST_REPO_FILES =
+    "select f.id, f.path, f.name, f.mimetype, f.size from OriginalFile as f "
+    + "where f.repo = :repo and ";
+
     /* query to load a user's institution */
     private static final String LOAD_USER_INSTITUTION =
             "SELECT institution FROM " + Experimenter.class.getName() + " WHERE id = :id";
@@ -223,48 +228,56 @@ public class RepositoryDaoImpl implements RepositoryDao {
 
     public RMap treeList(final String repoUuid, final CheckedPath checked,
             Current current) throws ServerError {
+        return treeList(repoUuid, checked, -1, 0, -1, current);
+    }
+
+    public RMap treeList(final String repoUuid, final CheckedPath checked,
+            final int depth, final int offset, final int limit,
+            Current current) throws ServerError {
 
         final RMap map = omero.rtypes.rmap();
         executor.execute(current.ctx, currentUser(current),
                 new Executor.SimpleWork(this,
-                "treeList", repoUuid, checked) {
+                "treeList", repoUuid, checked, depth, offset, limit) {
 
             @Transactional(readOnly = true)
             public Object doWork(Session session, ServiceFactory sf) {
-                _treeList(map, repoUuid, checked, sf, getSqlAction());
+                _treeList(map, repoUuid, checked, depth, offset, limit,
+                        sf, getSqlAction());
                 return null;
             }
         });
 
         return map;
     }
+
     /**
-     * Recursive descent for {@link PublicDirectoryI#treeList(String, Current)}.
-     * This should only really be called on directories, but if it's accidentally
-     * called on a non-directory, then we will treat it specially.
+     * Lists the file for {@link PublicRepositoryI#treeList(String, Current)}
+     * and, if it is a directory, the files below it. Rather than descending
+     * directory by directory, the whole subtree is loaded by a single query
+     * on the paths of the files or, if the depth is limited, by a query per
+     * level. Only the readable files are returned by the queries.
      *
-     * @param rv The {@link RMap} which should be filled for a given level.
-     * @param path
-     * @param __current
-     * @throws ServerError
+     * @param rv The {@link RMap} which should be filled.
+     * @param repoUuid the repository.
+     * @param checked the file to list.
+     * @param depth the number of levels to list below a directory, negative
+     *            for all.
+     * @param offset the number of files to skip below a directory.
+     * @param limit the maximum number of files to list below a directory,
+     *            negative for all.
      */
     private void _treeList(RMap rv, String repoUuid, CheckedPath checked,
-            ServiceFactory sf, SqlAction sql) {
+            int depth, int offset, int limit, ServiceFactory sf,
+            SqlAction sql) {
 
         final ome.model.core.OriginalFile file
             = findRepoFile(sf, sql, repoUuid, checked, null);
 
         if (file == null) {
-            if (rv.getValue().size() == 0) {
-                // This is likely the top-level search, and therefore
-                // we can just exit.
-                log.debug("No file found in _treeList: " + checked);
-            } else {
-                // In this case, we've been given data that's now
-                // missing from the DB in the same transaction.
-                // Shouldn't happen.
-                log.warn("No file found in _treeList: " + checked);
-            }
+            // This is likely the top-level search, and therefore
+            // we can just exit.
+            log.debug("No file found in _treeList: " + checked);
             return; // EARLY EXIT.
         }
 
@@ -285,32 +298,50 @@ public class RepositoryDaoImpl implements RepositoryDao {
         if (file.getMimetype() != null && // FIXME: should be set!
                 PublicRepositoryI.DIRECTORY_MIMETYPE.equals(file.getMimetype())) {
 
-            // Now we recurse
-            List<ome.model.core.OriginalFile> subFiles
-                = getOriginalFiles(sf, sql, repoUuid, checked);
-            final RMap subFilesRv = omero.rtypes.rmap();
-
-            for (ome.model.core.OriginalFile subFile : subFiles) {
-                CheckedPath child = null;
-                try {
-                    child = checked.child(subFile.getName());
-                    if (child == null) {
-                        // This should never happen.
-                        throw new omero.ValidationException(null, null, "null child!");
+            final IQuery q = sf.getQueryService();
+            final RepoTree tree = new RepoTree(checked.getDirname());
+            if (depth < 0) {
+                final String pattern = checked.getDirname()
+                        .replace("!", "!!").replace("%", "!%").replace("_", "!_")
+                        + "%";
+                final Parameters params = new Parameters()
+                        .addString("repo", repoUuid)
+                        .addString("pattern", pattern);
+                addToTree(tree, q.projection(LIST_REPO_FILES
+                        + "f.path like :pattern escape '!'", params));
+            } else {
+                List<String> dirs = Collections.singletonList(checked.getDirname());
+                for (int level = 0; level < depth && !dirs.isEmpty(); level++) {
+                    final List<String> subDirs = new ArrayList<String>();
+                    for (final List<String> batch : Iterables.partition(dirs, BATCH_SIZE)) {
+                        final Parameters params = new Parameters()
+                                .addString("repo", repoUuid)
+                                .addList("paths", batch);
+                        subDirs.addAll(addToTree(tree, q.projection(
+                                LIST_REPO_FILES + "f.path in (:paths)", params)));
                     }
-                } catch (omero.ValidationException ve) {
-                    // This can only really happen if the database has very odd
-                    // information stored. Issuing a warning and then throwing
-                    // an exception.
-                    log.warn(String.format("Validation exception on %s.child(%s)",
-                            checked, subFile.getName()), ve);
-                    throw new ome.conditions.ValidationException(ve.getMessage());
+                    dirs = subDirs;
                 }
+            }
+            subVal.put("files", tree.files(offset, limit));
+        }
+    }
 
-                _treeList(subFilesRv, repoUuid, child, sf, sql);
+    /**
+     * Adds the rows of {@link #LIST_REPO_FILES} to the given tree.
+     * @return the paths of the files of the directories added.
+     */
+    private static List<String> addToTree(RepoTree tree, List<Object[]> rows) {
+        final List<String> dirs = new ArrayList<String>();
+        for (final Object[] row : rows) {
+            final String path = (String) row[1];
+            final String name = (String) row[2];
+            if (tree.add((Long) row[0], path, name, (String) row[3],
+                    (Long) row[4])) {
+                dirs.add(path + name + FsFile.separatorChar);
             }
-            subVal.put("files", subFilesRv);
         }
+        return dirs;
     }
 
     public void createOrFixUserDir(final String repoUuid,
@@ -90,6 +90,7 @@ public class RequestObjectFactoryRegistry extends
                                 pixels.getMemoizerDirectory()),
                         ring.uuid);
                 mir.setResources(resources);
+                mir.setPixelsService(pixels);
                 return mir;
             }
 
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.roi;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import ome.model.roi.Mask;
+
+/**
+ * Creates the {@link Mask}s of a label image, e.g. the output of a
+ * segmentation pipeline, where each object is painted with its own value on
+ * a background of 0 or black. The image is scanned once, row by row, and
+ * each row is reduced to runs of equal labels. The bounding boxes and the
+ * packed bit masks are then built from the runs, so that the memory used
+ * depends on the number of runs rather than on the number of pixels.
+ *
+ * Single-band images are labelled by their sample values, so 16-bit label
+ * images keep all their labels. Other images are labelled by their RGB
+ * colour.
+ *
+ * Optionally, each label is split into its 8-connected components so that
+ * disjoint objects which share a label give distinct masks.
+ *
+ * Instances are not thread-safe.
+ *
+ * @since 5.4.0
+ */
+public class LabelMasks {
+
+    /** The background of colour images. */
+    private static final int BLACK = Color.black.getRGB();
+
+    /** The background of single-band images. */
+    private static final int ZERO = 0;
+
+    private final boolean splitComponents;
+
+    /** The row, first and last columns and label of each run. */
+    private int[] runY, runX0, runX1, runLabel;
+
+    /** The union-find forest of the runs, used to split components. */
+    private int[] parent;
+
+    /** The number of runs. */
+    private int runs;
+
+    /**
+     * @param splitComponents if each connected component of a label should
+     *            give its own mask.
+     */
+    public LabelMasks(boolean splitComponents) {
+        this.splitComponents = splitComponents;
+    }
+
+    /**
+     * Decodes the given image, in any format supported by {@link ImageIO},
+     * and returns its masks.
+     * @param bytes the encoded label image.
+     * @param z the Z-section of the masks.
+     * @param t the timepoint of the masks.
+     * @return the masks, in the order of their first pixel in the image.
+     * @throws IOException if the image cannot be decoded.
+     */
+    public List<Mask> read(byte[] bytes, int z, int t) throws IOException {
+        final BufferedImage image =
+                ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Unsupported image format");
+        }
+        return scan(image, z, t);
+    }
+
+    /**
+     * Returns the masks of the given image.
+     * @param image the label image.
+     * @param z the Z-section of the masks.
+     * @param t the timepoint of the masks.
+     * @return the masks, in the order of their first pixel in the image.
+     */
+    public List<Mask> scan(BufferedImage image, int z, int t) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final Raster raster = image.getRaster();
+        final boolean samples = raster.getNumBands() == 1
+                && !(image.getColorModel() instanceof IndexColorModel);
+        final int background = samples ? ZERO : BLACK;
+
+        runs = 0;
+        runY = new int[1024];
+        runX0 = new int[1024];
+        runX1 = new int[1024];
+        runLabel = new int[1024];
+        parent = splitComponents ? new int[1024] : null;
+
+        final int[] row = new int[width];
+        int previous = 0;
+        for (int y = 0; y < height; y++) {
+            if (samples) {
+                raster.getSamples(0, y, width, 1, 0, row);
+            } else {
+                image.getRGB(0, y, width, 1, row, 0, width);
+            }
+            final int first = runs;
+            int p = previous;
+            int x = 0;
+            while (x < width) {
+                final int label = row[x];
+                if (label == background) {
+                    x++;
+                    continue;
+                }
+                final int x0 = x;
+                while (x < width && row[x] == label) {
+                    x++;
+                }
+                final int r = add(y, x0, x - 1, label);
+                if (splitComponents) {
+                    // Skip the runs of the previous row left of this one,
+                    // then join those touching it, diagonals included.
+                    while (p < first && runX1[p] < x0 - 1) {
+                        p++;
+                    }
+                    for (int q = p; q < first && runX0[q] <= x; q++) {
+                        if (runLabel[q] == label) {
+                            union(q, r);
+                        }
+                    }
+                }
+            }
+            previous = first;
+        }
+        return masks(z, t);
+    }
+
+    private int add(int y, int x0, int x1, int label) {
+        if (runs == runY.length) {
+            final int length = runs * 2;
+            runY = Arrays.copyOf(runY, length);
+            runX0 = Arrays.copyOf(runX0, length);
+            runX1 = Arrays.copyOf(runX1, length);
+            runLabel = Arrays.copyOf(runLabel, length);
+            if (parent != null) {
+                parent = Arrays.copyOf(parent, length);
+            }
+        }
+        runY[runs] = y;
+        runX0[runs] = x0;
+        runX1[runs] = x1;
+        runLabel[runs] = label;
+        if (parent != null) {
+            parent[runs] = runs;
+        }
+        return runs++;
+    }
+
+    private int find(int r) {
+        while (parent[r] != r) {
+            parent[r] = parent[parent[r]];
+            r = parent[r];
+        }
+        return r;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        // Keep the earliest run as root so that masks stay in image order.
+        if (a < b) {
+            parent[b] = a;
+        } else if (b < a) {
+            parent[a] = b;
+        }
+    }
+
+    private List<Mask> masks(int z, int t) {
+        // Index of the mask of each run and bounding box of each mask.
+        final int[] mask = new int[runs];
+        final Map<Integer, Integer> indexes = new HashMap<Integer, Integer>();
+        int[] minX = new int[16], minY = new int[16];
+        int[] maxX = new int[16], maxY = new int[16];
+        int count = 0;
+        for (int r = 0; r < runs; r++) {
+            final int key = splitComponents ? find(r) : runLabel[r];
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = count++;
+                indexes.put(key, index);
+                if (index == minX.length) {
+                    minX = Arrays.copyOf(minX, count * 2);
+                    minY = Arrays.copyOf(minY, count * 2);
+                    maxX = Arrays.copyOf(maxX, count * 2);
+                    maxY = Arrays.copyOf(maxY, count * 2);
+                }
+                minX[index] = runX0[r];
+                minY[index] = runY[r];
+                maxX[index] = runX1[r];
+                maxY[index] = runY[r];
+            } else {
+                minX[index] = Math.min(minX[index], runX0[r]);
+                maxX[index] = Math.max(maxX[index], runX1[r]);
+                maxY[index] = runY[r];
+            }
+            mask[r] = index;
+        }
+
+        final byte[][] bits = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            final long size = (long) (maxX[i] - minX[i] + 1)
+                    * (maxY[i] - minY[i] + 1);
+            bits[i] = new byte[(int) ((size + 7) / 8)];
+        }
+        for (int r = 0; r < runs; r++) {
+            final int i = mask[r];
+            final int w = maxX[i] - minX[i] + 1;
+            final int offset = (runY[r] - minY[i]) * w + runX0[r] - minX[i];
+            setBits(bits[i], offset, runX1[r] - runX0[r] + 1);
+        }
+
+        final List<Mask> masks = new ArrayList<Mask>(count);
+        for (int i = 0; i < count; i++) {
+            final Mask m = new Mask();
+            m.setX((double) minX[i]);
+            m.setY((double) minY[i]);
+            m.setWidth((double) (maxX[i] - minX[i] + 1));
+            m.setHeight((double) (maxY[i] - minY[i] + 1));
+            m.setLocked(true);
+            m.setTheZ(z);
+            m.setTheT(t);
+            m.setBytes(bits[i]);
+            masks.add(m);
+        }
+        runY = runX0 = runX1 = runLabel = parent = null;
+        return masks;
+    }
+
+    /**
+     * Sets <code>length</code> bits from <code>offset</code>, the most
+     * significant bit of each byte first, as expected by {@link Mask}.
+     */
+    private static void setBits(byte[] data, int offset, int length) {
+        int bit = offset;
+        final int end = offset + length;
+        while (bit < end && (bit & 7) != 0) {
+            data[bit >> 3] |= 0x80 >>> (bit & 7);
+            bit++;
+        }
+        while (bit + 8 <= end) {
+            data[bit >> 3] = (byte) 0xff;
+            bit += 8;
+        }
+        while (bit < end) {
+            data[bit >> 3] |= 0x80 >>> (bit & 7);
+            bit++;
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.throttling;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.api.ServiceInterface;
+import ome.conditions.OverUsageException;
+import ome.security.basic.CurrentDetails;
+import ome.services.blitz.util.IceMethodInvoker;
+import ome.system.metrics.Counter;
+import ome.system.metrics.Histogram;
+import ome.system.metrics.Metrics;
+import omero.util.IceMapper;
+import Ice.Current;
+
+/**
+ * Throttling implementation which queues the invocations of each session and
+ * runs them on a fixed pool of threads, so that the calling server
+ * {@link Thread} is released at once.
+ *
+ * At most a given number of invocations of each session, and of each service,
+ * are run at any one time. When a thread is free, the invocation run next is
+ * taken from the session which has used the least time running its previous
+ * invocations, so that sessions making heavy calls do not starve sessions
+ * making light ones. A session with as many invocations queued as allowed has
+ * further invocations rejected with an {@link OverUsageException}.
+ *
+ * The number of invocations queued, of those rejected and the time the
+ * invocations wait for are reported as metrics.
+ *
+ * @since 5.4.0
+ */
+public class FairThrottlingStrategy extends AbstractThrottlingStrategy {
+
+    /** An invocation waiting to be run. */
+    private static class Entry {
+
+        final Task task;
+
+        final Ice.Current current;
+
+        final String service;
+
+        final long queued = System.nanoTime();
+
+        Entry(Task task, Ice.Current current, String service) {
+            this.task = task;
+            this.current = current;
+            this.service = service;
+        }
+    }
+
+    /** The invocations of a session. */
+    private static class SessionQueue {
+
+        final String session;
+
+        final LinkedList<Entry> pending = new LinkedList<Entry>();
+
+        /** The nanoseconds used by the session, offset on creation. */
+        long used;
+
+        int running;
+
+        SessionQueue(String session, long used) {
+            this.session = session;
+            this.used = used;
+        }
+    }
+
+    private final CurrentDetails cd;
+
+    private final ExecutorService pool;
+
+    private final int threads;
+
+    private final int perSession;
+
+    private final int perService;
+
+    private final int queueLength;
+
+    private final Counter queued;
+
+    private final Counter rejected;
+
+    private final Histogram waitTime;
+
+    /** Guards all the fields below. */
+    private final Object lock = new Object();
+
+    private final Map<String, SessionQueue> sessions = new HashMap<String, SessionQueue>();
+
+    private final Map<String, Integer> runningByService = new HashMap<String, Integer>();
+
+    private int running = 0;
+
+    /** The time used by the session most recently run, given to new sessions. */
+    private long clock = 0;
+
+    private boolean destroyed = false;
+
+    /**
+     * @param cd for setting the call context of the invocations
+     * @param metrics for reporting the queue depth and wait times
+     * @param threads the number of invocations run at once
+     * @param perSession the number of invocations of a session run at once
+     * @param perService the number of invocations of a service run at once
+     * @param queueLength the number of invocations of a session which may
+     *            wait to be run
+     */
+    public FairThrottlingStrategy(CurrentDetails cd, Metrics metrics,
+            int threads, int perSession, int perService, int queueLength) {
+        if (threads < 1 || perSession < 1 || perService < 1 || queueLength < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.cd = cd;
+        this.threads = threads;
+        this.perSession = perSession;
+        this.perService = perService;
+        this.queueLength = queueLength;
+        this.queued = metrics.counter(this, "queued");
+        this.rejected = metrics.counter(this, "rejected");
+        this.waitTime = metrics.histogram(this, "waitTime");
+        final AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "FairThrottling-"
+                        + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public void callInvokerOnRawArgs(ServiceInterface service,
+            IceMethodInvoker invoker, Object __cb, Ice.Current __current,
+            Object... args) {
+        IceMapper mapper = new IceMapper();
+        submit(__current, new Callback(service, invoker, mapper, __cb,
+                __current, args));
+    }
+
+    public void callInvokerWithMappedArgs(ServiceInterface service,
+            IceMethodInvoker invoker, IceMapper mapper, Object __cb,
+            Current __current, Object... args) {
+        submit(__current, new Callback(service, invoker, mapper, __cb,
+                __current, args));
+    }
+
+    public <R> void safeRunnableCall(Current __current, Object __cb,
+            boolean isVoid, Callable<R> callable) {
+        submit(__current, new Callback2<R>(__current, __cb, isVoid, callable));
+    }
+
+    public void runnableCall(Current __current, Task runnable) {
+        submit(__current, runnable);
+    }
+
+    /**
+     * Cancels the invocations still queued and stops the threads once the
+     * running invocations have completed.
+     */
+    public void destroy() {
+        final LinkedList<Entry> cancelled = new LinkedList<Entry>();
+        synchronized (lock) {
+            destroyed = true;
+            for (SessionQueue queue : sessions.values()) {
+                cancelled.addAll(queue.pending);
+                queue.pending.clear();
+            }
+        }
+        for (Entry entry : cancelled) {
+            queued.dec();
+            entry.task.exception(new Queue.CancelledException(), ctx);
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * @return the number of invocations waiting to be run
+     */
+    public long getQueueDepth() {
+        return queued.getCount();
+    }
+
+    /**
+     * @return the number of invocations rejected
+     */
+    public long getRejected() {
+        return rejected.getCount();
+    }
+
+    // Scheduling
+    // =========================================================================
+
+    /**
+     * Queues the task for its session, rejecting it if the session has too
+     * many queued already, and runs what can be.
+     */
+    void submit(Ice.Current current, Task task) {
+        final String session = current == null || current.id == null ? ""
+                : current.id.category;
+        final Entry entry = new Entry(task, current, serviceOf(current));
+        final boolean cancelled;
+        synchronized (lock) {
+            cancelled = destroyed;
+            if (!cancelled) {
+                SessionQueue queue = sessions.get(session);
+                if (queue == null) {
+                    queue = new SessionQueue(session, clock);
+                    sessions.put(session, queue);
+                }
+                if (queue.pending.size() < queueLength) {
+                    queue.pending.add(entry);
+                    queued.inc();
+                    dispatch();
+                    return; // EARLY EXIT
+                }
+            }
+        }
+        if (cancelled) {
+            task.exception(new Queue.CancelledException(), ctx);
+        } else {
+            rejected.inc();
+            log.warn("Rejecting invocation for session {}: {} queued",
+                    session, queueLength);
+            task.exception(new OverUsageException(String.format(
+                    "Too many invocations queued for session: %s",
+                    queueLength)), ctx);
+        }
+    }
+
+    /**
+     * Starts as many of the queued invocations as the limits allow, by order
+     * of the time used by their session. Called holding the lock.
+     */
+    private void dispatch() {
+        while (running < threads) {
+            SessionQueue next = null;
+            Entry entry = null;
+            for (SessionQueue queue : sessions.values()) {
+                if (queue.running >= perSession
+                        || (next != null && queue.used >= next.used)) {
+                    continue;
+                }
+                final Entry runnable = firstRunnable(queue);
+                if (runnable != null) {
+                    next = queue;
+                    entry = runnable;
+                }
+            }
+            if (entry == null) {
+                return;
+            }
+            next.pending.remove(entry);
+            next.running++;
+            running++;
+            runningByService.put(entry.service, running(entry.service) + 1);
+            clock = Math.max(clock, next.used);
+            queued.dec();
+            pool.execute(runner(next, entry));
+        }
+    }
+
+    /**
+     * The first invocation of the session whose service is not already
+     * running as many invocations as allowed.
+     */
+    private Entry firstRunnable(SessionQueue queue) {
+        for (Entry entry : queue.pending) {
+            if (running(entry.service) < perService) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private int running(String service) {
+        final Integer count = runningByService.get(service);
+        return count == null ? 0 : count;
+    }
+
+    private Runnable runner(final SessionQueue queue, final Entry entry) {
+        return new Runnable() {
+            public void run() {
+                final long start = System.nanoTime();
+                waitTime.update((int) Math.min(Integer.MAX_VALUE,
+                        (start - entry.queued) / 1000000));
+                try {
+                    if (entry.current != null) {
+                        cd.setContext(entry.current.ctx);
+                    }
+                    entry.task.run(ctx);
+                } catch (Throwable t) {
+                    log.error("Exception during invocation", t);
+                } finally {
+                    cd.setContext(null);
+                    completed(queue, entry, System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    private void completed(SessionQueue queue, Entry entry, long elapsed) {
+        synchronized (lock) {
+            queue.running--;
+            queue.used += elapsed;
+            running--;
+            final int count = running(entry.service) - 1;
+            if (count == 0) {
+                runningByService.remove(entry.service);
+            } else {
+                runningByService.put(entry.service, count);
+            }
+            if (queue.running == 0 && queue.pending.isEmpty()) {
+                sessions.remove(queue.session);
+            }
+            if (!destroyed) {
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * The service invoked, i.e. the name of the servant without the UUID
+     * prefixed to the stateful ones.
+     */
+    static String serviceOf(Ice.Current current) {
+        if (current == null || current.id == null) {
+            return "";
+        }
+        final String name = current.id.name;
+        if (name.length() > 36) {
+            try {
+                UUID.fromString(name.substring(0, 36));
+                return name.substring(36);
+            } catch (IllegalArgumentException e) {
+                // Not prefixed.
+            }
+        }
+        return name;
+    }
+
+}
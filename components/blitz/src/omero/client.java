@@ -25,13 +25,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -39,7 +39,9 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import ome.services.blitz.util.ChecksumAlgorithmMapper;
 import ome.util.Utils;
+import ome.util.checksum.ChecksumProvider;
 import ome.util.checksum.ChecksumProviderFactory;
 import ome.util.checksum.ChecksumProviderFactoryImpl;
 import ome.util.checksum.ChecksumType;
@@ -64,6 +66,7 @@ import omero.model.enums.ChecksumAlgorithmSHA1160;
 import omero.util.ModelObjectFactoryRegistry;
 import omero.util.Resources;
 import omero.util.Resources.Entry;
+import omero.util.TransferListener;
 import Glacier2.CannotCreateSessionException;
 import Glacier2.PermissionDeniedException;
 import Glacier2.SessionNotExistException;
@@ -118,6 +121,13 @@ public class client {
         });
     }
 
+    /**
+     * The number of asynchronous reads or writes kept in flight by
+     * {@link #upload(File, OriginalFile, Integer)} and
+     * {@link #download(long, File, int)}.
+     */
+    public final static int DEFAULT_IN_FLIGHT = 4;
+
     /**
      * See {@link #setAgent(String)}
      */
@@ -1032,6 +1042,27 @@ public class client {
      *            Can be null.
      */
     public OriginalFile upload(File file, OriginalFile fileObject, Integer blockSize) throws ServerError, IOException {
+        return upload(file, fileObject, blockSize, DEFAULT_IN_FLIGHT, null);
+    }
+
+    /**
+     * Uploads a file to the server, keeping several writes in flight. The
+     * SHA-1 of the file is computed while the file is read and compared
+     * with the hash computed by the server once the file is saved.
+     *
+     * @param file
+     *            Cannot be null.
+     * @param fileObject
+     *            Can be null.
+     * @param blockSize
+     *            Can be null.
+     * @param inFlight
+     *            The maximum number of asynchronous writes in flight.
+     * @param listener
+     *            Notified of the progress, can be null.
+     */
+    public OriginalFile upload(File file, OriginalFile fileObject, Integer blockSize,
+            int inFlight, TransferListener listener) throws ServerError, IOException {
         ServiceFactoryPrx sf = getSession();
         if (file == null) {
             throw new ClientError("Non-null file must be provided");
@@ -1056,10 +1087,11 @@ public class client {
 
         fileObject.setSize(rlong(size));
 
+        // The hash is set by the server when the file is saved.
         final ChecksumAlgorithm hasher = new ChecksumAlgorithmI();
         hasher.setValue(rstring(ChecksumAlgorithmSHA1160.value));
         fileObject.setHasher(hasher);
-        fileObject.setHash(rstring(sha1(file)));
+        fileObject.setHash(null);
 
         if (fileObject.getName() == null) {
             fileObject.setName(rstring(file.getName()));
@@ -1087,22 +1119,47 @@ public class client {
         IUpdatePrx up = sf.getUpdateService();
         fileObject = (OriginalFile) up.saveAndReturnObject(fileObject);
 
-        byte[] buf = new byte[blockSize];
+        final ChecksumProvider sha1 = new ChecksumProviderFactoryImpl()
+                .getProvider(ChecksumType.SHA1);
+        final LinkedList<Ice.AsyncResult> writes = new LinkedList<Ice.AsyncResult>();
+        final LinkedList<Integer> lengths = new LinkedList<Integer>();
         RawFileStorePrx rfs = sf.createRawFileStore();
         FileInputStream stream = null;
         try {
             rfs.setFileId(fileObject.getId().getValue());
             stream = new FileInputStream(file);
             long pos = 0;
+            long written = 0;
             int rlen;
-            ByteBuffer bbuf;
-            while ((rlen = stream.read(buf)) > 0) {
-                rfs.write(buf, pos, rlen);
+            byte[] buf;
+            while (blockSize > 0 && (rlen = stream.read(buf = new byte[blockSize])) > 0) {
+                sha1.putBytes(buf, 0, rlen);
+                writes.add(rfs.begin_write(buf, pos, rlen));
+                lengths.add(rlen);
                 pos += rlen;
-                bbuf = ByteBuffer.wrap(buf);
-                bbuf.limit(rlen);
+                if (writes.size() >= Math.max(1, inFlight)) {
+                    rfs.end_write(writes.removeFirst());
+                    written += lengths.removeFirst();
+                    if (listener != null) {
+                        listener.progress(written, size);
+                    }
+                }
+            }
+            while (!writes.isEmpty()) {
+                rfs.end_write(writes.removeFirst());
+                written += lengths.removeFirst();
+                if (listener != null) {
+                    listener.progress(written, size);
+                }
             }
-            return rfs.save();
+            OriginalFile saved = rfs.save();
+            if (saved != null && saved.getHash() != null
+                    && !sha1.checksumAsString().equalsIgnoreCase(
+                            saved.getHash().getValue())) {
+                throw new ClientError("Checksum mismatch after upload of "
+                        + file.getAbsolutePath());
+            }
+            return saved;
         } finally {
             Utils.closeQuietly(stream);
             if (rfs != null) {
@@ -1116,27 +1173,74 @@ public class client {
     }
 
     public void download(long fileId, File file, int blockSize) throws ServerError, IOException  {
-        final ServiceFactoryPrx sf = getSession();
-        final OriginalFile obj = (OriginalFile) sf.getQueryService().get("OriginalFile", fileId);
-        final RawFileStorePrx store = sf.createRawFileStore();
-        final FileOutputStream stream = new FileOutputStream(file);
+        download(fileId, file, blockSize, DEFAULT_IN_FLIGHT, null);
+    }
 
+    /**
+     * Downloads a file from the server, keeping several reads in flight.
+     * The checksum of the file is computed while the blocks are written
+     * and compared with the hash of the file if its algorithm is known.
+     *
+     * @param fileId
+     *            The id of the original file.
+     * @param file
+     *            The local file, cannot be null.
+     * @param blockSize
+     *            The number of bytes read at once.
+     * @param inFlight
+     *            The maximum number of asynchronous reads in flight.
+     * @param listener
+     *            Notified of the progress, can be null.
+     */
+    public void download(long fileId, File file, int blockSize, int inFlight,
+            TransferListener listener) throws ServerError, IOException  {
+        final ServiceFactoryPrx sf = getSession();
+        final OriginalFile obj = (OriginalFile) sf.getQueryService().findByQuery(
+                "select o from OriginalFile o left outer join fetch o.hasher "
+                + "where o.id = :id", new omero.sys.ParametersI().addId(fileId));
+        if (obj == null) {
+            throw new ClientError("No original file with id " + fileId);
+        }
         final long size = obj.getSize().getValue();
+        ChecksumType type = null;
+        if (obj.getHash() != null && obj.getHasher() != null) {
+            type = ChecksumAlgorithmMapper.getChecksumType(obj.getHasher());
+        }
+        final ChecksumProvider checksum = type == null ? null :
+            new ChecksumProviderFactoryImpl().getProvider(type);
 
-        long offset = 0;
-
-        store.setFileId(fileId);
+        final RawFileStorePrx store = sf.createRawFileStore();
+        final FileOutputStream stream = new FileOutputStream(file);
+        final LinkedList<Ice.AsyncResult> reads = new LinkedList<Ice.AsyncResult>();
         try {
-            for (offset = 0; (offset+blockSize) < size;) {
-                stream.write(store.read(offset, blockSize));
-                offset += blockSize;
+            store.setFileId(fileId);
+            long offset = 0;
+            long received = 0;
+            while (offset < size || !reads.isEmpty()) {
+                while (offset < size && reads.size() < Math.max(1, inFlight)) {
+                    int length = (int) Math.min(blockSize, size - offset);
+                    reads.add(store.begin_read(offset, length));
+                    offset += length;
+                }
+                byte[] block = store.end_read(reads.removeFirst());
+                stream.write(block);
+                if (checksum != null) {
+                    checksum.putBytes(block);
+                }
+                received += block.length;
+                if (listener != null) {
+                    listener.progress(received, size);
+                }
             }
-            stream.write(store.read(offset, (int) (size-offset)));
         } finally {
             Utils.closeQuietly(stream);
             store.close();
         }
-
+        if (checksum != null && !checksum.checksumAsString().equalsIgnoreCase(
+                obj.getHash().getValue())) {
+            throw new ClientError("Checksum mismatch after download of "
+                    + file.getAbsolutePath());
+        }
     }
 
     // Environment methods
@@ -21,9 +21,20 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import ome.security.basic.CurrentDetails;
 import ome.services.messages.ContextMessage;
+import ome.services.util.Executor;
 import ome.system.OmeroContext;
+import ome.system.Principal;
+import ome.system.ServiceFactory;
 
 import omero.cmd.DoAll;
 import omero.cmd.DoAllRsp;
@@ -37,7 +48,9 @@ import omero.cmd.Status;
 import omero.cmd.graphs.GraphUtil;
 
 /**
- * Permits performing multiple operations
+ * Permits performing multiple operations, either in turn within a single
+ * transaction or, if {@link DoAll#parallel} is set, concurrently with each
+ * operation in its own transaction.
  * 
  * @author Josh Moore, josh at glencoesoftware.com
  * @since 4.4.0
@@ -253,6 +266,10 @@ public class DoAllI extends DoAll implements IRequest {
 
     public void init(Helper helper) {
         this.helper = helper;
+        if (parallel) {
+            initParallel();
+            return;
+        }
         int steps = 0;
         try {
 
@@ -304,6 +321,9 @@ public class DoAllI extends DoAll implements IRequest {
 
     public Object step(int step) {
         helper.assertStep(step);
+        if (parallel) {
+            return stepParallel();
+        }
         final X x = substep(step, true);
         try {
             return x.step(step);
@@ -314,6 +334,8 @@ public class DoAllI extends DoAll implements IRequest {
     }
 
     public void finish() {
+        // In parallel, the substeps are empty: each request was finished
+        // within its own transaction.
         for (X x : substeps) {
             try {
                 x.login();
@@ -332,6 +354,13 @@ public class DoAllI extends DoAll implements IRequest {
 
     public void buildResponse(int step, Object object) {
         helper.assertResponse(step);
+        if (parallel) {
+            @SuppressWarnings("unchecked")
+            final List<Response> subresponses = (List<Response>) object;
+            responses.addAll(subresponses);
+            helper.setResponseIfNull(new DoAllRsp(responses, statuses));
+            return;
+        }
         final X x = substep(step, false);
         x.buildResponse(step, object);
 
@@ -350,6 +379,155 @@ public class DoAllI extends DoAll implements IRequest {
         return helper.getResponse();
     }
 
+    //
+    // Parallel execution
+    //
+
+    /**
+     * Only checks the requests: in parallel, each request is initialized
+     * within its own transaction during the single step of this request.
+     */
+    private void initParallel() {
+        if (requests == null || requests.isEmpty()) {
+            helper.setSteps(0); // Cancels as when run in turn.
+            return;
+        }
+        for (Request req : requests) {
+            if (!(req instanceof IRequest)) {
+                throw helper.cancel(new ERR(), null, "bad-request",
+                    "type", req == null ? "null" : req.ice_id());
+            }
+            statuses.add(new Status());
+        }
+        helper.setSteps(1);
+    }
+
+    /**
+     * Runs all the requests on the server-wide {@link ParallelRequestPool},
+     * each within its own transaction, and waits for them. The transaction
+     * of this request is left unused meanwhile. If this request is itself
+     * run by the pool, its requests are run in turn on the same thread
+     * rather than waiting for other threads of the pool.
+     *
+     * @return the responses of the requests, in order
+     */
+    private List<Response> stepParallel() {
+        final Executor executor = ctx.getBean("executor", Executor.class);
+        final ParallelRequestPool pool =
+                ctx.getBean("parallelRequestPool", ParallelRequestPool.class);
+        final Principal principal = executor.principal();
+        final Map<String, String> callContext =
+                ctx.getBean("currentDetails", CurrentDetails.class).getContext();
+
+        final boolean nested = pool.isPoolThread();
+        helper.debug("Running %s requests on %s threads", requests.size(),
+                nested ? 1 : Math.min(pool.getThreads(), requests.size()));
+        final List<Future<Response>> futures =
+                new ArrayList<Future<Response>>();
+        boolean done = false;
+        try {
+            final List<Response> rv = new ArrayList<Response>();
+            for (int i = 0; i < requests.size(); i++) {
+                final IRequest req = (IRequest) requests.get(i);
+                final Status status = statuses.get(i);
+                final Map<String, String> context = new HashMap<String, String>();
+                putAll(context, callContext);
+                putAll(context, req.getCallContext());
+                putAll(context, (contexts == null || contexts.length <= i)
+                        ? null : contexts[i]);
+                if (nested) {
+                    rv.add(runSubrequest(executor, principal, context, req,
+                            status));
+                    continue;
+                }
+                futures.add(pool.getExecutor().submit(new Callable<Response>() {
+                    public Response call() {
+                        return runSubrequest(executor, principal, context,
+                                req, status);
+                    }
+                }));
+            }
+            for (Future<Response> future : futures) {
+                rv.add(future.get());
+            }
+            done = true;
+            return rv;
+        } catch (InterruptedException ie) {
+            throw helper.cancel(new ERR(), ie, "parallel-interrupted");
+        } catch (ExecutionException ee) {
+            throw helper.cancel(new ERR(), ee.getCause(), "parallel-failed");
+        } finally {
+            if (!done) {
+                // Interrupts any request still running after a failure.
+                for (Future<Response> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a request as {@link omero.cmd.HandleI} would, within a
+     * transaction of its own. Failures are recorded in the response and in
+     * the status of the request rather than thrown.
+     *
+     * @return the response of the request
+     */
+    private Response runSubrequest(Executor executor, Principal principal,
+            Map<String, String> context, final IRequest req,
+            final Status status) {
+        final AtomicReference<Helper> subhelper = new AtomicReference<Helper>();
+        status.startTime = System.currentTimeMillis();
+        try {
+            @SuppressWarnings("unchecked")
+            final List<Object> rv = (List<Object>) executor.execute(
+                    context.isEmpty() ? null : context, principal,
+                    new Executor.SimpleWork(this, "runSubrequest", req) {
+                @Transactional(readOnly = false)
+                public List<Object> doWork(Session session, ServiceFactory sf) {
+                    final Helper h = new Helper((Request) req, status,
+                            getSqlAction(), session, sf);
+                    subhelper.set(h);
+                    req.init(h);
+                    final List<Object> rv = new ArrayList<Object>();
+                    for (int j = 0; j < status.steps; j++) {
+                        status.currentStep = j;
+                        rv.add(req.step(j));
+                    }
+                    req.finish();
+                    return rv;
+                }
+            });
+            for (int step = 0; step < status.steps; step++) {
+                req.buildResponse(step, rv.get(step));
+            }
+        } catch (Cancel c) {
+            // The response has been set by the helper of the request.
+        } catch (Throwable t) {
+            Helper h = subhelper.get();
+            if (h == null) {
+                // Failed before init, e.g. at login.
+                h = new Helper((Request) req, status, null, null, null);
+            }
+            h.warn("Request rolled back by %s", t);
+            h.fail(new ERR(), t, "run-fail");
+            return h.getResponse();
+        } finally {
+            status.stopTime = System.currentTimeMillis();
+        }
+        return req.getResponse();
+    }
+
+    /**
+     * Copies the given context into the given map, ignoring nulls.
+     */
+    private static void putAll(Map<String, String> map,
+            Map<String, String> context) {
+        if (context != null) {
+            map.putAll(context);
+        }
+    }
+
     protected Cancel subcancel(Cancel c, X x) {
         final Response subrsp = x.h.getResponse();
         final Status substatus = x.h.getStatus();
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.cmd.basic;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import omero.cmd.DoAll;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server-wide pool of the threads which run the requests of
+ * {@link DoAll#parallel} commands. Each of these requests holds a database
+ * connection for its transaction, so the pool is bounded by half of the
+ * database connection pool as well as by the configured maximum, leaving
+ * the other connections to the services and to the requests run in turn.
+ * Further requests are queued until a thread is free.
+ *
+ * @since 5.4.0
+ */
+public class ParallelRequestPool {
+
+    private final static Logger log = LoggerFactory.getLogger(ParallelRequestPool.class);
+
+    /** Set for the threads of the pool. */
+    private static final ThreadLocal<Boolean> POOL_THREAD = new ThreadLocal<Boolean>();
+
+    private final int threads;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param maxThreads the maximum number of requests run at once
+     * @param dbPoolSize the number of database connections of the server
+     */
+    public ParallelRequestPool(int maxThreads, int dbPoolSize) {
+        threads = threads(maxThreads, dbPoolSize);
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(final Runnable r) {
+                        Thread t = new Thread(new Runnable() {
+                            public void run() {
+                                POOL_THREAD.set(Boolean.TRUE);
+                                r.run();
+                            }
+                        }, "ParallelRequest-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        log.info("Running at most {} parallel requests at once", threads);
+    }
+
+    /**
+     * The number of threads of the pool: the configured maximum, at most half
+     * of the database connections, at least one.
+     */
+    static int threads(int maxThreads, int dbPoolSize) {
+        return Math.max(1, Math.min(maxThreads, dbPoolSize / 2));
+    }
+
+    /**
+     * @return the number of requests run at once
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the executor shared by all parallel requests
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Whether the calling thread belongs to the pool, in which case waiting
+     * for other tasks of the pool could leave every thread waiting.
+     *
+     * @return if the calling thread belongs to the pool
+     */
+    public boolean isPoolThread() {
+        return Boolean.TRUE.equals(POOL_THREAD.get());
+    }
+
+    /**
+     * Interrupts the running requests and drops the queued ones.
+     */
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+}
@@ -122,24 +122,102 @@ public class OriginalMetadataRequestI extends OriginalMetadataRequest implements
 
 	/**
 	 * Searches for a {@link Fileset} attached to this {@link Image}, and if present,
-	 * uses Bio-Formats to parse the metadata into the {@link OriginalMetadataResponse}
-	 * instance. If no {@link Fileset} is present, then there <em>may</em> be a
+	 * loads the metadata into the {@link OriginalMetadataResponse} instance from
+	 * its {@link OriginalMetadataSnapshot}s: the global metadata is stored once for
+	 * the fileset, next to its {@link Pixels} with the lowest id, and the series
+	 * metadata next to the {@link Pixels} of the image. The snapshots are normally
+	 * written at import; if missing, Bio-Formats is used to parse the metadata and
+	 * write them. If no {@link Fileset} is present, then there <em>may</em> be a
 	 * {@link FileAnnotation} present which has a static version of the metadata.
 	 */
 	protected void loadFileset() {
 		rsp.filesetId = firstIdOrNull("select i.fileset.id from Image i where i.id = :id");
 		if (rsp.filesetId != null) {
-			final Image image = helper.getServiceFactory().getQueryService().get(Image.class, imageId);
+			final IQuery iQuery = helper.getServiceFactory().getQueryService();
+			final Image image = iQuery.get(Image.class, imageId);
 			final Pixels pixels = image.getPrimaryPixels();
+			final List<Object[]> first = iQuery.projection(
+					"select min(p.id) from Pixels p where p.image.fileset.id = :id",
+					new Parameters().addId(rsp.filesetId.getValue()));
+			final File globalSnapshot = new File(pixelsService.getPixelsPath(
+					(Long) first.get(0)[0]) + PixelsService.FILESET_METADATA_SUFFIX);
+			final File seriesSnapshot = new File(pixelsService.getPixelsPath(pixels.getId())
+					+ PixelsService.METADATA_SUFFIX);
 
-			try {
-				final IFormatReader reader = pixelsService.getBfReader(pixels);
-				final Hashtable<String, Object> global = reader.getGlobalMetadata();
-				final Hashtable<String, Object> series = reader.getSeriesMetadata();
-				rsp.globalMetadata = wrap(global);
-				rsp.seriesMetadata = wrap(series);
-			} catch (Throwable t) {
-				helper.cancel(new ERR(), t, "bf-reader-failure", "pixels", ""+pixels.getId());
+			if (!globalSnapshot.exists() || !seriesSnapshot.exists()) {
+				Hashtable<String, Object> global = null;
+				Hashtable<String, Object> series = null;
+				IFormatReader reader = null;
+				try {
+					reader = pixelsService.getBfReader(pixels);
+					global = reader.getGlobalMetadata();
+					series = reader.getSeriesMetadata();
+				} catch (Throwable t) {
+					helper.cancel(new ERR(), t, "bf-reader-failure", "pixels", ""+pixels.getId());
+				} finally {
+					closeQuietly(reader);
+				}
+				try {
+					if (!globalSnapshot.exists()) {
+						globalSnapshot.getParentFile().mkdirs();
+						OriginalMetadataSnapshot.write(globalSnapshot, global, null);
+					}
+					if (!seriesSnapshot.exists()) {
+						seriesSnapshot.getParentFile().mkdirs();
+						OriginalMetadataSnapshot.write(seriesSnapshot, null, series);
+					}
+				} catch (IOException e) {
+					// Serve this request from the reader all the same.
+					helper.warn("Cannot write original metadata snapshot: " + e);
+					final Map<String, RType> globalMetadata = wrap(global);
+					final Map<String, RType> seriesMetadata = wrap(series);
+					rsp.globalMetadataCount = omero.rtypes.rint(count(globalMetadata));
+					rsp.seriesMetadataCount = omero.rtypes.rint(count(seriesMetadata));
+					rsp.globalMetadata = page(globalMetadata);
+					rsp.seriesMetadata = page(seriesMetadata);
+					return;
+				}
+			}
+			loadSnapshot(globalSnapshot, seriesSnapshot);
+		}
+	}
+
+	/**
+	 * Fills the {@link OriginalMetadataResponse} from the given snapshots,
+	 * applying the key prefix and paging of the request.
+	 * @param global the snapshot holding the global metadata of the fileset.
+	 * @param series the snapshot holding the series metadata of the image.
+	 */
+	protected void loadSnapshot(File global, File series) {
+		rsp.globalMetadata = new HashMap<String, RType>();
+		rsp.globalMetadataCount = omero.rtypes.rint(loadSection(global,
+				OriginalMetadataSnapshot.GLOBAL, rsp.globalMetadata));
+		rsp.seriesMetadata = new HashMap<String, RType>();
+		rsp.seriesMetadataCount = omero.rtypes.rint(loadSection(series,
+				OriginalMetadataSnapshot.SERIES, rsp.seriesMetadata));
+	}
+
+	/**
+	 * Adds the page of the given section of a snapshot selected by the
+	 * request to the given map.
+	 * @return the number of keys of the section with the prefix of the request.
+	 */
+	private int loadSection(File file, int section, Map<String, RType> page) {
+		final String prefix = keyPrefix == null ? null : keyPrefix.getValue();
+		final int skip = offset == null ? 0 : offset.getValue();
+		final int max = limit == null ? -1 : limit.getValue();
+		OriginalMetadataSnapshot snapshot = null;
+		try {
+			snapshot = OriginalMetadataSnapshot.open(file);
+			page.putAll(snapshot.get(section, prefix, skip, max));
+			return snapshot.count(section, prefix);
+		} catch (IOException e) {
+			throw helper.cancel(new ERR(), e, "snapshot-failure", "file", file.getPath());
+		} finally {
+			if (snapshot != null) {
+				try {
+					snapshot.close();
+				} catch (IOException e) { }
 			}
 		}
 	}
@@ -159,6 +237,12 @@ public class OriginalMetadataRequestI extends OriginalMetadataRequest implements
             final FileAnnotation fileAnnotation = iQuery.get(FileAnnotation.class, rsp.fileAnnotationId.getValue());
             final String filePath = pixelsService.getFilesPath(fileAnnotation.getFile().getId());
             parseOriginalMetadataTxt(new File(filePath));
+            if (rsp.globalMetadata != null && rsp.seriesMetadata != null) {
+                rsp.globalMetadataCount = omero.rtypes.rint(count(rsp.globalMetadata));
+                rsp.seriesMetadataCount = omero.rtypes.rint(count(rsp.seriesMetadata));
+                rsp.globalMetadata = page(rsp.globalMetadata);
+                rsp.seriesMetadata = page(rsp.seriesMetadata);
+            }
         }
     }
 
@@ -183,6 +267,58 @@ public class OriginalMetadataRequestI extends OriginalMetadataRequest implements
 		return null;
 	}
 
+	/**
+	 * Returns the number of keys of the given map which start with the
+	 * prefix of the request.
+	 */
+	protected int count(Map<String, RType> map) {
+		if (keyPrefix == null) {
+			return map.size();
+		}
+		int count = 0;
+		for (String key : map.keySet()) {
+			if (key.startsWith(keyPrefix.getValue())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Applies the key prefix and the paging of the request to the given map.
+	 * The map is returned as is if none is set.
+	 */
+	protected Map<String, RType> page(Map<String, RType> map) {
+		if (keyPrefix == null && offset == null && limit == null) {
+			return map;
+		}
+		final String prefix = keyPrefix == null ? "" : keyPrefix.getValue();
+		int skip = offset == null ? 0 : offset.getValue();
+		int max = limit == null ? Integer.MAX_VALUE : limit.getValue();
+		final Map<String, RType> page = new HashMap<String, RType>();
+		for (Entry<String, RType> entry : new TreeMap<String, RType>(map).entrySet()) {
+			if (max <= 0) {
+				break;
+			} else if (!entry.getKey().startsWith(prefix)) {
+				continue;
+			} else if (skip > 0) {
+				skip--;
+			} else {
+				page.put(entry.getKey(), entry.getValue());
+				max--;
+			}
+		}
+		return page;
+	}
+
+	private static void closeQuietly(IFormatReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) { }
+		}
+	}
+
 	/**
 	 * Use {@link IceMapper} to convert from {@link Object} instances in
 	 * the given {@link Hashtable} to {@link RType} instances. This may
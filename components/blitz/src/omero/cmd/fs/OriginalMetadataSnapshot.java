@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.cmd.fs;
+
+import static omero.rtypes.rbool;
+import static omero.rtypes.rdouble;
+import static omero.rtypes.rfloat;
+import static omero.rtypes.rint;
+import static omero.rtypes.rlong;
+import static omero.rtypes.rstring;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import omero.RType;
+
+/**
+ * Compact snapshot of the original metadata of an image, i.e. the global
+ * and series metadata read by Bio-Formats, so that it can be served
+ * without initializing a reader.
+ *
+ * The keys of each section are stored sorted, preceded by a table of the
+ * offsets of the entries, so that a page of the keys starting with a given
+ * prefix is found by binary search and read without loading the rest of the
+ * file. Strings, numbers and booleans keep their type. Other values, e.g.
+ * arrays, are left out as they are when the metadata is served from a
+ * reader and they cannot be converted.
+ *
+ * @since 5.4.0
+ */
+public class OriginalMetadataSnapshot implements Closeable {
+
+    /** The metadata which applies to the entire fileset. */
+    public static final int GLOBAL = 0;
+
+    /** The metadata specific to the series of the image. */
+    public static final int SERIES = 1;
+
+    private static final int MAGIC = 0x4f4d4431; // "OMD1"
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte STRING = 's', INT = 'i', LONG = 'l',
+            FLOAT = 'f', DOUBLE = 'd', BOOL = 'b';
+
+    private final RandomAccessFile file;
+
+    /** The offset of the first entry of each section and of the end. */
+    private final int[] first = new int[3];
+
+    /** The offsets of all the entries, global ones first. */
+    private final long[] offsets;
+
+    private OriginalMetadataSnapshot(RandomAccessFile file) throws IOException {
+        this.file = file;
+        if (file.readInt() != MAGIC) {
+            throw new IOException("Not an original metadata snapshot");
+        }
+        final int global = file.readInt();
+        final int series = file.readInt();
+        first[1] = global;
+        first[2] = global + series;
+        offsets = new long[first[2]];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = file.readInt() & 0xffffffffL;
+        }
+    }
+
+    /**
+     * Opens the snapshot stored in the given file.
+     * @param file a file written by {@link #write(File, Map, Map)}.
+     * @return the snapshot, to be closed once read.
+     * @throws IOException if the file cannot be read.
+     */
+    public static OriginalMetadataSnapshot open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new OriginalMetadataSnapshot(raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the snapshot of the given metadata. The file is replaced
+     * atomically so that concurrent readers see either no snapshot or a
+     * complete one.
+     * @param file the file to write.
+     * @param global the global metadata, as read by Bio-Formats, or
+     * <code>null</code> for none.
+     * @param series the series metadata, as read by Bio-Formats, or
+     * <code>null</code> for none.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(File file, Map<String, Object> global,
+            Map<String, Object> series) throws IOException {
+        final SortedMap<String, Object> g = sorted(global);
+        final SortedMap<String, Object> s = sorted(series);
+
+        // Entries first, so that their offsets are known.
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream entries = new DataOutputStream(bytes);
+        final int header = 12 + 4 * (g.size() + s.size());
+        final int[] offsets = new int[g.size() + s.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : g.entrySet()) {
+            offsets[i++] = header + entries.size();
+            writeEntry(entries, entry);
+        }
+        for (Map.Entry<String, Object> entry : s.entrySet()) {
+            offsets[i++] = header + entries.size();
+            writeEntry(entries, entry);
+        }
+        entries.flush();
+
+        final File tmp = File.createTempFile("." + file.getName(), ".tmp",
+                file.getParentFile());
+        boolean done = false;
+        try {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(g.size());
+                out.writeInt(s.size());
+                for (int offset : offsets) {
+                    out.writeInt(offset);
+                }
+                bytes.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + tmp + " to "
+                            + file);
+                }
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys of the given section which start with the
+     * given prefix.
+     * @param section {@link #GLOBAL} or {@link #SERIES}.
+     * @param prefix the prefix of the keys, <code>null</code> for all.
+     * @return See above.
+     * @throws IOException if the file cannot be read.
+     */
+    public int count(int section, String prefix) throws IOException {
+        final int[] range = range(section, prefix);
+        return range[1] - range[0];
+    }
+
+    /**
+     * Returns a page of the keys of the given section which start with the
+     * given prefix, in the order of the keys.
+     * @param section {@link #GLOBAL} or {@link #SERIES}.
+     * @param prefix the prefix of the keys, <code>null</code> for all.
+     * @param offset the number of keys to skip.
+     * @param limit the maximum number of keys to return, negative for all.
+     * @return the keys and their values.
+     * @throws IOException if the file cannot be read.
+     */
+    public SortedMap<String, RType> get(int section, String prefix, int offset,
+            int limit) throws IOException {
+        final int[] range = range(section, prefix);
+        final int start = range[0] + Math.max(offset, 0);
+        final int end = limit < 0 ? range[1]
+                : (int) Math.min(range[1], (long) start + limit);
+        final SortedMap<String, RType> page = new TreeMap<String, RType>();
+        for (int i = start; i < end; i++) {
+            file.seek(offsets[i]);
+            final String key = new String(readBytes(), UTF8);
+            page.put(key, readValue());
+        }
+        return page;
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /** The indexes of the first key with the prefix and of the next one. */
+    private int[] range(int section, String prefix) throws IOException {
+        if (section != GLOBAL && section != SERIES) {
+            throw new IllegalArgumentException("Unknown section: " + section);
+        }
+        int lo = first[section];
+        final int hi = first[section + 1];
+        if (prefix == null || prefix.isEmpty()) {
+            return new int[] { lo, hi };
+        }
+        // The keys with the prefix follow the first key not less than it.
+        lo = lowerBound(lo, hi, prefix);
+        int end = lo;
+        int h = hi;
+        while (end < h) {
+            final int mid = (end + h) >>> 1;
+            if (key(mid).startsWith(prefix)) {
+                end = mid + 1;
+            } else {
+                h = mid;
+            }
+        }
+        return new int[] { lo, end };
+    }
+
+    /** The index of the first key not less than the given one. */
+    private int lowerBound(int lo, int hi, String key) throws IOException {
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (key(mid).compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private String key(int index) throws IOException {
+        file.seek(offsets[index]);
+        return new String(readBytes(), UTF8);
+    }
+
+    private byte[] readBytes() throws IOException {
+        final byte[] bytes = new byte[file.readInt()];
+        file.readFully(bytes);
+        return bytes;
+    }
+
+    private RType readValue() throws IOException {
+        final byte type = file.readByte();
+        final String value = new String(readBytes(), UTF8);
+        switch (type) {
+        case INT:
+            return rint(Integer.parseInt(value));
+        case LONG:
+            return rlong(Long.parseLong(value));
+        case FLOAT:
+            return rfloat(Float.parseFloat(value));
+        case DOUBLE:
+            return rdouble(Double.parseDouble(value));
+        case BOOL:
+            return rbool(Boolean.parseBoolean(value));
+        default:
+            return rstring(value);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out,
+            Map.Entry<String, Object> entry) throws IOException {
+        writeBytes(out, entry.getKey().getBytes(UTF8));
+        final Object value = entry.getValue();
+        final byte type;
+        if (value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            type = INT;
+        } else if (value instanceof Long) {
+            type = LONG;
+        } else if (value instanceof Float) {
+            type = FLOAT;
+        } else if (value instanceof Double) {
+            type = DOUBLE;
+        } else if (value instanceof Boolean) {
+            type = BOOL;
+        } else {
+            type = STRING;
+        }
+        out.writeByte(type);
+        writeBytes(out, String.valueOf(value).getBytes(UTF8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes)
+            throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Whether the value has one of the types which are stored, i.e. which
+     * {@link omero.util.IceMapper#toRType(Object)} converts to a scalar.
+     */
+    private static boolean isStored(Object value) {
+        return value instanceof String || value instanceof Boolean
+                || value instanceof Integer || value instanceof Short
+                || value instanceof Byte || value instanceof Long
+                || value instanceof Float || value instanceof Double;
+    }
+
+    private static SortedMap<String, Object> sorted(Map<String, Object> map) {
+        final SortedMap<String, Object> sorted = new TreeMap<String, Object>();
+        if (map != null) {
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                if (entry.getKey() != null && isStored(entry.getValue())) {
+                    sorted.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return sorted;
+    }
+
+}
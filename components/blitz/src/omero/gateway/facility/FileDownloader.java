@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.facility;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.services.blitz.util.ChecksumAlgorithmMapper;
+import ome.util.checksum.ChecksumProviderFactory;
+import ome.util.checksum.ChecksumProviderFactoryImpl;
+import ome.util.checksum.ChecksumType;
+import omero.api.RawFileStorePrx;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.exception.DSAccessException;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.model.OriginalFile;
+
+/**
+ * Downloads an {@link OriginalFile} using several {@link RawFileStorePrx}
+ * concurrently. The file is split into blocks which are claimed by the
+ * streams in turn; each stream keeps a few reads in flight so that the
+ * transfer is not bound by the round-trip time. The blocks are written at
+ * their position in a <code>.part</code> file and recorded in a state file
+ * so that an interrupted download can be resumed. Once all the blocks have
+ * been received, the file is verified against the hash of the
+ * {@link OriginalFile} and renamed.
+ *
+ * @since 5.4.0
+ */
+class FileDownloader {
+
+    /**
+     * Reads blocks of a file from the server, several reads being in
+     * flight at once.
+     */
+    static abstract class BlockStream {
+
+        /**
+         * Starts reading the specified bytes.
+         *
+         * @param offset The position of the first byte.
+         * @param length The number of bytes.
+         * @throws Exception If the read cannot be started.
+         */
+        abstract void begin(long offset, int length) throws Exception;
+
+        /**
+         * Returns the bytes of the oldest read in flight.
+         *
+         * @return See above.
+         * @throws Exception If the read failed.
+         */
+        abstract byte[] end() throws Exception;
+
+        /** Releases the resources used by the stream. */
+        abstract void close();
+    }
+
+    /** Suffix of the file the blocks are written to. */
+    static final String PART_SUFFIX = ".part";
+
+    /** Suffix of the file recording the blocks received. */
+    static final String STATE_SUFFIX = ".state";
+
+    /** Size of the header of the state file. */
+    private static final int HEADER = 20;
+
+    /** Value marking a block as received in the state file. */
+    private static final byte[] DONE = {1};
+
+    /** The factory used to verify the files. */
+    private final ChecksumProviderFactory checksumFactory =
+            new ChecksumProviderFactoryImpl();
+
+    /** Reference to the gateway. */
+    private final Gateway gateway;
+
+    /** The security context. */
+    private final SecurityContext ctx;
+
+    /** The number of streams per file. */
+    private final int streams;
+
+    /** The number of bytes read at once. */
+    private final int blockSize;
+
+    /** The number of reads in flight per stream. */
+    private final int readAhead;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param gateway Reference to the gateway.
+     * @param ctx The security context.
+     * @param streams The number of {@link RawFileStorePrx} opened per file.
+     * @param blockSize The number of bytes read at once.
+     * @param readAhead The number of reads in flight per stream.
+     */
+    FileDownloader(Gateway gateway, SecurityContext ctx, int streams,
+            int blockSize, int readAhead) {
+        if (streams < 1 || blockSize < 1 || readAhead < 1)
+            throw new IllegalArgumentException("Invalid download settings.");
+        this.gateway = gateway;
+        this.ctx = ctx;
+        this.streams = streams;
+        this.blockSize = blockSize;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Downloads the file. If the download fails, the partially downloaded
+     * file is kept so that the next call resumes where it stopped.
+     *
+     * @param of The file to download, the hash and hasher are used to verify
+     *            the file if loaded.
+     * @param target The local file.
+     * @throws DSOutOfServiceException If the connection is broken.
+     * @throws DSAccessException If the file cannot be read from the server or
+     *             does not match the hash.
+     * @throws IOException If the local file cannot be written.
+     */
+    void download(OriginalFile of, File target)
+            throws DSOutOfServiceException, DSAccessException, IOException {
+        long fileId = of.getId().getValue();
+        long size = of.getSize() == null ? 0 : of.getSize().getValue();
+        ChecksumType type = getChecksumType(of);
+        if (type != null && target.isFile() && target.length() == size
+                && verify(target, of, type))
+            return;
+
+        File part = new File(target.getPath()+PART_SUFFIX);
+        File state = new File(part.getPath()+STATE_SUFFIX);
+        if (!part.exists())
+            state.delete();
+        int blocks = (int) ((size+blockSize-1)/blockSize);
+        RandomAccessFile data = new RandomAccessFile(part, "rw");
+        try {
+            RandomAccessFile done = new RandomAccessFile(state, "rw");
+            try {
+                List<Integer> pending = readState(done.getChannel(), fileId,
+                        size, blocks);
+                if (data.length() > size)
+                    data.setLength(size);
+                if (!pending.isEmpty())
+                    fetch(fileId, size, pending, data.getChannel(),
+                            done.getChannel());
+                data.getChannel().force(false);
+            } finally {
+                done.close();
+            }
+        } finally {
+            data.close();
+        }
+
+        if (type != null && !verify(part, of, type)) {
+            part.delete();
+            state.delete();
+            throw new DSAccessException("Checksum mismatch for file "
+                    +fileId);
+        }
+        Files.move(part.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        state.delete();
+    }
+
+    /**
+     * Returns the blocks still to download. The state is reset if it was
+     * recorded for another file.
+     *
+     * @param done The state file.
+     * @param fileId The identifier of the file.
+     * @param size The size of the file.
+     * @param blocks The number of blocks.
+     * @return See above.
+     * @throws IOException If the state cannot be read or written.
+     */
+    private List<Integer> readState(FileChannel done, long fileId, long size,
+            int blocks) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putLong(fileId).putLong(size).putInt(blockSize).flip();
+        List<Integer> pending = new ArrayList<Integer>(blocks);
+        if (done.size() == HEADER+blocks) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER+blocks);
+            while (buf.hasRemaining() && done.read(buf) >= 0);
+            buf.flip();
+            ByteBuffer recorded = (ByteBuffer) buf.duplicate().limit(HEADER);
+            if (recorded.equals(header)) {
+                for (int i = 0; i < blocks; i++) {
+                    if (buf.get(HEADER+i) == 0)
+                        pending.add(i);
+                }
+                return pending;
+            }
+        }
+        done.truncate(0);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER+blocks);
+        buf.put(header);
+        buf.rewind();
+        while (buf.hasRemaining())
+            done.write(buf, buf.position());
+        done.force(false);
+        for (int i = 0; i < blocks; i++)
+            pending.add(i);
+        return pending;
+    }
+
+    /**
+     * Downloads the specified blocks using the configured number of streams.
+     *
+     * @param fileId The identifier of the file.
+     * @param size The size of the file.
+     * @param pending The blocks to download.
+     * @param data The file the blocks are written to.
+     * @param done The state file.
+     * @throws DSOutOfServiceException If the connection is broken.
+     * @throws DSAccessException If a block cannot be downloaded.
+     */
+    private void fetch(final long fileId, final long size,
+            final List<Integer> pending, final FileChannel data,
+            final FileChannel done)
+            throws DSOutOfServiceException, DSAccessException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        int n = Math.min(streams,
+                (pending.size()+readAhead-1)/readAhead);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(n);
+        for (int i = 0; i < n; i++) {
+            futures.add(gateway.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        fetchBlocks(fileId, size, pending, next, failed,
+                                data, done);
+                    } catch (Exception e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    return null;
+                }
+            }));
+        }
+        Throwable failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause();
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure instanceof DSOutOfServiceException)
+            throw (DSOutOfServiceException) failure;
+        if (failure != null)
+            throw new DSAccessException("Cannot download file "+fileId,
+                    failure);
+    }
+
+    /**
+     * Downloads the blocks claimed by one stream until no block is left.
+     *
+     * @param fileId The identifier of the file.
+     * @param size The size of the file.
+     * @param pending The blocks to download.
+     * @param next The index of the next block to claim.
+     * @param failed Set if another stream failed.
+     * @param data The file the blocks are written to.
+     * @param done The state file.
+     * @throws Exception If an error occurred.
+     */
+    private void fetchBlocks(long fileId, long size, List<Integer> pending,
+            AtomicInteger next, AtomicBoolean failed, FileChannel data,
+            FileChannel done) throws Exception {
+        BlockStream stream = openStream(fileId);
+        try {
+            LinkedList<Integer> blocks = new LinkedList<Integer>();
+            while (!failed.get()) {
+                while (blocks.size() < readAhead) {
+                    int k = next.getAndIncrement();
+                    if (k >= pending.size())
+                        break;
+                    int block = pending.get(k);
+                    long offset = (long) block*blockSize;
+                    blocks.add(block);
+                    stream.begin(offset,
+                            (int) Math.min(blockSize, size-offset));
+                }
+                if (blocks.isEmpty())
+                    break;
+                int block = blocks.removeFirst();
+                byte[] values = stream.end();
+                long offset = (long) block*blockSize;
+                if (values.length != (int) Math.min(blockSize, size-offset))
+                    throw new IOException("Short read at "+offset);
+                ByteBuffer buf = ByteBuffer.wrap(values);
+                while (buf.hasRemaining())
+                    data.write(buf, offset+buf.position());
+                done.write(ByteBuffer.wrap(DONE), HEADER+block);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Opens a stream reading the specified file through a
+     * {@link RawFileStorePrx}.
+     *
+     * @param fileId The identifier of the file.
+     * @return See above.
+     * @throws Exception If the file cannot be opened.
+     */
+    BlockStream openStream(long fileId) throws Exception {
+        final RawFileStorePrx store = gateway.getRawFileService(ctx);
+        if (store == null)
+            throw new DSOutOfServiceException("Cannot create RawFileStore");
+        try {
+            store.setFileId(fileId);
+        } catch (Exception e) {
+            gateway.closeService(ctx, store);
+            throw e;
+        }
+        return new BlockStream() {
+
+            /** The reads in flight, oldest first. */
+            private final LinkedList<Ice.AsyncResult> reads =
+                    new LinkedList<Ice.AsyncResult>();
+
+            @Override
+            void begin(long offset, int length) {
+                reads.add(store.begin_read(offset, length));
+            }
+
+            @Override
+            byte[] end() throws Exception {
+                return store.end_read(reads.removeFirst());
+            }
+
+            @Override
+            void close() {
+                gateway.closeService(ctx, store);
+            }
+        };
+    }
+
+    /**
+     * Returns the type of the checksum of the file or <code>null</code> if
+     * the file cannot be verified.
+     *
+     * @param of The file to handle.
+     * @return See above.
+     */
+    private ChecksumType getChecksumType(OriginalFile of) {
+        if (of.getHash() == null || of.getHasher() == null
+                || !of.getHasher().isLoaded())
+            return null;
+        return ChecksumAlgorithmMapper.getChecksumType(of.getHasher());
+    }
+
+    /**
+     * Returns <code>true</code> if the local file matches the hash of the
+     * original file.
+     *
+     * @param file The local file.
+     * @param of The original file.
+     * @param type The type of the checksum.
+     * @return See above.
+     */
+    private boolean verify(File file, OriginalFile of, ChecksumType type) {
+        String hash = checksumFactory.getProvider(type).putFile(
+                file.getAbsolutePath()).checksumAsString();
+        return hash.equalsIgnoreCase(of.getHash().getValue());
+    }
+
+}
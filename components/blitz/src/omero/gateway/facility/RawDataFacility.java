@@ -20,6 +20,7 @@
  */
 package omero.gateway.facility;
 
+import java.util.Iterator;
 import java.util.Map;
 
 import omero.gateway.Gateway;
@@ -30,6 +31,7 @@ import omero.gateway.exception.DataSourceException;
 import omero.gateway.model.PixelsData;
 import omero.gateway.rnd.DataSink;
 import omero.gateway.rnd.Plane2D;
+import omero.gateway.rnd.PlaneView;
 import omero.romio.PlaneDef;
 
 import org.apache.commons.collections.MapIterator;
@@ -202,6 +204,106 @@ public class RawDataFacility extends Facility implements AutoCloseable {
         }
     }
 
+    /**
+     * Extracts a 2D tile from the pixels set and returns a typed view over
+     * the bytes received, see {@link omero.gateway.rnd.PlaneView}.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @param w
+     *            The width of the tile
+     * @param h
+     *            The height of the tile
+     * @return See above.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the tile data from the
+     *             pixels source.
+     */
+    public PlaneView getTileView(SecurityContext ctx, PixelsData pixels,
+            int z, int t, int c, int x, int y, int w, int h)
+            throws DataSourceException {
+        try {
+            return getDataSink(ctx, pixels, gateway).getTileView(z, t, c, x,
+                    y, w, h);
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Extracts a 2D plane from the pixels set and returns a typed view over
+     * the bytes received, see {@link omero.gateway.rnd.PlaneView}.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @return See above.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the plane data from the
+     *             pixels source.
+     */
+    public PlaneView getPlaneView(SecurityContext ctx, PixelsData pixels,
+            int z, int t, int c) throws DataSourceException {
+        try {
+            return getDataSink(ctx, pixels, gateway).getPlaneView(z, t, c);
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
+    /**
+     * Returns an iterator over the tiles of a plane, row after row. A tile
+     * is only retrieved when it is reached, see
+     * {@link DataSink#getTileViews(int, int, int, int, int)}.
+     * 
+     * @param ctx
+     *            The security context.
+     * @param pixels
+     *            The {@link PixelsData} object to fetch the data from.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param tileWidth
+     *            The width of the tiles
+     * @param tileHeight
+     *            The height of the tiles
+     * @return See above.
+     * @throws DataSourceException
+     *             If the pixels store cannot be accessed.
+     */
+    public Iterator<PlaneView> getTileViews(SecurityContext ctx,
+            PixelsData pixels, int z, int t, int c, int tileWidth,
+            int tileHeight) throws DataSourceException {
+        try {
+            return getDataSink(ctx, pixels, gateway).getTileViews(z, t, c,
+                    tileWidth, tileHeight);
+        } catch (DSOutOfServiceException e) {
+            throw new DataSourceException("Can't initiate DataSink", e);
+        }
+    }
+
     /**
      * Retrieves a data sink corresponding the pixels.
      *
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package omero.gateway.facility;
+
+import java.io.Closeable;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import omero.ServerError;
+import omero.gateway.exception.DSAccessException;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.gateway.model.TableDataChunk;
+import omero.gateway.model.TableDataColumn;
+import omero.grid.Data;
+import omero.grid.TablePrx;
+
+/**
+ * Reads a table chunk by chunk, see
+ * {@link TablesFacility#getTableReader(omero.gateway.SecurityContext, long, String, int, int, long...)}.
+ *
+ * The table is read in ranges of consecutive rows. Several ranges are
+ * requested from the server at once, ahead of the chunk returned by
+ * {@link #next()}. If a condition is given, the rows of each range which
+ * match it are selected on the server by {@link TablePrx#getWhereList} and
+ * only those are transferred; chunks without any matching row are skipped.
+ *
+ * The reader must be closed once done with, which closes the table.
+ *
+ * @since 5.4.0
+ */
+public class TableDataReader implements Closeable {
+
+    /** Reference to the TablesFacility */
+    private final TablesFacility fac;
+
+    /** The table, closed with the reader */
+    private final TablePrx table;
+
+    /** The indices of the columns to read */
+    private final long[] columns;
+
+    /** The definitions of the columns to read */
+    private final TableDataColumn[] header;
+
+    /** The condition the rows must match, may be <code>null</code> */
+    private final String condition;
+
+    /** The number of rows of each range */
+    private final int chunkSize;
+
+    /** The maximum number of ranges requested at once */
+    private final int concurrency;
+
+    /** The number of rows of the table */
+    private final long nRows;
+
+    /** The first row of the next range to request */
+    private long nextRow = 0;
+
+    /** The ranges requested, in order */
+    private final LinkedList<Future<Data>> pending = new LinkedList<Future<Data>>();
+
+    /** The chunk to return next, if already read */
+    private TableDataChunk ready;
+
+    /**
+     * Creates a new instance
+     *
+     * @param fac
+     *            Reference to the TablesFacility
+     * @param table
+     *            The opened table
+     * @param columns
+     *            The indices of the columns to read
+     * @param header
+     *            The definitions of these columns
+     * @param condition
+     *            The condition the rows must match, may be <code>null</code>
+     * @param chunkSize
+     *            The number of rows of each range
+     * @param concurrency
+     *            The maximum number of ranges requested at once
+     * @param nRows
+     *            The number of rows of the table
+     */
+    TableDataReader(TablesFacility fac, TablePrx table, long[] columns,
+            TableDataColumn[] header, String condition, int chunkSize,
+            int concurrency, long nRows) {
+        this.fac = fac;
+        this.table = table;
+        this.columns = columns;
+        this.header = header;
+        this.condition = condition;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+        this.nRows = nRows;
+    }
+
+    /**
+     * Get the definitions of the columns read
+     *
+     * @return See above
+     */
+    public TableDataColumn[] getColumns() {
+        return header;
+    }
+
+    /**
+     * Get the number of rows of the table, whether they match the condition
+     * or not
+     *
+     * @return See above
+     */
+    public long getNumberOfRows() {
+        return nRows;
+    }
+
+    /**
+     * Returns <code>true</code> if there are more rows to read
+     *
+     * @return See above
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public boolean hasNext() throws DSOutOfServiceException,
+            DSAccessException {
+        while (ready == null) {
+            request();
+            if (pending.isEmpty())
+                return false;
+            Data data = get(pending.removeFirst());
+            if (data.rowNumbers.length > 0)
+                ready = new TableDataChunk(header, data);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next chunk of rows
+     *
+     * @return See above
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     * @throws NoSuchElementException
+     *             If all the rows have been read
+     */
+    public TableDataChunk next() throws DSOutOfServiceException,
+            DSAccessException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        TableDataChunk chunk = ready;
+        ready = null;
+        return chunk;
+    }
+
+    /**
+     * Waits for the ranges still requested and closes the table
+     */
+    @Override
+    public void close() {
+        for (Future<Data> future : pending) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                // Not needed anymore.
+            }
+        }
+        pending.clear();
+        try {
+            table.close();
+        } catch (ServerError e) {
+            fac.logError(this, "Could not close table", e);
+        }
+    }
+
+    /**
+     * Requests ranges until {@link #concurrency} are pending or all have been
+     * requested
+     */
+    private void request() {
+        while (pending.size() < concurrency && nextRow < nRows) {
+            final long start = nextRow;
+            final long stop = Math.min(nRows, start + chunkSize);
+            nextRow = stop;
+            pending.add(fac.gateway.submit(new Callable<Data>() {
+                @Override
+                public Data call() throws ServerError {
+                    if (condition == null)
+                        return table.read(columns, start, stop);
+                    long[] rows = table.getWhereList(condition, null, start,
+                            stop, 0);
+                    if (rows.length == 0) {
+                        Data data = new Data();
+                        data.rowNumbers = rows;
+                        return data;
+                    }
+                    return table.slice(columns, rows);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Waits for a requested range
+     */
+    private Data get(Future<Data> future) throws DSOutOfServiceException,
+            DSAccessException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DSAccessException("Interrupted while loading table data",
+                    e);
+        } catch (ExecutionException e) {
+            fac.handleException(this, e, "Could not load table data");
+            throw new DSAccessException("Could not load table data",
+                    e.getCause());
+        }
+    }
+
+}
@@ -33,6 +33,7 @@ import omero.gateway.model.AnnotationData;
 import omero.gateway.model.DataObject;
 import omero.gateway.model.FileAnnotationData;
 import omero.gateway.model.TableData;
+import omero.gateway.model.TableDataChunk;
 import omero.gateway.model.TableDataColumn;
 import omero.grid.Column;
 import omero.grid.Data;
@@ -43,6 +44,8 @@ import omero.model.FileAnnotationI;
 import omero.model.OriginalFile;
 import omero.model.OriginalFileI;
 
+import com.google.common.primitives.Longs;
+
 /**
  * {@link Facility} to interact with OMERO.tables
  * 
@@ -57,6 +60,12 @@ public class TablesFacility extends Facility {
     /** Maximum number of rows to fetch if not specified otherwise */
     public static final int DEFAULT_MAX_ROWS_TO_FETCH = 1000;
 
+    /** Number of rows per chunk read by a {@link TableDataReader} if not specified otherwise */
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+    /** Number of chunks requested at once by a {@link TableDataReader} if not specified otherwise */
+    public static final int DEFAULT_CONCURRENT_CHUNKS = 4;
+
     /**
      * Creates a new instance
      * 
@@ -320,10 +329,7 @@ public class TablesFacility extends Facility {
      */
     public TableData getTable(SecurityContext ctx, long fileId, List<Long> rows)
             throws DSOutOfServiceException, DSAccessException {
-        long[] rowsArray = new long[rows.size()];
-        for (int i = 0; i < rows.size(); i++)
-            rowsArray[i] = rows.get(i);
-        return getTable(ctx, fileId, rowsArray);
+        return getTable(ctx, fileId, Longs.toArray(rows));
     }
     
     /**
@@ -482,6 +488,97 @@ public class TablesFacility extends Facility {
         return null;
     }
 
+    /**
+     * Get a reader to load the rows of a table chunk by chunk, e.g. to
+     * process a table too large to be loaded at once with
+     * {@link #getTable(SecurityContext, long, long, long, long...)}. The
+     * values of the rows are not converted into objects but kept in the
+     * primitive arrays of each column, see {@link TableDataChunk}. The reader
+     * must be closed once done with.
+     * 
+     * @param ctx
+     *            The {@link SecurityContext}
+     * @param fileId
+     *            The id of the {@link OriginalFile} which stores the table
+     * @param condition
+     *            The query string the rows must match (can be
+     *            <code>null</code> in which case all rows are read); it is
+     *            evaluated on the server, see
+     *            {@link #query(SecurityContext, long, String)}
+     * @param chunkSize
+     *            The number of consecutive rows considered for each chunk (can
+     *            be <code>0</code> in which case
+     *            {@link TablesFacility#DEFAULT_CHUNK_SIZE} is used)
+     * @param concurrency
+     *            The number of chunks to request at once, ahead of the chunk
+     *            being processed (can be <code>0</code> in which case
+     *            {@link TablesFacility#DEFAULT_CONCURRENT_CHUNKS} is used)
+     * @param columns
+     *            The columns to take into account (can be left unspecified, in
+     *            which case all columns will used)
+     * @return The reader
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public TableDataReader getTableReader(SecurityContext ctx, long fileId,
+            String condition, int chunkSize, int concurrency, long... columns)
+            throws DSOutOfServiceException, DSAccessException {
+        TablePrx table = null;
+        try {
+            OriginalFile file = new OriginalFileI(fileId, false);
+            SharedResourcesPrx sr = gateway.getSharedResources(ctx);
+            if (!sr.areTablesEnabled()) {
+                throw new DSAccessException(
+                        "Tables feature is not enabled on this server!");
+            }
+
+            table = sr.openTable(file);
+
+            Column[] cols = table.getHeaders();
+
+            if (columns == null || columns.length == 0) {
+                columns = new long[cols.length];
+                for (int i = 0; i < cols.length; i++) {
+                    columns[i] = i;
+                }
+            }
+
+            TableDataColumn[] header = new TableDataColumn[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                int columnIndex = (int) columns[i];
+                header[i] = new TableDataColumn(cols[columnIndex].name,
+                        cols[columnIndex].description, columnIndex,
+                        TablesFacilityHelper.getType(cols[columnIndex]));
+            }
+
+            if (condition != null && condition.trim().isEmpty())
+                condition = null;
+            if (chunkSize <= 0)
+                chunkSize = DEFAULT_CHUNK_SIZE;
+            if (concurrency <= 0)
+                concurrency = DEFAULT_CONCURRENT_CHUNKS;
+
+            TableDataReader reader = new TableDataReader(this, table,
+                    columns, header, condition, chunkSize, concurrency,
+                    table.getNumberOfRows());
+            table = null; // Closed by the reader.
+            return reader;
+        } catch (Exception e) {
+            handleException(this, e, "Could not load table data");
+        } finally {
+            if (table != null)
+                try {
+                    table.close();
+                } catch (ServerError e) {
+                    logError(this, "Could not close table", e);
+                }
+        }
+        return null;
+    }
+
     /**
      * Get all available tables for a the specified object
      * 
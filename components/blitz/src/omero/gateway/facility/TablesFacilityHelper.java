@@ -267,6 +267,44 @@ public class TablesFacilityHelper {
         }
     }
 
+    /**
+     * Get the type of the values of a {@link Column}, as set by
+     * {@link #parseData(Data, TableDataColumn[])}
+     * 
+     * @param col
+     *            The column
+     * @return See above, {@link Object} if the column is not supported
+     */
+    static Class<?> getType(Column col) {
+        if (col instanceof BoolColumn)
+            return Boolean.class;
+        if (col instanceof DoubleArrayColumn)
+            return Double[].class;
+        if (col instanceof DoubleColumn)
+            return Double.class;
+        if (col instanceof FileColumn)
+            return FileAnnotationData.class;
+        if (col instanceof FloatArrayColumn)
+            return Float[].class;
+        if (col instanceof ImageColumn)
+            return ImageData.class;
+        if (col instanceof LongArrayColumn)
+            return Long[].class;
+        if (col instanceof LongColumn)
+            return Long.class;
+        if (col instanceof MaskColumn)
+            return MaskData.class;
+        if (col instanceof PlateColumn)
+            return PlateData.class;
+        if (col instanceof RoiColumn)
+            return ROIData.class;
+        if (col instanceof StringColumn)
+            return String.class;
+        if (col instanceof WellColumn)
+            return WellSampleData.class;
+        return Object.class;
+    }
+
     /**
      * Create a {@link Column} with the specified data
      * 
@@ -64,7 +64,32 @@ public class TransferFacility extends Facility {
      */
     public List<File> downloadImage(SecurityContext context, String targetPath,
             long imageId) throws DSAccessException, DSOutOfServiceException {
-        return helper.downloadImage(context, targetPath, imageId);
+        return downloadImage(context, targetPath, imageId,
+                TransferFacilityHelper.DEFAULT_STREAMS);
+    }
+
+    /**
+     * Downloads the original file of an image from the server. Each file is
+     * read concurrently by the specified number of streams and verified
+     * against its hash. A file which could not be downloaded is left as a
+     * <code>.part</code> file and the download is resumed by the next call
+     * with the same target path.
+     *
+     * @param context The security context.
+     * @param targetPath Path to the file.
+     * @param imageId The identifier of the image.
+     * @param streams The number of streams opened per file.
+     * @return See above
+     * @throws DSOutOfServiceException
+     *             If the connection is broken, or not logged in
+     * @throws DSAccessException
+     *             If an error occurred while trying to retrieve data from OMERO
+     *             service.
+     */
+    public List<File> downloadImage(SecurityContext context, String targetPath,
+            long imageId, int streams)
+            throws DSAccessException, DSOutOfServiceException {
+        return helper.downloadImage(context, targetPath, imageId, streams);
     }
 
 }
@@ -20,7 +20,6 @@
 package omero.gateway.facility;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -28,14 +27,14 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import omero.RType;
-import omero.ServerError;
 import omero.api.IQueryPrx;
-import omero.api.RawFileStorePrx;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.model.ImageData;
+import omero.log.LogMessage;
+import omero.log.Logger;
 import omero.model.Fileset;
 import omero.model.FilesetEntry;
 import omero.model.OriginalFile;
@@ -54,6 +53,12 @@ public class TransferFacilityHelper {
     /** Maximum size of bytes read at once. */
     private static final int INC = 262144;//
 
+    /** Number of reads in flight per stream. */
+    private static final int READ_AHEAD = 4;
+
+    /** Default number of streams opened per file. */
+    static final int DEFAULT_STREAMS = 4;
+
     private BrowseFacility browse;
 
     private Gateway gateway;
@@ -83,12 +88,15 @@ public class TransferFacilityHelper {
      *            Path to the file.
      * @param imageId
      *            The identifier of the image.
+     * @param streams
+     *            The number of streams opened per file.
      * @return See above
      * @throws DSOutOfServiceException
      * @throws DSAccessException
      */
     List<File> downloadImage(SecurityContext context, String targetPath,
-            long imageId) throws DSAccessException, DSOutOfServiceException {
+            long imageId, int streams)
+            throws DSAccessException, DSOutOfServiceException {
         List<File> files = new ArrayList<File>();
 
         ImageData image = browse.findObject(context, ImageData.class, imageId,
@@ -146,59 +154,32 @@ public class TransferFacilityHelper {
         } else
             values.addAll((List<OriginalFile>) filesets);
 
-        RawFileStorePrx store = null;
+        FileDownloader downloader = new FileDownloader(gateway, context,
+                streams, INC, READ_AHEAD);
         OriginalFile of;
-        long size;
-        FileOutputStream stream = null;
-        long offset = 0;
+        File f;
         i = values.iterator();
-        File f = null;
-
         while (i.hasNext()) {
             of = (OriginalFile) i.next();
-
+            f = new File(targetPath, of.getName().getValue());
             try {
-                store = gateway.getRawFileService(context);
-                store.setFileId(of.getId().getValue());
-
-                f = new File(targetPath, of.getName().getValue());
+                downloader.download(of, f);
                 files.add(f);
-
-                stream = new FileOutputStream(f);
-                size = of.getSize().getValue();
-                try {
-                    try {
-                        for (offset = 0; (offset + INC) < size;) {
-                            stream.write(store.read(offset, INC));
-                            offset += INC;
-                        }
-                    } finally {
-                        stream.write(store.read(offset, (int) (size - offset)));
-                        stream.close();
-                    }
-                } catch (Exception e) {
-                    if (stream != null)
-                        stream.close();
-                    if (f != null) {
-                        f.delete();
-                        files.remove(f);
-                    }
-                }
             } catch (IOException e) {
-                if (f != null) {
-                    f.delete();
-                    files.remove(f);
-                }
                 throw new DSAccessException("Cannot create file in folderPath",
                         e);
+            } catch (DSOutOfServiceException e) {
+                throw e;
+            } catch (DSAccessException e) {
+                // The partially downloaded file is kept so the download
+                // can be resumed.
+                Logger log = gateway.getLogger();
+                if (log != null)
+                    log.warn(this, new LogMessage("Cannot download "+
+                            f.getName(), e));
             } catch (Throwable t) {
                 throw new DSAccessException("ServerError on retrieveArchived",
                         t);
-            } finally {
-                try {
-                    store.close();
-                } catch (ServerError e) {
-                }
             }
         }
 
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package omero.gateway.model;
+
+import omero.grid.BoolColumn;
+import omero.grid.Column;
+import omero.grid.Data;
+import omero.grid.DatasetColumn;
+import omero.grid.DoubleArrayColumn;
+import omero.grid.DoubleColumn;
+import omero.grid.FileColumn;
+import omero.grid.FloatArrayColumn;
+import omero.grid.ImageColumn;
+import omero.grid.LongArrayColumn;
+import omero.grid.LongColumn;
+import omero.grid.PlateColumn;
+import omero.grid.RoiColumn;
+import omero.grid.StringColumn;
+import omero.grid.WellColumn;
+
+/**
+ * A chunk of consecutive rows of a table, as read by
+ * {@link omero.gateway.facility.TableDataReader}. Unlike {@link TableData},
+ * the values are not converted into objects: each column is accessed as the
+ * primitive array received from the server.
+ *
+ * @since 5.4.0
+ */
+public class TableDataChunk {
+
+    /** The column definitions */
+    private final TableDataColumn[] columns;
+
+    /** The data as read from the table */
+    private final Data data;
+
+    /**
+     * Creates a new instance
+     *
+     * @param columns
+     *            The column definitions
+     * @param data
+     *            The data, with one column per column definition
+     */
+    public TableDataChunk(TableDataColumn[] columns, Data data) {
+        this.columns = columns;
+        this.data = data;
+    }
+
+    /**
+     * Get the column definitions
+     *
+     * @return See above
+     */
+    public TableDataColumn[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the indices of the rows of this chunk in the table
+     *
+     * @return See above
+     */
+    public long[] getRowNumbers() {
+        return data.rowNumbers;
+    }
+
+    /**
+     * Get the number of rows of this chunk
+     *
+     * @return See above
+     */
+    public int getNumberOfRows() {
+        return data.rowNumbers.length;
+    }
+
+    /**
+     * Get a column as read from the table
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public Column getColumn(int column) {
+        return data.columns[column];
+    }
+
+    /**
+     * Get the values of a {@link Boolean} column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public boolean[] getBooleans(int column) {
+        return get(column, BoolColumn.class).values;
+    }
+
+    /**
+     * Get the values of a {@link Double} column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public double[] getDoubles(int column) {
+        return get(column, DoubleColumn.class).values;
+    }
+
+    /**
+     * Get the values of a {@link Long} column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public long[] getLongs(int column) {
+        return get(column, LongColumn.class).values;
+    }
+
+    /**
+     * Get the values of a {@link String} column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public String[] getStrings(int column) {
+        return get(column, StringColumn.class).values;
+    }
+
+    /**
+     * Get the values of a {@link Double}[] column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public double[][] getDoubleArrays(int column) {
+        return get(column, DoubleArrayColumn.class).values;
+    }
+
+    /**
+     * Get the values of a {@link Float}[] column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public float[][] getFloatArrays(int column) {
+        return get(column, FloatArrayColumn.class).values;
+    }
+
+    /**
+     * Get the values of a {@link Long}[] column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public long[][] getLongArrays(int column) {
+        return get(column, LongArrayColumn.class).values;
+    }
+
+    /**
+     * Get the ids of the objects of a column referencing OMERO objects, e.g.
+     * an {@link ImageData} column
+     *
+     * @param column
+     *            The index of the column within this chunk
+     * @return See above
+     */
+    public long[] getIds(int column) {
+        Column col = data.columns[column];
+        if (col instanceof FileColumn)
+            return ((FileColumn) col).values;
+        if (col instanceof ImageColumn)
+            return ((ImageColumn) col).values;
+        if (col instanceof DatasetColumn)
+            return ((DatasetColumn) col).values;
+        if (col instanceof RoiColumn)
+            return ((RoiColumn) col).values;
+        if (col instanceof WellColumn)
+            return ((WellColumn) col).values;
+        if (col instanceof PlateColumn)
+            return ((PlateColumn) col).values;
+        throw new IllegalArgumentException("Column " + column
+                + " does not reference objects: " + col.getClass().getName());
+    }
+
+    /**
+     * Get a column of the given type
+     */
+    private <T extends Column> T get(int column, Class<T> type) {
+        Column col = data.columns[column];
+        if (!type.isInstance(col))
+            throw new IllegalArgumentException("Column " + column + " is a "
+                    + col.getClass().getName() + ", not a "
+                    + type.getName());
+        return type.cast(col);
+    }
+
+}
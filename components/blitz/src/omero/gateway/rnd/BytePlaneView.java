@@ -0,0 +1,115 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+/**
+ * View over <code>int8</code> and <code>uint8</code> pixels.
+ *
+ * @since 5.4.0
+ */
+public class BytePlaneView
+    extends PlaneView
+{
+
+    /** Flag indicating if the pixels type is signed. */
+    private final boolean signed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param data The bytes to wrap.
+     * @param x The x-coordinate of the top-left corner in the plane.
+     * @param y The y-coordinate of the top-left corner in the plane.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param pixelsType The pixels type.
+     * @param signed Pass <code>true</code> if the type is signed.
+     */
+    BytePlaneView(byte[] data, int x, int y, int sizeX, int sizeY,
+            String pixelsType, boolean signed)
+    {
+        super(data, x, y, sizeX, sizeY, pixelsType, 1);
+        this.signed = signed;
+    }
+
+    /**
+     * Returns the value of the pixel at the specified index.
+     *
+     * @param index The index of the pixel.
+     * @return See above.
+     */
+    public int get(int index)
+    {
+        byte v = buffer.get(index);
+        return signed ? v : v & 0xFF;
+    }
+
+    /**
+     * Returns the value of the pixel at the specified coordinates.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    public int get(int x, int y) { return get(index(x, y)); }
+
+    /**
+     * Copies the bytes of all the pixels into the specified array.
+     * For <code>uint8</code>, mask the values with <code>0xFF</code>.
+     *
+     * @param dst The array to fill.
+     * @return The passed array.
+     */
+    public byte[] getPixels(byte[] dst)
+    {
+        checkLength(dst.length);
+        buffer.duplicate().get(dst, 0, getPixelCount());
+        return dst;
+    }
+
+    /**
+     * Copies the values of all the pixels into the specified array.
+     *
+     * @param dst The array to fill.
+     * @return The passed array.
+     */
+    public int[] getPixels(int[] dst)
+    {
+        checkLength(dst.length);
+        int n = getPixelCount();
+        for (int i = 0; i < n; i++)
+            dst[i] = get(i);
+        return dst;
+    }
+
+    /**
+     * Implemented as specified by {@link PlaneView}.
+     * @see PlaneView#getBytesPerPixel()
+     */
+    public int getBytesPerPixel() { return 1; }
+
+    /**
+     * Implemented as specified by {@link PlaneView}.
+     * @see PlaneView#getValue(int)
+     */
+    public double getValue(int index) { return get(index); }
+
+}
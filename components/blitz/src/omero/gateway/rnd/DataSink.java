@@ -20,7 +20,9 @@
  */
 package omero.gateway.rnd;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import omero.ServerError;
 import omero.api.RawPixelsStorePrx;
@@ -29,7 +31,6 @@ import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.exception.DataSourceException;
 import omero.romio.PlaneDef;
-import omero.util.ReadOnlyByteArray;
 import omero.gateway.model.PixelsData;
 
 /** 
@@ -75,12 +76,6 @@ public class DataSink implements AutoCloseable
     /** The data source. */
     private PixelsData source;
 
-    /** The number of bytes per pixel. */
-    private int bytesPerPixels;
-
-    /** Strategy used to transform the raw data. */
-    private BytesConverter strategy;
-
     /** The pixels store for that pixels set.*/
     private RawPixelsStorePrx store;
 
@@ -113,80 +108,97 @@ public class DataSink implements AutoCloseable
         } catch (ServerError e) {
             throw new DSOutOfServiceException("Can't set pixels id", e);
         }
-        String type = source.getPixelType();
-        bytesPerPixels = getBytesPerPixels(type);
-        strategy = BytesConverter.getConverter(type);
     }
 
     /**
-     * Returns the number of bytes per pixel depending on the pixel type.
+     * Extracts a 2D tile from the pixels set this object is working for.
      *
-     * @param v The pixels Type.
-     * @return See above.
+     * @param z
+     *            The z-section at which data is to be fetched.
+     * @param t
+     *            The timepoint at which data is to be fetched.
+     * @param c
+     *            The channel at which data is to be fetched.
+     * @param x
+     *            The x coordinate
+     * @param y
+     *            The y coordinate
+     * @param w
+     *            The width of the tile
+     * @param h
+     *            The height of the tile
+     * @return A plane 2D object that encapsulates the actual plane pixels.
+     * @throws DataSourceException
+     *             If an error occurs while retrieving the plane data from the
+     *             pixels source.
      */
-    private int getBytesPerPixels(String v)
-    {
-        if (INT_8.equals(v) || UINT_8.equals(v)) return 1;
-        if (INT_16.equals(v) || UINT_16.equals(v)) return 2;
-        if (INT_32.equals(v) || UINT_32.equals(v) || FLOAT.equals(v)) 
-            return 4;
-        if (DOUBLE.equals(v)) return 8;
-        return -1;
+    public Plane2D getTile(int z, int t, int c, int x,
+            int y, int w, int h) throws DataSourceException {
+        return new Plane2D(getTileView(z, t, c, x, y, w, h));
     }
 
     /**
-     * Factory method to fetch plane data and create an object to access it.
+     * Extracts a 2D plane from the pixels set this object is working for.
+     *
      * @param z The z-section at which data is to be fetched.
      * @param t The timepoint at which data is to be fetched.
      * @param c The channel at which data is to be fetched.
-     * @param strategy To transform bytes into pixels values.
      * @return A plane 2D object that encapsulates the actual plane pixels.
      * @throws DataSourceException If an error occurs while retrieving the
      *                              plane data from the pixels source.
      */
-    private Plane2D createPlane(int z, int t, int c,
-            BytesConverter strategy)
-                    throws DataSourceException
+    public Plane2D getPlane(int z, int t, int c)
+            throws DataSourceException
+    {
+        return new Plane2D(getPlaneView(z, t, c));
+    }
+
+    /**
+     * Extracts a 2D plane from the pixels set this object is working for
+     * and returns a typed view over the bytes received, no copy is made.
+     * Cast the view according to the pixels type, e.g.
+     * {@link ShortPlaneView} for <code>uint16</code>.
+     *
+     * @param z The z-section at which data is to be fetched.
+     * @param t The timepoint at which data is to be fetched.
+     * @param c The channel at which data is to be fetched.
+     * @return See above.
+     * @throws DataSourceException If an error occurs while retrieving the
+     *                              plane data from the pixels source.
+     */
+    public PlaneView getPlaneView(int z, int t, int c)
+            throws DataSourceException
     {
-        //Retrieve data
-        Plane2D plane = null;
-        byte[] data = null; 
+        byte[] data = null;
         try {
             data = store.getPlane(z, c, t);
         } catch (Exception e) {
             String p = "("+z+", "+c+", "+t+")";
             throw new DataSourceException("Cannot retrieve the plane "+p, e);
         }
-        ReadOnlyByteArray array = new ReadOnlyByteArray(data, 0, data.length);
-        plane = new Plane2D(array, source.getSizeX(), source.getSizeY(), 
-                bytesPerPixels, strategy);
-        return plane;
+        return PlaneView.create(data, 0, 0, source.getSizeX(),
+                source.getSizeY(), source.getPixelType());
     }
 
     /**
-     * Extracts a 2D tile from the pixels set this object is working for.
+     * Extracts a 2D tile from the pixels set this object is working for
+     * and returns a typed view over the bytes received, no copy is made.
      *
-     * @param z
-     *            The z-section at which data is to be fetched.
-     * @param t
-     *            The timepoint at which data is to be fetched.
-     * @param c
-     *            The channel at which data is to be fetched.
-     * @param x
-     *            The x coordinate
-     * @param y
-     *            The y coordinate
-     * @param w
-     *            The width of the tile
-     * @param h
-     *            The height of the tile
-     * @return A plane 2D object that encapsulates the actual plane pixels.
-     * @throws DataSourceException
-     *             If an error occurs while retrieving the plane data from the
-     *             pixels source.
+     * @param z The z-section at which data is to be fetched.
+     * @param t The timepoint at which data is to be fetched.
+     * @param c The channel at which data is to be fetched.
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param w The width of the tile
+     * @param h The height of the tile
+     * @return See above.
+     * @throws DataSourceException If an error occurs while retrieving the
+     *                              tile data from the pixels source.
      */
-    public Plane2D getTile(int z, int t, int c, int x,
-            int y, int w, int h) throws DataSourceException {
+    public PlaneView getTileView(int z, int t, int c, int x, int y, int w,
+            int h)
+            throws DataSourceException
+    {
         byte[] data = null;
         try {
             data = store.getTile(z, c, t, x, y, w, h);
@@ -195,24 +207,69 @@ public class DataSink implements AutoCloseable
                     + ", " + w + ", " + h + ")";
             throw new DataSourceException("Cannot retrieve the plane " + p, e);
         }
-        ReadOnlyByteArray array = new ReadOnlyByteArray(data, 0, data.length);
-        return new Plane2D(array, w, h, bytesPerPixels, strategy);
+        return PlaneView.create(data, x, y, w, h, source.getPixelType());
     }
 
     /**
-     * Extracts a 2D plane from the pixels set this object is working for.
+     * Returns an iterator over the tiles of a plane, row after row.
+     * A tile is only retrieved when {@link Iterator#next()} is invoked so
+     * only one tile is held at a time. The tiles on the right and bottom
+     * edges are cropped to the plane.
+     * If a tile cannot be retrieved, {@link Iterator#next()} throws an
+     * {@link IllegalStateException} whose cause is the
+     * {@link DataSourceException}.
      *
      * @param z The z-section at which data is to be fetched.
      * @param t The timepoint at which data is to be fetched.
      * @param c The channel at which data is to be fetched.
-     * @return A plane 2D object that encapsulates the actual plane pixels.
-     * @throws DataSourceException If an error occurs while retrieving the
-     *                              plane data from the pixels source.
+     * @param tileWidth The width of the tiles.
+     * @param tileHeight The height of the tiles.
+     * @return See above.
      */
-    public Plane2D getPlane(int z, int t, int c)
-            throws DataSourceException
+    public Iterator<PlaneView> getTileViews(final int z, final int t,
+            final int c, final int tileWidth, final int tileHeight)
     {
-        return createPlane(z, t, c, strategy);
+        if (tileWidth <= 0 || tileHeight <= 0)
+            throw new IllegalArgumentException("Invalid tile size.");
+        final int sizeX = source.getSizeX();
+        final int sizeY = source.getSizeY();
+        return new Iterator<PlaneView>() {
+
+            /** The x-coordinate of the next tile. */
+            private int x = 0;
+
+            /** The y-coordinate of the next tile. */
+            private int y = 0;
+
+            public boolean hasNext()
+            {
+                return x < sizeX && y < sizeY;
+            }
+
+            public PlaneView next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+                int w = Math.min(tileWidth, sizeX-x);
+                int h = Math.min(tileHeight, sizeY-y);
+                PlaneView view;
+                try {
+                    view = getTileView(z, t, c, x, y, w, h);
+                } catch (DataSourceException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+                x += tileWidth;
+                if (x >= sizeX) {
+                    x = 0;
+                    y += tileHeight;
+                }
+                return view;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
     /**
@@ -0,0 +1,91 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+/**
+ * View over <code>float</code> pixels.
+ *
+ * @since 5.4.0
+ */
+public class FloatPlaneView
+    extends PlaneView
+{
+
+    /**
+     * Creates a new instance.
+     *
+     * @param data The bytes to wrap.
+     * @param x The x-coordinate of the top-left corner in the plane.
+     * @param y The y-coordinate of the top-left corner in the plane.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param pixelsType The pixels type.
+     */
+    FloatPlaneView(byte[] data, int x, int y, int sizeX, int sizeY,
+            String pixelsType)
+    {
+        super(data, x, y, sizeX, sizeY, pixelsType, 4);
+    }
+
+    /**
+     * Returns the value of the pixel at the specified index.
+     *
+     * @param index The index of the pixel.
+     * @return See above.
+     */
+    public float get(int index) { return buffer.getFloat(4*index); }
+
+    /**
+     * Returns the value of the pixel at the specified coordinates.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    public float get(int x, int y) { return get(index(x, y)); }
+
+    /**
+     * Copies the values of all the pixels into the specified array.
+     *
+     * @param dst The array to fill.
+     * @return The passed array.
+     */
+    public float[] getPixels(float[] dst)
+    {
+        checkLength(dst.length);
+        buffer.duplicate().order(buffer.order()).asFloatBuffer()
+            .get(dst, 0, getPixelCount());
+        return dst;
+    }
+
+    /**
+     * Implemented as specified by {@link PlaneView}.
+     * @see PlaneView#getBytesPerPixel()
+     */
+    public int getBytesPerPixel() { return 4; }
+
+    /**
+     * Implemented as specified by {@link PlaneView}.
+     * @see PlaneView#getValue(int)
+     */
+    public double getValue(int index) { return get(index); }
+
+}
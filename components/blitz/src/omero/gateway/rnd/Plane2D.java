@@ -47,8 +47,8 @@ public class Plane2D
     /** Strategy used to transform original data. */
     private BytesConverter strategy;
 
-    /** The converted raw data. */
-    private double[][] mappedData;
+    /** The typed view over the data, <code>null</code> if not set. */
+    private PlaneView view;
 
     /** 
      * Determines the offset value.
@@ -62,25 +62,9 @@ public class Plane2D
         return bytesPerPixel*(sizeX*y+x);
     }
 
-    /**
-     * Converts the raw data.
-     *
-     * @param sizeY The number of pixels along the y-axis.
-     */
-    private void mappedData(int sizeY)
-    {
-        mappedData = new double[sizeX][sizeY];
-        int offset;
-        for (int x = 0; x < sizeX; x++) {
-            for (int y = 0; y < sizeY; y++) {
-                offset = calculateOffset(x, y);
-                mappedData[x][y] = strategy.pack(data, offset, bytesPerPixel);
-            }
-        }
-    }
-
     /**
      * Creates a new instance.
+     * The values are converted when accessed.
      *
      * @param data The array of byte.
      * @param sizeX The number of pixels along the x-axis.
@@ -95,9 +79,30 @@ public class Plane2D
         this.data = data;
         this.strategy = strategy;
         this.sizeX = sizeX;
-        mappedData(sizeY);
     }
 
+    /**
+     * Creates a new instance backed by the specified view.
+     *
+     * @param view The typed view over the data.
+     */
+    public Plane2D(PlaneView view)
+    {
+        if (view == null)
+            throw new IllegalArgumentException("No view.");
+        this.view = view;
+        this.sizeX = view.getSizeX();
+        this.bytesPerPixel = view.getBytesPerPixel();
+    }
+
+    /**
+     * Returns the typed view over the data or <code>null</code> if the
+     * plane was not created from a view.
+     *
+     * @return See above.
+     */
+    public PlaneView getView() { return view; }
+
     /**
      * Returns the pixels value at the point specified by the x-coordinate
      * and y-coordinate.
@@ -108,7 +113,8 @@ public class Plane2D
      */
     public double getPixelValue(int x, int y)
     {
-        return mappedData[x][y];
+        if (view != null) return view.getValue(x, y);
+        return strategy.pack(data, calculateOffset(x, y), bytesPerPixel);
     }
 
     /**
@@ -119,6 +125,7 @@ public class Plane2D
      */
     public byte getRawValue(int offset)
     {
+        if (view != null) return view.getRawValue(offset);
         return data.get(offset);
     }
 }
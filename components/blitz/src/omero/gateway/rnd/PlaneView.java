@@ -0,0 +1,254 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Typed, read-only view over the bytes of a plane or a tile as returned by
+ * the server. The bytes are wrapped, not copied, and are decoded on access
+ * using the byte order of the server (big-endian).
+ * Use {@link #create(byte[], int, int, int, int, String)} to obtain the view
+ * matching the pixels type and cast it to the typed view, e.g.
+ * {@link ShortPlaneView} for <code>uint16</code>, to read the values without
+ * going through <code>double</code>.
+ *
+ * @since 5.4.0
+ */
+public abstract class PlaneView
+{
+
+    /** The wrapped bytes. */
+    protected final ByteBuffer buffer;
+
+    /** The x-coordinate of the top-left corner in the plane. */
+    private final int x;
+
+    /** The y-coordinate of the top-left corner in the plane. */
+    private final int y;
+
+    /** The number of pixels along the x-axis. */
+    private final int sizeX;
+
+    /** The number of pixels along the y-axis. */
+    private final int sizeY;
+
+    /** The pixels type. */
+    private final String pixelsType;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param data The bytes to wrap.
+     * @param x The x-coordinate of the top-left corner in the plane.
+     * @param y The y-coordinate of the top-left corner in the plane.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param pixelsType The pixels type.
+     * @param bytesPerPixel The number of bytes per pixel.
+     */
+    PlaneView(byte[] data, int x, int y, int sizeX, int sizeY,
+            String pixelsType, int bytesPerPixel)
+    {
+        if (data == null)
+            throw new IllegalArgumentException("No data.");
+        if (sizeX < 0 || sizeY < 0)
+            throw new IllegalArgumentException("Invalid size.");
+        if ((long) sizeX*sizeY*bytesPerPixel > data.length)
+            throw new IllegalArgumentException("Expected "+
+                    ((long) sizeX*sizeY*bytesPerPixel)+" bytes, found "+
+                    data.length+".");
+        this.buffer = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+        this.x = x;
+        this.y = y;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.pixelsType = pixelsType;
+    }
+
+    /**
+     * Returns the index of the pixel at the specified coordinates,
+     * relative to the top-left corner of the view.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    protected int index(int x, int y)
+    {
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY)
+            throw new IndexOutOfBoundsException("("+x+", "+y+
+                    ") not in "+sizeX+"x"+sizeY+".");
+        return sizeX*y+x;
+    }
+
+    /**
+     * Checks that the destination array can hold all the pixels.
+     *
+     * @param length The length of the destination array.
+     */
+    protected void checkLength(int length)
+    {
+        if (length < getPixelCount())
+            throw new IllegalArgumentException("Array too small, "+
+                    getPixelCount()+" elements required.");
+    }
+
+    /**
+     * Creates the view matching the specified pixels type.
+     *
+     * @param data The bytes to wrap, as returned by the server.
+     * @param x The x-coordinate of the top-left corner in the plane.
+     * @param y The y-coordinate of the top-left corner in the plane.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param pixelsType One of the types defined by {@link DataSink}.
+     * @return See above.
+     */
+    public static PlaneView create(byte[] data, int x, int y, int sizeX,
+            int sizeY, String pixelsType)
+    {
+        if (DataSink.INT_8.equals(pixelsType))
+            return new BytePlaneView(data, x, y, sizeX, sizeY, pixelsType,
+                    true);
+        if (DataSink.UINT_8.equals(pixelsType))
+            return new BytePlaneView(data, x, y, sizeX, sizeY, pixelsType,
+                    false);
+        if (DataSink.INT_16.equals(pixelsType))
+            return new ShortPlaneView(data, x, y, sizeX, sizeY, pixelsType,
+                    true);
+        if (DataSink.UINT_16.equals(pixelsType))
+            return new ShortPlaneView(data, x, y, sizeX, sizeY, pixelsType,
+                    false);
+        if (DataSink.INT_32.equals(pixelsType))
+            return new IntPlaneView(data, x, y, sizeX, sizeY, pixelsType,
+                    true);
+        if (DataSink.UINT_32.equals(pixelsType))
+            return new IntPlaneView(data, x, y, sizeX, sizeY, pixelsType,
+                    false);
+        if (DataSink.FLOAT.equals(pixelsType))
+            return new FloatPlaneView(data, x, y, sizeX, sizeY, pixelsType);
+        if (DataSink.DOUBLE.equals(pixelsType))
+            return new DoublePlaneView(data, x, y, sizeX, sizeY, pixelsType);
+        throw new IllegalArgumentException("Pixels type not supported: "+
+                pixelsType);
+    }
+
+    /**
+     * Returns the x-coordinate of the top-left corner in the plane.
+     *
+     * @return See above.
+     */
+    public int getX() { return x; }
+
+    /**
+     * Returns the y-coordinate of the top-left corner in the plane.
+     *
+     * @return See above.
+     */
+    public int getY() { return y; }
+
+    /**
+     * Returns the number of pixels along the x-axis.
+     *
+     * @return See above.
+     */
+    public int getSizeX() { return sizeX; }
+
+    /**
+     * Returns the number of pixels along the y-axis.
+     *
+     * @return See above.
+     */
+    public int getSizeY() { return sizeY; }
+
+    /**
+     * Returns the number of pixels.
+     *
+     * @return See above.
+     */
+    public int getPixelCount() { return sizeX*sizeY; }
+
+    /**
+     * Returns the pixels type.
+     *
+     * @return See above.
+     */
+    public String getPixelsType() { return pixelsType; }
+
+    /**
+     * Returns the number of bytes per pixel.
+     *
+     * @return See above.
+     */
+    public abstract int getBytesPerPixel();
+
+    /**
+     * Returns the value of the pixel at the specified index, the pixels
+     * being stored row after row.
+     *
+     * @param index The index of the pixel.
+     * @return See above.
+     */
+    public abstract double getValue(int index);
+
+    /**
+     * Returns the value of the pixel at the specified coordinates,
+     * relative to the top-left corner of the view.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    public double getValue(int x, int y)
+    {
+        return getValue(index(x, y));
+    }
+
+    /**
+     * Copies the values of all the pixels into the specified array,
+     * row after row.
+     *
+     * @param dst The array to fill.
+     * @return The passed array.
+     */
+    public double[] getValues(double[] dst)
+    {
+        checkLength(dst.length);
+        int n = getPixelCount();
+        for (int i = 0; i < n; i++)
+            dst[i] = getValue(i);
+        return dst;
+    }
+
+    /**
+     * Returns the byte at the specified offset.
+     *
+     * @param offset The offset.
+     * @return See above.
+     */
+    public byte getRawValue(int offset)
+    {
+        return buffer.get(offset);
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package omero.gateway.rnd;
+
+import java.nio.ShortBuffer;
+
+/**
+ * View over <code>int16</code> and <code>uint16</code> pixels.
+ *
+ * @since 5.4.0
+ */
+public class ShortPlaneView
+    extends PlaneView
+{
+
+    /** Flag indicating if the pixels type is signed. */
+    private final boolean signed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param data The bytes to wrap.
+     * @param x The x-coordinate of the top-left corner in the plane.
+     * @param y The y-coordinate of the top-left corner in the plane.
+     * @param sizeX The number of pixels along the x-axis.
+     * @param sizeY The number of pixels along the y-axis.
+     * @param pixelsType The pixels type.
+     * @param signed Pass <code>true</code> if the type is signed.
+     */
+    ShortPlaneView(byte[] data, int x, int y, int sizeX, int sizeY,
+            String pixelsType, boolean signed)
+    {
+        super(data, x, y, sizeX, sizeY, pixelsType, 2);
+        this.signed = signed;
+    }
+
+    /**
+     * Returns the value of the pixel at the specified index.
+     *
+     * @param index The index of the pixel.
+     * @return See above.
+     */
+    public int get(int index)
+    {
+        short v = buffer.getShort(2*index);
+        return signed ? v : v & 0xFFFF;
+    }
+
+    /**
+     * Returns the value of the pixel at the specified coordinates.
+     *
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @return See above.
+     */
+    public int get(int x, int y) { return get(index(x, y)); }
+
+    /**
+     * Copies the values of all the pixels into the specified array.
+     * For <code>uint16</code>, mask the values with <code>0xFFFF</code>.
+     *
+     * @param dst The array to fill.
+     * @return The passed array.
+     */
+    public short[] getPixels(short[] dst)
+    {
+        checkLength(dst.length);
+        ShortBuffer b = buffer.duplicate().order(buffer.order())
+                .asShortBuffer();
+        b.get(dst, 0, getPixelCount());
+        return dst;
+    }
+
+    /**
+     * Copies the values of all the pixels into the specified array.
+     *
+     * @param dst The array to fill.
+     * @return The passed array.
+     */
+    public int[] getPixels(int[] dst)
+    {
+        checkLength(dst.length);
+        int n = getPixelCount();
+        for (int i = 0; i < n; i++)
+            dst[i] = get(i);
+        return dst;
+    }
+
+    /**
+     * Implemented as specified by {@link PlaneView}.
+     * @see PlaneView#getBytesPerPixel()
+     */
+    public int getBytesPerPixel() { return 2; }
+
+    /**
+     * Implemented as specified by {@link PlaneView}.
+     * @see PlaneView#getValue(int)
+     */
+    public double getValue(int index) { return get(index); }
+
+}
@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -602,33 +601,33 @@ public class ElectricPotentialI extends ElectricPotential implements ModelBased
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsElectricPotential, Map<UnitsElectricPotential, Conversion>> conversions;
+    private static final Map<UnitsElectricPotential, Map<UnitsElectricPotential, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsElectricPotential, Map<UnitsElectricPotential, Conversion>> c
-            = new EnumMap<UnitsElectricPotential, Map<UnitsElectricPotential, Conversion>>(UnitsElectricPotential.class);
-
-        c.put(UnitsElectricPotential.ATTOVOLT, createMapATTOVOLT());
-        c.put(UnitsElectricPotential.CENTIVOLT, createMapCENTIVOLT());
-        c.put(UnitsElectricPotential.DECAVOLT, createMapDECAVOLT());
-        c.put(UnitsElectricPotential.DECIVOLT, createMapDECIVOLT());
-        c.put(UnitsElectricPotential.EXAVOLT, createMapEXAVOLT());
-        c.put(UnitsElectricPotential.FEMTOVOLT, createMapFEMTOVOLT());
-        c.put(UnitsElectricPotential.GIGAVOLT, createMapGIGAVOLT());
-        c.put(UnitsElectricPotential.HECTOVOLT, createMapHECTOVOLT());
-        c.put(UnitsElectricPotential.KILOVOLT, createMapKILOVOLT());
-        c.put(UnitsElectricPotential.MEGAVOLT, createMapMEGAVOLT());
-        c.put(UnitsElectricPotential.MICROVOLT, createMapMICROVOLT());
-        c.put(UnitsElectricPotential.MILLIVOLT, createMapMILLIVOLT());
-        c.put(UnitsElectricPotential.NANOVOLT, createMapNANOVOLT());
-        c.put(UnitsElectricPotential.PETAVOLT, createMapPETAVOLT());
-        c.put(UnitsElectricPotential.PICOVOLT, createMapPICOVOLT());
-        c.put(UnitsElectricPotential.TERAVOLT, createMapTERAVOLT());
-        c.put(UnitsElectricPotential.VOLT, createMapVOLT());
-        c.put(UnitsElectricPotential.YOCTOVOLT, createMapYOCTOVOLT());
-        c.put(UnitsElectricPotential.YOTTAVOLT, createMapYOTTAVOLT());
-        c.put(UnitsElectricPotential.ZEPTOVOLT, createMapZEPTOVOLT());
-        c.put(UnitsElectricPotential.ZETTAVOLT, createMapZETTAVOLT());
+        Map<UnitsElectricPotential, Map<UnitsElectricPotential, CompiledConversion>> c
+            = new EnumMap<UnitsElectricPotential, Map<UnitsElectricPotential, CompiledConversion>>(UnitsElectricPotential.class);
+
+        c.put(UnitsElectricPotential.ATTOVOLT, CompiledConversion.compile(createMapATTOVOLT()));
+        c.put(UnitsElectricPotential.CENTIVOLT, CompiledConversion.compile(createMapCENTIVOLT()));
+        c.put(UnitsElectricPotential.DECAVOLT, CompiledConversion.compile(createMapDECAVOLT()));
+        c.put(UnitsElectricPotential.DECIVOLT, CompiledConversion.compile(createMapDECIVOLT()));
+        c.put(UnitsElectricPotential.EXAVOLT, CompiledConversion.compile(createMapEXAVOLT()));
+        c.put(UnitsElectricPotential.FEMTOVOLT, CompiledConversion.compile(createMapFEMTOVOLT()));
+        c.put(UnitsElectricPotential.GIGAVOLT, CompiledConversion.compile(createMapGIGAVOLT()));
+        c.put(UnitsElectricPotential.HECTOVOLT, CompiledConversion.compile(createMapHECTOVOLT()));
+        c.put(UnitsElectricPotential.KILOVOLT, CompiledConversion.compile(createMapKILOVOLT()));
+        c.put(UnitsElectricPotential.MEGAVOLT, CompiledConversion.compile(createMapMEGAVOLT()));
+        c.put(UnitsElectricPotential.MICROVOLT, CompiledConversion.compile(createMapMICROVOLT()));
+        c.put(UnitsElectricPotential.MILLIVOLT, CompiledConversion.compile(createMapMILLIVOLT()));
+        c.put(UnitsElectricPotential.NANOVOLT, CompiledConversion.compile(createMapNANOVOLT()));
+        c.put(UnitsElectricPotential.PETAVOLT, CompiledConversion.compile(createMapPETAVOLT()));
+        c.put(UnitsElectricPotential.PICOVOLT, CompiledConversion.compile(createMapPICOVOLT()));
+        c.put(UnitsElectricPotential.TERAVOLT, CompiledConversion.compile(createMapTERAVOLT()));
+        c.put(UnitsElectricPotential.VOLT, CompiledConversion.compile(createMapVOLT()));
+        c.put(UnitsElectricPotential.YOCTOVOLT, CompiledConversion.compile(createMapYOCTOVOLT()));
+        c.put(UnitsElectricPotential.YOTTAVOLT, CompiledConversion.compile(createMapYOTTAVOLT()));
+        c.put(UnitsElectricPotential.ZEPTOVOLT, CompiledConversion.compile(createMapZEPTOVOLT()));
+        c.put(UnitsElectricPotential.ZETTAVOLT, CompiledConversion.compile(createMapZETTAVOLT()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -726,6 +725,40 @@ public class ElectricPotentialI extends ElectricPotential implements ModelBased
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsElectricPotential from,
+            UnitsElectricPotential to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsElectricPotential, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -777,17 +810,16 @@ public class ElectricPotentialI extends ElectricPotential implements ModelBased
            setUnit(value.getUnit());
         } else {
             UnitsElectricPotential targetUnit = UnitsElectricPotential.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
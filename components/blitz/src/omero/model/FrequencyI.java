@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -602,33 +601,33 @@ public class FrequencyI extends Frequency implements ModelBased {
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsFrequency, Map<UnitsFrequency, Conversion>> conversions;
+    private static final Map<UnitsFrequency, Map<UnitsFrequency, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsFrequency, Map<UnitsFrequency, Conversion>> c
-            = new EnumMap<UnitsFrequency, Map<UnitsFrequency, Conversion>>(UnitsFrequency.class);
-
-        c.put(UnitsFrequency.ATTOHERTZ, createMapATTOHERTZ());
-        c.put(UnitsFrequency.CENTIHERTZ, createMapCENTIHERTZ());
-        c.put(UnitsFrequency.DECAHERTZ, createMapDECAHERTZ());
-        c.put(UnitsFrequency.DECIHERTZ, createMapDECIHERTZ());
-        c.put(UnitsFrequency.EXAHERTZ, createMapEXAHERTZ());
-        c.put(UnitsFrequency.FEMTOHERTZ, createMapFEMTOHERTZ());
-        c.put(UnitsFrequency.GIGAHERTZ, createMapGIGAHERTZ());
-        c.put(UnitsFrequency.HECTOHERTZ, createMapHECTOHERTZ());
-        c.put(UnitsFrequency.HERTZ, createMapHERTZ());
-        c.put(UnitsFrequency.KILOHERTZ, createMapKILOHERTZ());
-        c.put(UnitsFrequency.MEGAHERTZ, createMapMEGAHERTZ());
-        c.put(UnitsFrequency.MICROHERTZ, createMapMICROHERTZ());
-        c.put(UnitsFrequency.MILLIHERTZ, createMapMILLIHERTZ());
-        c.put(UnitsFrequency.NANOHERTZ, createMapNANOHERTZ());
-        c.put(UnitsFrequency.PETAHERTZ, createMapPETAHERTZ());
-        c.put(UnitsFrequency.PICOHERTZ, createMapPICOHERTZ());
-        c.put(UnitsFrequency.TERAHERTZ, createMapTERAHERTZ());
-        c.put(UnitsFrequency.YOCTOHERTZ, createMapYOCTOHERTZ());
-        c.put(UnitsFrequency.YOTTAHERTZ, createMapYOTTAHERTZ());
-        c.put(UnitsFrequency.ZEPTOHERTZ, createMapZEPTOHERTZ());
-        c.put(UnitsFrequency.ZETTAHERTZ, createMapZETTAHERTZ());
+        Map<UnitsFrequency, Map<UnitsFrequency, CompiledConversion>> c
+            = new EnumMap<UnitsFrequency, Map<UnitsFrequency, CompiledConversion>>(UnitsFrequency.class);
+
+        c.put(UnitsFrequency.ATTOHERTZ, CompiledConversion.compile(createMapATTOHERTZ()));
+        c.put(UnitsFrequency.CENTIHERTZ, CompiledConversion.compile(createMapCENTIHERTZ()));
+        c.put(UnitsFrequency.DECAHERTZ, CompiledConversion.compile(createMapDECAHERTZ()));
+        c.put(UnitsFrequency.DECIHERTZ, CompiledConversion.compile(createMapDECIHERTZ()));
+        c.put(UnitsFrequency.EXAHERTZ, CompiledConversion.compile(createMapEXAHERTZ()));
+        c.put(UnitsFrequency.FEMTOHERTZ, CompiledConversion.compile(createMapFEMTOHERTZ()));
+        c.put(UnitsFrequency.GIGAHERTZ, CompiledConversion.compile(createMapGIGAHERTZ()));
+        c.put(UnitsFrequency.HECTOHERTZ, CompiledConversion.compile(createMapHECTOHERTZ()));
+        c.put(UnitsFrequency.HERTZ, CompiledConversion.compile(createMapHERTZ()));
+        c.put(UnitsFrequency.KILOHERTZ, CompiledConversion.compile(createMapKILOHERTZ()));
+        c.put(UnitsFrequency.MEGAHERTZ, CompiledConversion.compile(createMapMEGAHERTZ()));
+        c.put(UnitsFrequency.MICROHERTZ, CompiledConversion.compile(createMapMICROHERTZ()));
+        c.put(UnitsFrequency.MILLIHERTZ, CompiledConversion.compile(createMapMILLIHERTZ()));
+        c.put(UnitsFrequency.NANOHERTZ, CompiledConversion.compile(createMapNANOHERTZ()));
+        c.put(UnitsFrequency.PETAHERTZ, CompiledConversion.compile(createMapPETAHERTZ()));
+        c.put(UnitsFrequency.PICOHERTZ, CompiledConversion.compile(createMapPICOHERTZ()));
+        c.put(UnitsFrequency.TERAHERTZ, CompiledConversion.compile(createMapTERAHERTZ()));
+        c.put(UnitsFrequency.YOCTOHERTZ, CompiledConversion.compile(createMapYOCTOHERTZ()));
+        c.put(UnitsFrequency.YOTTAHERTZ, CompiledConversion.compile(createMapYOTTAHERTZ()));
+        c.put(UnitsFrequency.ZEPTOHERTZ, CompiledConversion.compile(createMapZEPTOHERTZ()));
+        c.put(UnitsFrequency.ZETTAHERTZ, CompiledConversion.compile(createMapZETTAHERTZ()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -726,6 +725,40 @@ public class FrequencyI extends Frequency implements ModelBased {
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsFrequency from,
+            UnitsFrequency to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsFrequency, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -777,17 +810,16 @@ public class FrequencyI extends Frequency implements ModelBased {
            setUnit(value.getUnit());
         } else {
             UnitsFrequency targetUnit = UnitsFrequency.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -1240,44 +1239,44 @@ public class LengthI extends Length implements ModelBased {
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsLength, Map<UnitsLength, Conversion>> conversions;
+    private static final Map<UnitsLength, Map<UnitsLength, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsLength, Map<UnitsLength, Conversion>> c
-            = new EnumMap<UnitsLength, Map<UnitsLength, Conversion>>(UnitsLength.class);
-
-        c.put(UnitsLength.ANGSTROM, createMapANGSTROM());
-        c.put(UnitsLength.ASTRONOMICALUNIT, createMapASTRONOMICALUNIT());
-        c.put(UnitsLength.ATTOMETER, createMapATTOMETER());
-        c.put(UnitsLength.CENTIMETER, createMapCENTIMETER());
-        c.put(UnitsLength.DECAMETER, createMapDECAMETER());
-        c.put(UnitsLength.DECIMETER, createMapDECIMETER());
-        c.put(UnitsLength.EXAMETER, createMapEXAMETER());
-        c.put(UnitsLength.FEMTOMETER, createMapFEMTOMETER());
-        c.put(UnitsLength.FOOT, createMapFOOT());
-        c.put(UnitsLength.GIGAMETER, createMapGIGAMETER());
-        c.put(UnitsLength.HECTOMETER, createMapHECTOMETER());
-        c.put(UnitsLength.INCH, createMapINCH());
-        c.put(UnitsLength.KILOMETER, createMapKILOMETER());
-        c.put(UnitsLength.LIGHTYEAR, createMapLIGHTYEAR());
-        c.put(UnitsLength.LINE, createMapLINE());
-        c.put(UnitsLength.MEGAMETER, createMapMEGAMETER());
-        c.put(UnitsLength.METER, createMapMETER());
-        c.put(UnitsLength.MICROMETER, createMapMICROMETER());
-        c.put(UnitsLength.MILE, createMapMILE());
-        c.put(UnitsLength.MILLIMETER, createMapMILLIMETER());
-        c.put(UnitsLength.NANOMETER, createMapNANOMETER());
-        c.put(UnitsLength.PARSEC, createMapPARSEC());
-        c.put(UnitsLength.PETAMETER, createMapPETAMETER());
-        c.put(UnitsLength.PICOMETER, createMapPICOMETER());
-        c.put(UnitsLength.POINT, createMapPOINT());
-        c.put(UnitsLength.TERAMETER, createMapTERAMETER());
-        c.put(UnitsLength.THOU, createMapTHOU());
-        c.put(UnitsLength.YARD, createMapYARD());
-        c.put(UnitsLength.YOCTOMETER, createMapYOCTOMETER());
-        c.put(UnitsLength.YOTTAMETER, createMapYOTTAMETER());
-        c.put(UnitsLength.ZEPTOMETER, createMapZEPTOMETER());
-        c.put(UnitsLength.ZETTAMETER, createMapZETTAMETER());
+        Map<UnitsLength, Map<UnitsLength, CompiledConversion>> c
+            = new EnumMap<UnitsLength, Map<UnitsLength, CompiledConversion>>(UnitsLength.class);
+
+        c.put(UnitsLength.ANGSTROM, CompiledConversion.compile(createMapANGSTROM()));
+        c.put(UnitsLength.ASTRONOMICALUNIT, CompiledConversion.compile(createMapASTRONOMICALUNIT()));
+        c.put(UnitsLength.ATTOMETER, CompiledConversion.compile(createMapATTOMETER()));
+        c.put(UnitsLength.CENTIMETER, CompiledConversion.compile(createMapCENTIMETER()));
+        c.put(UnitsLength.DECAMETER, CompiledConversion.compile(createMapDECAMETER()));
+        c.put(UnitsLength.DECIMETER, CompiledConversion.compile(createMapDECIMETER()));
+        c.put(UnitsLength.EXAMETER, CompiledConversion.compile(createMapEXAMETER()));
+        c.put(UnitsLength.FEMTOMETER, CompiledConversion.compile(createMapFEMTOMETER()));
+        c.put(UnitsLength.FOOT, CompiledConversion.compile(createMapFOOT()));
+        c.put(UnitsLength.GIGAMETER, CompiledConversion.compile(createMapGIGAMETER()));
+        c.put(UnitsLength.HECTOMETER, CompiledConversion.compile(createMapHECTOMETER()));
+        c.put(UnitsLength.INCH, CompiledConversion.compile(createMapINCH()));
+        c.put(UnitsLength.KILOMETER, CompiledConversion.compile(createMapKILOMETER()));
+        c.put(UnitsLength.LIGHTYEAR, CompiledConversion.compile(createMapLIGHTYEAR()));
+        c.put(UnitsLength.LINE, CompiledConversion.compile(createMapLINE()));
+        c.put(UnitsLength.MEGAMETER, CompiledConversion.compile(createMapMEGAMETER()));
+        c.put(UnitsLength.METER, CompiledConversion.compile(createMapMETER()));
+        c.put(UnitsLength.MICROMETER, CompiledConversion.compile(createMapMICROMETER()));
+        c.put(UnitsLength.MILE, CompiledConversion.compile(createMapMILE()));
+        c.put(UnitsLength.MILLIMETER, CompiledConversion.compile(createMapMILLIMETER()));
+        c.put(UnitsLength.NANOMETER, CompiledConversion.compile(createMapNANOMETER()));
+        c.put(UnitsLength.PARSEC, CompiledConversion.compile(createMapPARSEC()));
+        c.put(UnitsLength.PETAMETER, CompiledConversion.compile(createMapPETAMETER()));
+        c.put(UnitsLength.PICOMETER, CompiledConversion.compile(createMapPICOMETER()));
+        c.put(UnitsLength.POINT, CompiledConversion.compile(createMapPOINT()));
+        c.put(UnitsLength.TERAMETER, CompiledConversion.compile(createMapTERAMETER()));
+        c.put(UnitsLength.THOU, CompiledConversion.compile(createMapTHOU()));
+        c.put(UnitsLength.YARD, CompiledConversion.compile(createMapYARD()));
+        c.put(UnitsLength.YOCTOMETER, CompiledConversion.compile(createMapYOCTOMETER()));
+        c.put(UnitsLength.YOTTAMETER, CompiledConversion.compile(createMapYOTTAMETER()));
+        c.put(UnitsLength.ZEPTOMETER, CompiledConversion.compile(createMapZEPTOMETER()));
+        c.put(UnitsLength.ZETTAMETER, CompiledConversion.compile(createMapZETTAMETER()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -1388,6 +1387,40 @@ public class LengthI extends Length implements ModelBased {
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsLength from,
+            UnitsLength to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsLength, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -1439,17 +1472,16 @@ public class LengthI extends Length implements ModelBased {
            setUnit(value.getUnit());
         } else {
             UnitsLength targetUnit = UnitsLength.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
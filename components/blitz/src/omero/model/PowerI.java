@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -602,33 +601,33 @@ public class PowerI extends Power implements ModelBased {
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsPower, Map<UnitsPower, Conversion>> conversions;
+    private static final Map<UnitsPower, Map<UnitsPower, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsPower, Map<UnitsPower, Conversion>> c
-            = new EnumMap<UnitsPower, Map<UnitsPower, Conversion>>(UnitsPower.class);
-
-        c.put(UnitsPower.ATTOWATT, createMapATTOWATT());
-        c.put(UnitsPower.CENTIWATT, createMapCENTIWATT());
-        c.put(UnitsPower.DECAWATT, createMapDECAWATT());
-        c.put(UnitsPower.DECIWATT, createMapDECIWATT());
-        c.put(UnitsPower.EXAWATT, createMapEXAWATT());
-        c.put(UnitsPower.FEMTOWATT, createMapFEMTOWATT());
-        c.put(UnitsPower.GIGAWATT, createMapGIGAWATT());
-        c.put(UnitsPower.HECTOWATT, createMapHECTOWATT());
-        c.put(UnitsPower.KILOWATT, createMapKILOWATT());
-        c.put(UnitsPower.MEGAWATT, createMapMEGAWATT());
-        c.put(UnitsPower.MICROWATT, createMapMICROWATT());
-        c.put(UnitsPower.MILLIWATT, createMapMILLIWATT());
-        c.put(UnitsPower.NANOWATT, createMapNANOWATT());
-        c.put(UnitsPower.PETAWATT, createMapPETAWATT());
-        c.put(UnitsPower.PICOWATT, createMapPICOWATT());
-        c.put(UnitsPower.TERAWATT, createMapTERAWATT());
-        c.put(UnitsPower.WATT, createMapWATT());
-        c.put(UnitsPower.YOCTOWATT, createMapYOCTOWATT());
-        c.put(UnitsPower.YOTTAWATT, createMapYOTTAWATT());
-        c.put(UnitsPower.ZEPTOWATT, createMapZEPTOWATT());
-        c.put(UnitsPower.ZETTAWATT, createMapZETTAWATT());
+        Map<UnitsPower, Map<UnitsPower, CompiledConversion>> c
+            = new EnumMap<UnitsPower, Map<UnitsPower, CompiledConversion>>(UnitsPower.class);
+
+        c.put(UnitsPower.ATTOWATT, CompiledConversion.compile(createMapATTOWATT()));
+        c.put(UnitsPower.CENTIWATT, CompiledConversion.compile(createMapCENTIWATT()));
+        c.put(UnitsPower.DECAWATT, CompiledConversion.compile(createMapDECAWATT()));
+        c.put(UnitsPower.DECIWATT, CompiledConversion.compile(createMapDECIWATT()));
+        c.put(UnitsPower.EXAWATT, CompiledConversion.compile(createMapEXAWATT()));
+        c.put(UnitsPower.FEMTOWATT, CompiledConversion.compile(createMapFEMTOWATT()));
+        c.put(UnitsPower.GIGAWATT, CompiledConversion.compile(createMapGIGAWATT()));
+        c.put(UnitsPower.HECTOWATT, CompiledConversion.compile(createMapHECTOWATT()));
+        c.put(UnitsPower.KILOWATT, CompiledConversion.compile(createMapKILOWATT()));
+        c.put(UnitsPower.MEGAWATT, CompiledConversion.compile(createMapMEGAWATT()));
+        c.put(UnitsPower.MICROWATT, CompiledConversion.compile(createMapMICROWATT()));
+        c.put(UnitsPower.MILLIWATT, CompiledConversion.compile(createMapMILLIWATT()));
+        c.put(UnitsPower.NANOWATT, CompiledConversion.compile(createMapNANOWATT()));
+        c.put(UnitsPower.PETAWATT, CompiledConversion.compile(createMapPETAWATT()));
+        c.put(UnitsPower.PICOWATT, CompiledConversion.compile(createMapPICOWATT()));
+        c.put(UnitsPower.TERAWATT, CompiledConversion.compile(createMapTERAWATT()));
+        c.put(UnitsPower.WATT, CompiledConversion.compile(createMapWATT()));
+        c.put(UnitsPower.YOCTOWATT, CompiledConversion.compile(createMapYOCTOWATT()));
+        c.put(UnitsPower.YOTTAWATT, CompiledConversion.compile(createMapYOTTAWATT()));
+        c.put(UnitsPower.ZEPTOWATT, CompiledConversion.compile(createMapZEPTOWATT()));
+        c.put(UnitsPower.ZETTAWATT, CompiledConversion.compile(createMapZETTAWATT()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -726,6 +725,40 @@ public class PowerI extends Power implements ModelBased {
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsPower from,
+            UnitsPower to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsPower, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -777,17 +810,16 @@ public class PowerI extends Power implements ModelBased {
            setUnit(value.getUnit());
         } else {
             UnitsPower targetUnit = UnitsPower.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -1240,44 +1239,44 @@ public class PressureI extends Pressure implements ModelBased {
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsPressure, Map<UnitsPressure, Conversion>> conversions;
+    private static final Map<UnitsPressure, Map<UnitsPressure, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsPressure, Map<UnitsPressure, Conversion>> c
-            = new EnumMap<UnitsPressure, Map<UnitsPressure, Conversion>>(UnitsPressure.class);
-
-        c.put(UnitsPressure.ATMOSPHERE, createMapATMOSPHERE());
-        c.put(UnitsPressure.ATTOPASCAL, createMapATTOPASCAL());
-        c.put(UnitsPressure.BAR, createMapBAR());
-        c.put(UnitsPressure.CENTIBAR, createMapCENTIBAR());
-        c.put(UnitsPressure.CENTIPASCAL, createMapCENTIPASCAL());
-        c.put(UnitsPressure.DECAPASCAL, createMapDECAPASCAL());
-        c.put(UnitsPressure.DECIBAR, createMapDECIBAR());
-        c.put(UnitsPressure.DECIPASCAL, createMapDECIPASCAL());
-        c.put(UnitsPressure.EXAPASCAL, createMapEXAPASCAL());
-        c.put(UnitsPressure.FEMTOPASCAL, createMapFEMTOPASCAL());
-        c.put(UnitsPressure.GIGAPASCAL, createMapGIGAPASCAL());
-        c.put(UnitsPressure.HECTOPASCAL, createMapHECTOPASCAL());
-        c.put(UnitsPressure.KILOBAR, createMapKILOBAR());
-        c.put(UnitsPressure.KILOPASCAL, createMapKILOPASCAL());
-        c.put(UnitsPressure.MEGABAR, createMapMEGABAR());
-        c.put(UnitsPressure.MEGAPASCAL, createMapMEGAPASCAL());
-        c.put(UnitsPressure.MICROPASCAL, createMapMICROPASCAL());
-        c.put(UnitsPressure.MILLIBAR, createMapMILLIBAR());
-        c.put(UnitsPressure.MILLIPASCAL, createMapMILLIPASCAL());
-        c.put(UnitsPressure.MILLITORR, createMapMILLITORR());
-        c.put(UnitsPressure.MMHG, createMapMMHG());
-        c.put(UnitsPressure.NANOPASCAL, createMapNANOPASCAL());
-        c.put(UnitsPressure.PETAPASCAL, createMapPETAPASCAL());
-        c.put(UnitsPressure.PICOPASCAL, createMapPICOPASCAL());
-        c.put(UnitsPressure.PSI, createMapPSI());
-        c.put(UnitsPressure.PASCAL, createMapPASCAL());
-        c.put(UnitsPressure.TERAPASCAL, createMapTERAPASCAL());
-        c.put(UnitsPressure.TORR, createMapTORR());
-        c.put(UnitsPressure.YOCTOPASCAL, createMapYOCTOPASCAL());
-        c.put(UnitsPressure.YOTTAPASCAL, createMapYOTTAPASCAL());
-        c.put(UnitsPressure.ZEPTOPASCAL, createMapZEPTOPASCAL());
-        c.put(UnitsPressure.ZETTAPASCAL, createMapZETTAPASCAL());
+        Map<UnitsPressure, Map<UnitsPressure, CompiledConversion>> c
+            = new EnumMap<UnitsPressure, Map<UnitsPressure, CompiledConversion>>(UnitsPressure.class);
+
+        c.put(UnitsPressure.ATMOSPHERE, CompiledConversion.compile(createMapATMOSPHERE()));
+        c.put(UnitsPressure.ATTOPASCAL, CompiledConversion.compile(createMapATTOPASCAL()));
+        c.put(UnitsPressure.BAR, CompiledConversion.compile(createMapBAR()));
+        c.put(UnitsPressure.CENTIBAR, CompiledConversion.compile(createMapCENTIBAR()));
+        c.put(UnitsPressure.CENTIPASCAL, CompiledConversion.compile(createMapCENTIPASCAL()));
+        c.put(UnitsPressure.DECAPASCAL, CompiledConversion.compile(createMapDECAPASCAL()));
+        c.put(UnitsPressure.DECIBAR, CompiledConversion.compile(createMapDECIBAR()));
+        c.put(UnitsPressure.DECIPASCAL, CompiledConversion.compile(createMapDECIPASCAL()));
+        c.put(UnitsPressure.EXAPASCAL, CompiledConversion.compile(createMapEXAPASCAL()));
+        c.put(UnitsPressure.FEMTOPASCAL, CompiledConversion.compile(createMapFEMTOPASCAL()));
+        c.put(UnitsPressure.GIGAPASCAL, CompiledConversion.compile(createMapGIGAPASCAL()));
+        c.put(UnitsPressure.HECTOPASCAL, CompiledConversion.compile(createMapHECTOPASCAL()));
+        c.put(UnitsPressure.KILOBAR, CompiledConversion.compile(createMapKILOBAR()));
+        c.put(UnitsPressure.KILOPASCAL, CompiledConversion.compile(createMapKILOPASCAL()));
+        c.put(UnitsPressure.MEGABAR, CompiledConversion.compile(createMapMEGABAR()));
+        c.put(UnitsPressure.MEGAPASCAL, CompiledConversion.compile(createMapMEGAPASCAL()));
+        c.put(UnitsPressure.MICROPASCAL, CompiledConversion.compile(createMapMICROPASCAL()));
+        c.put(UnitsPressure.MILLIBAR, CompiledConversion.compile(createMapMILLIBAR()));
+        c.put(UnitsPressure.MILLIPASCAL, CompiledConversion.compile(createMapMILLIPASCAL()));
+        c.put(UnitsPressure.MILLITORR, CompiledConversion.compile(createMapMILLITORR()));
+        c.put(UnitsPressure.MMHG, CompiledConversion.compile(createMapMMHG()));
+        c.put(UnitsPressure.NANOPASCAL, CompiledConversion.compile(createMapNANOPASCAL()));
+        c.put(UnitsPressure.PETAPASCAL, CompiledConversion.compile(createMapPETAPASCAL()));
+        c.put(UnitsPressure.PICOPASCAL, CompiledConversion.compile(createMapPICOPASCAL()));
+        c.put(UnitsPressure.PSI, CompiledConversion.compile(createMapPSI()));
+        c.put(UnitsPressure.PASCAL, CompiledConversion.compile(createMapPASCAL()));
+        c.put(UnitsPressure.TERAPASCAL, CompiledConversion.compile(createMapTERAPASCAL()));
+        c.put(UnitsPressure.TORR, CompiledConversion.compile(createMapTORR()));
+        c.put(UnitsPressure.YOCTOPASCAL, CompiledConversion.compile(createMapYOCTOPASCAL()));
+        c.put(UnitsPressure.YOTTAPASCAL, CompiledConversion.compile(createMapYOTTAPASCAL()));
+        c.put(UnitsPressure.ZEPTOPASCAL, CompiledConversion.compile(createMapZEPTOPASCAL()));
+        c.put(UnitsPressure.ZETTAPASCAL, CompiledConversion.compile(createMapZETTAPASCAL()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -1386,6 +1385,40 @@ public class PressureI extends Pressure implements ModelBased {
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsPressure from,
+            UnitsPressure to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsPressure, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -1437,17 +1470,16 @@ public class PressureI extends Pressure implements ModelBased {
            setUnit(value.getUnit());
         } else {
             UnitsPressure targetUnit = UnitsPressure.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
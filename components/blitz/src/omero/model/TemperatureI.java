@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -92,16 +91,16 @@ public class TemperatureI extends Temperature implements ModelBased {
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsTemperature, Map<UnitsTemperature, Conversion>> conversions;
+    private static final Map<UnitsTemperature, Map<UnitsTemperature, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsTemperature, Map<UnitsTemperature, Conversion>> c
-            = new EnumMap<UnitsTemperature, Map<UnitsTemperature, Conversion>>(UnitsTemperature.class);
+        Map<UnitsTemperature, Map<UnitsTemperature, CompiledConversion>> c
+            = new EnumMap<UnitsTemperature, Map<UnitsTemperature, CompiledConversion>>(UnitsTemperature.class);
 
-        c.put(UnitsTemperature.CELSIUS, createMapCELSIUS());
-        c.put(UnitsTemperature.FAHRENHEIT, createMapFAHRENHEIT());
-        c.put(UnitsTemperature.KELVIN, createMapKELVIN());
-        c.put(UnitsTemperature.RANKINE, createMapRANKINE());
+        c.put(UnitsTemperature.CELSIUS, CompiledConversion.compile(createMapCELSIUS()));
+        c.put(UnitsTemperature.FAHRENHEIT, CompiledConversion.compile(createMapFAHRENHEIT()));
+        c.put(UnitsTemperature.KELVIN, CompiledConversion.compile(createMapKELVIN()));
+        c.put(UnitsTemperature.RANKINE, CompiledConversion.compile(createMapRANKINE()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -182,6 +181,40 @@ public class TemperatureI extends Temperature implements ModelBased {
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsTemperature from,
+            UnitsTemperature to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsTemperature, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -233,17 +266,16 @@ public class TemperatureI extends Temperature implements ModelBased {
            setUnit(value.getUnit());
         } else {
             UnitsTemperature targetUnit = UnitsTemperature.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
@@ -26,8 +26,6 @@ import static ome.model.units.Conversion.Pow;
 import static ome.model.units.Conversion.Rat;
 import static ome.model.units.Conversion.Sym;
 
-import java.math.BigDecimal;
-
 import java.util.Collections;
 import java.util.Map;
 import java.util.EnumMap;
@@ -35,6 +33,7 @@ import java.util.HashMap;
 
 import ome.model.ModelBased;
 import ome.model.units.BigResult;
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 import ome.units.unit.Unit;
 import ome.util.Filterable;
@@ -752,36 +751,36 @@ public class TimeI extends Time implements ModelBased {
         return Collections.unmodifiableMap(c);
     }
 
-    private static final Map<UnitsTime, Map<UnitsTime, Conversion>> conversions;
+    private static final Map<UnitsTime, Map<UnitsTime, CompiledConversion>> conversions;
     static {
 
-        Map<UnitsTime, Map<UnitsTime, Conversion>> c
-            = new EnumMap<UnitsTime, Map<UnitsTime, Conversion>>(UnitsTime.class);
-
-        c.put(UnitsTime.ATTOSECOND, createMapATTOSECOND());
-        c.put(UnitsTime.CENTISECOND, createMapCENTISECOND());
-        c.put(UnitsTime.DAY, createMapDAY());
-        c.put(UnitsTime.DECASECOND, createMapDECASECOND());
-        c.put(UnitsTime.DECISECOND, createMapDECISECOND());
-        c.put(UnitsTime.EXASECOND, createMapEXASECOND());
-        c.put(UnitsTime.FEMTOSECOND, createMapFEMTOSECOND());
-        c.put(UnitsTime.GIGASECOND, createMapGIGASECOND());
-        c.put(UnitsTime.HECTOSECOND, createMapHECTOSECOND());
-        c.put(UnitsTime.HOUR, createMapHOUR());
-        c.put(UnitsTime.KILOSECOND, createMapKILOSECOND());
-        c.put(UnitsTime.MEGASECOND, createMapMEGASECOND());
-        c.put(UnitsTime.MICROSECOND, createMapMICROSECOND());
-        c.put(UnitsTime.MILLISECOND, createMapMILLISECOND());
-        c.put(UnitsTime.MINUTE, createMapMINUTE());
-        c.put(UnitsTime.NANOSECOND, createMapNANOSECOND());
-        c.put(UnitsTime.PETASECOND, createMapPETASECOND());
-        c.put(UnitsTime.PICOSECOND, createMapPICOSECOND());
-        c.put(UnitsTime.SECOND, createMapSECOND());
-        c.put(UnitsTime.TERASECOND, createMapTERASECOND());
-        c.put(UnitsTime.YOCTOSECOND, createMapYOCTOSECOND());
-        c.put(UnitsTime.YOTTASECOND, createMapYOTTASECOND());
-        c.put(UnitsTime.ZEPTOSECOND, createMapZEPTOSECOND());
-        c.put(UnitsTime.ZETTASECOND, createMapZETTASECOND());
+        Map<UnitsTime, Map<UnitsTime, CompiledConversion>> c
+            = new EnumMap<UnitsTime, Map<UnitsTime, CompiledConversion>>(UnitsTime.class);
+
+        c.put(UnitsTime.ATTOSECOND, CompiledConversion.compile(createMapATTOSECOND()));
+        c.put(UnitsTime.CENTISECOND, CompiledConversion.compile(createMapCENTISECOND()));
+        c.put(UnitsTime.DAY, CompiledConversion.compile(createMapDAY()));
+        c.put(UnitsTime.DECASECOND, CompiledConversion.compile(createMapDECASECOND()));
+        c.put(UnitsTime.DECISECOND, CompiledConversion.compile(createMapDECISECOND()));
+        c.put(UnitsTime.EXASECOND, CompiledConversion.compile(createMapEXASECOND()));
+        c.put(UnitsTime.FEMTOSECOND, CompiledConversion.compile(createMapFEMTOSECOND()));
+        c.put(UnitsTime.GIGASECOND, CompiledConversion.compile(createMapGIGASECOND()));
+        c.put(UnitsTime.HECTOSECOND, CompiledConversion.compile(createMapHECTOSECOND()));
+        c.put(UnitsTime.HOUR, CompiledConversion.compile(createMapHOUR()));
+        c.put(UnitsTime.KILOSECOND, CompiledConversion.compile(createMapKILOSECOND()));
+        c.put(UnitsTime.MEGASECOND, CompiledConversion.compile(createMapMEGASECOND()));
+        c.put(UnitsTime.MICROSECOND, CompiledConversion.compile(createMapMICROSECOND()));
+        c.put(UnitsTime.MILLISECOND, CompiledConversion.compile(createMapMILLISECOND()));
+        c.put(UnitsTime.MINUTE, CompiledConversion.compile(createMapMINUTE()));
+        c.put(UnitsTime.NANOSECOND, CompiledConversion.compile(createMapNANOSECOND()));
+        c.put(UnitsTime.PETASECOND, CompiledConversion.compile(createMapPETASECOND()));
+        c.put(UnitsTime.PICOSECOND, CompiledConversion.compile(createMapPICOSECOND()));
+        c.put(UnitsTime.SECOND, CompiledConversion.compile(createMapSECOND()));
+        c.put(UnitsTime.TERASECOND, CompiledConversion.compile(createMapTERASECOND()));
+        c.put(UnitsTime.YOCTOSECOND, CompiledConversion.compile(createMapYOCTOSECOND()));
+        c.put(UnitsTime.YOTTASECOND, CompiledConversion.compile(createMapYOTTASECOND()));
+        c.put(UnitsTime.ZEPTOSECOND, CompiledConversion.compile(createMapZEPTOSECOND()));
+        c.put(UnitsTime.ZETTASECOND, CompiledConversion.compile(createMapZETTASECOND()));
         conversions = Collections.unmodifiableMap(c);
     }
 
@@ -882,6 +881,40 @@ public class TimeI extends Time implements ModelBased {
    }
 
 
+   /**
+    * Converts the given values in bulk. The conversion is looked up once
+    * and no intermediate objects are created per value.
+    *
+    * @param values the values to convert, expressed in the source unit.
+    *    The array is not modified.
+    * @param from the unit of the values. non-null.
+    * @param to the desired unit. non-null.
+    * @return a new array holding the converted values.
+    * @throws BigResult if a converted value does not fit in a double.
+    */
+    public static double[] convert(double[] values, UnitsTime from,
+            UnitsTime to) throws BigResult {
+        double[] converted = new double[values.length];
+        if (from == to) {
+            System.arraycopy(values, 0, converted, 0, values.length);
+            return converted;
+        }
+        Map<UnitsTime, CompiledConversion> targets = conversions.get(from);
+        CompiledConversion conversion = targets == null ? null : targets.get(to);
+        if (conversion == null) {
+            throw new RuntimeException(String.format(
+                "%s cannot be converted to %s", from, to));
+        }
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = conversion.convertToDouble(values[i]);
+            if (Double.isInfinite(converted[i])) {
+                throw new BigResult(conversion.convert(values[i]),
+                        "Failed to convert " + from + ":" + to);
+            }
+        }
+        return converted;
+    }
+
     //
     // REGULAR ICE CLASS
     //
@@ -933,17 +966,16 @@ public class TimeI extends Time implements ModelBased {
            setUnit(value.getUnit());
         } else {
             UnitsTime targetUnit = UnitsTime.valueOf(target);
-            Conversion conversion = conversions.get(value.getUnit()).get(targetUnit);
+            CompiledConversion conversion = conversions.get(value.getUnit()).get(targetUnit);
             if (conversion == null) {
                 throw new RuntimeException(String.format(
                     "%f %s cannot be converted to %s",
                         value.getValue(), value.getUnit(), target));
             }
             double orig = value.getValue();
-            BigDecimal big = conversion.convert(orig);
-            double converted = big.doubleValue();
+            double converted = conversion.convertToDouble(orig);
             if (Double.isInfinite(converted)) {
-                throw new BigResult(big,
+                throw new BigResult(conversion.convert(orig),
                         "Failed to convert " + source + ":" + target);
             }
 
@@ -375,7 +375,13 @@ public class IceMapper extends ome.util.ModelMapper implements
     public static Class<? extends IObject> omeroClass(String className,
             boolean strict) throws ApiUsageException {
 
-        Class k = _class(className);
+        // Model types are looked up in the generated table.
+        Class k = className == null ? null : IceMap.NAMES.get(className);
+        if (k != null) {
+            return k;
+        }
+
+        k = _class(className);
 
         // If that didn't work, try to prefix with "omero.model"
         if (k == null) {
@@ -1098,6 +1104,19 @@ public class IceMapper extends ome.util.ModelMapper implements
         return IceMap.OMEtoOMERO;
     }
 
+    /**
+     * Uses the generated {@link IceMap#CREATORS} rather than reflection
+     * when possible.
+     */
+    @Override
+    protected Object createTarget(Class targetType) throws Exception {
+        IceMap.Creator creator = IceMap.CREATORS.get(targetType);
+        if (creator != null) {
+            return creator.create();
+        }
+        return super.createTarget(targetType);
+    }
+
     private void fillTarget(Filterable source, ModelBased target) {
         if (source != null && target != null) {
             target.copyObject(source, this);
@@ -1137,6 +1156,7 @@ public class IceMapper extends ome.util.ModelMapper implements
     protected boolean isPrimitive(Class<?> p) {
         if (p.equals(byte.class) || p.equals(byte[].class)
                 || p.equals(int.class) || p.equals(int[].class)
+                || p.equals(int[][].class)
                 || p.equals(long.class) || p.equals(long[].class)
                 || p.equals(double.class) || p.equals(double[].class)
                 || p.equals(float.class) || p.equals(float[].class)
@@ -32,6 +32,7 @@ import ome.services.blitz.impl.commands.SaveI;
 import ome.system.EventContext;
 import omero.api.SaveRsp;
 import omero.cmd.DoAllRsp;
+import omero.cmd.ERR;
 import omero.cmd.HandleI.Cancel;
 import omero.cmd.Helper;
 import omero.cmd.IRequest;
@@ -138,6 +139,44 @@ public class DoAllITest extends AbstractGraphTest {
                 saveRsp.obj.getDetails().getGroup().getId().getValue());
     }
 
+    @Test
+    public void testParallelSteps() throws Exception {
+        Request cs1 = new CheckSteps("1", 0, 1, 2, 3, 4);
+        Request cs2 = new CheckSteps("2", 0);
+        Request cs3 = new CheckSteps("3", 0, 1, 2);
+        Request cs4 = new CheckSteps("4", 0, 1, 2, 3, 4, 5, 6, 7, 8);
+        Request cs5 = new CheckSteps("5", 0);
+        DoAllI all = new DoAllI(ctx);
+        all.requests = Arrays.asList(cs1, cs2, cs3, cs4, cs5);
+        all.parallel = true;
+
+        _HandleTie handle = submit(all);
+        block(handle, 5, 1000);
+        DoAllRsp rsp = (DoAllRsp) assertSuccess(handle);
+        assertEquals(5, rsp.status.size());
+        assertEquals(9, rsp.status.get(3).steps);
+        assertFalse(rsp.status.get(3).flags.contains(State.FAILURE));
+    }
+
+    @Test
+    public void testParallelFailureIsIsolated() throws Exception {
+        Data data = new Data(user);
+        Request bad = new CheckSteps("bad", 1); // Fails on step 0
+        Request save = addImageToNewDataset(-1, data.i);
+        DoAllI all = new DoAllI(ctx);
+        all.requests = Arrays.asList(bad, save);
+        all.parallel = true;
+
+        _HandleTie handle = submit(all);
+        block(handle, 5, 1000);
+        DoAllRsp rsp = (DoAllRsp) assertSuccess(handle);
+        assertTrue(rsp.responses.get(0) instanceof ERR);
+        assertTrue(rsp.status.get(0).flags.contains(State.FAILURE));
+        // The save was committed regardless.
+        assertSuccess(rsp.responses.get(1));
+        assertFalse(rsp.status.get(1).flags.contains(State.FAILURE));
+    }
+
     class CheckSteps extends Request implements IRequest {
 
         private static final long serialVersionUID = 1L;
@@ -62,6 +62,7 @@ import omero.model.ProjectDatasetLinkI;
 import omero.model.ProjectI;
 import omero.model.ReverseIntensityContextI;
 import omero.sys.ParametersI;
+import omero.util.IceMap;
 import omero.util.IceMapper;
 
 import org.testng.annotations.BeforeMethod;
@@ -325,4 +326,28 @@ public class AdapterTest extends TestCase {
         EventI ei = (EventI) mapper.map(e);
         assertNotNull(ei.getTime());
     }
+
+    @Test
+    public void testGeneratedCreatorsAndNames() throws Exception {
+        assertTrue(IceMap.CREATORS.get(ImageI.class).create() instanceof ImageI);
+        for (Object target : IceMap.OMEtoOMERO.values()) {
+            assertNotNull(String.valueOf(target),
+                    IceMap.CREATORS.get(target));
+        }
+        assertEquals(Image.class, IceMapper.omeroClass("Image", true));
+        assertEquals(Image.class, IceMapper.omeroClass("omero.model.ImageI", true));
+        assertEquals(Image.class, IceMapper.omeroClass("ome.model.core.Image", true));
+        assertNull(IceMapper.omeroClass("NotAModelClass", false));
+    }
+
+    @Test
+    public void testObjectArraysAreMapped() throws Exception {
+        IceMapper mapper = new IceMapper();
+        String[] source = new String[] {"a", "b"};
+        Object target = mapper.findTarget(source);
+        assertEquals(String[].class, target.getClass());
+        assertNotSame(source, target);
+        assertTrue(Arrays.equals(source, (String[]) target));
+        assertSame(target, mapper.findTarget(source));
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.blitz.test.utests;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ome.services.blitz.repo.ChecksumVerifier;
+import ome.services.blitz.repo.path.ServerFilePathTransformer;
+import ome.services.util.Executor;
+import ome.util.SqlAction;
+import ome.util.SqlAction.RepoFileHash;
+import ome.util.checksum.ChecksumProviderFactory;
+import ome.util.checksum.ChecksumProviderFactoryImpl;
+import ome.util.checksum.ChecksumType;
+import omero.model.enums.ChecksumAlgorithmSHA1160;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the background verification of the hashes of the files of a
+ * repository by {@link ChecksumVerifier}, against an in-memory
+ * configuration table.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = { "fs" })
+public class ChecksumVerifierTest {
+
+    private static final String REPO = "repo-uuid";
+
+    private static final String KEY = ChecksumVerifier.PREFIX + REPO;
+
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - 3600000;
+
+    private final ChecksumProviderFactory factory = new ChecksumProviderFactoryImpl();
+
+    /** The configuration table. */
+    private final Map<String, String> config = new TreeMap<String, String>();
+
+    /** The files of the repository, by id. */
+    private final SortedMap<Long, RepoFileHash> files = new TreeMap<Long, RepoFileHash>();
+
+    /** The ids after which files were listed. */
+    private final List<Long> listed = new ArrayList<Long>();
+
+    private File root;
+
+    private ServerFilePathTransformer serverPaths;
+
+    private Executor executor;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        config.clear();
+        files.clear();
+        listed.clear();
+        root = File.createTempFile("verifier", "");
+        root.delete();
+        root.mkdir();
+        serverPaths = new ServerFilePathTransformer();
+        serverPaths.setBaseDirFile(root);
+
+        final SqlAction sql = (SqlAction) Proxy.newProxyInstance(
+                SqlAction.class.getClassLoader(),
+                new Class<?>[] { SqlAction.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        return sql(method.getName(), args);
+                    }
+                });
+        executor = (Executor) Proxy.newProxyInstance(
+                Executor.class.getClassLoader(),
+                new Class<?>[] { Executor.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        Assert.assertEquals(method.getName(), "executeSql");
+                        return ((Executor.SqlWork) args[0]).doWork(sql);
+                    }
+                });
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    private Object sql(String method, Object[] args) {
+        if ("configValuesByPrefix".equals(method)) {
+            final Map<String, String> values = new TreeMap<String, String>();
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                if (entry.getKey().startsWith((String) args[0])) {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return values;
+        } else if ("updateOrInsertConfigValue".equals(method)) {
+            config.put((String) args[0], (String) args[1]);
+            return 1;
+        } else if ("delConfigValue".equals(method)) {
+            return config.remove(args[0]) == null ? 0 : 1;
+        } else if ("findRepoFilesToVerify".equals(method)) {
+            Assert.assertEquals(args[0], REPO);
+            listed.add((Long) args[1]);
+            final List<RepoFileHash> batch = new ArrayList<RepoFileHash>();
+            for (RepoFileHash file : files.tailMap((Long) args[1] + 1).values()) {
+                if (batch.size() == (Integer) args[2]) {
+                    break;
+                }
+                batch.add(file);
+            }
+            return batch;
+        }
+        throw new UnsupportedOperationException(method);
+    }
+
+    /** Adds a file to the repository, hashed and modified an hour ago. */
+    private File addFile(long id, String content) throws IOException {
+        final File file = new File(new File(root, "user_1"), "file" + id);
+        FileUtils.writeStringToFile(file, content);
+        file.setLastModified(AN_HOUR_AGO);
+        final RepoFileHash row = new RepoFileHash();
+        row.id = id;
+        row.path = "user_1/";
+        row.name = file.getName();
+        row.size = file.length();
+        row.hasher = ChecksumAlgorithmSHA1160.value;
+        row.hash = factory.getProvider(ChecksumType.SHA1)
+                .putFile(file.getPath()).checksumAsString();
+        files.put(id, row);
+        return file;
+    }
+
+    private ChecksumVerifier verifier(int batchSize) {
+        return new ChecksumVerifier(null, executor, 2, 0, batchSize);
+    }
+
+    private boolean verify(int batchSize) {
+        return verifier(batchSize).verify(REPO, serverPaths, factory);
+    }
+
+    public void testMismatchRecorded() throws IOException {
+        addFile(1, "one");
+        final File two = addFile(2, "two");
+        addFile(3, "three");
+        FileUtils.writeStringToFile(two, "TWO");
+        Assert.assertTrue(verify(2));
+        Assert.assertEquals(listed.size(), 3);
+        Assert.assertTrue(config.containsKey(KEY + ".mismatch.2"));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.1"));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.3"));
+        Assert.assertEquals(config.get(KEY + ".verified_id"), "3");
+        Assert.assertFalse(config.containsKey(KEY + ".cursor"));
+        Assert.assertFalse(config.containsKey(KEY + ".pass_start"));
+    }
+
+    public void testMissingFile() throws IOException {
+        addFile(1, "one").delete();
+        Assert.assertTrue(verify(10));
+        Assert.assertTrue(config.get(KEY + ".mismatch.1").startsWith("missing"));
+    }
+
+    public void testUnchangedSkipped() throws IOException {
+        final File one = addFile(1, "one");
+        final File two = addFile(2, "two");
+        final File three = addFile(3, "three");
+        Assert.assertTrue(verify(10));
+        Assert.assertEquals(config.keySet().toString(), "[" + KEY
+                + ".verified_id, " + KEY + ".verified_start]");
+
+        // Not modified since the pass started: not hashed again.
+        FileUtils.writeStringToFile(one, "One");
+        one.setLastModified(AN_HOUR_AGO);
+        // Modified, or resized, since: hashed again.
+        FileUtils.writeStringToFile(two, "Two");
+        two.setLastModified(System.currentTimeMillis() + 60000);
+        FileUtils.writeStringToFile(three, "three!");
+        three.setLastModified(AN_HOUR_AGO);
+        addFile(4, "four");
+        Assert.assertTrue(verify(10));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.1"));
+        Assert.assertTrue(config.containsKey(KEY + ".mismatch.2"));
+        Assert.assertTrue(config.containsKey(KEY + ".mismatch.3"));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.4"));
+
+        // Mismatched files are always hashed again, until fixed.
+        FileUtils.writeStringToFile(two, "two");
+        two.setLastModified(AN_HOUR_AGO);
+        Assert.assertTrue(verify(10));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.2"));
+        Assert.assertTrue(config.containsKey(KEY + ".mismatch.3"));
+    }
+
+    public void testResume() throws IOException {
+        final File one = addFile(1, "one");
+        addFile(2, "two");
+        final File three = addFile(3, "three");
+        FileUtils.writeStringToFile(one, "ONE");
+        FileUtils.writeStringToFile(three, "THREE");
+        // As left by a pass stopped after the first batch.
+        config.put(KEY + ".cursor", "1");
+        config.put(KEY + ".pass_start", Long.toString(System.currentTimeMillis()));
+        Assert.assertTrue(verify(1));
+        Assert.assertEquals(listed.get(0), Long.valueOf(1));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.1"));
+        Assert.assertTrue(config.containsKey(KEY + ".mismatch.3"));
+    }
+
+    public void testDeletedMismatchForgotten() throws IOException {
+        addFile(1, "one");
+        FileUtils.writeStringToFile(addFile(2, "two"), "TWO");
+        Assert.assertTrue(verify(10));
+        Assert.assertTrue(config.containsKey(KEY + ".mismatch.2"));
+        files.remove(2L);
+        Assert.assertTrue(verify(10));
+        Assert.assertFalse(config.containsKey(KEY + ".mismatch.2"));
+    }
+
+    public void testStopped() throws IOException {
+        addFile(1, "one");
+        final ChecksumVerifier verifier = verifier(10);
+        verifier.stop();
+        Assert.assertFalse(verifier.verify(REPO, serverPaths, factory));
+        Assert.assertFalse(config.containsKey(KEY + ".verified_id"));
+    }
+
+    /** With no threads, the default, nothing is listed nor read. */
+    public void testDisabled() throws IOException {
+        FileUtils.writeStringToFile(addFile(1, "one"), "ONE");
+        new ChecksumVerifier(null, executor, 0, 0, 10).run();
+        Assert.assertTrue(listed.isEmpty());
+        Assert.assertTrue(config.isEmpty());
+    }
+
+}
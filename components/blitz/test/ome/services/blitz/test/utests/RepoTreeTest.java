@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.blitz.test.utests;
+
+import java.util.Collections;
+import java.util.Map;
+
+import ome.services.blitz.repo.PublicRepositoryI;
+import ome.services.blitz.repo.RepoTree;
+import omero.RLong;
+import omero.RMap;
+import omero.RString;
+import omero.RType;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the nesting and the paging of the files listed by
+ * {@link PublicRepositoryI#treeList(String, Ice.Current)}.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = { "fs" })
+public class RepoTreeTest {
+
+    private static final String DIR = PublicRepositoryI.DIRECTORY_MIMETYPE;
+
+    private static final int DEPTH = 50;
+
+    private static final int FILES = 3;
+
+    /**
+     * A chain of {@link #DEPTH} directories below <code>user_1/</code>,
+     * each containing {@link #FILES} files, added in reverse order.
+     */
+    private RepoTree deepTree() {
+        final RepoTree tree = new RepoTree("user_1/");
+        long id = 1;
+        for (int level = DEPTH - 1; level >= 0; level--) {
+            final String path = path(level);
+            for (int i = FILES - 1; i >= 0; i--) {
+                tree.add(id++, path, "file" + i + ".txt", "text/plain", 10L);
+            }
+            tree.add(id++, path, "dir" + level, DIR, null);
+        }
+        return tree;
+    }
+
+    /** The path of the files of the given level. */
+    private static String path(int level) {
+        final StringBuilder path = new StringBuilder("user_1/");
+        for (int i = 0; i < level; i++) {
+            path.append("dir").append(i).append('/');
+        }
+        return path.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, RType> get(RMap map, String... names) {
+        Map<String, RType> value = map.getValue();
+        for (String name : names) {
+            value = ((RMap) value.get(name)).getValue();
+        }
+        return value;
+    }
+
+    /** Descends into the directories of the chain, returning the deepest. */
+    private static int depth(RMap files) {
+        int depth = 0;
+        Map<String, RType> value = files.getValue();
+        while (value.containsKey("dir" + depth)) {
+            value = ((RMap) ((RMap) value.get("dir" + depth)).get("files"))
+                    .getValue();
+            depth++;
+        }
+        return depth;
+    }
+
+    public void testAll() {
+        final RepoTree tree = deepTree();
+        Assert.assertEquals(tree.size(), DEPTH * (FILES + 1));
+        final RMap files = tree.files(0, -1);
+        Assert.assertEquals(depth(files), DEPTH);
+        Assert.assertEquals(files.getValue().size(), FILES + 1);
+        final Map<String, RType> file = get(files, "dir0", "files", "dir1",
+                "files", "file2.txt");
+        Assert.assertEquals(((RLong) file.get("size")).getValue(), 10L);
+        Assert.assertFalse(file.containsKey("files"));
+        Assert.assertFalse(get(files, "dir0").containsKey("size"));
+    }
+
+    public void testPage() {
+        final RepoTree tree = deepTree();
+        // The files are ordered by path, hence level by level here.
+        final RMap files = tree.files(2 * (FILES + 1), FILES + 1);
+        // The page is the content of dir1, listed within its ancestors.
+        Assert.assertEquals(files.getValue().size(), 1);
+        final Map<String, RType> dir1 = get(files, "dir0", "files", "dir1");
+        Assert.assertEquals(((RString) dir1.get("mimetype")).getValue(), DIR);
+        Assert.assertEquals(get(files, "dir0", "files").size(), 1);
+        Assert.assertEquals(get(files, "dir0", "files", "dir1", "files").size(),
+                FILES + 1);
+        Assert.assertTrue(get(files, "dir0", "files", "dir1", "files", "dir2",
+                "files").isEmpty());
+        Assert.assertTrue(tree.files(DEPTH * (FILES + 1), 10).getValue().isEmpty());
+    }
+
+    /** The files of an unreadable directory are not returned. */
+    public void testMissingDirectory() {
+        final RepoTree tree = new RepoTree("user_1/");
+        tree.add(1, "user_1/", "a.txt", "text/plain", 1L);
+        tree.add(2, "user_1/hidden/", "b.txt", "text/plain", 1L);
+        tree.add(3, "user_1/hidden/sub/", "c.txt", "text/plain", 1L);
+        final RMap files = tree.files(0, -1);
+        Assert.assertEquals(files.getValue().keySet(),
+                Collections.singleton("a.txt"));
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.roi.bench;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import ome.services.roi.LabelMasks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the creation of masks from synthetic label images of
+ * discs, as produced by a nucleus segmentation, compared to
+ * the previous pixel by pixel approach of {@code IRoi.uploadMask}.
+ * Not run as part of the test suite, start it via {@link #main(String[])}.
+ * @since 5.4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LabelMasksBenchmark {
+
+    @Param({"1024", "4096"})
+    public int size;
+
+    @Param({"100", "5000"})
+    public int labels;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        image = new BufferedImage(size, size, BufferedImage.TYPE_USHORT_GRAY);
+        final WritableRaster raster = image.getRaster();
+        final Random random = new Random(42);
+        final int radius = Math.max(2,
+                (int) (size / Math.sqrt(labels) / 3));
+        for (int label = 1; label <= labels; label++) {
+            final int cx = random.nextInt(size);
+            final int cy = random.nextInt(size);
+            for (int y = Math.max(0, cy - radius);
+                    y < Math.min(size, cy + radius); y++) {
+                for (int x = Math.max(0, cx - radius);
+                        x < Math.min(size, cx + radius); x++) {
+                    final int dx = x - cx, dy = y - cy;
+                    if (dx * dx + dy * dy < radius * radius) {
+                        raster.setSample(x, y, 0, label);
+                    }
+                }
+            }
+        }
+    }
+
+    /** One mask per label. */
+    @Benchmark
+    public Object labels() {
+        return new LabelMasks(false).scan(image, 0, 0);
+    }
+
+    /** One mask per connected component of each label. */
+    @Benchmark
+    public Object components() {
+        return new LabelMasks(true).scan(image, 0, 0);
+    }
+
+    /**
+     * The previous approach: reads each pixel via {@link BufferedImage#getRGB}
+     * column by column and keeps a set of points per colour, whose bounding
+     * box is then packed into bits. Note that {@link BufferedImage#getRGB}
+     * reduces the labels to 8-bit grey levels, merging some of them.
+     */
+    @Benchmark
+    public Object pixelByPixel() {
+        final Map<Integer, Set<Point>> map = new HashMap<Integer, Set<Point>>();
+        final int black = java.awt.Color.black.getRGB();
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                final int value = image.getRGB(x, y);
+                if (value == black) {
+                    continue;
+                }
+                Set<Point> points = map.get(value);
+                if (points == null) {
+                    points = new HashSet<Point>();
+                    map.put(value, points);
+                }
+                points.add(new Point(x, y));
+            }
+        }
+        final Map<Integer, byte[]> masks = new HashMap<Integer, byte[]>();
+        for (Map.Entry<Integer, Set<Point>> e : map.entrySet()) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            int maxX = -1, maxY = -1;
+            for (Point p : e.getValue()) {
+                minX = Math.min(minX, p.x);
+                minY = Math.min(minY, p.y);
+                maxX = Math.max(maxX, p.x);
+                maxY = Math.max(maxY, p.y);
+            }
+            final int w = maxX - minX + 1;
+            final byte[] data = new byte[(w * (maxY - minY + 1) + 7) / 8];
+            int offset = 0;
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++, offset++) {
+                    if (e.getValue().contains(new Point(x, y))) {
+                        data[offset / 8] |= 0x80 >>> (offset % 8);
+                    }
+                }
+            }
+            masks.put(e.getKey(), data);
+        }
+        return masks;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LabelMasksBenchmark.class.getSimpleName())
+                .forks(1).build()).run();
+    }
+}
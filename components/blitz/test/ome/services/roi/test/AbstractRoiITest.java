@@ -16,10 +16,15 @@ import ome.services.blitz.impl.RoiI;
 import ome.services.blitz.test.AbstractServantTest;
 import ome.services.roi.GeomTool;
 import ome.util.SqlAction;
+import omero.api.AMD_IRoi_findByImage;
+import omero.api.AMD_IRoi_findShapesByImages;
+import omero.api.AMD_IRoi_findShapesByPlate;
 import omero.api.AMD_IRoi_getRoiMeasurements;
 import omero.api.AMD_IRoi_getMeasuredRoisMap;
 import omero.api.RoiOptions;
 import omero.api.RoiResult;
+import omero.api.ShapeBatch;
+import omero.api.ShapeBatchOptions;
 import omero.model.Annotation;
 import omero.model.FileAnnotation;
 import omero.model.Image;
@@ -95,6 +100,50 @@ public class AbstractRoiITest extends AbstractServantTest {
         return (Map<Long, RoiResult>) rv.rv;
     }
 
+    protected RoiResult assertFindByImage(long imageId) throws Exception {
+        final RV rv = new RV();
+        user_roisvc.findByImage_async(new AMD_IRoi_findByImage(){
+            public void ice_exception(Exception ex) {
+                rv.ex = ex;
+            }
+            public void ice_response(RoiResult __ret) {
+                rv.rv = __ret;
+            }}, imageId, new RoiOptions(), current("findByImage"));
+
+        rv.assertPassed();
+        return (RoiResult) rv.rv;
+    }
+
+    protected ShapeBatch assertFindShapesByImages(List<Long> imageIds,
+            ShapeBatchOptions opts) throws Exception {
+        final RV rv = new RV();
+        user_roisvc.findShapesByImages_async(new AMD_IRoi_findShapesByImages(){
+            public void ice_exception(Exception ex) {
+                rv.ex = ex;
+            }
+            public void ice_response(ShapeBatch __ret) {
+                rv.rv = __ret;
+            }}, imageIds, opts, current("findShapesByImages"));
+
+        rv.assertPassed();
+        return (ShapeBatch) rv.rv;
+    }
+
+    protected ShapeBatch assertFindShapesByPlate(long plateId,
+            ShapeBatchOptions opts) throws Exception {
+        final RV rv = new RV();
+        user_roisvc.findShapesByPlate_async(new AMD_IRoi_findShapesByPlate(){
+            public void ice_exception(Exception ex) {
+                rv.ex = ex;
+            }
+            public void ice_response(ShapeBatch __ret) {
+                rv.rv = __ret;
+            }}, plateId, opts, current("findShapesByPlate"));
+
+        rv.assertPassed();
+        return (ShapeBatch) rv.rv;
+    }
+
     //
     // helpers
     //
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.roi.test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import ome.model.roi.Mask;
+import ome.services.roi.LabelMasks;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the creation of masks from label images.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = { "rois" })
+public class LabelMasksUnitTest {
+
+    /** Returns if the pixel at (x, y) of the mask is set. */
+    private static boolean isSet(Mask mask, int x, int y) {
+        final int w = mask.getWidth().intValue();
+        final int bit = (y - mask.getY().intValue()) * w
+                + x - mask.getX().intValue();
+        return (mask.getBytes()[bit / 8] & (0x80 >>> (bit % 8))) != 0;
+    }
+
+    private static void assertBox(Mask mask, int x, int y, int w, int h) {
+        Assert.assertEquals(mask.getX(), (double) x);
+        Assert.assertEquals(mask.getY(), (double) y);
+        Assert.assertEquals(mask.getWidth(), (double) w);
+        Assert.assertEquals(mask.getHeight(), (double) h);
+        Assert.assertEquals(mask.getBytes().length, (w * h + 7) / 8);
+    }
+
+    /** Two labels, the first made of two disjoint squares. */
+    private static BufferedImage labels() {
+        final BufferedImage image =
+                new BufferedImage(20, 10, BufferedImage.TYPE_USHORT_GRAY);
+        for (int y = 1; y < 4; y++) {
+            for (int x = 1; x < 4; x++) {
+                image.getRaster().setSample(x, y, 0, 1000);
+                image.getRaster().setSample(x + 10, y + 5, 0, 1000);
+            }
+        }
+        // A diagonal, 8-connected but not 4-connected.
+        for (int i = 0; i < 5; i++) {
+            image.getRaster().setSample(5 + i, 2 + i, 0, 1001);
+        }
+        return image;
+    }
+
+    @Test
+    public void testOneMaskPerLabel() {
+        final List<Mask> masks = new LabelMasks(false).scan(labels(), 2, 3);
+        Assert.assertEquals(masks.size(), 2);
+        final Mask squares = masks.get(0);
+        assertBox(squares, 1, 1, 13, 8);
+        Assert.assertTrue(isSet(squares, 1, 1));
+        Assert.assertTrue(isSet(squares, 13, 8));
+        Assert.assertFalse(isSet(squares, 4, 1));
+        Assert.assertFalse(isSet(squares, 1, 8));
+        Assert.assertEquals(squares.getTheZ(), Integer.valueOf(2));
+        Assert.assertEquals(squares.getTheT(), Integer.valueOf(3));
+        Assert.assertTrue(squares.getLocked());
+        final Mask diagonal = masks.get(1);
+        assertBox(diagonal, 5, 2, 5, 5);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(isSet(diagonal, 5 + i, 2 + i));
+            if (i > 0) {
+                Assert.assertFalse(isSet(diagonal, 5 + i, 1 + i));
+            }
+        }
+    }
+
+    @Test
+    public void testConnectedComponents() {
+        final List<Mask> masks = new LabelMasks(true).scan(labels(), 0, 0);
+        Assert.assertEquals(masks.size(), 3);
+        assertBox(masks.get(0), 1, 1, 3, 3);
+        assertBox(masks.get(1), 5, 2, 5, 5);
+        assertBox(masks.get(2), 11, 6, 3, 3);
+        for (int y = 1; y < 4; y++) {
+            for (int x = 1; x < 4; x++) {
+                Assert.assertTrue(isSet(masks.get(0), x, y));
+                Assert.assertTrue(isSet(masks.get(2), x + 10, y + 5));
+            }
+        }
+    }
+
+    /** A U shape whose arms only join on its last row. */
+    @Test
+    public void testComponentsJoinedLater() {
+        final BufferedImage image =
+                new BufferedImage(5, 4, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 4; y++) {
+            image.getRaster().setSample(0, y, 0, 7);
+            image.getRaster().setSample(4, y, 0, 7);
+        }
+        for (int x = 0; x < 5; x++) {
+            image.getRaster().setSample(x, 3, 0, 7);
+        }
+        final List<Mask> masks = new LabelMasks(true).scan(image, 0, 0);
+        Assert.assertEquals(masks.size(), 1);
+        assertBox(masks.get(0), 0, 0, 5, 4);
+        Assert.assertFalse(isSet(masks.get(0), 2, 0));
+        Assert.assertTrue(isSet(masks.get(0), 2, 3));
+    }
+
+    @Test
+    public void testColourImage() throws IOException {
+        final BufferedImage image =
+                new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(2, 3, Color.red.getRGB());
+        image.setRGB(3, 3, Color.red.getRGB());
+        image.setRGB(6, 7, Color.green.getRGB());
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        final List<Mask> masks =
+                new LabelMasks(false).read(png.toByteArray(), 0, 0);
+        Assert.assertEquals(masks.size(), 2);
+        assertBox(masks.get(0), 2, 3, 2, 1);
+        assertBox(masks.get(1), 6, 7, 1, 1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUnsupportedFormat() throws IOException {
+        new LabelMasks(false).read(new byte[] { 1, 2, 3 }, 0, 0);
+    }
+
+}
@@ -5,13 +5,19 @@
 
 package ome.services.roi.test;
 
+import static omero.rtypes.rint;
 import static omero.rtypes.rstring;
 import static omero.rtypes.rtime;
 import static omero.rtypes.rlong;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
+import omero.api.ShapeBatch;
+import omero.api.ShapeBatchOptions;
 import omero.constants.namespaces.NSMEASUREMENT;
 import omero.model.FileAnnotation;
 import omero.model.FileAnnotationI;
@@ -84,7 +90,51 @@ public class RoiPerformanceTest extends AbstractRoiITest {
         // pass
     }
 
-    
+    @Test
+    public void testFindShapesInBatches() throws Exception {
+        List<Long> imageIds = new ArrayList<Long>();
+        int count = 0;
+        for (int image = 0; image < 3; image++) {
+            setupImage();
+            imageIds.add(i.getId().getValue());
+            for (int roi = 0; roi < 5; roi++) {
+                count += createRoi(i, "RoiPerformanceTest",
+                        geomTool.random(10).toArray(new Shape[0]))
+                        .sizeOfShapes();
+            }
+        }
+
+        StopWatch watch = new Slf4JStopWatch();
+        for (Long imageId : imageIds) {
+            assertFindByImage(imageId);
+        }
+        watch.lap("roi.findByImage." + count);
+
+        ShapeBatchOptions opts = new ShapeBatchOptions();
+        opts.limit = rint(7);
+        opts.geometryOnly = true;
+        Set<Long> found = new HashSet<Long>();
+        long last = -1;
+        ShapeBatch batch;
+        do {
+            batch = assertFindShapesByImages(imageIds, opts);
+            assertTrue(batch.shapes.size() <= 7);
+            for (Shape shape : batch.shapes) {
+                long id = shape.getId().getValue();
+                assertTrue(id > last);
+                last = id;
+                found.add(id);
+                assertTrue(imageIds.contains(shape.getRoi().getImage().getId()
+                        .getValue()));
+                assertNull(shape.getStrokeColor());
+                assertNull(shape.getFontFamily());
+            }
+            opts.after = batch.next;
+        } while (batch.next != null);
+        watch.stop("roi.findShapesByImages." + count);
+        assertEquals(count, found.size());
+    }
+
     @Test
     public void testMeasurements() throws Exception {
         setupImage();
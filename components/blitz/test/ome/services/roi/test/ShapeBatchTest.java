@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.roi.test;
+
+import static omero.rtypes.rint;
+import static omero.rtypes.rstring;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import omero.api.ShapeBatch;
+import omero.api.ShapeBatchOptions;
+import omero.model.Image;
+import omero.model.ImageI;
+import omero.model.Plate;
+import omero.model.PlateI;
+import omero.model.Roi;
+import omero.model.Shape;
+import omero.model.Well;
+import omero.model.WellI;
+import omero.model.WellSample;
+import omero.model.WellSampleI;
+
+import org.testng.annotations.Test;
+
+/**
+ * Pages through the shapes of the images of a plate with
+ * {@link omero.api.IRoiPrx#findShapesByPlate(long, ShapeBatchOptions)}.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = { "integration", "rois" })
+public class ShapeBatchTest extends AbstractRoiITest {
+
+    private Image image(String name) throws Exception {
+        Image i = new ImageI();
+        i.setName(rstring(name));
+        i = assertSaveAndReturn(i);
+        i.unload();
+        return i;
+    }
+
+    /**
+     * Creates a plate of the given images, a well sample of each in a well of
+     * its own.
+     */
+    private Plate plate(List<Image> images) throws Exception {
+        Plate plate = new PlateI();
+        plate.setName(rstring("ShapeBatchTest"));
+        for (int column = 0; column < images.size(); column++) {
+            Well well = new WellI();
+            well.setRow(rint(0));
+            well.setColumn(rint(column));
+            WellSample sample = new WellSampleI();
+            sample.setImage(images.get(column));
+            well.addWellSample(sample);
+            plate.addWell(well);
+        }
+        return assertSaveAndReturn(plate);
+    }
+
+    /** Adds ROIs to the image, returning the ids of their shapes. */
+    private Set<Long> addRois(Image i, int rois) throws Exception {
+        Set<Long> ids = new HashSet<Long>();
+        for (int r = 0; r < rois; r++) {
+            Roi roi = createRoi(i, "ShapeBatchTest",
+                    geomTool.random(4).toArray(new Shape[0]));
+            for (Shape shape : roi.copyShapes()) {
+                ids.add(shape.getId().getValue());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Pages through the shapes of the plate, checking the batches, and
+     * returns the ids of the shapes found.
+     */
+    private Set<Long> pageThrough(long plateId, Set<Long> imageIds, int limit)
+            throws Exception {
+        ShapeBatchOptions opts = new ShapeBatchOptions();
+        opts.limit = rint(limit);
+        Set<Long> found = new HashSet<Long>();
+        long last = -1;
+        ShapeBatch batch;
+        do {
+            batch = assertFindShapesByPlate(plateId, opts);
+            assertTrue(batch.shapes.size() <= limit);
+            for (Shape shape : batch.shapes) {
+                long id = shape.getId().getValue();
+                assertTrue(id > last);
+                last = id;
+                assertTrue(found.add(id));
+                assertTrue(imageIds.contains(shape.getRoi().getImage()
+                        .getId().getValue()));
+            }
+            if (batch.next != null) {
+                assertEquals(limit, batch.shapes.size());
+                assertEquals(last, batch.next.getValue());
+            }
+            opts.after = batch.next;
+        } while (batch.next != null);
+        return found;
+    }
+
+    @Test
+    public void testFindShapesByPlate() throws Exception {
+        List<Image> images = new ArrayList<Image>();
+        Set<Long> imageIds = new HashSet<Long>();
+        Set<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < 3; i++) {
+            Image image = image("ShapeBatchTest");
+            images.add(image);
+            imageIds.add(image.getId().getValue());
+            expected.addAll(addRois(image, 2));
+        }
+        // The shapes of images outside the plate are not returned.
+        addRois(image("ShapeBatchTest.other"), 1);
+        Plate plate = plate(images);
+        long plateId = plate.getId().getValue();
+
+        assertEquals(expected, pageThrough(plateId, imageIds, 5));
+        // A single batch holding every shape.
+        assertEquals(expected, pageThrough(plateId, imageIds,
+                expected.size() + 1));
+    }
+
+    @Test
+    public void testFindShapesByPlateWithoutRois() throws Exception {
+        List<Image> images = new ArrayList<Image>();
+        images.add(image("ShapeBatchTest.empty"));
+        Plate plate = plate(images);
+        ShapeBatch batch = assertFindShapesByPlate(plate.getId().getValue(),
+                new ShapeBatchOptions());
+        assertTrue(batch.shapes.isEmpty());
+        assertNull(batch.next);
+    }
+
+}
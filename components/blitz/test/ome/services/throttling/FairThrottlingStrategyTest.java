@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.throttling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.conditions.OverUsageException;
+import ome.security.basic.CurrentDetails;
+import ome.system.OmeroContext;
+import ome.system.metrics.DefaultMetrics;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the scheduling of invocations by {@link FairThrottlingStrategy}.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class FairThrottlingStrategyTest {
+
+    /** Prefixed to the names of stateful servants. */
+    private static final String UUID_PREFIX = "9f5b9bf5-0c57-4b34-a3c1-d6b7ea1e8f43";
+
+    private FairThrottlingStrategy strategy;
+
+    /** The names of the tasks, in the order they were run. */
+    private final List<String> order = Collections
+            .synchronizedList(new ArrayList<String>());
+
+    /** The failures passed to the tasks. */
+    private final List<Throwable> failures = Collections
+            .synchronizedList(new ArrayList<Throwable>());
+
+    /** The number of tasks running. */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /** The highest number of tasks running at once. */
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    /** Holds the tasks until counted down. */
+    private CountDownLatch release;
+
+    /** Counted down by each task once completed or failed. */
+    private CountDownLatch done;
+
+    /** A task which records when it runs and waits for {@link #release}. */
+    private class RecordingTask extends Task {
+
+        private final String name;
+
+        RecordingTask(String name) {
+            super(null, null, true);
+            this.name = name;
+        }
+
+        @Override
+        public void run(OmeroContext ctx) {
+            order.add(name);
+            final int now = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), now));
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+                done.countDown();
+            }
+        }
+
+        @Override
+        protected void exception(Throwable ex, OmeroContext ctx) {
+            failures.add(ex);
+            done.countDown();
+        }
+    }
+
+    private void setUp(int threads, int perSession, int perService,
+            int queueLength, int tasks) {
+        order.clear();
+        failures.clear();
+        running.set(0);
+        maxRunning.set(0);
+        release = new CountDownLatch(1);
+        done = new CountDownLatch(tasks);
+        strategy = new FairThrottlingStrategy(new CurrentDetails(),
+                new DefaultMetrics(), threads, perSession, perService,
+                queueLength);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (strategy != null) {
+            strategy.destroy();
+            strategy = null;
+        }
+    }
+
+    private static Ice.Current current(String session, String service) {
+        final Ice.Current current = new Ice.Current();
+        current.id = new Ice.Identity(service, session);
+        return current;
+    }
+
+    private void submit(String session, String service, String name) {
+        strategy.submit(current(session, service), new RecordingTask(name));
+    }
+
+    private void awaitDone() throws InterruptedException {
+        release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A session whose invocation took time waits for a session which has not
+     * used any yet.
+     */
+    public void testLeastUsedSessionFirst() throws Exception {
+        setUp(1, 1, 1, 10, 4);
+        submit("a", "omero.api.IQuery", "a1");
+        submit("a", "omero.api.IQuery", "a2");
+        submit("a", "omero.api.IQuery", "a3");
+        submit("b", "omero.api.IQuery", "b1");
+        Thread.sleep(50);
+        awaitDone();
+        Assert.assertEquals(order.get(0), "a1");
+        Assert.assertEquals(order.get(1), "b1");
+        Assert.assertEquals(strategy.getQueueDepth(), 0);
+    }
+
+    public void testSessionLimit() throws Exception {
+        setUp(4, 2, 4, 10, 5);
+        for (int i = 0; i < 4; i++) {
+            submit("a", "omero.api.IQuery", "a" + i);
+        }
+        submit("b", "omero.api.IQuery", "b");
+        Thread.sleep(50);
+        Assert.assertEquals(running.get(), 3);
+        Assert.assertEquals(strategy.getQueueDepth(), 2);
+        awaitDone();
+        Assert.assertEquals(maxRunning.get(), 3);
+    }
+
+    public void testServiceLimit() throws Exception {
+        setUp(4, 4, 1, 10, 3);
+        submit("a", "omero.api.IQuery", "a");
+        submit("b", "omero.api.IQuery", "b");
+        submit("b", UUID_PREFIX + "omero.api.RawPixelsStore", "c");
+        Thread.sleep(50);
+        Assert.assertEquals(running.get(), 2);
+        Assert.assertTrue(order.contains("c"));
+        awaitDone();
+        Assert.assertEquals(order.size(), 3);
+    }
+
+    public void testFullQueueRejects() throws Exception {
+        setUp(1, 1, 1, 1, 3);
+        submit("a", "omero.api.IQuery", "running");
+        submit("a", "omero.api.IQuery", "queued");
+        submit("a", "omero.api.IQuery", "rejected");
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertTrue(failures.get(0) instanceof OverUsageException);
+        Assert.assertEquals(strategy.getRejected(), 1);
+        awaitDone();
+        Assert.assertEquals(order.size(), 2);
+    }
+
+    public void testDestroyCancelsQueued() throws Exception {
+        setUp(1, 1, 1, 10, 2);
+        submit("a", "omero.api.IQuery", "running");
+        submit("a", "omero.api.IQuery", "queued");
+        strategy.destroy();
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertTrue(failures.get(0) instanceof Queue.CancelledException);
+        awaitDone();
+        Assert.assertEquals(order.size(), 1);
+    }
+
+    public void testServiceOf() {
+        Assert.assertEquals(FairThrottlingStrategy.serviceOf(current("a",
+                UUID_PREFIX + "omero.api.RawPixelsStore")),
+                "omero.api.RawPixelsStore");
+        Assert.assertEquals(FairThrottlingStrategy.serviceOf(current("a",
+                "omero.api.IQuery")), "omero.api.IQuery");
+        Assert.assertEquals(FairThrottlingStrategy.serviceOf(null), "");
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.cmd.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the bounds of the pool shared by the parallel DoAll requests.
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class ParallelRequestPoolTest {
+
+    public void testThreadsBoundedByDatabasePool() {
+        Assert.assertEquals(ParallelRequestPool.threads(4, 10), 4);
+        Assert.assertEquals(ParallelRequestPool.threads(8, 10), 5);
+        Assert.assertEquals(ParallelRequestPool.threads(4, 1), 1);
+        Assert.assertEquals(ParallelRequestPool.threads(0, 10), 1);
+    }
+
+    public void testRunningBounded() throws Exception {
+        final ParallelRequestPool pool = new ParallelRequestPool(2, 10);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(pool.getExecutor().submit(new Callable<Boolean>() {
+                    public Boolean call() throws InterruptedException {
+                        final int now = running.incrementAndGet();
+                        synchronized (maxRunning) {
+                            maxRunning.set(Math.max(maxRunning.get(), now));
+                        }
+                        try {
+                            release.await();
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                        return pool.isPoolThread();
+                    }
+                }));
+            }
+            Thread.sleep(50);
+            Assert.assertEquals(running.get(), 2);
+            release.countDown();
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get(10, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(maxRunning.get(), 2);
+            Assert.assertFalse(pool.isPoolThread());
+        } finally {
+            pool.destroy();
+        }
+    }
+
+}
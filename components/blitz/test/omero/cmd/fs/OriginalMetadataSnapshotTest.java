@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.cmd.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.SortedMap;
+
+import omero.RBool;
+import omero.RDouble;
+import omero.RInt;
+import omero.RLong;
+import omero.RString;
+import omero.RType;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the snapshots of the original metadata served by
+ * {@link OriginalMetadataRequestI}.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class OriginalMetadataSnapshotTest {
+
+    private File file;
+
+    private OriginalMetadataSnapshot snapshot;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshot", "_metadata");
+        final Hashtable<String, Object> global = new Hashtable<String, Object>();
+        global.put("Acquisition|Date", "2017-06-01");
+        global.put("Acquisition|Exposure", 0.25d);
+        global.put("Camera|Binning", (short) 2);
+        global.put("Camera|Serial", 123456789012L);
+        global.put("Camera|Cooled", true);
+        global.put("Comment", "ein må lære seg å krype");
+        final Hashtable<String, Object> series = new Hashtable<String, Object>();
+        for (int i = 0; i < 100; i++) {
+            series.put(String.format("Plane #%03d", i), i);
+        }
+        OriginalMetadataSnapshot.write(file, global, series);
+        snapshot = OriginalMetadataSnapshot.open(file);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        snapshot.close();
+        file.delete();
+    }
+
+    public void testAll() throws IOException {
+        final SortedMap<String, RType> global =
+                snapshot.get(OriginalMetadataSnapshot.GLOBAL, null, 0, -1);
+        Assert.assertEquals(global.size(), 6);
+        Assert.assertEquals(((RString) global.get("Acquisition|Date")).getValue(), "2017-06-01");
+        Assert.assertEquals(((RDouble) global.get("Acquisition|Exposure")).getValue(), 0.25d);
+        Assert.assertEquals(((RInt) global.get("Camera|Binning")).getValue(), 2);
+        Assert.assertEquals(((RLong) global.get("Camera|Serial")).getValue(), 123456789012L);
+        Assert.assertTrue(((RBool) global.get("Camera|Cooled")).getValue());
+        Assert.assertEquals(((RString) global.get("Comment")).getValue(), "ein må lære seg å krype");
+        Assert.assertEquals(snapshot.count(OriginalMetadataSnapshot.SERIES, null), 100);
+    }
+
+    public void testPrefix() throws IOException {
+        Assert.assertEquals(snapshot.count(OriginalMetadataSnapshot.GLOBAL, "Camera|"), 3);
+        Assert.assertEquals(snapshot.get(OriginalMetadataSnapshot.GLOBAL, "Camera|", 0, -1).keySet(),
+                Arrays.asList("Camera|Binning", "Camera|Cooled", "Camera|Serial"));
+        Assert.assertEquals(snapshot.count(OriginalMetadataSnapshot.GLOBAL, "Z"), 0);
+        Assert.assertEquals(snapshot.count(OriginalMetadataSnapshot.GLOBAL, "A"), 2);
+        // The sections are separate.
+        Assert.assertEquals(snapshot.count(OriginalMetadataSnapshot.SERIES, "Camera|"), 0);
+        Assert.assertEquals(snapshot.count(OriginalMetadataSnapshot.SERIES, "Plane #05"), 10);
+    }
+
+    public void testPaging() throws IOException {
+        final SortedMap<String, RType> page =
+                snapshot.get(OriginalMetadataSnapshot.SERIES, "Plane", 20, 5);
+        Assert.assertEquals(page.firstKey(), "Plane #020");
+        Assert.assertEquals(page.lastKey(), "Plane #024");
+        Assert.assertEquals(((RInt) page.get("Plane #022")).getValue(), 22);
+        Assert.assertEquals(snapshot.get(OriginalMetadataSnapshot.SERIES, null, 98, 5).size(), 2);
+        Assert.assertTrue(snapshot.get(OriginalMetadataSnapshot.SERIES, null, 200, 5).isEmpty());
+    }
+
+    public void testArraysLeftOut() throws IOException {
+        final File other = File.createTempFile("snapshot", "_metadata");
+        try {
+            final Hashtable<String, Object> series = new Hashtable<String, Object>();
+            series.put("Calibration", new double[] { 0.5d, 1.5d });
+            series.put("Channels", new String[] { "DAPI", "GFP" });
+            series.put("Name", "series");
+            OriginalMetadataSnapshot.write(other, null, series);
+            final OriginalMetadataSnapshot read = OriginalMetadataSnapshot.open(other);
+            try {
+                Assert.assertEquals(read.count(OriginalMetadataSnapshot.GLOBAL, null), 0);
+                final SortedMap<String, RType> values =
+                        read.get(OriginalMetadataSnapshot.SERIES, null, 0, -1);
+                Assert.assertEquals(values.keySet(), Arrays.asList("Name"));
+                Assert.assertEquals(((RString) values.get("Name")).getValue(), "series");
+            } finally {
+                read.close();
+            }
+        } finally {
+            other.delete();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        final File other = File.createTempFile("snapshot", ".txt");
+        try {
+            OriginalMetadataSnapshot.open(other);
+        } finally {
+            other.delete();
+        }
+    }
+
+}
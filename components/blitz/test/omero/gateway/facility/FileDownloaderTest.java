@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.facility;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ome.services.blitz.util.ChecksumAlgorithmMapper;
+import ome.util.checksum.ChecksumProviderFactoryImpl;
+import ome.util.checksum.ChecksumType;
+import omero.gateway.Gateway;
+import omero.gateway.exception.DSAccessException;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.model.OriginalFile;
+import omero.model.OriginalFileI;
+import omero.model.enums.ChecksumAlgorithmSHA1160;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+import static omero.rtypes.rlong;
+import static omero.rtypes.rstring;
+
+/**
+ * Tests the chunking, resuming and failure handling of
+ * {@link FileDownloader}, the server being replaced by streams reading from
+ * memory.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class FileDownloaderTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    /** The content of the file, ten blocks and a short one. */
+    private byte[] content;
+
+    private ExecutorService executor;
+
+    private Gateway gateway;
+
+    private File dir;
+
+    private File target;
+
+    /** The offset and length of the reads, in the order they started. */
+    private final List<long[]> reads =
+            Collections.synchronizedList(new ArrayList<long[]>());
+
+    /**
+     * Downloader whose streams read {@link #content}, failing on the read
+     * at the given offset, if any.
+     */
+    private class MemoryDownloader extends FileDownloader {
+
+        private final long failAt;
+
+        private final Exception failure;
+
+        MemoryDownloader(int streams, int readAhead, long failAt,
+                Exception failure) {
+            super(gateway, null, streams, BLOCK_SIZE, readAhead);
+            this.failAt = failAt;
+            this.failure = failure;
+        }
+
+        MemoryDownloader(int streams, int readAhead) {
+            this(streams, readAhead, -1, null);
+        }
+
+        @Override
+        BlockStream openStream(long fileId) throws Exception {
+            if (failAt < 0 && failure != null) {
+                throw failure;
+            }
+            return new BlockStream() {
+
+                private final LinkedList<long[]> inFlight =
+                        new LinkedList<long[]>();
+
+                @Override
+                void begin(long offset, int length) {
+                    long[] read = { offset, length };
+                    reads.add(read);
+                    inFlight.add(read);
+                }
+
+                @Override
+                byte[] end() throws Exception {
+                    long[] read = inFlight.removeFirst();
+                    if (read[0] == failAt) {
+                        throw failure;
+                    }
+                    int from = (int) read[0];
+                    return Arrays.copyOfRange(content, from,
+                            from + (int) read[1]);
+                }
+
+                @Override
+                void close() {
+                }
+            };
+        }
+    }
+
+    private OriginalFile originalFile(String hash) {
+        OriginalFile of = new OriginalFileI(1L, true);
+        of.setSize(rlong(content.length));
+        of.setHash(rstring(hash));
+        of.setHasher(ChecksumAlgorithmMapper
+                .getChecksumAlgorithm(ChecksumAlgorithmSHA1160.value));
+        return of;
+    }
+
+    private OriginalFile originalFile() {
+        return originalFile(new ChecksumProviderFactoryImpl()
+                .getProvider(ChecksumType.SHA1).putBytes(content)
+                .checksumAsString());
+    }
+
+    private File part() {
+        return new File(target.getPath() + FileDownloader.PART_SUFFIX);
+    }
+
+    private File state() {
+        return new File(part().getPath() + FileDownloader.STATE_SUFFIX);
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        content = new byte[10 * BLOCK_SIZE + 3];
+        new Random(1).nextBytes(content);
+        executor = Executors.newCachedThreadPool();
+        gateway = new Gateway(null, null, executor, false);
+        dir = Files.createTempDir();
+        target = new File(dir, "file");
+        reads.clear();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+        FileUtils.deleteQuietly(dir);
+    }
+
+    /** Every block, including the short last one, is read exactly once. */
+    public void testChunking() throws Exception {
+        new MemoryDownloader(3, 2).download(originalFile(), target);
+        Assert.assertEquals(FileUtils.readFileToByteArray(target), content);
+        Assert.assertFalse(part().exists());
+        Assert.assertFalse(state().exists());
+        Assert.assertEquals(reads.size(), 11);
+        long[] last = null;
+        List<Long> offsets = new ArrayList<Long>();
+        for (long[] read : reads) {
+            offsets.add(read[0]);
+            if (read[0] == 10 * BLOCK_SIZE) {
+                last = read;
+            } else {
+                Assert.assertEquals(read[1], BLOCK_SIZE);
+            }
+        }
+        Assert.assertEquals(new HashSet<Long>(offsets).size(), 11);
+        Assert.assertNotNull(last);
+        Assert.assertEquals(last[1], 3);
+    }
+
+    /** A failed download keeps its blocks and the next call resumes. */
+    public void testResume() throws Exception {
+        try {
+            new MemoryDownloader(1, 1, 4 * BLOCK_SIZE,
+                    new IOException("broken")).download(originalFile(),
+                    target);
+            Assert.fail("Expected the download to fail.");
+        } catch (DSAccessException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertFalse(target.exists());
+        Assert.assertTrue(part().exists());
+        Assert.assertTrue(state().exists());
+
+        reads.clear();
+        new MemoryDownloader(2, 2).download(originalFile(), target);
+        Assert.assertEquals(FileUtils.readFileToByteArray(target), content);
+        // Blocks 0 to 3 were received by the first call.
+        Assert.assertEquals(reads.size(), 7);
+        for (long[] read : reads) {
+            Assert.assertTrue(read[0] >= 4 * BLOCK_SIZE);
+        }
+        Assert.assertFalse(part().exists());
+        Assert.assertFalse(state().exists());
+    }
+
+    /** A target already matching the hash is not downloaded again. */
+    public void testExistingTargetNotDownloaded() throws Exception {
+        FileUtils.writeByteArrayToFile(target, content);
+        new MemoryDownloader(2, 2).download(originalFile(), target);
+        Assert.assertTrue(reads.isEmpty());
+    }
+
+    /** A file not matching its hash is discarded. */
+    public void testChecksumMismatch() throws Exception {
+        try {
+            new MemoryDownloader(2, 2).download(originalFile("0000"), target);
+            Assert.fail("Expected a checksum mismatch.");
+        } catch (DSAccessException e) {
+            // expected
+        }
+        Assert.assertFalse(target.exists());
+        Assert.assertFalse(part().exists());
+        Assert.assertFalse(state().exists());
+    }
+
+    /** A lost connection is propagated as is. */
+    public void testOutOfServicePropagated() throws Exception {
+        DSOutOfServiceException failure =
+                new DSOutOfServiceException("Cannot create RawFileStore");
+        try {
+            new MemoryDownloader(2, 2, -1, failure).download(originalFile(),
+                    target);
+            Assert.fail("Expected the download to fail.");
+        } catch (DSOutOfServiceException e) {
+            Assert.assertSame(e, failure);
+        }
+        Assert.assertFalse(target.exists());
+    }
+
+    /** The other failures of a stream are wrapped. */
+    public void testStreamFailurePropagated() throws Exception {
+        try {
+            new MemoryDownloader(2, 1, 0, new IOException("broken"))
+                    .download(originalFile(), target);
+            Assert.fail("Expected the download to fail.");
+        } catch (DSAccessException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "broken");
+        }
+        Assert.assertFalse(target.exists());
+        Assert.assertTrue(part().exists());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.gateway.rnd;
+
+import java.nio.ByteBuffer;
+
+import omero.util.ReadOnlyByteArray;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the typed views over the raw pixels data.
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class PlaneViewTest {
+
+    /**
+     * Check that the values read through the view match the values decoded
+     * by the converters for every pixels type.
+     */
+    @Test
+    public void testMatchesConverters() {
+        final String[] types = {DataSink.INT_8, DataSink.UINT_8,
+                DataSink.INT_16, DataSink.UINT_16, DataSink.INT_32,
+                DataSink.UINT_32, DataSink.FLOAT, DataSink.DOUBLE};
+        final byte[] data = new byte[3 * 2 * 8];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 37 + 250);
+        }
+        for (final String type : types) {
+            final PlaneView view = PlaneView.create(data, 0, 0, 3, 2, type);
+            final int bpp = view.getBytesPerPixel();
+            final BytesConverter converter = BytesConverter.getConverter(type);
+            final Plane2D old = new Plane2D(
+                    new ReadOnlyByteArray(data, 0, data.length), 3, 2, bpp,
+                    converter);
+            final Plane2D plane = new Plane2D(view);
+            for (int y = 0; y < 2; y++) {
+                for (int x = 0; x < 3; x++) {
+                    final double expected = converter.pack(
+                            new ReadOnlyByteArray(data, 0, data.length),
+                            bpp * (3 * y + x), bpp);
+                    Assert.assertEquals(view.getValue(x, y), expected, 0, type);
+                    Assert.assertEquals(plane.getPixelValue(x, y), expected, 0,
+                            type);
+                    Assert.assertEquals(old.getPixelValue(x, y), expected, 0,
+                            type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check the bulk accessors of the unsigned 16-bit view.
+     */
+    @Test
+    public void testUint16Bulk() {
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putShort((short) 1).putShort((short) 65535)
+            .putShort((short) 40000).putShort((short) 0);
+        final ShortPlaneView view = (ShortPlaneView) PlaneView.create(
+                buffer.array(), 10, 20, 2, 2, DataSink.UINT_16);
+        Assert.assertEquals(view.getX(), 10);
+        Assert.assertEquals(view.getY(), 20);
+        Assert.assertEquals(view.get(1, 0), 65535);
+        Assert.assertEquals(view.get(0, 1), 40000);
+        final int[] ints = view.getPixels(new int[4]);
+        Assert.assertEquals(ints, new int[] {1, 65535, 40000, 0});
+        final short[] shorts = view.getPixels(new short[5]);
+        Assert.assertEquals(shorts[1] & 0xFFFF, 65535);
+        final double[] values = view.getValues(new double[4]);
+        Assert.assertEquals(values[2], 40000d);
+    }
+
+    /**
+     * Check the bulk accessor of the float view.
+     */
+    @Test
+    public void testFloatBulk() {
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putFloat(1.5f).putFloat(-2.25f);
+        final FloatPlaneView view = (FloatPlaneView) PlaneView.create(
+                buffer.array(), 0, 0, 2, 1, DataSink.FLOAT);
+        Assert.assertEquals(view.getPixels(new float[2]),
+                new float[] {1.5f, -2.25f});
+    }
+
+    /**
+     * Check that invalid accesses are rejected.
+     */
+    @Test
+    public void testInvalidAccess() {
+        final PlaneView view = PlaneView.create(new byte[4], 0, 0, 2, 2,
+                DataSink.UINT_8);
+        try {
+            view.getValue(2, 0);
+            Assert.fail("expected out of bounds");
+        } catch (IndexOutOfBoundsException e) {
+            /* expected */
+        }
+        try {
+            view.getValues(new double[3]);
+            Assert.fail("expected array too small");
+        } catch (IllegalArgumentException e) {
+            /* expected */
+        }
+        try {
+            PlaneView.create(new byte[3], 0, 0, 2, 2, DataSink.UINT_8);
+            Assert.fail("expected not enough bytes");
+        } catch (IllegalArgumentException e) {
+            /* expected */
+        }
+    }
+}
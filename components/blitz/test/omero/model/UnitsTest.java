@@ -54,4 +54,27 @@ public class UnitsTest {
         Assert.assertEquals(c.getValue(), 0, 1e-5);
         Assert.assertEquals(k.getValue(), 273.15, 1e-5);
     }
+
+    @Test
+    public void testBulkConversion() throws IOException, BigResult {
+        double[] values = {0, 1.5, 100.1, -2};
+        double[] nm = LengthI.convert(values, UnitsLength.MICROMETER,
+                UnitsLength.NANOMETER);
+        Assert.assertEquals(values[2], 100.1);
+        for (int i = 0; i < values.length; i++) {
+            Length l = new LengthI(new LengthI(values[i],
+                    UnitsLength.MICROMETER), UnitsLength.NANOMETER);
+            Assert.assertEquals(nm[i], l.getValue());
+        }
+        double[] c = TemperatureI.convert(new double[] {32, 212},
+                UnitsTemperature.FAHRENHEIT, UnitsTemperature.CELSIUS);
+        Assert.assertEquals(c[0], 0, 1e-5);
+        Assert.assertEquals(c[1], 100, 1e-5);
+    }
+
+    @Test(expectedExceptions = BigResult.class)
+    public void testBulkConversionOverflow() throws IOException, BigResult {
+        LengthI.convert(new double[] {1, Double.MAX_VALUE},
+                UnitsLength.METER, UnitsLength.NANOMETER);
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.model.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ome.model.annotations.CommentAnnotation;
+import ome.model.containers.Dataset;
+import ome.model.core.Image;
+import omero.util.IceMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the mapping of a graph of model objects between
+ * ome.model and omero.model by {@link IceMapper}, comparing the generated
+ * creators with the reflective instantiation used previously.
+ * Not run as part of the test suite, start it via {@link #main(String[])}.
+ * @since 5.4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModelMappingBenchmark {
+
+    /** Mapper instantiating the targets as before the generated creators. */
+    private static class ReflectiveMapper extends IceMapper {
+        @Override
+        protected Object createTarget(Class targetType) throws Exception {
+            return targetType.newInstance();
+        }
+    }
+
+    @Param({"1000"})
+    public int count;
+
+    private List<Image> images;
+
+    private List<?> mapped;
+
+    @Setup
+    public void setup() throws Exception {
+        images = new ArrayList<Image>(count);
+        final Dataset dataset = new Dataset(1L, true);
+        dataset.setName("dataset");
+        for (int i = 0; i < count; i++) {
+            final Image image = new Image((long) i, true);
+            image.setName("image " + i);
+            final CommentAnnotation comment = new CommentAnnotation((long) i,
+                    true);
+            comment.setTextValue("comment " + i);
+            image.linkAnnotation(comment);
+            dataset.linkImage(image);
+            images.add(image);
+        }
+        mapped = (List<?>) new IceMapper().map(images);
+    }
+
+    @Benchmark
+    public Collection<?> mapGenerated() {
+        return new IceMapper().map(images);
+    }
+
+    @Benchmark
+    public Collection<?> mapReflective() {
+        return new ReflectiveMapper().map(images);
+    }
+
+    @Benchmark
+    public Collection<?> reverse() {
+        return new IceMapper().reverse(mapped);
+    }
+
+    @Benchmark
+    public Class<?> omeroClass() throws Exception {
+        return IceMapper.omeroClass("Image", true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ModelMappingBenchmark.class.getSimpleName())
+                .forks(1).build()).run();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package omero.model.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ome.model.units.BigResult;
+import omero.model.ElectricPotentialI;
+import omero.model.FrequencyI;
+import omero.model.LengthI;
+import omero.model.PowerI;
+import omero.model.PressureI;
+import omero.model.TemperatureI;
+import omero.model.TimeI;
+import omero.model.enums.UnitsElectricPotential;
+import omero.model.enums.UnitsFrequency;
+import omero.model.enums.UnitsLength;
+import omero.model.enums.UnitsPower;
+import omero.model.enums.UnitsPressure;
+import omero.model.enums.UnitsTemperature;
+import omero.model.enums.UnitsTime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the unit conversions of all the generated unit types,
+ * converting the values one by one via the copy constructors and in bulk.
+ * Not run as part of the test suite, start it via {@link #main(String[])}.
+ * @since 5.4.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnitsBenchmark {
+
+    /** Converts the values of one unit type. */
+    private abstract static class Converter {
+        abstract double single(double value) throws BigResult;
+        abstract double[] bulk(double[] values) throws BigResult;
+    }
+
+    @Param({"Length", "Time", "Pressure", "Temperature", "Power",
+        "Frequency", "ElectricPotential"})
+    public String type;
+
+    @Param({"10000"})
+    public int count;
+
+    private double[] values;
+
+    private Converter converter;
+
+    @Setup
+    public void setup() {
+        values = new double[count];
+        final Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextDouble() * 1000;
+        }
+        if ("Length".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new LengthI(new LengthI(v, UnitsLength.MICROMETER),
+                            UnitsLength.NANOMETER).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return LengthI.convert(v, UnitsLength.MICROMETER,
+                            UnitsLength.NANOMETER);
+                }
+            };
+        } else if ("Time".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new TimeI(new TimeI(v, UnitsTime.SECOND),
+                            UnitsTime.MILLISECOND).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return TimeI.convert(v, UnitsTime.SECOND,
+                            UnitsTime.MILLISECOND);
+                }
+            };
+        } else if ("Pressure".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new PressureI(new PressureI(v, UnitsPressure.PASCAL),
+                            UnitsPressure.BAR).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return PressureI.convert(v, UnitsPressure.PASCAL,
+                            UnitsPressure.BAR);
+                }
+            };
+        } else if ("Temperature".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new TemperatureI(new TemperatureI(v, UnitsTemperature.CELSIUS),
+                            UnitsTemperature.KELVIN).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return TemperatureI.convert(v, UnitsTemperature.CELSIUS,
+                            UnitsTemperature.KELVIN);
+                }
+            };
+        } else if ("Power".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new PowerI(new PowerI(v, UnitsPower.WATT),
+                            UnitsPower.MILLIWATT).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return PowerI.convert(v, UnitsPower.WATT,
+                            UnitsPower.MILLIWATT);
+                }
+            };
+        } else if ("Frequency".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new FrequencyI(new FrequencyI(v, UnitsFrequency.HERTZ),
+                            UnitsFrequency.KILOHERTZ).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return FrequencyI.convert(v, UnitsFrequency.HERTZ,
+                            UnitsFrequency.KILOHERTZ);
+                }
+            };
+        } else if ("ElectricPotential".equals(type)) {
+            converter = new Converter() {
+                double single(double v) throws BigResult {
+                    return new ElectricPotentialI(new ElectricPotentialI(v, UnitsElectricPotential.VOLT),
+                            UnitsElectricPotential.MILLIVOLT).getValue();
+                }
+                double[] bulk(double[] v) throws BigResult {
+                    return ElectricPotentialI.convert(v, UnitsElectricPotential.VOLT,
+                            UnitsElectricPotential.MILLIVOLT);
+                }
+            };        } else {
+            throw new IllegalArgumentException(type);
+        }
+    }
+
+    @Benchmark
+    public double[] single() throws BigResult {
+        final double[] converted = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = converter.single(values[i]);
+        }
+        return converted;
+    }
+
+    @Benchmark
+    public double[] bulk() throws BigResult {
+        return converter.bulk(values);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UnitsBenchmark.class.getSimpleName())
+                .forks(1).build()).run();
+    }
+}
@@ -84,6 +84,18 @@ public interface RawPixelsStore extends StatefulServiceInterface {
 
     public byte[] getTile(int z, int c, int t, int x, int y, int w, int h);
 
+    /**
+     * Retrieves several tiles at the current resolution level in one call.
+     * The tiles may be read concurrently.
+     * @param tiles one <code>{z, c, t, x, y, w, h}</code> array per tile.
+     * @param compress whether the result should be compressed in the zlib
+     * format.
+     * @return the data of the tiles concatenated in the order of
+     * <code>tiles</code>, each tile being <code>w * h * byteWidth</code>
+     * bytes long.
+     */
+    public byte[] getTiles(int[][] tiles, boolean compress);
+
     public byte[] getRegion(int size, long offset);
     
     public byte[] getRow(int y, int z, int c, int t);
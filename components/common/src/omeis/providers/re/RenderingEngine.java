@@ -102,6 +102,24 @@ public interface RenderingEngine extends StatefulServiceInterface {
      * @see #renderAsPackedInt(PlaneDef)
      */
     public byte[] renderCompressed(PlaneDef pd);
+
+    /**
+     * Renders each of the planes selected by <code>pds</code> according to
+     * the current rendering settings and compresses the resulting RGBA
+     * composite images, e.g. for the frames of a movie. The raw data of the
+     * next plane is read ahead while the current one is quantized and
+     * compressed.
+     *
+     * @param pds
+     *            The planes to render, in order.
+     * @return The compressed RGBA JPEGs for display, one per element of
+     *         <code>pds</code> and in the same order.
+     * @throws ValidationException
+     *             If <code>pds</code> is <code>null</code>, contains a
+     *             <code>null</code> element or more than 64 elements.
+     * @see #renderCompressed(PlaneDef)
+     */
+    public byte[][] renderCompressedPlanes(List<PlaneDef> pds);
     
     
     /**
@@ -24,7 +24,6 @@ package org.openmicroscopy.shoola.agents.imviewer;
 
 
 //Java imports
-import java.util.Collection;
 
 //Third-party libraries
 
@@ -38,9 +37,12 @@ import omero.gateway.SecurityContext;
 import org.openmicroscopy.shoola.env.data.views.CallHandle;
 import org.openmicroscopy.shoola.env.rnd.RenderingControl;
 import org.openmicroscopy.shoola.env.rnd.data.Tile;
+import org.openmicroscopy.shoola.env.rnd.data.TileCache;
+import org.openmicroscopy.shoola.env.rnd.data.TileQueue;
 
 /** 
- * Loads the tiles.
+ * Loads the tiles waiting in a queue shared with the other loaders
+ * rendering the same plane.
  *
  * @author Jean-Marie Burel &nbsp;&nbsp;&nbsp;&nbsp;
  * <a href="mailto:j.burel@dundee.ac.uk">j.burel@dundee.ac.uk</a>
@@ -59,8 +61,11 @@ public class TileLoader
     /** Handle to the asynchronous call so that we can cancel it. */
     private CallHandle handle;
     
-    /** The collection of tiles to load.*/
-    private Collection<Tile> tiles;
+    /** The queue of tiles to load.*/
+    private TileQueue queue;
+
+    /** The cache of rendered tiles or <code>null</code>.*/
+    private TileCache cache;
     
     /** The ID of the pixels set. */
     private long pixelsID;
@@ -68,9 +73,6 @@ public class TileLoader
     /** The plane to render.*/
     private PlaneDef pDef;
     
-    /** Count the number of tiles loaded.*/
-    private int count;
-    
     /** The proxy to use.*/
     private RenderingControl proxy;
     
@@ -82,13 +84,15 @@ public class TileLoader
      * @param pixelsID The id of the pixels set.
      * @param pDef The plane to render.
      * @param proxy The rendering control to use.
-     * @param tiles The tiles to handle.
+     * @param queue The queue of tiles to load.
+     * @param cache The cache of rendered tiles or <code>null</code>.
      */
 	public TileLoader(ImViewer viewer, SecurityContext ctx, long pixelsID,
-			PlaneDef pDef, RenderingControl proxy, Collection<Tile> tiles)
+			PlaneDef pDef, RenderingControl proxy, TileQueue queue,
+			TileCache cache)
 	{
 		super(viewer, ctx);
-		if (tiles == null || tiles.size() == 0)
+		if (queue == null)
 			throw new IllegalArgumentException("No tiles to load.");
 		if (pDef == null)
 			throw new IllegalArgumentException("No plane to render.");
@@ -96,7 +100,8 @@ public class TileLoader
 			throw new IllegalArgumentException("No rendering control.");
 		if (pixelsID != proxy.getPixelsID())
 			throw new IllegalArgumentException("Pixels ID not valid.");
-		this.tiles = tiles;
+		this.queue = queue;
+		this.cache = cache;
 		this.pixelsID = pixelsID;
 		this.pDef = pDef;
 		this.proxy = proxy;
@@ -108,7 +113,8 @@ public class TileLoader
      */
     public void load()
     {
-    	handle = ivView.loadTiles(ctx, pixelsID, pDef, proxy, tiles, this);
+    	handle = ivView.loadTiles(ctx, pixelsID, pDef, proxy, queue, cache,
+    			this);
     }
     
     /**
@@ -118,12 +124,17 @@ public class TileLoader
     public void cancel() { handle.cancel(); }
     
     /**
-     * Does nothing as the asynchronous call returns <code>null</code>.
+     * Notifies the viewer that the queue is empty as the asynchronous call
+     * returns <code>null</code>.
      * The actual pay-load (tile) is delivered progressively
      * during the updates.
      * @see DataLoader#handleNullResult()
      */
-    public void handleNullResult() {}
+    public void handleNullResult()
+    {
+    	if (viewer.getState() == DataBrowser.DISCARDED) return;
+    	viewer.onTilesLoaded(proxy);
+    }
     
     /**
      * Notifies the user that an error has occurred.
@@ -134,6 +145,8 @@ public class TileLoader
         String s = "Tile Retrieval Failure: ";
         registry.getLogger().error(this, s+exc);
         registry.getUserNotifier().notifyError(s, s, exc);
+        if (viewer.getState() != DataBrowser.DISCARDED)
+        	viewer.onTilesLoaded(proxy);
     }
     
     /** 
@@ -150,11 +163,7 @@ public class TileLoader
                                      ""; //Description wasn't available.
         viewer.setStatus(status, percDone);
         Tile tile = (Tile) fe.getPartialResult();
-        if (tile != null) {
-        	count++;
-        	if (count == tiles.size()) viewer.setTileCount(count);
-        	else viewer.setTileCount(0);
-        } 
+        if (tile != null) viewer.setTileCount(1);
     }
 
 }
@@ -1261,6 +1261,14 @@ public interface ImViewer
 	 * @param region The selected region.
 	 */
 	public void loadTiles(Rectangle region);
+
+	/**
+	 * Notifies the component that the loader using the specified
+	 * rendering control has no more tile to load.
+	 * 
+	 * @param proxy The rendering control used by the loader.
+	 */
+	public void onTilesLoaded(RenderingControl proxy);
 	
 	/**
 	 * Returns the size of the tiled image along the X-axis i.e.
@@ -3316,7 +3316,7 @@ class ImViewerComponent
 	{
 		if (model.getState() == DISCARDED) return;
 		model.getBrowser().getUI().repaint();
-		if (model.isTileLoaded(count)) {
+		if (model.getState() == LOADING_TILES && model.isTileLoaded()) {
 			view.addComponentListener(controller);
 			model.setState(READY);
 			fireStateChange();
@@ -3379,12 +3379,23 @@ class ImViewerComponent
 				toClear.add(t);
 		}
     	model.clearTileImages(toClear);
-		if (l.size() > 0) {
+    	//Tiles no longer visible and still waiting are cancelled.
+		if (model.fireTileLoading(l, region)) {
 			view.removeComponentListener(controller);
-			model.fireTileLoading(l);
 			fireStateChange();
 		}
 	}
+
+	/** 
+	 * Implemented as specified by the {@link ImViewer} interface.
+	 * @see ImViewer#onTilesLoaded(RenderingControl)
+	 */
+	public void onTilesLoaded(RenderingControl proxy)
+	{
+		if (model.getState() == DISCARDED) return;
+		model.onTilesLoaded(proxy);
+		setTileCount(0);
+	}
 	
 	/** 
 	 * Implemented as specified by the {@link ImViewer} interface.
@@ -30,8 +30,6 @@ import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -86,6 +84,8 @@ import org.openmicroscopy.shoola.env.rnd.RndProxyDef;
 import org.openmicroscopy.shoola.env.rnd.data.Region;
 import org.openmicroscopy.shoola.env.rnd.data.ResolutionLevel;
 import org.openmicroscopy.shoola.env.rnd.data.Tile;
+import org.openmicroscopy.shoola.env.rnd.data.TileCache;
+import org.openmicroscopy.shoola.env.rnd.data.TileQueue;
 import org.openmicroscopy.shoola.util.CommonsLangUtils;
 import org.openmicroscopy.shoola.util.file.modulo.ModuloInfo;
 import org.openmicroscopy.shoola.util.image.geom.Factory;
@@ -316,11 +316,17 @@ class ImViewerModel
     /** The display mode.*/
     private int displayMode;
     
-    /** The number of tiles to load.*/
-    private int tileTotalCount;
-    
-    /** The number of tiles already loaded.*/
-    private int tileLoadedCount;
+    /** The tiles waiting to be loaded.*/
+    private TileQueue tileQueue;
+
+    /** The z-section and timepoint of the tiles in the queue.*/
+    private int tileZ, tileT;
+
+    /** The tile loaders running, one per rendering control.*/
+    private Map<RenderingControl, TileLoader> tileLoaders;
+
+    /** The cache of rendered tiles.*/
+    private TileCache tileCache;
 
     /** The default plane size.*/
     private int planeSize;
@@ -435,24 +441,40 @@ class ImViewerModel
 	}
 
     /**
-     * Sorts the tiles by index.
+     * Returns the cache of rendered tiles or <code>null</code> if the
+     * tiles are not cached.
      * 
-     * @param tiles The tiles to sort.
+     * @return See above.
      */
-    private void sortTilesByIndex(List<Tile> tiles)
+    private TileCache getTileCache()
     {
-    	 if (tiles == null || tiles.size() == 0) return;
-         Comparator c = new Comparator() {
-             public int compare(Object o1, Object o2)
-             {
-                 int n1 = ((Tile) o1).getIndex(), n2 = ((Tile) o2).getIndex();
-                 int v = 0;
-                 if (n1 < n2) v = -1;
-                 else if (n1 > n2) v = 1;
-                 return v;
-             }
-         };
-         Collections.sort(tiles, c);
+    	if (tileCache != null && tileCache.getPixelsID() == currentPixelsID)
+    		return tileCache;
+    	tileCache = null;
+    	Integer size = (Integer) ImViewerAgent.getRegistry().lookup(
+    			LookupNames.RE_TILE_CACHE_SZ);
+    	if (size != null && size.intValue() > 0)
+    		tileCache = new TileCache(currentPixelsID,
+    				size.longValue()*1024*1024);
+    	return tileCache;
+    }
+
+    /**
+     * Starts a loader taking the tiles from the queue with the specified
+     * rendering control.
+     * 
+     * @param proxy The rendering control to use.
+     */
+    private void startTileLoader(RenderingControl proxy)
+    {
+		PlaneDef pDef = new PlaneDef();
+		pDef.t = tileT;
+		pDef.z = tileZ;
+		pDef.slice = omero.romio.XY.value;
+		TileLoader loader = new TileLoader(component, ctx, currentPixelsID,
+				pDef, proxy, tileQueue, getTileCache());
+		tileLoaders.put(proxy, loader);
+		loader.load();
     }
     
     /**
@@ -539,6 +561,7 @@ class ImViewerModel
 		textVisible = true;
 		movieIndex = -1;
 		loaders = new HashMap<Integer, DataLoader>();
+		tileLoaders = new HashMap<RenderingControl, TileLoader>();
 		metadataViewer = null;
 		metadataLoaded = false;
 		currentPixelsID = -1;
@@ -824,6 +847,13 @@ class ImViewerModel
 		while (i.hasNext()) {
 			loaders.get(i.next()).cancel();
 		}
+		if (tileQueue != null) tileQueue.clear();
+		Iterator<TileLoader> j = tileLoaders.values().iterator();
+		while (j.hasNext()) {
+			j.next().cancel();
+		}
+		tileLoaders.clear();
+		tileCache = null;
 		browser.discard();
 		if (metadataViewer != null && metadataViewer.getRenderer() != null) {
 			metadataViewer.getRenderer().discard();
@@ -2850,49 +2880,56 @@ class ImViewerModel
 
     /** 
      * Fires an asynchronous call to load the tiles.
+     * The tiles are loaded concurrently, one loader per rendering control,
+     * starting with the tiles closest to the center of the visible region.
+     * The tiles waiting to be loaded and not in the selection are
+     * cancelled.
      * 
      * @param selection The collection of tiles to load.
+     * @param region The visible region.
+     * @return <code>true</code> if tiles are being loaded,
+     * <code>false</code> otherwise.
      */
-    void fireTileLoading(List<Tile> selection)
+    boolean fireTileLoading(List<Tile> selection, Rectangle region)
     {
     	Renderer rnd = metadataViewer.getRenderer();
-		if (rnd == null || selection == null) return;
-		PlaneDef pDef = new PlaneDef();
-		pDef.t = getDefaultT();
-		pDef.z = getDefaultZ();
-		pDef.slice = omero.romio.XY.value;
-		List<Tile> list;
-		list = selection;
-		sortTilesByIndex(list);
+		if (rnd == null || selection == null) return false;
+		int z = getDefaultZ();
+		int t = getDefaultT();
+		if (tileQueue == null || tileZ != z || tileT != t) {
+			//The running loaders render the previous plane.
+			if (tileQueue != null) tileQueue.clear();
+			tileQueue = new TileQueue();
+			tileZ = z;
+			tileT = t;
+		}
+		if (region != null)
+			tileQueue.setViewport(new Region(region.x, region.y,
+					region.width, region.height));
+		tileQueue.retainAll(selection);
+		tileQueue.addAll(selection);
+		if (tileQueue.size() == 0 && tileLoaders.isEmpty()) return false;
 		state = ImViewer.LOADING_TILES;
-		List<RenderingControl> proxies = rnd.getRenderingControls();
-		int m = proxies.size();
-		//Create n sublist
-		int n = selection.size();
-		int diff = n/m;
-		List<Tile> l;
-		int j;
-		int step = 0;
-		if (n < m) diff = 1;
-		tileTotalCount = n;
-		tileLoadedCount = 0;
+		Iterator<RenderingControl> i = rnd.getRenderingControls().iterator();
 		RenderingControl proxy;
-		TileLoader loader;
-		for (int i = 0; i < m; i++) {
-			l = new ArrayList<Tile>();
-			j = step+diff;
-			if (i == (m-1)) j += (n-j);
-			if (j <= n) {
-				l =  list.subList(step, j);
-				step += l.size();
-			}
-			if (l.size() > 0) {
-				proxy = proxies.get(i);
-				loader = new TileLoader(component, ctx, currentPixelsID,
-						pDef, proxy, l);
-				loader.load();
-			}
+		while (i.hasNext() && tileQueue.size() > tileLoaders.size()) {
+			proxy = i.next();
+			if (!tileLoaders.containsKey(proxy)) startTileLoader(proxy);
 		}
+		return true;
+    }
+
+    /**
+     * Indicates that the loader using the specified rendering control
+     * is done. A new loader is started if tiles are waiting.
+     * 
+     * @param proxy The rendering control used by the loader.
+     */
+    void onTilesLoaded(RenderingControl proxy)
+    {
+    	tileLoaders.remove(proxy);
+    	if (state == ImViewer.DISCARDED || tileQueue == null) return;
+    	if (tileQueue.size() > 0) startTileLoader(proxy);
     }
     
     /** Resets the tiles.*/
@@ -3138,13 +3175,12 @@ class ImViewerModel
 	 * Returns <code>true</code> if all the tiles are loaded,
 	 * <code>false</code> otherwise.
 	 * 
-	 * @param count The number of loaded tiles.
 	 * @return See above.
 	 */
-	boolean isTileLoaded(int count)
+	boolean isTileLoaded()
 	{
-		tileLoadedCount += count;
-		return tileLoadedCount == tileTotalCount;
+		return tileLoaders.isEmpty() &&
+				(tileQueue == null || tileQueue.size() == 0);
 	}
 
     /**
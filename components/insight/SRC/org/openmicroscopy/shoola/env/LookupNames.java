@@ -260,12 +260,30 @@ public class LookupNames
     public static final String THUMBNAIL_FETCH_MEDIUM_SPEED =
             "/services/Thumbnailing/fetchMediumSpeed";
 
+    /** 
+     * Field to access the maximum number of thumbnail requests sent
+     * concurrently.
+     */
+    public static final String THUMBNAIL_FETCH_IN_FLIGHT =
+            "/services/Thumbnailing/fetchInFlight";
+
+    /** Field to access the size, in Mb, of the thumbnails cached on disk. */
+    public static final String THUMBNAIL_CACHE_SZ =
+            "/services/Thumbnailing/cacheSz";
+
+    /** Field to access the name of the thumbnails cache directory. */
+    public static final String THUMBNAIL_CACHE_DIR =
+            "/services/Thumbnailing/cacheDir";
+
     /** Field to access the <code>Cache on</code> information. */
     public static final String CACHE_ON = "/services/CACHE/on";
 
     /** Field to access the <code>Size</code> of the cache. */
     public static final String RE_CACHE_SZ = "/services/RE/cacheSz";
 
+    /** Field to access the <code>Size</code> of the rendered tiles cache. */
+    public static final String RE_TILE_CACHE_SZ = "/services/RE/tileCacheSz";
+
     /** 
      * Field to access the number of rendering engine to start for big images.
      */
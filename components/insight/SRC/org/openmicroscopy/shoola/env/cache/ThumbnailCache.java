@@ -0,0 +1,226 @@
+/*
+ * org.openmicroscopy.shoola.env.cache.ThumbnailCache
+ *
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ * 	This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package org.openmicroscopy.shoola.env.cache;
+
+
+//Java imports
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+//Third-party libraries
+import org.apache.commons.io.FileUtils;
+
+//Application-internal dependencies
+
+/**
+ * Keeps the thumbnails retrieved from the server on disk so that they can
+ * be reused across sessions.
+ * A thumbnail is stored as returned by the server and is keyed by the id of
+ * the pixels set, the size of the thumbnail and a version. The version is
+ * expected to change when the thumbnail is regenerated or when the rendering
+ * settings change so that stale thumbnails are never returned.
+ * The cache is bounded by the number of bytes on disk, the least recently
+ * used thumbnails are removed first.
+ *
+ * @since 5.4.0
+ */
+public class ThumbnailCache
+{
+
+	/** The extension of the cached files.*/
+	private static final String EXTENSION = ".thumb";
+
+	/** The directory hosting the cache. */
+	private final File dir;
+
+	/** The maximum number of bytes held on disk. */
+	private final long maxSize;
+
+	/** The number of bytes currently held on disk. */
+	private long size;
+
+	/**
+	 * Returns the file hosting the specified thumbnail.
+	 *
+	 * @param pixelsID The id of the pixels set.
+	 * @param length The size of the thumbnail.
+	 * @param version The version of the thumbnail.
+	 * @return See above.
+	 */
+	private File getFile(long pixelsID, int length, String version)
+	{
+		return new File(new File(dir, Long.toString(pixelsID)),
+				length+"_"+version.replaceAll("[^0-9A-Za-z\\-]", "_")+
+				EXTENSION);
+	}
+
+	/**
+	 * Returns all the cached files.
+	 *
+	 * @return See above.
+	 */
+	private List<File> listFiles()
+	{
+		List<File> files = new ArrayList<File>();
+		File[] dirs = dir.listFiles();
+		if (dirs == null) return files;
+		File[] l;
+		for (int i = 0; i < dirs.length; i++) {
+			l = dirs[i].listFiles();
+			if (l != null) files.addAll(Arrays.asList(l));
+		}
+		return files;
+	}
+
+	/**
+	 * Deletes the least recently used files until the cache fits
+	 * in the maximum size.
+	 */
+	private void prune()
+	{
+		if (size <= maxSize) return;
+		List<File> files = listFiles();
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File f1, File f2)
+			{
+				long v1 = f1.lastModified(), v2 = f2.lastModified();
+				if (v1 < v2) return -1;
+				if (v1 > v2) return 1;
+				return 0;
+			}
+		});
+		File f;
+		for (int i = 0; i < files.size() && size > maxSize; i++) {
+			f = files.get(i);
+			long n = f.length();
+			if (f.delete()) size -= n;
+		}
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param dir The directory hosting the cache, created if required.
+	 * @param maxSize The maximum number of bytes held on disk.
+	 */
+	public ThumbnailCache(File dir, long maxSize)
+	{
+		if (dir == null)
+			throw new IllegalArgumentException("No cache directory.");
+		this.dir = dir;
+		this.maxSize = maxSize;
+		dir.mkdirs();
+		List<File> files = listFiles();
+		for (File f : files)
+			size += f.length();
+		prune();
+	}
+
+	/**
+	 * Returns the cached thumbnail or <code>null</code> if the specified
+	 * version is not cached.
+	 *
+	 * @param pixelsID The id of the pixels set.
+	 * @param length The size of the thumbnail.
+	 * @param version The version of the thumbnail.
+	 * @return See above.
+	 */
+	public synchronized byte[] get(long pixelsID, int length, String version)
+	{
+		if (version == null) return null;
+		File f = getFile(pixelsID, length, version);
+		if (!f.isFile()) return null;
+		try {
+			byte[] values = FileUtils.readFileToByteArray(f);
+			f.setLastModified(System.currentTimeMillis());
+			return values;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the thumbnail, replacing the other versions of the thumbnail
+	 * with the same size.
+	 *
+	 * @param pixelsID The id of the pixels set.
+	 * @param length The size of the thumbnail.
+	 * @param version The version of the thumbnail.
+	 * @param values The thumbnail as returned by the server.
+	 */
+	public synchronized void put(long pixelsID, int length, String version,
+			byte[] values)
+	{
+		if (version == null || values == null || values.length == 0 ||
+				values.length > maxSize)
+			return;
+		File f = getFile(pixelsID, length, version);
+		File[] l = f.getParentFile().listFiles();
+		if (l != null) {
+			String prefix = length+"_";
+			for (int i = 0; i < l.length; i++) {
+				if (l[i].getName().startsWith(prefix)) {
+					long n = l[i].length();
+					if (l[i].delete()) size -= n;
+				}
+			}
+		}
+		try {
+			FileUtils.writeByteArrayToFile(f, values);
+			size += values.length;
+		} catch (IOException e) {
+			f.delete();
+		}
+		prune();
+	}
+
+	/**
+	 * Removes all the cached thumbnails of the specified pixels set.
+	 *
+	 * @param pixelsID The id of the pixels set.
+	 */
+	public synchronized void remove(long pixelsID)
+	{
+		File d = new File(dir, Long.toString(pixelsID));
+		File[] l = d.listFiles();
+		if (l == null) return;
+		for (int i = 0; i < l.length; i++) {
+			long n = l[i].length();
+			if (l[i].delete()) size -= n;
+		}
+		d.delete();
+	}
+
+	/**
+	 * Returns the number of bytes held on disk.
+	 *
+	 * @return See above.
+	 */
+	public synchronized long getSize() { return size; }
+
+}
@@ -2351,6 +2351,58 @@ class OMEROGateway
 		}
 	}
 
+	/**
+	 * Returns the version of the thumbnails of the passed pixels sets.
+	 * The version of a pixels set changes when one of its thumbnails is
+	 * regenerated or when one of its rendering settings is saved.
+	 *
+	 * @param ctx The security context.
+	 * @param pixelsID The collection of pixels set.
+	 * @return See above.
+	 * @throws DSOutOfServiceException If the connection is broken, or not logged in
+	 * @throws DSAccessException If an error occurred while trying to
+	 * retrieve data from OMERO service.
+	 */
+	Map<Long, String> getThumbnailVersions(SecurityContext ctx,
+			List<Long> pixelsID)
+		throws DSOutOfServiceException, DSAccessException
+	{
+		Map<Long, String> versions = new HashMap<Long, String>();
+		if (pixelsID == null || pixelsID.size() == 0) return versions;
+		try {
+			IQueryPrx service = gw.getQueryService(ctx);
+			ParametersI p = new ParametersI();
+			p.addIds(pixelsID);
+			List<List<RType>> thumbs = service.projection(
+					"select t.pixels.id, max(t.version), "+
+					"max(t.details.updateEvent.id) from Thumbnail as t "+
+					"where t.pixels.id in (:ids) group by t.pixels.id", p);
+			List<List<RType>> settings = service.projection(
+					"select r.pixels.id, max(r.details.updateEvent.id) "+
+					"from RenderingDef as r "+
+					"where r.pixels.id in (:ids) group by r.pixels.id", p);
+			Map<Long, Object> events = new HashMap<Long, Object>();
+			Iterator<List<RType>> i = settings.iterator();
+			List<RType> row;
+			while (i.hasNext()) {
+				row = i.next();
+				events.put(((RLong) row.get(0)).getValue(),
+						omero.rtypes.unwrap(row.get(1)));
+			}
+			i = thumbs.iterator();
+			Long id;
+			while (i.hasNext()) {
+				row = i.next();
+				id = ((RLong) row.get(0)).getValue();
+				versions.put(id, omero.rtypes.unwrap(row.get(1))+"-"+
+						omero.rtypes.unwrap(row.get(2))+"-"+events.get(id));
+			}
+		} catch (Throwable t) {
+			handleException(t, "Cannot retrieve the thumbnail versions.");
+		}
+		return versions;
+	}
+
 	/**
 	 * Creates a new rendering service for the specified pixels set.
 	 *
@@ -76,6 +76,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.RandomStringUtils;
 import org.openmicroscopy.shoola.env.LookupNames;
+import org.openmicroscopy.shoola.env.cache.ThumbnailCache;
 import org.openmicroscopy.shoola.env.config.Registry;
 import org.openmicroscopy.shoola.env.data.login.UserCredentials;
 import org.openmicroscopy.shoola.env.data.model.FileObject;
@@ -149,6 +150,42 @@ class OmeroImageServiceImpl
 	
 	/** Lookup tables cache (they are not likely to change during a session) */
 	private static Collection<String> LOOKUP_TABLES;
+
+	/** The thumbnails kept on disk across sessions. */
+	private ThumbnailCache thumbnailCache;
+
+	/** The directory of the {@link #thumbnailCache}. */
+	private File thumbnailCacheDir;
+
+	/**
+	 * Returns the thumbnail cache for the server and user currently logged
+	 * in or <code>null</code> if the thumbnails are not cached on disk.
+	 * 
+	 * @return See above.
+	 */
+	private synchronized ThumbnailCache getThumbnailCache()
+	{
+		Integer size = (Integer) context.lookup(
+				LookupNames.THUMBNAIL_CACHE_SZ);
+		String home = (String) context.lookup(LookupNames.USER_HOME_OMERO);
+		String name = (String) context.lookup(LookupNames.THUMBNAIL_CACHE_DIR);
+		UserCredentials uc = (UserCredentials) context.lookup(
+				LookupNames.USER_CREDENTIALS);
+		ExperimenterData exp = (ExperimenterData) context.lookup(
+				LookupNames.CURRENT_USER_DETAILS);
+		if (size == null || size.intValue() <= 0 || home == null ||
+			name == null || uc == null || exp == null)
+			return null;
+		File dir = new File(new File(new File(home, name),
+				uc.getHostName().replaceAll("[^0-9A-Za-z\\.\\-]", "_")),
+				Long.toString(exp.getId()));
+		if (thumbnailCache == null || !dir.equals(thumbnailCacheDir)) {
+			thumbnailCache = new ThumbnailCache(dir,
+					size.longValue()*1024*1024);
+			thumbnailCacheDir = dir;
+		}
+		return thumbnailCache;
+	}
 	
 	/**
 	 * Returns the number of rendering engines to initialize or reload.
@@ -627,6 +664,37 @@ class OmeroImageServiceImpl
 				}
 				return r;
 			}
+			//Use the thumbnails cached on disk if still valid.
+			ThumbnailCache cache = getThumbnailCache();
+			Map<Long, String> versions = new HashMap<Long, String>();
+			List<Long> toFetch = new ArrayList<Long>(pixelsID);
+			if (cache != null) {
+				try {
+					versions = gateway.getThumbnailVersions(ctx, toFetch);
+				} catch (Exception e) {
+					context.getLogger().debug(this,
+							"Cannot retrieve thumbnail versions: "+e);
+				}
+				byte[] values;
+				BufferedImage image;
+				j = pixelsID.iterator();
+				while (j.hasNext()) {
+					id = (Long) j.next();
+					values = cache.get(id, max, versions.get(id));
+					if (values == null) continue;
+					try {
+						image = createImage(values);
+					} catch (Exception e) {
+						image = null;
+					}
+					if (image != null) {
+						r.put(id, image);
+						toFetch.remove(id);
+					}
+				}
+				if (toFetch.size() == 0) return r;
+			}
+			j = toFetch.iterator();
 			List blocks = new ArrayList();
 			int index = 0;
 			List l = null;
@@ -643,7 +711,7 @@ class OmeroImageServiceImpl
 			}
 			if (l != null && l.size() > 0)
 				blocks.add(l);
-			ids.addAll(pixelsID);
+			ids.addAll(toFetch);
 			j = blocks.iterator();
 			Map m = new HashMap();
 			Map map;
@@ -670,6 +738,8 @@ class OmeroImageServiceImpl
 				else {
 					try {
 						r.put(id, createImage(values));
+						if (cache != null)
+							cache.put(id, max, versions.get(id), values);
 					} catch (Exception e) {
 						r.put(id, null);
 					}
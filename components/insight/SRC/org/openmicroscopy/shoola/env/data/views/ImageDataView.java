@@ -42,7 +42,8 @@ import omero.gateway.SecurityContext;
 import org.openmicroscopy.shoola.env.event.AgentEventListener;
 import org.openmicroscopy.shoola.env.rnd.RenderingControl;
 import org.openmicroscopy.shoola.env.rnd.RndProxyDef;
-import org.openmicroscopy.shoola.env.rnd.data.Tile;
+import org.openmicroscopy.shoola.env.rnd.data.TileCache;
+import org.openmicroscopy.shoola.env.rnd.data.TileQueue;
 import org.openmicroscopy.shoola.util.roi.model.util.Coord3D;
 
 import omero.gateway.model.DataObject;
@@ -486,13 +487,14 @@ public interface ImageDataView
 	 * @param pixelsID The id of the pixels set.
 	 * @param pDef The plane to render.
 	 * @param proxy The rendering control to use
-	 * @param tiles The tiles.
+	 * @param queue The queue of tiles to load, shared by the loaders.
+	 * @param cache The cache of rendered tiles or <code>null</code>.
 	 * @param observer Call-back handler.
 	 * @return See above.
 	 */
 	public CallHandle loadTiles(SecurityContext ctx, long pixelsID,
-		PlaneDef pDef, RenderingControl proxy, Collection<Tile> tiles,
-		 AgentEventListener observer);
+		PlaneDef pDef, RenderingControl proxy, TileQueue queue,
+		TileCache cache, AgentEventListener observer);
 
 	/**
 	 * Saves the ImageJ results back to OMERO.
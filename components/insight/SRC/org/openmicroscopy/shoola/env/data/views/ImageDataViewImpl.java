@@ -66,7 +66,8 @@ import org.openmicroscopy.shoola.env.data.views.calls.TileLoader;
 import org.openmicroscopy.shoola.env.event.AgentEventListener;
 import org.openmicroscopy.shoola.env.rnd.RenderingControl;
 import org.openmicroscopy.shoola.env.rnd.RndProxyDef;
-import org.openmicroscopy.shoola.env.rnd.data.Tile;
+import org.openmicroscopy.shoola.env.rnd.data.TileCache;
+import org.openmicroscopy.shoola.env.rnd.data.TileQueue;
 import org.openmicroscopy.shoola.util.roi.model.util.Coord3D;
 
 import omero.gateway.model.DataObject;
@@ -459,13 +460,15 @@ class ImageDataViewImpl
 
 	/**
      * Implemented as specified by the view interface.
-     * @see ImageDataView#loadTiles(long, PlaneDef, List, AgentEventListener)
+     * @see ImageDataView#loadTiles(SecurityContext, long, PlaneDef,
+     * RenderingControl, TileQueue, TileCache, AgentEventListener)
      */
 	public CallHandle loadTiles(SecurityContext ctx, long pixelsID,
-		PlaneDef pDef, RenderingControl proxy, Collection<Tile> tiles,
-		AgentEventListener observer)
+		PlaneDef pDef, RenderingControl proxy, TileQueue queue,
+		TileCache cache, AgentEventListener observer)
 	{
-		BatchCallTree cmd = new TileLoader(ctx, pixelsID, pDef, proxy, tiles);
+		BatchCallTree cmd = new TileLoader(ctx, pixelsID, pDef, proxy, queue,
+				cache);
 		return cmd.exec(observer);
 	}
 	
@@ -41,6 +41,9 @@ import omero.gateway.exception.RenderingServiceException;
 
 import org.openmicroscopy.shoola.env.data.views.BatchCall;
 import org.openmicroscopy.shoola.env.data.views.BatchCallTree;
+import org.openmicroscopy.shoola.util.concur.tasks.ExecException;
+import org.openmicroscopy.shoola.util.concur.tasks.Future;
+import org.openmicroscopy.shoola.util.concur.tasks.Invocation;
 import org.openmicroscopy.shoola.util.image.geom.Factory;
 
 import omero.gateway.model.DataObject;
@@ -53,6 +56,9 @@ import omero.gateway.model.PixelsData;
  * Command to load a given set of thumbnails.
  * <p>As thumbnails are retrieved from <i>OMERO</i>, they're posted back to the 
  * caller through <code>DSCallFeedbackEvent</code>s. </p>
+ * <p>The thumbnails are retrieved in chunks, several chunks being requested
+ * concurrently so that the next chunks are on their way while the current
+ * one is delivered. The chunks are still delivered in order.</p>
  *
  * @author  Jean-Marie Burel &nbsp;&nbsp;&nbsp;&nbsp;
  * <a href="mailto:j.burel@dundee.ac.uk">j.burel@dundee.ac.uk</a>
@@ -85,6 +91,9 @@ extends BatchCallTree
     /** Maximum number of thumbnails retrieved asynchronously. */
     private static final int FETCH_SIZE = 10;
 
+    /** Maximum number of chunks requested concurrently. */
+    private static final int FETCH_IN_FLIGHT = 3;
+
     /** 
      * Factor by which the maximum number of thumbnails to fetch
      * is multiplied with when the connection's speed is <code>Low</code>.
@@ -118,6 +127,9 @@ extends BatchCallTree
     /** The maximum number of the tumbnails fetched. */
     private int fetchSize;
 
+    /** The maximum number of chunks requested concurrently. */
+    private int inFlight;
+
     /** The type of nodes to handle. */
     private Class type;
 
@@ -181,14 +193,19 @@ extends BatchCallTree
             default:
                 fetchSize = value;
         }
+        if (fetchSize <= 0) fetchSize = 1;
+        Object n = context.lookup(LookupNames.THUMBNAIL_FETCH_IN_FLIGHT);
+        if (n != null && (n instanceof Integer)) inFlight = (Integer) n;
+        if (inFlight <= 0) inFlight = FETCH_IN_FLIGHT;
     }
 
     /**
      * Loads the thumbnails for the passed collection of files.
      * 
      * @param files The collection of files to handle.
+     * @return The collection of {@link ThumbnailData}s.
      */
-    private void loadFSThumbnails(List files)
+    private List loadFSThumbnails(List files)
     {
         List result = new ArrayList();
         try {
@@ -216,28 +233,28 @@ extends BatchCallTree
                 else 
                     result.add(new ThumbnailData(obj, thumb, valid));
             }
-            currentThumbs = result;
         } catch (Exception e) {
-            currentThumbs = result;
             context.getLogger().error(this, 
                     "Cannot retrieve thumbnail: "+e.getMessage());
         }
+        return result;
     }
 
     /**
      * Loads the thumbnails for the passed collection of experimenters.
      * 
      * @param experimenters The collection of experimenters to handle.
+     * @return The collection of {@link ThumbnailData}s.
      */
-    private void loadExperimenterThumbnails(List experimenters)
+    private List loadExperimenterThumbnails(List experimenters)
     {
+        List result = new ArrayList();
         try {
             ExperimenterData exp = (ExperimenterData) context.lookup(
                     LookupNames.CURRENT_USER_DETAILS);
             Map<DataObject, BufferedImage> m = 
                     service.getExperimenterThumbnailSet(ctx, experimenters,
                             maxLength);
-            List result = new ArrayList();
             Entry<DataObject, BufferedImage> entry;
             Iterator<Entry<DataObject, BufferedImage>> i = m.entrySet().iterator();
             BufferedImage thumb;
@@ -255,11 +272,11 @@ extends BatchCallTree
                 else 
                     result.add(new ThumbnailData(obj, thumb, valid));
             }
-            currentThumbs = result;
         } catch (Exception e) {
             context.getLogger().error(this, 
                     "Cannot retrieve thumbnail: "+e.getMessage());
         }
+        return result;
     }
 
 
@@ -267,13 +284,14 @@ extends BatchCallTree
      * Loads the thumbnail for passed collection of pixels set.
      * 
      * @param ids The collection of pixels set id.
+     * @return The collection of {@link ThumbnailData}s.
      */
-    private void loadThumbnails(List ids) 
+    private List loadThumbnails(List ids) 
     {
+        List<Object> result = new ArrayList<Object>();
         try {
             Map<Long, BufferedImage>
             m = service.getThumbnailSet(ctx, ids, maxLength);
-            List<Object> result = new ArrayList<Object>();
             Iterator<Long> i = m.keySet().iterator();
             long pixelsID;
             BufferedImage thumbPix;
@@ -297,35 +315,80 @@ extends BatchCallTree
                     result.add(new ThumbnailData(imageID, thumbPix,  valid));
                 }
             }
-            currentThumbs = result;
-
         } catch (RenderingServiceException e) {
             context.getLogger().error(this, 
                     "Cannot retrieve thumbnail: "+e.getExtendedMessage());
         }
+        return result;
+    }
+
+    /**
+     * Loads the thumbnails of the passed chunk.
+     * 
+     * @param objects The chunk to handle.
+     * @return The collection of {@link ThumbnailData}s.
+     */
+    private List loadChunk(List objects)
+    {
+        if (ImageData.class.equals(type)) return loadThumbnails(objects);
+        if (FileData.class.equals(type)) return loadFSThumbnails(objects);
+        if (ExperimenterData.class.equals(type))
+            return loadExperimenterThumbnails(objects);
+        return new ArrayList();
+    }
+
+    /**
+     * Returns the thumbnails of the specified chunk, waiting for them if
+     * required. The following chunks are requested so that at most
+     * {@link #inFlight} chunks are requested at any time.
+     * 
+     * @param chunks The pending requests, one per chunk.
+     * @param index The index of the chunk.
+     * @return The collection of {@link ThumbnailData}s.
+     * @throws InterruptedException If the loading is cancelled.
+     */
+    private Object getChunk(Future[] chunks, int index)
+        throws InterruptedException
+    {
+        int n = Math.min(chunks.length, index+inFlight);
+        for (int k = index; k < n; k++) {
+            if (chunks[k] != null) continue;
+            final List objects = toHandle.get(k);
+            chunks[k] = getProcessor().exec(new Invocation() {
+                public Object call() { return loadChunk(objects); }
+            });
+        }
+        try {
+            return chunks[index].getResult();
+        } catch (ExecException e) {
+            context.getLogger().error(this, 
+                    "Cannot retrieve thumbnail: "+e.getMessage());
+            return new ArrayList();
+        } catch (InterruptedException e) {
+            for (int k = index; k < chunks.length; k++) {
+                if (chunks[k] != null) chunks[k].cancelExecution();
+            }
+            throw e;
+        } finally {
+            chunks[index] = null;
+        }
     }
 
     /**
-     * Adds a {@link BatchCall} to the tree for each thumbnail to retrieve.
+     * Adds a {@link BatchCall} to the tree for each chunk of thumbnails to
+     * retrieve. Each call delivers its chunk, the requests for the next
+     * chunks being already sent.
      * @see BatchCallTree#buildTree()
      */
     protected void buildTree()
     {
-        Iterator<List> i = toHandle.iterator();
+        final Future[] chunks = new Future[toHandle.size()];
         String description = "Loading collection of thumbnails";
-        List l;
-        while (i.hasNext()) {
-            l = i.next();
-            final List ids = l;
+        for (int k = 0; k < chunks.length; k++) {
+            final int index = k;
             add(new BatchCall(description) {
-                public void doCall() { 
-                    if (ImageData.class.equals(type)) {
-                        loadThumbnails(ids);
-                    } else if (FileData.class.equals(type)) {
-                        loadFSThumbnails(ids);
-                    } else if (ExperimenterData.class.equals(type)) {
-                        loadExperimenterThumbnails(ids);
-                    }
+                public void doCall() throws Exception { 
+                    currentThumbs = getChunk(chunks, index);
                 }
             });  
         }
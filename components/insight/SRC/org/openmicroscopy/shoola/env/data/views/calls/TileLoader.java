@@ -24,8 +24,7 @@ package org.openmicroscopy.shoola.env.data.views.calls;
 
 
 //Java imports
-import java.util.Collection;
-import java.util.Iterator;
+import java.awt.image.BufferedImage;
 
 //Third-party libraries
 
@@ -38,10 +37,17 @@ import org.openmicroscopy.shoola.env.data.views.BatchCallTree;
 import org.openmicroscopy.shoola.env.rnd.RenderingControl;
 import org.openmicroscopy.shoola.env.rnd.data.Region;
 import org.openmicroscopy.shoola.env.rnd.data.Tile;
+import org.openmicroscopy.shoola.env.rnd.data.TileCache;
+import org.openmicroscopy.shoola.env.rnd.data.TileQueue;
 import org.openmicroscopy.shoola.util.image.geom.Factory;
 
 /** 
  * Loads the tiles.
+ * The tiles are taken from a queue shared by the loaders rendering the
+ * same plane, one loader per rendering control, so the number of concurrent
+ * requests is bounded by the number of rendering controls and the tiles
+ * closest to the center of the viewport are rendered first.
+ * The rendered tiles are cached if a cache is specified.
  *
  * @author Jean-Marie Burel &nbsp;&nbsp;&nbsp;&nbsp;
  * <a href="mailto:j.burel@dundee.ac.uk">j.burel@dundee.ac.uk</a>
@@ -59,8 +65,11 @@ public class TileLoader
 	/** The lastly retrieve tile. */
     private Object	currentTile;
     
-    /** The tiles.*/
-    private Collection<Tile> tiles;
+    /** The tiles to load.*/
+    private TileQueue queue;
+
+    /** The cache of rendered tiles or <code>null</code>.*/
+    private TileCache cache;
 
     /** The plane to render.*/
     private PlaneDef pDef;
@@ -76,20 +85,33 @@ public class TileLoader
     private void loadTile(Tile tile) 
     {
     	Region rt = tile.getRegion();
+    	String key = null;
     	try {
-    		PlaneDef def = new PlaneDef();
-    		def.slice = pDef.slice;
-    		def.stride = pDef.stride;
-    		def.x = pDef.x;
-    		def.y = pDef.y;
-    		def.z = pDef.z;
-    		def.t = pDef.t;
-    		def.region = new RegionDef(rt.getX(), rt.getY(),
-    				rt.getWidth(), rt.getHeight());
-    		tile.setImage(proxy.render(def));
+    		if (cache != null)
+    			key = TileCache.createKey(
+    					proxy.getRndSettingsCopy().getRenderingKey()+"/"+
+    					proxy.getCompressionLevel(),
+    					proxy.getSelectedResolutionLevel(), pDef.z, pDef.t, rt);
+    		BufferedImage image = cache == null ? null : cache.get(key);
+    		if (image == null) {
+    			PlaneDef def = new PlaneDef();
+        		def.slice = pDef.slice;
+        		def.stride = pDef.stride;
+        		def.x = pDef.x;
+        		def.y = pDef.y;
+        		def.z = pDef.z;
+        		def.t = pDef.t;
+        		def.region = new RegionDef(rt.getX(), rt.getY(),
+        				rt.getWidth(), rt.getHeight());
+        		image = proxy.render(def);
+        		if (cache != null) cache.put(key, image);
+    		}
+    		tile.setImage(image);
 		} catch (Exception e) {
 			tile.setImage(Factory.createDefaultImageThumbnail(rt.getWidth(), 
 					rt.getHeight()));
+		} finally {
+			queue.done(tile);
 		}
     	currentTile = tile;
     }
@@ -111,25 +133,28 @@ public class TileLoader
     protected Object getResult() { return null; }
     
     /**
-     * Adds a {@link BatchCall} to the tree for each tile to retrieve.
-     * The batch call simply invokes {@link #loadTile(Tile)}.
-     * @see BatchCallTree#buildTree()
+     * Adds a {@link BatchCall} to the tree to load the next tile in the queue.
+     * Once the tile is loaded, a new call is added if tiles are still waiting.
      */
-    protected void buildTree()
+    private void addNextCall()
     {
-    	Iterator<Tile> i = tiles.iterator();
-    	String description = "Loading tiles";
-    	Tile tile;
-    	while (i.hasNext()) {
-			tile = i.next();
-			final Tile t = tile;
-			add(new BatchCall(description) {
-        		public void doCall() { 
-        			loadTile(t);
-        		}
-        	});  
-		}
+    	add(new BatchCall("Loading tiles") {
+    		public void doCall() {
+    			Tile tile = queue.poll();
+    			currentTile = null;
+    			if (tile == null) return;
+    			loadTile(tile);
+    			if (queue.size() > 0) addNextCall();
+    		}
+    	});
     }
+
+    /**
+     * Adds the {@link BatchCall} loading the first tile of the queue.
+     * The batch calls invoke {@link #loadTile(Tile)}.
+     * @see BatchCallTree#buildTree()
+     */
+    protected void buildTree() { addNextCall(); }
     
     /**
      * Creates a new instance.
@@ -137,20 +162,25 @@ public class TileLoader
      * @param ctx The security context.
      * @param pixelsID 	The id of the pixels set.
      * @param pDef The plane to render.
-	 * @param tiles	The tiles.
+     * @param proxy The rendering control to use.
+	 * @param queue	The queue of tiles to load.
+	 * @param cache The cache of rendered tiles or <code>null</code>.
      */
     public TileLoader(SecurityContext ctx, long pixelsID, PlaneDef pDef,
-    		RenderingControl proxy, Collection<Tile> tiles)
+    		RenderingControl proxy, TileQueue queue, TileCache cache)
     {
     	if (proxy == null)
 			throw new IllegalArgumentException("No rendering control.");
 		if (pixelsID != proxy.getPixelsID())
 			throw new IllegalArgumentException("Pixels ID not valid.");
-        if (tiles == null || tiles.size() == 0)
+        if (queue == null)
             throw new IllegalArgumentException("No tiles to load.");
         if (pDef == null)
         	 throw new IllegalArgumentException("No plane to render.");
-        this.tiles = tiles;
+        if (cache != null && cache.getPixelsID() != pixelsID)
+        	cache = null;
+        this.queue = queue;
+        this.cache = cache;
         this.pDef = pDef;
         this.proxy = proxy;
     }
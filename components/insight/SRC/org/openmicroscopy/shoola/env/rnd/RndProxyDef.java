@@ -367,6 +367,52 @@ public class RndProxyDef
      */
     public RenderingDef getData() { return data; }
 
+    /**
+     * Returns a key identifying the values used to render a plane.
+     * Two copies of the settings return the same key if and only if they
+     * render the pixels in the same way, whether or not the settings have
+     * been saved. The default z-section and timepoint are not part of
+     * the key.
+     *
+     * @return See above.
+     */
+    public String getRenderingKey()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(colorModel);
+        sb.append(';');
+        sb.append(cdStart);
+        sb.append(',');
+        sb.append(cdEnd);
+        sb.append(',');
+        sb.append(bitResolution);
+        sb.append(',');
+        sb.append(compression);
+        Iterator<Integer> i = channels.keySet().iterator();
+        Integer index;
+        ChannelBindingsProxy channel;
+        int[] rgba;
+        while (i.hasNext()) {
+            index = i.next();
+            channel = channels.get(index);
+            sb.append(';');
+            sb.append(index);
+            if (!channel.isActive()) continue;
+            rgba = channel.getRGBA();
+            sb.append('[');
+            sb.append(rgba[0]).append(',').append(rgba[1]).append(',');
+            sb.append(rgba[2]).append(',').append(rgba[3]).append(']');
+            sb.append(channel.getInputStart()).append(',');
+            sb.append(channel.getInputEnd()).append(',');
+            sb.append(channel.getFamily()).append(',');
+            sb.append(channel.getCurveCoefficient()).append(',');
+            sb.append(channel.isNoiseReduction()).append(',');
+            sb.append(channel.getLookupTable()).append(',');
+            sb.append(channel.getReverseIntensity());
+        }
+        return sb.toString();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
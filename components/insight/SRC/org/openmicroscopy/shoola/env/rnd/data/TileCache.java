@@ -0,0 +1,169 @@
+/*
+ * org.openmicroscopy.shoola.env.rnd.data.TileCache
+ *
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ * 	This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package org.openmicroscopy.shoola.env.rnd.data;
+
+//Java imports
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Third-party libraries
+
+//Application-internal dependencies
+
+/**
+ * In-memory cache of the rendered tiles of a pixels set.
+ * The tiles are keyed by the rendering settings used, the resolution
+ * level, the plane and the region, so changing the settings back and forth
+ * reuses the tiles already rendered. The cache is bounded by the number of
+ * bytes held by the images, the least recently used tiles are discarded
+ * first.
+ *
+ * @since 5.4.0
+ */
+public class TileCache
+{
+
+	/** The maximum number of bytes held by the cache. */
+	private final long maxSize;
+
+	/** The number of bytes currently held. */
+	private long size;
+
+	/** The pixels set the tiles are for. */
+	private final long pixelsID;
+
+	/** The cached images, in access order. */
+	private final LinkedHashMap<String, BufferedImage> images;
+
+	/**
+	 * Returns the approximate number of bytes held by the image.
+	 *
+	 * @param image The image to handle.
+	 * @return See above.
+	 */
+	private static long sizeOf(BufferedImage image)
+	{
+		return 4L*image.getWidth()*image.getHeight();
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param pixelsID The id of the pixels set.
+	 * @param maxSize The maximum number of bytes held by the cache.
+	 */
+	public TileCache(long pixelsID, long maxSize)
+	{
+		this.pixelsID = pixelsID;
+		this.maxSize = maxSize;
+		images = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the key of the specified tile.
+	 *
+	 * @param settings The key identifying the rendering settings.
+	 * @param level The resolution level.
+	 * @param z The selected z-section.
+	 * @param t The selected timepoint.
+	 * @param region The region covered by the tile.
+	 * @return See above.
+	 */
+	public static String createKey(String settings, int level, int z, int t,
+			Region region)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(level).append('/').append(z).append('/').append(t);
+		sb.append('/').append(region.getX()).append(',');
+		sb.append(region.getY()).append(',').append(region.getWidth());
+		sb.append(',').append(region.getHeight()).append('/');
+		sb.append(settings);
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the id of the pixels set.
+	 *
+	 * @return See above.
+	 */
+	public long getPixelsID() { return pixelsID; }
+
+	/**
+	 * Returns the cached image or <code>null</code>.
+	 *
+	 * @param key The key of the tile.
+	 * @return See above.
+	 */
+	public synchronized BufferedImage get(String key)
+	{
+		if (key == null) return null;
+		return images.get(key);
+	}
+
+	/**
+	 * Caches the image, evicting the least recently used tiles if the
+	 * cache is full. Images bigger than the cache are not cached.
+	 *
+	 * @param key The key of the tile.
+	 * @param image The image to cache.
+	 */
+	public synchronized void put(String key, BufferedImage image)
+	{
+		if (key == null || image == null) return;
+		long n = sizeOf(image);
+		if (n > maxSize) return;
+		BufferedImage old = images.put(key, image);
+		if (old != null) size -= sizeOf(old);
+		size += n;
+		Iterator<Map.Entry<String, BufferedImage>> i =
+				images.entrySet().iterator();
+		while (size > maxSize && i.hasNext()) {
+			size -= sizeOf(i.next().getValue());
+			i.remove();
+		}
+	}
+
+	/**
+	 * Returns the number of cached tiles.
+	 *
+	 * @return See above.
+	 */
+	public synchronized int getCount() { return images.size(); }
+
+	/**
+	 * Returns the number of bytes held by the cache.
+	 *
+	 * @return See above.
+	 */
+	public synchronized long getSize() { return size; }
+
+	/** Removes all the cached tiles. */
+	public synchronized void clear()
+	{
+		images.clear();
+		size = 0;
+	}
+
+}
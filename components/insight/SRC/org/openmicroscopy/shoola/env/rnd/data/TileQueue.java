@@ -0,0 +1,182 @@
+/*
+ * org.openmicroscopy.shoola.env.rnd.data.TileQueue
+ *
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ * 	This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package org.openmicroscopy.shoola.env.rnd.data;
+
+//Java imports
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+//Third-party libraries
+
+//Application-internal dependencies
+
+/**
+ * Queue of the tiles waiting to be loaded, shared by the loaders working
+ * on the same plane. The tiles are handed out starting with the one
+ * closest to the center of the viewport. Tiles still waiting can be
+ * cancelled when they leave the viewport.
+ * A tile handed out is considered <i>in progress</i> until
+ * {@link #done(Tile)} is invoked, so it is never handed out twice.
+ *
+ * @since 5.4.0
+ */
+public class TileQueue
+{
+
+	/** The tiles waiting to be loaded. */
+	private final List<Tile> pending;
+
+	/** The tiles currently loaded. */
+	private final Set<Tile> running;
+
+	/** The x-coordinate of the center of the viewport. */
+	private double centerX;
+
+	/** The y-coordinate of the center of the viewport. */
+	private double centerY;
+
+	/**
+	 * Returns the squared distance between the center of the tile and
+	 * the center of the viewport.
+	 *
+	 * @param tile The tile to handle.
+	 * @return See above.
+	 */
+	private double distance(Tile tile)
+	{
+		Region r = tile.getRegion();
+		if (r == null) return Double.MAX_VALUE;
+		double dx = r.getX()+r.getWidth()/2.0-centerX;
+		double dy = r.getY()+r.getHeight()/2.0-centerY;
+		return dx*dx+dy*dy;
+	}
+
+	/** Creates a new instance. */
+	public TileQueue()
+	{
+		pending = new ArrayList<Tile>();
+		running = new HashSet<Tile>();
+	}
+
+	/**
+	 * Sets the viewport, the tiles closest to its center are loaded first.
+	 *
+	 * @param viewport The visible region.
+	 */
+	public synchronized void setViewport(Region viewport)
+	{
+		if (viewport == null) return;
+		centerX = viewport.getX()+viewport.getWidth()/2.0;
+		centerY = viewport.getY()+viewport.getHeight()/2.0;
+	}
+
+	/**
+	 * Adds the tiles not already waiting or in progress.
+	 *
+	 * @param tiles The tiles to add.
+	 * @return The number of tiles added.
+	 */
+	public synchronized int addAll(Collection<Tile> tiles)
+	{
+		if (tiles == null) return 0;
+		Iterator<Tile> i = tiles.iterator();
+		Tile tile;
+		int count = 0;
+		while (i.hasNext()) {
+			tile = i.next();
+			if (running.contains(tile) || pending.contains(tile)) continue;
+			pending.add(tile);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Cancels the waiting tiles that are not in the specified collection.
+	 * The tiles in progress are not affected.
+	 *
+	 * @param tiles The tiles still to load.
+	 * @return The number of tiles cancelled.
+	 */
+	public synchronized int retainAll(Collection<Tile> tiles)
+	{
+		int size = pending.size();
+		if (tiles == null) pending.clear();
+		else pending.retainAll(tiles);
+		return size-pending.size();
+	}
+
+	/**
+	 * Returns the waiting tile closest to the center of the viewport or
+	 * <code>null</code> if no tile is waiting. The returned tile is
+	 * marked as in progress.
+	 *
+	 * @return See above.
+	 */
+	public synchronized Tile poll()
+	{
+		if (pending.isEmpty()) return null;
+		int index = 0;
+		double min = distance(pending.get(0));
+		double d;
+		for (int i = 1; i < pending.size(); i++) {
+			d = distance(pending.get(i));
+			if (d < min) {
+				min = d;
+				index = i;
+			}
+		}
+		Tile tile = pending.remove(index);
+		running.add(tile);
+		return tile;
+	}
+
+	/**
+	 * Indicates that the specified tile has been loaded.
+	 *
+	 * @param tile The loaded tile.
+	 */
+	public synchronized void done(Tile tile)
+	{
+		running.remove(tile);
+	}
+
+	/**
+	 * Returns the number of tiles waiting to be loaded.
+	 *
+	 * @return See above.
+	 */
+	public synchronized int size() { return pending.size(); }
+
+	/**
+	 * Cancels all the waiting tiles.
+	 *
+	 * @return The number of tiles cancelled.
+	 */
+	public synchronized int clear() { return retainAll(null); }
+
+}
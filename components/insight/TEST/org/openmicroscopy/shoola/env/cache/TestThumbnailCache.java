@@ -0,0 +1,194 @@
+/*
+ * org.openmicroscopy.shoola.env.cache.TestThumbnailCache
+ *
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+package org.openmicroscopy.shoola.env.cache;
+
+//Java imports
+import java.io.File;
+import java.util.Arrays;
+
+//Third-party libraries
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+//Application-internal dependencies
+
+/**
+ * Tests for the {@link ThumbnailCache} class.
+ *
+ * @since 5.4.0
+ */
+public class TestThumbnailCache
+    extends TestCase
+{
+
+    /** The directory hosting the cache. */
+    private File dir;
+
+    /**
+     * Returns a thumbnail of the specified number of bytes.
+     *
+     * @param n The number of bytes.
+     * @param value The value of the bytes.
+     * @return See above.
+     */
+    private static byte[] thumbnail(int n, int value)
+    {
+        byte[] values = new byte[n];
+        Arrays.fill(values, (byte) value);
+        return values;
+    }
+
+    /**
+     * Sets the time the specified thumbnail was last used.
+     *
+     * @param pixelsID The id of the pixels set.
+     * @param length The size of the thumbnail.
+     * @param version The version of the thumbnail.
+     * @param time The time to set.
+     */
+    private void setLastUsed(long pixelsID, int length, String version,
+            long time)
+    {
+        File f = new File(new File(dir, Long.toString(pixelsID)),
+                length+"_"+version+".thumb");
+        assertTrue(f.isFile());
+        assertTrue(f.setLastModified(time));
+    }
+
+    @Override
+    protected void setUp()
+    {
+        dir = Files.createTempDir();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    //Tests
+    /** Checks that nothing is returned for thumbnails not cached.*/
+    public void testMiss()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 100);
+        assertNull(cache.get(1, 96, "1"));
+        assertNull(cache.get(1, 96, null));
+        assertEquals(0, cache.getSize());
+    }
+
+    /** Checks that a cached thumbnail is only returned for its version.*/
+    public void testHit()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 100);
+        byte[] values = thumbnail(10, 1);
+        cache.put(1, 96, "1", values);
+        assertTrue(Arrays.equals(values, cache.get(1, 96, "1")));
+        assertNull(cache.get(1, 96, "2"));
+        assertNull(cache.get(1, 48, "1"));
+        assertNull(cache.get(2, 96, "1"));
+        assertEquals(10, cache.getSize());
+    }
+
+    /** Checks that caching a new version replaces the previous one.*/
+    public void testNewVersionReplacesPrevious()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 100);
+        cache.put(1, 96, "1", thumbnail(10, 1));
+        cache.put(1, 48, "1", thumbnail(5, 3));
+        byte[] values = thumbnail(20, 2);
+        cache.put(1, 96, "2", values);
+        assertNull(cache.get(1, 96, "1"));
+        assertTrue(Arrays.equals(values, cache.get(1, 96, "2")));
+        assertNotNull(cache.get(1, 48, "1"));
+        assertEquals(25, cache.getSize());
+    }
+
+    /** Checks that the least recently used thumbnails are evicted first.*/
+    public void testSizeBoundedEviction()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 10);
+        cache.put(1, 96, "1", thumbnail(4, 1));
+        cache.put(2, 96, "1", thumbnail(4, 2));
+        setLastUsed(1, 96, "1", 1000);
+        setLastUsed(2, 96, "1", 2000);
+        //Using the first thumbnail makes the second one the oldest.
+        assertNotNull(cache.get(1, 96, "1"));
+        cache.put(3, 96, "1", thumbnail(4, 3));
+        assertNotNull(cache.get(1, 96, "1"));
+        assertNull(cache.get(2, 96, "1"));
+        assertNotNull(cache.get(3, 96, "1"));
+        assertEquals(8, cache.getSize());
+    }
+
+    /** Checks that a thumbnail larger than the cache is not kept.*/
+    public void testTooLargeNotCached()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 10);
+        cache.put(1, 96, "1", thumbnail(11, 1));
+        assertNull(cache.get(1, 96, "1"));
+        cache.put(1, 96, "1", new byte[0]);
+        assertNull(cache.get(1, 96, "1"));
+        assertEquals(0, cache.getSize());
+    }
+
+    /** Checks that all the thumbnails of a pixels set are invalidated.*/
+    public void testRemove()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 100);
+        cache.put(1, 96, "1", thumbnail(10, 1));
+        cache.put(1, 48, "1", thumbnail(5, 1));
+        cache.put(2, 96, "1", thumbnail(10, 2));
+        cache.remove(1);
+        assertNull(cache.get(1, 96, "1"));
+        assertNull(cache.get(1, 48, "1"));
+        assertNotNull(cache.get(2, 96, "1"));
+        assertEquals(10, cache.getSize());
+        assertFalse(new File(dir, "1").exists());
+        //Removing a pixels set not cached has no effect.
+        cache.remove(3);
+        assertEquals(10, cache.getSize());
+    }
+
+    /** Checks that a cache reopened on the same directory is reused.*/
+    public void testReopen()
+    {
+        ThumbnailCache cache = new ThumbnailCache(dir, 100);
+        cache.put(1, 96, "1", thumbnail(10, 1));
+        cache.put(2, 96, "1", thumbnail(10, 2));
+        setLastUsed(1, 96, "1", 1000);
+        setLastUsed(2, 96, "1", 2000);
+        cache = new ThumbnailCache(dir, 100);
+        assertEquals(20, cache.getSize());
+        assertNotNull(cache.get(1, 96, "1"));
+        //A smaller bound evicts the oldest thumbnails at once.
+        setLastUsed(1, 96, "1", 1000);
+        cache = new ThumbnailCache(dir, 15);
+        assertEquals(10, cache.getSize());
+        assertNull(cache.get(1, 96, "1"));
+        assertNotNull(cache.get(2, 96, "1"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * org.openmicroscopy.shoola.env.rnd.data.TestTileQueue
+ *
+ *------------------------------------------------------------------------------
+ *  Copyright (C) 2017 University of Dundee. All rights reserved.
+ *
+ *
+ * 	This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ *------------------------------------------------------------------------------
+ */
+
+package org.openmicroscopy.shoola.env.rnd.data;
+
+
+//Java imports
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Third-party libraries
+import junit.framework.TestCase;
+
+//Application-internal dependencies
+
+/**
+ * Routine unit test for {@link TileQueue} and {@link TileCache}.
+ *
+ * @since 5.4.0
+ */
+public class TestTileQueue
+    extends TestCase
+{
+
+    private List<Tile> tiles;
+
+    protected void setUp()
+    {
+        tiles = new ArrayList<Tile>();
+        Tile tile;
+        for (int i = 0; i < 9; i++) {
+            tile = new Tile(i, i/3, i%3);
+            tile.setRegion(new Region((i%3)*10, (i/3)*10, 10, 10));
+            tiles.add(tile);
+        }
+    }
+
+    public void testPollFromCenter()
+    {
+        TileQueue queue = new TileQueue();
+        queue.setViewport(new Region(0, 0, 30, 30));
+        assertEquals(9, queue.addAll(tiles));
+        assertEquals(0, queue.addAll(tiles));
+        assertSame(tiles.get(4), queue.poll());
+        assertEquals(8, queue.size());
+        queue.setViewport(new Region(20, 20, 10, 10));
+        assertSame(tiles.get(8), queue.poll());
+    }
+
+    public void testInProgressNotAddedTwice()
+    {
+        TileQueue queue = new TileQueue();
+        queue.addAll(tiles);
+        Tile tile = queue.poll();
+        assertEquals(0, queue.addAll(Arrays.asList(tile)));
+        queue.done(tile);
+        assertEquals(1, queue.addAll(Arrays.asList(tile)));
+    }
+
+    public void testRetainCancelsWaitingTiles()
+    {
+        TileQueue queue = new TileQueue();
+        queue.addAll(tiles);
+        assertEquals(7, queue.retainAll(tiles.subList(0, 2)));
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.clear());
+        assertNull(queue.poll());
+    }
+
+    public void testCacheEvictsLeastRecentlyUsed()
+    {
+        //Each image holds 400 bytes.
+        TileCache cache = new TileCache(1, 1000);
+        String k1 = TileCache.createKey("a", 0, 0, 0, tiles.get(0).getRegion());
+        String k2 = TileCache.createKey("a", 0, 0, 0, tiles.get(1).getRegion());
+        String k3 = TileCache.createKey("b", 0, 0, 0, tiles.get(0).getRegion());
+        BufferedImage image = new BufferedImage(10, 10,
+                BufferedImage.TYPE_INT_RGB);
+        cache.put(k1, image);
+        cache.put(k2, image);
+        assertSame(image, cache.get(k1));
+        cache.put(k3, image);
+        assertEquals(2, cache.getCount());
+        assertEquals(800, cache.getSize());
+        assertNull(cache.get(k2));
+        assertSame(image, cache.get(k1));
+        assertSame(image, cache.get(k3));
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.model.units;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@link Conversion} which has been folded into the form
+ * <code>factor * original + offset</code> with exact {@link BigDecimal}
+ * constants. All the generated unit conversions are of that form, so the
+ * tree of {@link Conversion} instances is only walked once, when the unit
+ * classes are loaded, rather than on every call.
+ *
+ * {@link #convertToDouble(double)} provides a fast path which does not
+ * allocate. The constants are kept as pairs of doubles so that the result
+ * matches the one of the {@link BigDecimal} path but for the last bit in
+ * rare cases. If the result of the fast path overflows,
+ * {@link #convert(double)} can be used to retrieve the exact value, e.g. for
+ * a {@link BigResult}.
+ *
+ * A {@link Conversion} which cannot be folded is kept and evaluated as
+ * before.
+ */
+public class CompiledConversion extends Conversion {
+
+    /**
+     * Folds all the conversions of the given map.
+     *
+     * @param conversions the conversions to fold, keyed by target unit.
+     * @return an unmodifiable map of the folded conversions.
+     */
+    public static <E extends Enum<E>> Map<E, CompiledConversion> compile(
+            Map<E, Conversion> conversions) {
+        if (conversions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<E, CompiledConversion> compiled = null;
+        for (Map.Entry<E, Conversion> entry : conversions.entrySet()) {
+            if (compiled == null) {
+                compiled = new EnumMap<E, CompiledConversion>(
+                        entry.getKey().getDeclaringClass());
+            }
+            compiled.put(entry.getKey(), new CompiledConversion(
+                    entry.getValue()));
+        }
+        return Collections.unmodifiableMap(compiled);
+    }
+
+    /**
+     * Returns <code>true</code> if the given conversion references the
+     * original value.
+     */
+    private static boolean isVariable(Conversion conversion) {
+        if (conversion instanceof Sym) {
+            return true;
+        }
+        for (Conversion c : conversion.conversions) {
+            if (isVariable(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Folds the given conversion into <code>{factor, offset}</code> or
+     * returns <code>null</code> if the conversion is not of that form.
+     */
+    private static BigDecimal[] fold(Conversion conversion) {
+        if (conversion instanceof Sym) {
+            return new BigDecimal[] {BigDecimal.ONE, BigDecimal.ZERO};
+        }
+        if (!isVariable(conversion)) {
+            // Constant, the original value is ignored.
+            return new BigDecimal[] {BigDecimal.ZERO, conversion.convert(0)};
+        }
+        if (conversion instanceof Add) {
+            BigDecimal[] sum = {BigDecimal.ZERO, BigDecimal.ZERO};
+            for (Conversion c : conversion.conversions) {
+                BigDecimal[] f = fold(c);
+                if (f == null) {
+                    return null;
+                }
+                sum[0] = sum[0].add(f[0]);
+                sum[1] = sum[1].add(f[1]);
+            }
+            return sum;
+        }
+        if (conversion instanceof Mul) {
+            BigDecimal[] product = {BigDecimal.ZERO, BigDecimal.ONE};
+            for (Conversion c : conversion.conversions) {
+                BigDecimal[] f = fold(c);
+                if (f == null) {
+                    return null;
+                }
+                if (product[0].signum() != 0 && f[0].signum() != 0) {
+                    // Not linear.
+                    return null;
+                }
+                product[0] = product[0].multiply(f[1]).add(
+                        f[0].multiply(product[1]));
+                product[1] = product[1].multiply(f[1]);
+            }
+            return product;
+        }
+        if (conversion instanceof Rat && conversion.conversions.length == 2) {
+            BigDecimal[] num = fold(conversion.conversions[0]);
+            BigDecimal[] den = fold(conversion.conversions[1]);
+            if (num == null || den == null || den[0].signum() != 0) {
+                return null;
+            }
+            return new BigDecimal[] {
+                    num[0].divide(den[1], MathContext.DECIMAL128),
+                    num[1].divide(den[1], MathContext.DECIMAL128)};
+        }
+        return null;
+    }
+
+    /** Splitter used to split a double into two non-overlapping halves. */
+    private static final double SPLITTER = 134217729.0; // 2^27 + 1
+
+    /**
+     * Returns the error of the floating point product <code>a * b</code>,
+     * i.e. <code>a * b - fl(a * b)</code>, computed exactly.
+     */
+    private static double productError(double a, double b, double product) {
+        double t = SPLITTER * a;
+        double aHi = t - (t - a);
+        double aLo = a - aHi;
+        t = SPLITTER * b;
+        double bHi = t - (t - b);
+        double bLo = b - bHi;
+        return ((aHi * bHi - product) + aHi * bLo + aLo * bHi) + aLo * bLo;
+    }
+
+    /** The original conversion, used when it cannot be folded. */
+    private final Conversion original;
+
+    /** The exact factor, <code>null</code> if not folded. */
+    private final BigDecimal factor;
+
+    /** The exact offset, <code>null</code> if not folded. */
+    private final BigDecimal offset;
+
+    /** The factor rounded to a double. */
+    private final double factorHi;
+
+    /** The remainder of the factor, <code>factor - factorHi</code>. */
+    private final double factorLo;
+
+    /** The offset rounded to a double. */
+    private final double offsetHi;
+
+    /** The remainder of the offset, <code>offset - offsetHi</code>. */
+    private final double offsetLo;
+
+    /**
+     * Folds the given conversion.
+     *
+     * @param conversion the conversion to fold.
+     */
+    public CompiledConversion(Conversion conversion) {
+        BigDecimal[] folded = fold(conversion);
+        this.original = conversion;
+        if (folded == null) {
+            this.factor = null;
+            this.offset = null;
+            this.factorHi = this.factorLo = 0;
+            this.offsetHi = this.offsetLo = 0;
+            return;
+        }
+        this.factor = folded[0];
+        this.offset = folded[1];
+        this.factorHi = factor.doubleValue();
+        this.factorLo = Double.isInfinite(factorHi) ? 0 :
+            factor.subtract(new BigDecimal(factorHi)).doubleValue();
+        this.offsetHi = offset.doubleValue();
+        this.offsetLo = Double.isInfinite(offsetHi) ? 0 :
+            offset.subtract(new BigDecimal(offsetHi)).doubleValue();
+    }
+
+    /**
+     * Returns <code>true</code> if the conversion could be folded.
+     */
+    public boolean isFolded() {
+        return factor != null;
+    }
+
+    /**
+     * Exact conversion. Equivalent to evaluating the original tree.
+     */
+    @Override
+    public BigDecimal convert(double value) {
+        if (factor == null) {
+            return original.convert(value);
+        }
+        return factor.multiply(new BigDecimal(value)).add(offset);
+    }
+
+    /**
+     * Fast conversion. The computation is carried out with a pair of
+     * doubles per constant so that the result is, but for rare ties, the
+     * same as the one of the {@link BigDecimal} path. Returns an infinite
+     * value if the result overflows, in which case {@link #convert(double)}
+     * returns the exact value.
+     *
+     * @param value the value to convert.
+     * @return the converted value.
+     */
+    public double convertToDouble(double value) {
+        if (factor == null || Double.isNaN(value)
+                || Double.isInfinite(value)) {
+            // Same behavior as the BigDecimal path for non-finite values.
+            return convert(value).doubleValue();
+        }
+        double product = value * factorHi;
+        double error = productError(value, factorHi, product)
+                + value * factorLo + offsetLo;
+        double sum = product + offsetHi;
+        double v = sum - product;
+        error += (product - (sum - v)) + (offsetHi - v);
+        double result = sum + error;
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            // Overflow of the intermediate values, use the exact path.
+            return convert(value).doubleValue();
+        }
+        return result;
+    }
+
+}
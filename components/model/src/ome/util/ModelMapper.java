@@ -131,13 +131,25 @@ public abstract class ModelMapper extends ContextFilter {
 
                 Class componentType = null;
                 try {
-                    int length = Array.getLength(current);
                     componentType = currentType.getComponentType();
-                    target = Array.newInstance(componentType, length);
-                    for (int i = 0; i < length; i++) {
-                        Object currentValue = Array.get(current, i);
-                        Object targetValue = this.filter("ARRAY", currentValue);
-                        Array.set(target, i, targetValue);
+                    if (current instanceof Object[]) {
+                        // Same component type, no reflective access.
+                        Object[] currentArray = (Object[]) current;
+                        Object[] targetArray = currentArray.clone();
+                        for (int i = 0; i < currentArray.length; i++) {
+                            targetArray[i] = this.filter("ARRAY",
+                                    currentArray[i]);
+                        }
+                        target = targetArray;
+                    } else {
+                        int length = Array.getLength(current);
+                        target = Array.newInstance(componentType, length);
+                        for (int i = 0; i < length; i++) {
+                            Object currentValue = Array.get(current, i);
+                            Object targetValue = this.filter("ARRAY",
+                                    currentValue);
+                            Array.set(target, i, targetValue);
+                        }
                     }
                 } catch (Exception e) {
                     log.error("Error creating new array of type "
@@ -153,7 +165,7 @@ public abstract class ModelMapper extends ContextFilter {
                 }
 
                 try {
-                    target = targetType.newInstance();
+                    target = createTarget(targetType);
                 } catch (Exception e) {
                     log.error("Error creating new instance of target type"
                             + current, e);
@@ -166,6 +178,18 @@ public abstract class ModelMapper extends ContextFilter {
         return target;
     }
 
+    /**
+     * extension point which subclasses can override to create instances of
+     * the target types without reflection.
+     * 
+     * @param targetType the type returned by {@link #findClass(Class)}
+     * @return a new, uninitialized instance of the type.
+     * @throws Exception if the instance cannot be created.
+     */
+    protected Object createTarget(Class targetType) throws Exception {
+        return targetType.newInstance();
+    }
+
     public Collection findCollection(Collection source) {
         if (source == null) {
             return null;
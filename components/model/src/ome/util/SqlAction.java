@@ -199,6 +199,45 @@ public interface SqlAction {
      */
     List<Long> findRepoFiles(String repoUuid, String dirname);
 
+    /**
+     * Record-class of the files listed by
+     * {@link #findRepoFilesToVerify(String, long, int)}. None of the fields
+     * will be null except for {@link #size}.
+     */
+    static class RepoFileHash implements RowMapper<RepoFileHash> {
+        public Long id;
+        public String path;
+        public String name;
+        public Long size;
+        public String hash;
+        public String hasher;
+        public RepoFileHash mapRow(ResultSet rs, int arg1) throws SQLException {
+            RepoFileHash file = new RepoFileHash();
+            file.id = rs.getLong("id");
+            file.path = rs.getString("path");
+            file.name = rs.getString("name");
+            file.size = rs.getLong("size");
+            if (rs.wasNull()) {
+                file.size = null;
+            }
+            file.hash = rs.getString("hash");
+            file.hasher = rs.getString("hasher");
+            return file;
+        }
+    }
+
+    /**
+     * Return the files of the given repository which have a hash, in the
+     * order of their ids, so that their hash can be verified batch by batch.
+     *
+     * @param repoUuid a repository UUID
+     * @param afterId only the files with a greater id are returned
+     * @param limit the maximum number of files to return
+     * @return possibly empty list of files.
+     */
+    List<RepoFileHash> findRepoFilesToVerify(String repoUuid, long afterId,
+            int limit);
+
     /**
      * Record-class which matches _fs_deletelog. It will be used both as the
      * search template for {@link #findRepoDeleteLogs(DeleteLog)} as well
@@ -369,6 +408,32 @@ public interface SqlAction {
 
     int updateOrInsertConfigValue(String name, String value);
 
+    /**
+     * Inserts a configuration value unless one with the same name exists.
+     * Since the name is the primary key, a concurrent insert of the same
+     * name may fail instead of returning 0.
+     * @return the number of inserted rows
+     */
+    int insertConfigValueIfAbsent(String name, String value);
+
+    /**
+     * Sets a configuration value only if it still has the expected value.
+     * @return the number of updated rows
+     */
+    int updateConfigValueIfEquals(String name, String expected, String value);
+
+    /**
+     * Deletes a configuration value only if it still has the expected value.
+     * @return the number of deleted rows
+     */
+    int delConfigValueIfEquals(String name, String expected);
+
+    /**
+     * Returns the configuration values whose name starts with the given
+     * prefix, keyed by name.
+     */
+    Map<String, String> configValuesByPrefix(String prefix);
+
     String dbUuid();
 
     long selectCurrentEventLog(String key);
@@ -890,6 +955,16 @@ public interface SqlAction {
             }
         }
 
+        public List<RepoFileHash> findRepoFilesToVerify(String uuid,
+                long afterId, int limit) {
+            try {
+                return _jdbc().query(_lookup("find_repo_files_to_verify"),
+                        new RepoFileHash(), uuid, afterId, limit);
+            } catch (EmptyResultDataAccessException e) {
+                return Collections.emptyList();
+            }
+        }
+
         public List<DeleteLog> findRepoDeleteLogs(DeleteLog template) {
             try {
                 return _jdbc().query(_lookup("find_repo_delete_logs"),
@@ -1139,6 +1214,33 @@ public interface SqlAction {
             return count;
         }
 
+        public int insertConfigValueIfAbsent(String name, String value) {
+            return _jdbc().update(_lookup("config_value_insert_if_absent"), // $NON-NLS-1$
+                    name, value, name);
+        }
+
+        public int updateConfigValueIfEquals(String name, String expected,
+                String value) {
+            return _jdbc().update(_lookup("config_value_update_if_equals"), // $NON-NLS-1$
+                    value, name, expected);
+        }
+
+        public int delConfigValueIfEquals(String name, String expected) {
+            return _jdbc().update(_lookup("config_value_delete_if_equals"), // $NON-NLS-1$
+                    name, expected);
+        }
+
+        public Map<String, String> configValuesByPrefix(String prefix) {
+            final String like = prefix.replace("\\", "\\\\")
+                    .replace("%", "\\%").replace("_", "\\_") + "%";
+            final Map<String, String> values = new HashMap<String, String>();
+            for (Map<String, Object> row : _jdbc().queryForList(
+                    _lookup("config_value_select_prefix"), like)) { // $NON-NLS-1$
+                values.put((String) row.get("name"), (String) row.get("value"));
+            }
+            return values;
+        }
+
         public long selectCurrentEventLog(String key) {
             String value = _jdbc().queryForObject(
                 _lookup("log_loader_query"), String.class, key); //$NON-NLS-1$
@@ -21,6 +21,7 @@ package ome.model.utests;
 
 import java.math.BigDecimal;
 
+import ome.model.units.CompiledConversion;
 import ome.model.units.Conversion;
 
 import org.testng.Assert;
@@ -96,4 +97,53 @@ public class ConversionsTest {
         Assert.assertEquals(ftoc.convert(-40.0).doubleValue(), -40.0, 0.0001);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCompiledFahrenheit() throws Exception {
+        Conversion ftoc = Conversion.Add(Conversion.Mul(Conversion.Rat(5, 9),
+                Conversion.Sym("f")), Conversion.Rat(-160, 9));
+        CompiledConversion compiled = new CompiledConversion(ftoc);
+        Assert.assertTrue(compiled.isFolded());
+        for (double f : new double[] {32.0, 212.0, -40.0, 98.6}) {
+            Assert.assertEquals(compiled.convertToDouble(f),
+                    ftoc.convert(f).doubleValue(), 1e-12);
+            Assert.assertEquals(compiled.convert(f).doubleValue(),
+                    ftoc.convert(f).doubleValue(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testCompiledMatchesTree() throws Exception {
+        Conversion ft = Conversion.Mul(Conversion.Rat(Conversion.Int(393701),
+                Conversion.Mul(Conversion.Int(12), Conversion.Pow(10, 14))),
+                Conversion.Sym("ang"));
+        CompiledConversion compiled = new CompiledConversion(ft);
+        java.util.Random r = new java.util.Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double v = r.nextDouble() * 1e6;
+            double expected = ft.convert(v).doubleValue();
+            Assert.assertEquals(compiled.convertToDouble(v), expected,
+                    Math.ulp(expected));
+        }
+    }
+
+    @Test
+    public void testCompiledOverflow() throws Exception {
+        Conversion mul = Conversion.Mul(Conversion.Pow(10, 20),
+                Conversion.Sym("x"));
+        CompiledConversion compiled = new CompiledConversion(mul);
+        Assert.assertEquals(compiled.convertToDouble(1e300),
+                Double.POSITIVE_INFINITY);
+        Assert.assertEquals(compiled.convert(1e300).compareTo(
+                mul.convert(1e300)), 0);
+    }
+
+    @Test
+    public void testCompiledNotLinear() throws Exception {
+        Conversion square = Conversion.Mul(Conversion.Sym("x"),
+                Conversion.Sym("x"));
+        CompiledConversion compiled = new CompiledConversion(square);
+        Assert.assertFalse(compiled.isFolded());
+        Assert.assertEquals(compiled.convertToDouble(3.0), 9.0, 0.0001);
+    }
+
+}
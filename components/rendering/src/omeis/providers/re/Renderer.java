@@ -566,6 +566,39 @@ public class Renderer {
         }
     }
 
+    /**
+     * Reads the raw data of every active channel of the plane selected by
+     * <code>pd</code> from the specified buffer without rendering it. This
+     * is used to read the next plane of a series ahead while the current one
+     * is rendered; the state of the Renderer is not changed.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param target
+     *             The pixel buffer to read the data from, typically a
+     *             {@link ome.io.nio.ReadAheadPixelBuffer} later passed to
+     *             {@link #renderAsPackedInt(PlaneDef, PixelBuffer)}.
+     * @throws NullPointerException
+     *             If <code>pd</code> or <code>target</code> is
+     *             <code>null</code>.
+     */
+    public void readAhead(PlaneDef pd, PixelBuffer target)
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        if (target == null) {
+            throw new NullPointerException("No pixel buffer.");
+        }
+        ChannelBinding[] channelBindings = getChannelBindings();
+        for (int w = 0; w < channelBindings.length; w++) {
+            if (channelBindings[w].getActive()) {
+                PlaneFactory.createPlane(pd, w, metadata, target);
+            }
+        }
+    }
+
     /**
      * Returns the size, in bytes, of the {@link RGBBuffer} that would be
      * rendered from the plane selected by <code>pd</code>. Note that the
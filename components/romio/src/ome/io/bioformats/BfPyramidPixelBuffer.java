@@ -14,6 +14,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
 import java.util.List;
 
 import loci.formats.FormatException;
@@ -23,7 +24,6 @@ import loci.formats.meta.IMetadata;
 import loci.formats.out.TiffWriter;
 import loci.formats.services.OMEXMLService;
 import loci.formats.tiff.IFD;
-import loci.formats.tiff.TiffCompression;
 import ome.conditions.ApiUsageException;
 import ome.conditions.LockTimeout;
 import ome.conditions.ResourceError;
@@ -123,6 +123,29 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
 
     public static final String PYR_LOCK_EXT = ".pyr_lock";
 
+    /** The codec used for the tiles written. */
+    private PyramidCompression compression = PyramidCompression.JPEG_2000;
+
+    /**
+     * Maximum number of independent readers used to serve tile reads
+     * concurrently. With the default of <code>1</code> all reads are
+     * serialized on this instance.
+     */
+    private int readerPoolSize = 1;
+
+    /**
+     * Idle readers for concurrent tile reads, each wrapping its own
+     * {@link OmeroPixelsPyramidReader}. Guarded by itself.
+     */
+    private final List<BfPixelBuffer> idleReaders =
+            new ArrayList<BfPixelBuffer>();
+
+    /** Number of readers of the pool created so far. Guarded by {@link #idleReaders}. */
+    private int pooledReaders = 0;
+
+    /** Incremented on {@link #close()} to discard readers borrowed before. */
+    private int generation = 0;
+
     /**
      * We may want a constructor that takes the id of an imported file
      * or that takes a File object?
@@ -489,6 +512,209 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
         return delegate;
     }
 
+    /**
+     * Sets the codec used for the tiles written. Must be invoked before the
+     * first tile is written; pyramids are read with the codec they were
+     * written with.
+     * @param compression the codec.
+     */
+    public void setCompression(PyramidCompression compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the codec used for the tiles written.
+     * @return See above.
+     */
+    public PyramidCompression getCompression()
+    {
+        return compression;
+    }
+
+    /**
+     * Sets the maximum number of independent readers used to serve tile
+     * reads concurrently. Each reader opens the pyramid file separately and
+     * is only created when a tile read would otherwise have to wait.
+     * @param readerPoolSize the number of readers, values lower than
+     * <code>2</code> disable concurrent reads.
+     */
+    public void setReaderPoolSize(int readerPoolSize)
+    {
+        synchronized (idleReaders)
+        {
+            this.readerPoolSize = readerPoolSize;
+        }
+    }
+
+    /**
+     * Returns the maximum number of readers used to serve tile reads.
+     * @return See above.
+     */
+    public int getReaderPoolSize()
+    {
+        synchronized (idleReaders)
+        {
+            return readerPoolSize;
+        }
+    }
+
+    /**
+     * Borrows a reader from the pool, creating it if the pool is not full
+     * and waiting for one to be returned otherwise. The reader is set to the
+     * current resolution level of this instance.
+     * @return a reader or <code>null</code> if the pool is disabled or this
+     * instance is still in write mode.
+     * @throws IOException if a new reader cannot be created.
+     */
+    private BfPixelBuffer borrowReader() throws IOException
+    {
+        final int level;
+        synchronized (this)
+        {
+            if (readerPoolSize < 2 || isWrite())
+            {
+                return null;
+            }
+            level = delegate().getResolutionLevel();
+        }
+        BfPixelBuffer pooled = null;
+        synchronized (idleReaders)
+        {
+            while (idleReaders.isEmpty() && pooledReaders >= readerPoolSize)
+            {
+                try
+                {
+                    idleReaders.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for a reader");
+                }
+            }
+            if (!idleReaders.isEmpty())
+            {
+                pooled = idleReaders.remove(idleReaders.size() - 1);
+            }
+            else
+            {
+                pooledReaders++;
+            }
+        }
+        try
+        {
+            if (pooled == null)
+            {
+                pooled = new BfPixelBuffer(readerFile.getAbsolutePath(),
+                        new OmeroPixelsPyramidReader());
+            }
+            if (pooled.getResolutionLevel() != level)
+            {
+                pooled.setResolutionLevel(level);
+            }
+            return pooled;
+        }
+        catch (Exception e)
+        {
+            discardReader(pooled);
+            if (e instanceof IOException)
+            {
+                throw (IOException) e;
+            }
+            throw new IOException("Cannot open pooled reader", e);
+        }
+    }
+
+    /**
+     * Returns a reader borrowed with {@link #borrowReader()} to the pool.
+     * @param pooled the reader.
+     * @param borrowedIn the value of {@link #generation} when borrowed.
+     */
+    private void returnReader(BfPixelBuffer pooled, int borrowedIn)
+    {
+        synchronized (idleReaders)
+        {
+            if (borrowedIn == generation)
+            {
+                idleReaders.add(pooled);
+                idleReaders.notify();
+                return;
+            }
+        }
+        // Closed in the meantime.
+        closeQuietly(pooled);
+    }
+
+    /**
+     * Closes a reader of the pool which cannot be used any more.
+     * @param pooled the reader, may be <code>null</code>.
+     */
+    private void discardReader(BfPixelBuffer pooled)
+    {
+        synchronized (idleReaders)
+        {
+            if (pooledReaders > 0)
+            {
+                pooledReaders--;
+            }
+            idleReaders.notify();
+        }
+        closeQuietly(pooled);
+    }
+
+    /**
+     * Returns the current value of {@link #generation}.
+     * @return See above.
+     */
+    private int generation()
+    {
+        synchronized (idleReaders)
+        {
+            return generation;
+        }
+    }
+
+    /**
+     * Closes a reader of the pool, logging any failure.
+     * @param pooled the reader, may be <code>null</code>.
+     */
+    private void closeQuietly(BfPixelBuffer pooled)
+    {
+        if (pooled != null)
+        {
+            try
+            {
+                pooled.close();
+            }
+            catch (Exception e)
+            {
+                log.warn("Failed to close pooled reader", e);
+            }
+        }
+    }
+
+    /**
+     * Closes all idle readers of the pool. Readers in use are closed when
+     * they are returned.
+     */
+    private void closeReaderPool()
+    {
+        final List<BfPixelBuffer> toClose;
+        synchronized (idleReaders)
+        {
+            generation++;
+            toClose = new ArrayList<BfPixelBuffer>(idleReaders);
+            idleReaders.clear();
+            pooledReaders = 0;
+            idleReaders.notifyAll();
+        }
+        for (BfPixelBuffer pooled : toClose)
+        {
+            closeQuietly(pooled);
+        }
+    }
+
     /* (non-Javadoc)
      * @see ome.io.bioformats.BfPixelBuffer#setTile(byte[], java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer)
      */
@@ -538,7 +764,7 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
             try
             {
                 initializeWriter(writerFile.getAbsolutePath(),
-                        TiffCompression.JPEG_2000.getCodecName(), true, w, h);
+                        compression.getWriterCompression(), true, w, h);
             }
             catch (Exception e)
             {
@@ -645,6 +871,7 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
      */
     public synchronized void close() throws IOException
     {
+        closeReaderPool();
         try
         {
             if (delegate != null)
@@ -1003,14 +1230,34 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
     /* (non-Javadoc)
      * @see ome.io.nio.PixelBuffer#getTile(java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer)
      */
-    public synchronized PixelData getTile(Integer z, Integer c, Integer t,
+    public PixelData getTile(Integer z, Integer c, Integer t,
             Integer x, Integer y, Integer w, Integer h) throws IOException
     {
         checkTileParameters(x, y, w, h);
         t = getRasterizedT(z, c, t);
         c = 0;
         z = 0;
-        PixelData data = delegate().getTile(z, c, t, x, y, w, h);
+        final int borrowedIn = generation();
+        final BfPixelBuffer pooled = borrowReader();
+        PixelData data;
+        if (pooled == null)
+        {
+            synchronized (this)
+            {
+                data = delegate().getTile(z, c, t, x, y, w, h);
+            }
+        }
+        else
+        {
+            try
+            {
+                data = pooled.getTile(z, c, t, x, y, w, h);
+            }
+            finally
+            {
+                returnReader(pooled, borrowedIn);
+            }
+        }
         data.setOrder(byteOrder);
         return data;
     }
@@ -1018,7 +1265,7 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
     /* (non-Javadoc)
      * @see ome.io.nio.PixelBuffer#getTileDirect(java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, java.lang.Integer, byte[])
      */
-    public synchronized byte[] getTileDirect(Integer z, Integer c, Integer t,
+    public byte[] getTileDirect(Integer z, Integer c, Integer t,
             Integer x, Integer y, Integer w, Integer h, byte[] buffer)
         throws IOException
     {
@@ -1026,7 +1273,23 @@ public class BfPyramidPixelBuffer implements PixelBuffer {
         t = getRasterizedT(z, c, t);
         c = 0;
         z = 0;
-        return delegate().getTileDirect(z, c, t, x, y, w, h, buffer);
+        final int borrowedIn = generation();
+        final BfPixelBuffer pooled = borrowReader();
+        if (pooled == null)
+        {
+            synchronized (this)
+            {
+                return delegate().getTileDirect(z, c, t, x, y, w, h, buffer);
+            }
+        }
+        try
+        {
+            return pooled.getTileDirect(z, c, t, x, y, w, h, buffer);
+        }
+        finally
+        {
+            returnReader(pooled, borrowedIn);
+        }
     }
 
     /* (non-Javadoc)
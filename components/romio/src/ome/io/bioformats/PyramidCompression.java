@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.io.bioformats;
+
+import java.util.Arrays;
+
+import loci.formats.out.TiffWriter;
+
+/**
+ * The codecs available for the tiles of the pyramids written by
+ * {@link BfPyramidPixelBuffer}. The codec is recorded in the compression
+ * tag of each TIFF IFD, so pyramids written with different codecs can be
+ * read alike, whatever the current configuration.
+ *
+ * @since 5.4.0
+ */
+public enum PyramidCompression {
+
+    /** No compression, the fastest to read and write. */
+    UNCOMPRESSED("uncompressed", TiffWriter.COMPRESSION_UNCOMPRESSED),
+
+    /** Lossless LZW compression. */
+    LZW("lzw", TiffWriter.COMPRESSION_LZW),
+
+    /** Lossless deflate compression. */
+    ZLIB("zlib", TiffWriter.COMPRESSION_ZLIB),
+
+    /** Lossless JPEG-2000 compression, the smallest but the slowest. */
+    JPEG_2000("jpeg-2000", TiffWriter.COMPRESSION_J2K);
+
+    private final String name;
+
+    private final String writerCompression;
+
+    private PyramidCompression(String name, String writerCompression) {
+        this.name = name;
+        this.writerCompression = writerCompression;
+    }
+
+    /**
+     * Returns the name used in the configuration.
+     * @return See above.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the compression to pass to
+     * {@link TiffWriter#setCompression(String)}.
+     * @return See above.
+     */
+    public String getWriterCompression() {
+        return writerCompression;
+    }
+
+    /**
+     * Returns the codec with the given name, ignoring case.
+     * @param name the name used in the configuration.
+     * @return See above.
+     * @throws IllegalArgumentException if there is no such codec.
+     */
+    public static PyramidCompression fromName(String name) {
+        for (PyramidCompression compression : values()) {
+            if (compression.name.equalsIgnoreCase(name.trim())) {
+                return compression;
+            }
+        }
+        final String[] names = new String[values().length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = values()[i].name;
+        }
+        throw new IllegalArgumentException("Unknown pyramid compression "
+                + name + ", expected one of " + Arrays.toString(names));
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.io.nio;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import loci.formats.IFormatReader;
+import loci.formats.Memoizer;
+import ome.system.metrics.Counter;
+import ome.system.metrics.Metrics;
+import ome.system.metrics.NullMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the directory holding the {@link Memoizer} files of the readers
+ * created by {@link PixelsService}. Records whether each
+ * {@link IFormatReader#setId(String)} could use a memo file, keeps the memo
+ * files of the recently used filesets under a disk quota and prewarms the
+ * memo files of newly imported filesets in the background.
+ *
+ * The memo files of a fileset are stored in the same directory, below the
+ * cache directory, so the usage is tracked per directory. The last access
+ * of a memo file is recorded as its modification time.
+ *
+ * @since 5.4.0
+ */
+public class MemoCache {
+
+    private final static Logger log = LoggerFactory.getLogger(MemoCache.class);
+
+    /** Suffix of the files written by {@link Memoizer}. */
+    public static final String SUFFIX = ".bfmemo";
+
+    /** Disk usage of the memo files of a fileset. */
+    public static class Usage {
+
+        /** The directory holding the memo files. */
+        public final File directory;
+
+        /** The number of bytes used. */
+        public long size;
+
+        /** The last time in ms. one of the memo files was used. */
+        public long lastAccess;
+
+        /** The memo files. */
+        public final List<File> files = new ArrayList<File>();
+
+        Usage(File directory) {
+            this.directory = directory;
+        }
+    }
+
+    private final File directory;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "MemoCache");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private final AtomicBoolean evictionQueued = new AtomicBoolean();
+
+    private volatile long quota;
+
+    private Counter hits, misses, regenerations, evictions;
+
+    /**
+     * @param directory the directory passed to the {@link Memoizer} instances.
+     */
+    public MemoCache(File directory) {
+        this.directory = directory;
+        setMetrics(new NullMetrics());
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.hits = metrics.counter(this, "memoHits");
+        this.misses = metrics.counter(this, "memoMisses");
+        this.regenerations = metrics.counter(this, "memoRegenerations");
+        this.evictions = metrics.counter(this, "memoEvictions");
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the memo files. The least
+     * recently used filesets are evicted first.
+     * @param quota the quota in bytes, non-positive for no quota.
+     */
+    public void setQuota(long quota) {
+        this.quota = quota;
+        scheduleEviction();
+    }
+
+    public long getQuota() {
+        return quota;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /** Number of readers initialized from a memo file. */
+    public long getHits() {
+        return hits.getCount();
+    }
+
+    /** Number of readers initialized without a memo file. */
+    public long getMisses() {
+        return misses.getCount();
+    }
+
+    /** Number of memo files which could not be used and were replaced. */
+    public long getRegenerations() {
+        return regenerations.getCount();
+    }
+
+    /** Number of filesets whose memo files were evicted. */
+    public long getEvictions() {
+        return evictions.getCount();
+    }
+
+    /**
+     * Returns the memo file of the given reader or <code>null</code> if the
+     * reader is not memoized.
+     * @param reader the reader to handle.
+     * @param id the file the reader is initialized with.
+     */
+    public File getMemoFile(IFormatReader reader, String id) {
+        if (!(reader instanceof Memoizer)) {
+            return null;
+        }
+        return ((Memoizer) reader).getMemoFile(id);
+    }
+
+    /**
+     * Returns <code>true</code> if a memo file exists for the given reader.
+     * To be invoked before {@link IFormatReader#setId(String)} so that
+     * {@link #record(IFormatReader, String, boolean)} can distinguish a miss
+     * from a regeneration.
+     */
+    public boolean exists(IFormatReader reader, String id) {
+        File memo = getMemoFile(reader, id);
+        return memo != null && memo.exists();
+    }
+
+    /**
+     * Records the outcome of {@link IFormatReader#setId(String)}.
+     * @param reader the reader which has been initialized.
+     * @param id the file the reader is initialized with.
+     * @param existed the value of {@link #exists(IFormatReader, String)}
+     * before the initialization.
+     */
+    public void record(IFormatReader reader, String id, boolean existed) {
+        if (!(reader instanceof Memoizer)) {
+            return;
+        }
+        Memoizer memoizer = (Memoizer) reader;
+        if (memoizer.isLoadedFromMemo()) {
+            hits.inc();
+            File memo = memoizer.getMemoFile(id);
+            if (memo != null) {
+                memo.setLastModified(System.currentTimeMillis());
+            }
+        } else if (existed) {
+            regenerations.inc();
+        } else {
+            misses.inc();
+        }
+        if (memoizer.isSavedToMemo()) {
+            scheduleEviction();
+        }
+    }
+
+    /**
+     * Runs the given task in the background, e.g. to initialize a reader
+     * once a fileset has been imported.
+     */
+    public void submit(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Returns the usage of the memo files, keyed by fileset directory.
+     */
+    public Map<File, Usage> getUsage() {
+        Map<File, Usage> usage = new HashMap<File, Usage>();
+        collect(directory, usage);
+        return usage;
+    }
+
+    private void collect(File dir, Map<File, Usage> usage) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                collect(f, usage);
+            } else if (f.getName().endsWith(SUFFIX)) {
+                Usage u = usage.get(dir);
+                if (u == null) {
+                    u = new Usage(dir);
+                    usage.put(dir, u);
+                }
+                u.size += f.length();
+                u.lastAccess = Math.max(u.lastAccess, f.lastModified());
+                u.files.add(f);
+            }
+        }
+    }
+
+    /**
+     * Deletes the memo files of the least recently used filesets until the
+     * quota is met.
+     * @return the number of bytes freed.
+     */
+    public synchronized long evict() {
+        evictionQueued.set(false);
+        long max = quota;
+        if (max <= 0) {
+            return 0;
+        }
+        List<Usage> usage = new ArrayList<Usage>(getUsage().values());
+        long total = 0;
+        for (Usage u : usage) {
+            total += u.size;
+        }
+        if (total <= max) {
+            return 0;
+        }
+        Collections.sort(usage, new Comparator<Usage>() {
+            public int compare(Usage u1, Usage u2) {
+                return Long.compare(u1.lastAccess, u2.lastAccess);
+            }
+        });
+        long freed = 0;
+        for (Usage u : usage) {
+            if (total - freed <= max) {
+                break;
+            }
+            for (File f : u.files) {
+                long n = f.length();
+                if (f.delete()) {
+                    freed += n;
+                }
+            }
+            evictions.inc();
+            log.info("Evicted memo files of {}", u.directory);
+        }
+        return freed;
+    }
+
+    private void scheduleEviction() {
+        if (quota > 0 && evictionQueued.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        evict();
+                    } catch (Exception e) {
+                        log.warn("Failed to evict memo files", e);
+                    }
+                }
+            });
+        }
+    }
+
+}
@@ -29,6 +29,7 @@ import ome.conditions.MissingPyramidException;
 import ome.conditions.ResourceError;
 import ome.io.bioformats.BfPixelBuffer;
 import ome.io.bioformats.BfPyramidPixelBuffer;
+import ome.io.bioformats.PyramidCompression;
 import ome.io.messages.MissingPyramidMessage;
 import ome.io.messages.MissingStatsInfoMessage;
 import ome.parameters.Parameters;
@@ -65,6 +66,24 @@ public class PixelsService extends AbstractFileSystemService
 	/** Suffix for an the image pyramid of a given pixels set. */
 	public static final String PYRAMID_SUFFIX = "_pyramid";
 
+	/**
+	 * Suffix for the low resolution preview which is written before and
+	 * served until the image pyramid of a given pixels set is complete.
+	 */
+	public static final String PREVIEW_SUFFIX = "_preview";
+
+	/**
+	 * Suffix for the snapshot of the series original metadata of a given
+	 * pixels set, which is served instead of reading the original files.
+	 */
+	public static final String METADATA_SUFFIX = "_metadata";
+
+	/**
+	 * Suffix for the snapshot of the global original metadata of a fileset,
+	 * stored once next to the pixels set of the fileset with the lowest id.
+	 */
+	public static final String FILESET_METADATA_SUFFIX = "_fileset_metadata";
+
 	/** Null plane size constant. */
 	public static final int NULL_PLANE_SIZE = 64;
 
@@ -90,6 +109,24 @@ public class PixelsService extends AbstractFileSystemService
 	 */
 	protected final long memoizerWait;
 
+	/**
+	 * Number of independent readers each pyramid may use to serve tile
+	 * reads concurrently.
+	 */
+	private int pyramidReaders = 1;
+
+	/**
+	 * Factor by which the preview written before each pyramid is
+	 * downsampled. A value of <code>1</code> or less disables the preview.
+	 */
+	private int pyramidPreviewFactor = 32;
+
+	/** Codec of the tiles of the pyramids written. */
+	private PyramidCompression pyramidCompression = PyramidCompression.JPEG_2000;
+
+	/** Manages the {@link #memoizerDirectory}. */
+	private final MemoCache memoCache;
+
 	private Timer tileTimes;
 
 	private Timer minmaxTimes;
@@ -166,6 +203,7 @@ public class PixelsService extends AbstractFileSystemService
         this.sizes = sizes;
         this.memoizerDirectory = memoizerDirectory;
         this.memoizerWait = memoizerWait;
+        this.memoCache = new MemoCache(memoizerDirectory);
         if (!this.memoizerDirectory.exists())
         {
             log.info("Creating Bio-Formats Cache: {}", memoizerDirectory);
@@ -186,6 +224,85 @@ public class PixelsService extends AbstractFileSystemService
     public void setMetrics(Metrics metrics) {
         this.tileTimes = metrics.timer(this, "tileTimes");
         this.minmaxTimes = metrics.timer(this, "minmaxTimes");
+        this.memoCache.setMetrics(metrics);
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the memo files in the
+     * {@link #getMemoizerDirectory()}.
+     * @param quota the quota in bytes, non-positive for no quota.
+     * @see MemoCache#setQuota(long)
+     */
+    public void setMemoizerQuota(long quota) {
+        memoCache.setQuota(quota);
+    }
+
+    /**
+     * Returns the manager of the {@link #getMemoizerDirectory()}.
+     * @return See above.
+     */
+    public MemoCache getMemoCache() {
+        return memoCache;
+    }
+
+    /**
+     * Initializes a reader for the given file in the background so that its
+     * memo file is available before the file is first accessed, e.g. after
+     * an import.
+     * @param filePath the file to initialize the reader with.
+     */
+    public void prewarmMemo(final String filePath) {
+        memoCache.submit(new Runnable() {
+            public void run() {
+                IFormatReader reader = createBfReader();
+                try {
+                    boolean existed = memoCache.exists(reader, filePath);
+                    reader.setId(filePath);
+                    memoCache.record(reader, filePath, existed);
+                } catch (Exception e) {
+                    log.warn("Failed to prewarm memo file for " + filePath, e);
+                } finally {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        log.warn("Failed to close reader for " + filePath, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the number of independent readers each pyramid pixel buffer may
+     * use to serve tile reads concurrently.
+     * @param pyramidReaders the number of readers, <code>1</code> for
+     * serialized reads.
+     * @see BfPyramidPixelBuffer#setReaderPoolSize(int)
+     */
+    public void setPyramidReaders(int pyramidReaders) {
+        this.pyramidReaders = pyramidReaders;
+    }
+
+    /**
+     * Sets the factor by which the preview of a pixels set is downsampled.
+     * The preview is written and published before the pyramid, and served
+     * read-only by {@link #getPreviewPixelBuffer(Pixels)} until the pyramid
+     * is complete so that, for instance, thumbnails can be rendered.
+     * @param pyramidPreviewFactor the factor, <code>1</code> or less to
+     * disable the preview.
+     */
+    public void setPyramidPreviewFactor(int pyramidPreviewFactor) {
+        this.pyramidPreviewFactor = pyramidPreviewFactor;
+    }
+
+    /**
+     * Sets the codec of the tiles of the pyramids written from now on.
+     * Existing pyramids are read with the codec they were written with.
+     * @param name the name of the codec.
+     * @see PyramidCompression#fromName(String)
+     */
+    public void setPyramidCompression(String name) {
+        this.pyramidCompression = PyramidCompression.fromName(name);
     }
 
     public long getMemoizerWait() {
@@ -236,6 +353,7 @@ public class PixelsService extends AbstractFileSystemService
         final File pixelsFile = new File(pixelsFilePath);
         final String pixelsPyramidFilePath = pixelsFilePath + PYRAMID_SUFFIX;
         final File pixelsPyramidFile = new File(pixelsPyramidFilePath);
+        final File previewFile = new File(pixelsPyramidFilePath + PREVIEW_SUFFIX);
         final String originalFilePath = getOriginalFilePath(pixels);
         final boolean requirePyramid = requiresPixelsPyramid(pixels);
 
@@ -244,6 +362,7 @@ public class PixelsService extends AbstractFileSystemService
         if (pixelsPyramidFile.exists())
         {
             log.debug("Pyramid already exists: " + pixelsPyramidFilePath);
+            previewFile.delete();
             return null; // EARLY EXIT!
         }
 
@@ -303,9 +422,13 @@ public class PixelsService extends AbstractFileSystemService
                 return null; // EARLY EXIT! closed in finally block!
             }
 
+            // The lock on the pyramid is held, the preview may be written.
+            writePreview(pixels, previewFile, pixelsFile, pixelsFilePath,
+                    originalFilePath);
+
             PixelsPyramidMinMaxStore minMaxStore = performWrite(
-                    pixels, pixelsPyramidFile, pixelsPyramid,
-                    pixelsFile, pixelsFilePath, originalFilePath);
+                    pixels, pixelsPyramidFile, pixelsPyramid, pixelsFile,
+                    pixelsFilePath, originalFilePath);
             if (minMaxStore != null)
             {
                 return minMaxStore.createStatsInfo();
@@ -326,6 +449,180 @@ public class PixelsService extends AbstractFileSystemService
                     log.error("Error closing pixel pyramid.", e);
                 }
             }
+            if (pixelsPyramidFile.exists())
+            {
+                previewFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a copy of the pixels set downsampled by
+     * {@link #pyramidPreviewFactor} and publishes it, before the pyramid is
+     * written. Only every <code>factor</code>th row of the source is read so
+     * the preview is served long before the pyramid is complete. Failures
+     * are only logged since the pyramid does not depend on the preview.
+     */
+    private void writePreview(final Pixels pixels, final File previewFile,
+            final File pixelsFile, final String pixelsFilePath,
+            final String originalFilePath)
+    {
+        final int factor = pyramidPreviewFactor;
+        if (factor <= 1 || previewFile.exists())
+        {
+            return;
+        }
+        final int sizeX = pixels.getSizeX();
+        final int sizeY = pixels.getSizeY();
+        final int previewX = (sizeX + factor - 1) / factor;
+        final int previewY = (sizeY + factor - 1) / factor;
+        final Pixels preview = new Pixels(pixels.getId(), true);
+        preview.setSizeX(previewX);
+        preview.setSizeY(previewY);
+        preview.setSizeZ(pixels.getSizeZ());
+        preview.setSizeC(pixels.getSizeC());
+        preview.setSizeT(pixels.getSizeT());
+        preview.setPixelsType(pixels.getPixelsType());
+        preview.setDimensionOrder(pixels.getDimensionOrder());
+
+        PixelBuffer source = null;
+        BfPyramidPixelBuffer previewPyramid = null;
+        boolean success = false;
+        try
+        {
+            if (pixelsFile.exists())
+            {
+                source = createRomioPixelBuffer(pixelsFilePath, pixels, false);
+            }
+            else
+            {
+                source = createBfPixelBuffer(originalFilePath,
+                        getSeries(pixels));
+            }
+            previewPyramid = createPyramidPixelBuffer(preview,
+                    previewFile.getAbsolutePath(), true);
+            if (source instanceof BfPixelBuffer
+                && ((BfPixelBuffer) source).isLittleEndian())
+            {
+                previewPyramid.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+            }
+            final int byteWidth = source.getByteWidth();
+            final int previewTileWidth = Math.min(previewX, sizes.getTileWidth());
+            final int previewTileHeight = Math.min(previewY, sizes.getTileHeight());
+            final byte[] plane = new byte[previewX * previewY * byteWidth];
+            for (int t = 0; t < pixels.getSizeT(); t++)
+            {
+                for (int c = 0; c < pixels.getSizeC(); c++)
+                {
+                    for (int z = 0; z < pixels.getSizeZ(); z++)
+                    {
+                        for (int y = 0; y < sizeY; y += factor)
+                        {
+                            PixelData row = source.getTile(z, c, t, 0, y,
+                                    sizeX, 1);
+                            try
+                            {
+                                downsample(row.getData().array(), 0, y,
+                                        sizeX, 1, factor, byteWidth, plane,
+                                        previewX);
+                            }
+                            finally
+                            {
+                                row.dispose();
+                            }
+                        }
+                        for (int y = 0; y < previewY; y += previewTileHeight)
+                        {
+                            int h = Math.min(previewTileHeight, previewY - y);
+                            for (int x = 0; x < previewX; x += previewTileWidth)
+                            {
+                                int w = Math.min(previewTileWidth, previewX - x);
+                                byte[] buffer = new byte[w * h * byteWidth];
+                                for (int row = 0; row < h; row++)
+                                {
+                                    System.arraycopy(plane,
+                                            ((y + row) * previewX + x) * byteWidth,
+                                            buffer, row * w * byteWidth,
+                                            w * byteWidth);
+                                }
+                                previewPyramid.setTile(buffer, z, c, t, x, y, w, h);
+                            }
+                        }
+                    }
+                }
+            }
+            success = true;
+        }
+        catch (Exception e)
+        {
+            log.warn("Error creating pyramid preview: " + previewFile, e);
+        }
+        finally
+        {
+            if (source != null)
+            {
+                try
+                {
+                    source.close();
+                }
+                catch (IOException e)
+                {
+                    log.error("Error closing pixel buffer.", e);
+                }
+            }
+            if (previewPyramid != null)
+            {
+                try
+                {
+                    // Publishes the preview.
+                    previewPyramid.close();
+                }
+                catch (IOException e)
+                {
+                    log.error("Error closing pyramid preview.", e);
+                    success = false;
+                }
+            }
+            if (success)
+            {
+                log.info("SUCCESS -- Preview created for pixels id:"
+                        + pixels.getId());
+            }
+            else
+            {
+                // Closing publishes an incomplete preview as well.
+                previewFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Copies every <code>factor</code>th pixel of every
+     * <code>factor</code>th row of a tile into a downsampled plane.
+     * @param tile the pixels of the tile.
+     * @param x the X offset of the tile.
+     * @param y the Y offset of the tile.
+     * @param w the width of the tile.
+     * @param h the height of the tile.
+     * @param factor the downsampling factor.
+     * @param byteWidth the number of bytes per pixel.
+     * @param plane the downsampled plane.
+     * @param planeWidth the width of the downsampled plane.
+     */
+    public static void downsample(byte[] tile, int x, int y, int w, int h,
+            int factor, int byteWidth, byte[] plane, int planeWidth)
+    {
+        final int firstRow = (factor - y % factor) % factor;
+        final int firstColumn = (factor - x % factor) % factor;
+        for (int row = firstRow; row < h; row += factor)
+        {
+            final int planeRow = (y + row) / factor;
+            for (int column = firstColumn; column < w; column += factor)
+            {
+                System.arraycopy(tile, (row * w + column) * byteWidth, plane,
+                        (planeRow * planeWidth + (x + column) / factor)
+                        * byteWidth, byteWidth);
+            }
         }
     }
 
@@ -357,38 +654,7 @@ public class PixelsService extends AbstractFileSystemService
                     bfPixelBuffer.isLittleEndian()? ByteOrder.LITTLE_ENDIAN
                             : ByteOrder.BIG_ENDIAN);
             source = bfPixelBuffer;
-            // If the tile sizes we've been given are completely ridiculous
-            // then reset them to WIDTHxHEIGHT. Currently these conditions are:
-            //  * TileWidth == ImageWidth
-            //  * TileHeight == ImageHeight
-            //  * Smallest tile dimension divided by the largest resolution
-            //    level factor is < 1.
-            // -- Chris Allan (ome:#5224).
-            final Dimension sourceTileSize = source.getTileSize();
-            final double tileWidth = sourceTileSize.getWidth();
-            final double tileHeight = sourceTileSize.getHeight();
-            final boolean tileDimensionTooSmall;
-            double factor = Math.pow(2, 5);
-            if (((tileWidth / factor) < 1.0)
-                || ((tileHeight / factor) < 1.0))
-            {
-                tileDimensionTooSmall = true;
-            }
-            else
-            {
-                tileDimensionTooSmall = false;
-            }
-            if (tileWidth == source.getSizeX()
-                || tileHeight == source.getSizeY()
-                || tileDimensionTooSmall)
-            {
-                tileSize = new Dimension(Math.min(pixels.getSizeX(), sizes.getTileWidth()),
-                                         Math.min(pixels.getSizeY(), sizes.getTileHeight()));
-            }
-            else
-            {
-                tileSize = sourceTileSize;
-            }
+            tileSize = getSourceTileSize(pixels, source);
         }
         log.info("Destination pyramid tile size: " + tileSize);
 
@@ -464,6 +730,47 @@ public class PixelsService extends AbstractFileSystemService
         return minMaxStore;
     }
 
+    /**
+     * Returns the tile size used to read a Bio-Formats source. If the tile
+     * sizes we've been given are completely ridiculous then reset them to
+     * WIDTHxHEIGHT. Currently these conditions are:
+     * <ul>
+     * <li>TileWidth == ImageWidth</li>
+     * <li>TileHeight == ImageHeight</li>
+     * <li>Smallest tile dimension divided by the largest resolution level
+     * factor is &lt; 1.</li>
+     * </ul>
+     * -- Chris Allan (ome:#5224).
+     * @param pixels the pixels set to read.
+     * @param source the pixel buffer of the original file.
+     * @return See above.
+     */
+    private Dimension getSourceTileSize(Pixels pixels, PixelBuffer source)
+    {
+        final Dimension sourceTileSize = source.getTileSize();
+        final double tileWidth = sourceTileSize.getWidth();
+        final double tileHeight = sourceTileSize.getHeight();
+        final boolean tileDimensionTooSmall;
+        double factor = Math.pow(2, 5);
+        if (((tileWidth / factor) < 1.0)
+            || ((tileHeight / factor) < 1.0))
+        {
+            tileDimensionTooSmall = true;
+        }
+        else
+        {
+            tileDimensionTooSmall = false;
+        }
+        if (tileWidth == source.getSizeX()
+            || tileHeight == source.getSizeY()
+            || tileDimensionTooSmall)
+        {
+            return new Dimension(Math.min(pixels.getSizeX(), sizes.getTileWidth()),
+                                 Math.min(pixels.getSizeY(), sizes.getTileHeight()));
+        }
+        return sourceTileSize;
+    }
+
     /**
      * Returns a pixel buffer for a given set of pixels. Either a proprietary
      * ROMIO pixel buffer or a specific pixel buffer implementation.
@@ -500,6 +807,36 @@ public class PixelsService extends AbstractFileSystemService
         return pb;
     }
 
+    /**
+     * Returns a read-only pixel buffer for a given set of pixels as
+     * {@link #getPixelBuffer(Pixels, boolean)} does, except that while its
+     * pyramid is being created the preview written by
+     * {@link #makePyramid(Pixels)} is returned, if there is one, instead of a
+     * {@link MissingPyramidException} being thrown. The preview has the width
+     * and height of the pixels set divided by the preview factor, so only
+     * callers which scale what they read, e.g. thumbnail generation, should
+     * use this method.
+     * @param pixels Pixels set to retrieve a pixel buffer for.
+     * @return A read-only pixel buffer instance.
+     * @since 5.4.0
+     */
+    public PixelBuffer getPreviewPixelBuffer(Pixels pixels)
+    {
+        final String pixelsPyramidFilePath =
+            getPixelsPath(pixels.getId()) + PYRAMID_SUFFIX;
+        if (requiresPixelsPyramid(pixels)
+            && !new File(pixelsPyramidFilePath).exists())
+        {
+            PixelBuffer preview = getPreviewPixelBuffer(pixels,
+                    pixelsPyramidFilePath + PREVIEW_SUFFIX);
+            if (preview != null)
+            {
+                return preview;
+            }
+        }
+        return getPixelBuffer(pixels, false);
+    }
+
     public PixelBuffer _getPixelBuffer(Pixels pixels, boolean write)
     {
         final String originalFilePath = getOriginalFilePath(pixels);
@@ -731,6 +1068,31 @@ public class PixelsService extends AbstractFileSystemService
         backOff.throwMissingPyramidException(msg, pixels);
     }
 
+    /**
+     * Returns a read-only pixel buffer for the preview written by
+     * {@link #makePyramid(Pixels)} or <code>null</code> if there is none.
+     * The buffer has the dimensions of the given pixels set apart from its
+     * width and height. A {@link MissingPyramidMessage} is still published so
+     * that a pyramid whose creation was interrupted is created again.
+     * @param pixels the pixels set being pyramided.
+     * @param previewFilePath the path of the preview.
+     * @return See above.
+     * @see #getPreviewPixelBuffer(Pixels)
+     */
+    protected PixelBuffer getPreviewPixelBuffer(Pixels pixels,
+            String previewFilePath) {
+        if (!new File(previewFilePath).exists()) {
+            return null;
+        }
+        log.info("Using Pyramid preview: " + previewFilePath);
+        PixelBuffer preview = createPyramidPixelBuffer(pixels,
+                previewFilePath, false);
+        if (pub != null) {
+            pub.publishEvent(new MissingPyramidMessage(this, pixels.getId()));
+        }
+        return preview;
+    }
+
     /**
      * Helper method to properly log any exceptions raised by Bio-Formats and
      * add a min/max calculator wrapper to the reader stack.
@@ -747,7 +1109,9 @@ public class PixelsService extends AbstractFileSystemService
             IFormatReader reader = createBfReader();
             MinMaxCalculator calculator = new MinMaxCalculator(reader);
             calculator.setMinMaxStore(store);
+            boolean memoized = memoCache.exists(reader, filePath);
             BfPixelBuffer pixelBuffer = new BfPixelBuffer(filePath, calculator);
+            memoCache.record(reader, filePath, memoized);
             pixelBuffer.setSeries(series);
             log.info(String.format("Creating BfPixelBuffer: %s Series: %d",
                     filePath, series));
@@ -774,7 +1138,9 @@ public class PixelsService extends AbstractFileSystemService
         final String originalFilePath = getOriginalFilePath(pixels);
         final int series = getSeries(pixels);
         final IFormatReader reader = createBfReader();
+        final boolean memoized = memoCache.exists(reader, originalFilePath);
         reader.setId(originalFilePath); // Called by BfPixelsBuffer elsewhere.
+        memoCache.record(reader, originalFilePath, memoized);
         reader.setSeries(series);
         return reader;
     }
@@ -804,7 +1170,9 @@ public class PixelsService extends AbstractFileSystemService
         try
         {
             IFormatReader reader = createBfReader();
+            boolean memoized = memoCache.exists(reader, filePath);
             BfPixelBuffer pixelBuffer = new BfPixelBuffer(filePath, reader);
+            memoCache.record(reader, filePath, memoized);
             pixelBuffer.setSeries(series);
             log.info(String.format("Creating BfPixelBuffer: %s Series: %d",
                     filePath, series));
@@ -833,7 +1201,11 @@ public class PixelsService extends AbstractFileSystemService
                 // #5159. Creating the path if we need to write.
                 createSubpath(filePath);
             }
-            return new BfPyramidPixelBuffer(pixels, filePath, write);
+            final BfPyramidPixelBuffer pixelBuffer =
+                    new BfPyramidPixelBuffer(pixels, filePath, write);
+            pixelBuffer.setReaderPoolSize(pyramidReaders);
+            pixelBuffer.setCompression(pyramidCompression);
+            return pixelBuffer;
         }
         catch (Exception e)
         {
@@ -0,0 +1,218 @@
+/*
+ *   Copyright 2017 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package ome.io.nio;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ome.conditions.ApiUsageException;
+import ome.model.core.Pixels;
+import ome.util.PixelData;
+
+/**
+ * Read-through cache in front of another {@link PixelBuffer} which is used to
+ * read the pixel data of a plane ahead of its rendering. The first request
+ * for a plane, tile, plane region or stack is served by the source buffer and
+ * its result is kept; any later identical request is served from memory
+ * without touching the source. Access to the source buffer is synchronized on
+ * the source so that a background thread can fill one instance while the
+ * caller renders from another instance wrapping the same source.
+ * <p>
+ * Like {@link InMemoryPlanarPixelBuffer} it is <b>read-only</b> and
+ * {@link #close()} does not close the source buffer.
+ * </p>
+ *
+ * @since 5.4.0
+ * @see PixelBuffer
+ */
+public class ReadAheadPixelBuffer extends InMemoryPlanarPixelBuffer
+{
+    /** The buffer the data is read from on a cache miss. */
+    private final PixelBuffer source;
+
+    /** The data already read keyed by request type and arguments. */
+    private final Map<List<Integer>, PixelData> data =
+            new ConcurrentHashMap<List<Integer>, PixelData>();
+
+    /**
+     * Constructs a read-ahead buffer.
+     * @param pixels Dimensionality and pixels type of the source buffer.
+     * @param source The buffer to read the pixel data from.
+     */
+    public ReadAheadPixelBuffer(Pixels pixels, PixelBuffer source)
+    {
+        super(pixels, null);
+        if (source == null)
+        {
+            throw new NullPointerException("Expecting not null source");
+        }
+        this.source = source;
+    }
+
+    /**
+     * Returns the number of distinct requests already read from the source.
+     * @return See above.
+     */
+    public int size()
+    {
+        return data.size();
+    }
+
+    /**
+     * Discards all the data read so far.
+     */
+    public void clear()
+    {
+        data.clear();
+    }
+
+    @Override
+    public PixelData getPlane(Integer z, Integer c, Integer t)
+            throws IOException, DimensionsOutOfBoundsException
+    {
+        List<Integer> key = Arrays.asList(0, z, c, t);
+        PixelData value = data.get(key);
+        if (value == null)
+        {
+            synchronized (source)
+            {
+                value = source.getPlane(z, c, t);
+            }
+            data.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public PixelData getPlaneRegion(Integer x, Integer y, Integer width,
+            Integer height, Integer z, Integer c, Integer t, Integer stride)
+            throws IOException, DimensionsOutOfBoundsException
+    {
+        List<Integer> key =
+                Arrays.asList(1, x, y, width, height, z, c, t, stride);
+        PixelData value = data.get(key);
+        if (value == null)
+        {
+            synchronized (source)
+            {
+                value = source.getPlaneRegion(
+                        x, y, width, height, z, c, t, stride);
+            }
+            data.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public PixelData getTile(Integer z, Integer c, Integer t, Integer x,
+            Integer y, Integer w, Integer h) throws IOException
+    {
+        List<Integer> key = Arrays.asList(2, z, c, t, x, y, w, h);
+        PixelData value = data.get(key);
+        if (value == null)
+        {
+            synchronized (source)
+            {
+                value = source.getTile(z, c, t, x, y, w, h);
+            }
+            data.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public PixelData getStack(Integer c, Integer t)
+            throws IOException, DimensionsOutOfBoundsException
+    {
+        List<Integer> key = Arrays.asList(3, c, t);
+        PixelData value = data.get(key);
+        if (value == null)
+        {
+            synchronized (source)
+            {
+                value = source.getStack(c, t);
+            }
+            data.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Copies the plane, read through the cache, into <code>buffer</code>.
+     * @see PixelBuffer#getPlaneDirect(Integer, Integer, Integer, byte[])
+     */
+    @Override
+    public byte[] getPlaneDirect(Integer z, Integer c, Integer t,
+            byte[] buffer) throws IOException, DimensionsOutOfBoundsException
+    {
+        ByteBuffer plane = getPlane(z, c, t).getData().duplicate();
+        plane.rewind();
+        if (buffer.length != plane.remaining())
+        {
+            throw new ApiUsageException("Buffer size incorrect.");
+        }
+        plane.get(buffer);
+        return buffer;
+    }
+
+    /**
+     * Copies <code>count</code> pixels of the plane, read through the cache,
+     * into <code>buffer</code>.
+     * @see PixelBuffer#getPlaneRegionDirect(Integer, Integer, Integer,
+     * Integer, Integer, byte[])
+     */
+    @Override
+    public byte[] getPlaneRegionDirect(Integer z, Integer c, Integer t,
+            Integer count, Integer offset, byte[] buffer) throws IOException,
+            DimensionsOutOfBoundsException
+    {
+        ByteBuffer plane = getPlane(z, c, t).getData().duplicate();
+        plane.position(offset * getByteWidth());
+        plane.get(buffer, 0, count * getByteWidth());
+        return buffer;
+    }
+
+    @Override
+    public int getSizeX()
+    {
+        return source.getSizeX();
+    }
+
+    @Override
+    public int getSizeY()
+    {
+        return source.getSizeY();
+    }
+
+    @Override
+    public int getResolutionLevel()
+    {
+        return source.getResolutionLevel();
+    }
+
+    @Override
+    public int getResolutionLevels()
+    {
+        return source.getResolutionLevels();
+    }
+
+    @Override
+    public List<List<Integer>> getResolutionDescriptions()
+    {
+        return source.getResolutionDescriptions();
+    }
+
+    @Override
+    public Dimension getTileSize()
+    {
+        return source.getTileSize();
+    }
+}
@@ -162,7 +162,8 @@ public class RomioPixelBuffer extends AbstractBuffer implements PixelBuffer {
         }
     }
 
-    private FileChannel getFileChannel() throws FileNotFoundException {
+    private synchronized FileChannel getFileChannel()
+            throws FileNotFoundException {
         if (channel == null) {
             file = new RandomAccessFile(getPath(), "rw");
             channel = file.getChannel();
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.io.nio.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import loci.formats.FormatTools;
+import ome.io.nio.PixelBuffer;
+import ome.io.nio.PixelsService;
+import ome.model.core.Pixels;
+import ome.model.enums.PixelsType;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time to write and to read a pixel pyramid with each of the
+ * {@link ome.io.bioformats.PyramidCompression} codecs. The tiles mimic
+ * fluorescence data: a dark, noisy background with a few bright blobs. The
+ * size of each pyramid is logged once written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PyramidCompressionBenchmark {
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PyramidCompressionBenchmark.class);
+
+    private static final int SIZE = 2048;
+
+    private static final int TILE = 256;
+
+    @Param({"uncompressed", "lzw", "zlib", "jpeg-2000"})
+    public String compression;
+
+    @Param({"uint8", "uint16"})
+    public String pixelsType;
+
+    private File root;
+
+    private Pixels pixels;
+
+    private PixelsService service;
+
+    private byte[][] tiles;
+
+    private int bytesPerPixel;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("pyramid-bench").toFile();
+        pixels = new Pixels(1L, true);
+        pixels.setSizeX(SIZE);
+        pixels.setSizeY(SIZE);
+        pixels.setSizeZ(1);
+        pixels.setSizeC(1);
+        pixels.setSizeT(1);
+        PixelsType type = new PixelsType();
+        type.setValue(pixelsType);
+        pixels.setPixelsType(type);
+        bytesPerPixel = FormatTools.getBytesPerPixel(pixelsType);
+        service = new PixelsService(root.getAbsolutePath()) {
+            public boolean requiresPixelsPyramid(Pixels pixels) {
+                return true;
+            }
+        };
+        service.setPyramidCompression(compression);
+        tiles = createTiles();
+        write();
+        File pyramid = pyramid();
+        log.info(String.format("%s %s: %d bytes (%.1f%%)",
+                compression, pixelsType, pyramid.length(),
+                100.0 * pyramid.length()
+                / ((long) SIZE * SIZE * bytesPerPixel)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    private File pyramid() {
+        return new File(service.getPixelsPath(pixels.getId())
+                + PixelsService.PYRAMID_SUFFIX);
+    }
+
+    private byte[][] createTiles() {
+        final int max = bytesPerPixel == 1 ? 255 : 4095;
+        final Random random = new Random(42);
+        final int[][] blobs = new int[40][];
+        for (int i = 0; i < blobs.length; i++) {
+            blobs[i] = new int[] { random.nextInt(SIZE), random.nextInt(SIZE),
+                    5 + random.nextInt(30) };
+        }
+        final int n = SIZE / TILE;
+        final byte[][] tiles = new byte[n * n][];
+        for (int ty = 0; ty < n; ty++) {
+            for (int tx = 0; tx < n; tx++) {
+                byte[] tile = new byte[TILE * TILE * bytesPerPixel];
+                int i = 0;
+                for (int y = ty * TILE; y < (ty + 1) * TILE; y++) {
+                    for (int x = tx * TILE; x < (tx + 1) * TILE; x++) {
+                        double value = max * 0.05
+                                + random.nextGaussian() * max * 0.01;
+                        for (int[] blob : blobs) {
+                            double dx = x - blob[0], dy = y - blob[1];
+                            value += max * 0.8 * Math.exp(
+                                    -(dx * dx + dy * dy) / (2 * blob[2] * blob[2]));
+                        }
+                        int v = (int) Math.max(0, Math.min(max, value));
+                        if (bytesPerPixel == 1) {
+                            tile[i++] = (byte) v;
+                        } else {
+                            tile[i++] = (byte) (v >> 8);
+                            tile[i++] = (byte) v;
+                        }
+                    }
+                }
+                tiles[ty * n + tx] = tile;
+            }
+        }
+        return tiles;
+    }
+
+    private void write() throws IOException {
+        pyramid().delete();
+        final PixelBuffer pb = service._getPixelBuffer(pixels, true);
+        try {
+            final int n = SIZE / TILE;
+            for (int ty = 0; ty < n; ty++) {
+                for (int tx = 0; tx < n; tx++) {
+                    pb.setTile(tiles[ty * n + tx], 0, 0, 0, tx * TILE,
+                            ty * TILE, TILE, TILE);
+                }
+            }
+        } finally {
+            pb.close();
+        }
+    }
+
+    /** Writes the full resolution tiles and the lower resolution levels. */
+    @Benchmark
+    public void encode() throws IOException {
+        write();
+    }
+
+    /** Reads all the full resolution tiles. */
+    @Benchmark
+    public long decode() throws IOException {
+        final PixelBuffer pb = service._getPixelBuffer(pixels, false);
+        try {
+            pb.setResolutionLevel(pb.getResolutionLevels() - 1);
+            final byte[] buffer = new byte[TILE * TILE * bytesPerPixel];
+            long sum = 0;
+            for (int y = 0; y < SIZE; y += TILE) {
+                for (int x = 0; x < SIZE; x += TILE) {
+                    pb.getTileDirect(0, 0, 0, x, y, TILE, TILE, buffer);
+                    sum += buffer[0];
+                }
+            }
+            return sum;
+        } finally {
+            pb.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PyramidCompressionBenchmark.class.getSimpleName())
+                .forks(1).build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package ome.io.nio.utests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import ome.io.nio.MemoCache;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the usage tracking and the eviction of {@link MemoCache}.
+ */
+public class MemoCacheUnitTest {
+
+    private File root;
+
+    private MemoCache cache;
+
+    private File memo(String fileset, String name, int size, long lastAccess)
+            throws IOException {
+        File f = new File(new File(root, fileset), "." + name + MemoCache.SUFFIX);
+        FileUtils.writeByteArrayToFile(f, new byte[size]);
+        f.setLastModified(lastAccess);
+        return f;
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        root = new File(PathUtil.getInstance().getTemporaryDataFilePath(),
+                "BioFormatsCache");
+        root.mkdirs();
+        cache = new MemoCache(root);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testUsagePerFileset() throws IOException {
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        memo("a/fs1", "x.tif", 10, now - 5000);
+        memo("a/fs1", "y.tif", 20, now - 1000);
+        memo("b/fs2", "z.tif", 5, now - 3000);
+        FileUtils.writeByteArrayToFile(new File(root, "b/fs2/other"),
+                new byte[100]);
+        Map<File, MemoCache.Usage> usage = cache.getUsage();
+        Assert.assertEquals(usage.size(), 2);
+        MemoCache.Usage u = usage.get(new File(root, "a/fs1"));
+        Assert.assertEquals(u.size, 30);
+        Assert.assertEquals(u.lastAccess, now - 1000);
+        Assert.assertEquals(u.files.size(), 2);
+        Assert.assertEquals(usage.get(new File(root, "b/fs2")).size, 5);
+    }
+
+    @Test
+    public void testNoEvictionWithoutQuota() throws IOException {
+        File f = memo("fs1", "x.tif", 100, System.currentTimeMillis());
+        Assert.assertEquals(cache.evict(), 0);
+        Assert.assertTrue(f.exists());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFilesetsEvicted() throws IOException {
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        File old1 = memo("fs1", "x.tif", 40, now - 9000);
+        File old2 = memo("fs1", "y.tif", 40, now - 8000);
+        File mid = memo("fs2", "z.tif", 40, now - 5000);
+        File recent = memo("fs3", "w.tif", 40, now - 1000);
+        cache.setQuota(100); // May also evict in the background.
+        cache.evict();
+        Assert.assertFalse(old1.exists());
+        Assert.assertFalse(old2.exists());
+        Assert.assertTrue(mid.exists());
+        Assert.assertTrue(recent.exists());
+        Assert.assertEquals(cache.evict(), 0);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package ome.io.nio.utests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import loci.common.RandomAccessInputStream;
+import loci.formats.tiff.TiffCompression;
+import loci.formats.tiff.TiffParser;
+import ome.io.bioformats.BfPyramidPixelBuffer;
+import ome.io.bioformats.PyramidCompression;
+import ome.io.nio.PixelBuffer;
+import ome.io.nio.PixelsService;
+import ome.model.core.Pixels;
+import ome.model.enums.PixelsType;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that pyramids are written with the configured tile codec and read
+ * back losslessly.
+ */
+public class PyramidCompressionUnitTest {
+
+    private static final int size = 512;
+
+    private static final int tileSize = 256;
+
+    private String root;
+
+    private Pixels pixels;
+
+    private PixelsService service;
+
+    @BeforeMethod
+    public void setup() {
+        root = PathUtil.getInstance().getTemporaryDataFilePath();
+        pixels = new Pixels();
+        pixels.setId(1L);
+        pixels.setSizeX(size);
+        pixels.setSizeY(size);
+        pixels.setSizeZ(1);
+        pixels.setSizeC(1);
+        pixels.setSizeT(1);
+        PixelsType type = new PixelsType();
+        type.setValue("uint16");
+        pixels.setPixelsType(type);
+        service = new PixelsService(root) {
+            public boolean requiresPixelsPyramid(Pixels pixels) {
+                return true;
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File(root));
+    }
+
+    @DataProvider(name = "codecs")
+    public Object[][] codecs() {
+        return new Object[][] {
+                { "uncompressed", TiffCompression.UNCOMPRESSED },
+                { "lzw", TiffCompression.LZW },
+                { "zlib", TiffCompression.DEFLATE },
+                { "JPEG-2000", TiffCompression.JPEG_2000 } };
+    }
+
+    /** A smooth gradient with some noise, as in fluorescence images. */
+    private byte[] tile(int x, int y) {
+        ByteBuffer buf = ByteBuffer.allocate(tileSize * tileSize * 2);
+        for (int row = 0; row < tileSize; row++) {
+            for (int column = 0; column < tileSize; column++) {
+                int value = (x + column) * 16 + (y + row) * 8
+                        + ((column * 31 + row * 17) % 7);
+                buf.putShort((short) value);
+            }
+        }
+        return buf.array();
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testRoundTrip(String name, TiffCompression expected)
+            throws Exception {
+        service.setPyramidCompression(name);
+        PixelBuffer pb = service._getPixelBuffer(pixels, true);
+        try {
+            Assert.assertEquals(((BfPyramidPixelBuffer) pb).getCompression(),
+                    PyramidCompression.fromName(name));
+            for (int y = 0; y < size; y += tileSize) {
+                for (int x = 0; x < size; x += tileSize) {
+                    pb.setTile(tile(x, y), 0, 0, 0, x, y, tileSize, tileSize);
+                }
+            }
+        } finally {
+            pb.close();
+        }
+
+        String path = service.getPixelsPath(pixels.getId())
+                + PixelsService.PYRAMID_SUFFIX;
+        RandomAccessInputStream in = new RandomAccessInputStream(path);
+        try {
+            Assert.assertEquals(
+                    new TiffParser(in).getFirstIFD().getCompression(),
+                    expected);
+        } finally {
+            in.close();
+        }
+
+        pb = service._getPixelBuffer(pixels, false);
+        try {
+            pb.setResolutionLevel(pb.getResolutionLevels() - 1);
+            byte[] read = new byte[tileSize * tileSize * 2];
+            pb.getTileDirect(0, 0, 0, tileSize, tileSize, tileSize, tileSize,
+                    read);
+            Assert.assertEquals(read, tile(tileSize, tileSize));
+        } finally {
+            pb.close();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownCodec() {
+        service.setPyramidCompression("jpeg");
+    }
+
+}
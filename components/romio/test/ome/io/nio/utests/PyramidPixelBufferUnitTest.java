@@ -9,6 +9,10 @@ package ome.io.nio.utests;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ome.io.bioformats.BfPyramidPixelBuffer;
 import ome.io.nio.TileLoopIteration;
@@ -135,4 +139,54 @@ public class PyramidPixelBufferUnitTest extends AbstractPyramidPixelBufferUnitTe
         Assert.assertEquals(tileCount, 192);
     }
 
+    @Test(dependsOnMethods={"testPyramidWriteTiles"}, enabled=true)
+    public void testPyramidReadTilesConcurrently() throws Exception {
+        final BfPyramidPixelBuffer pyramid = (BfPyramidPixelBuffer) pixelBuffer;
+        pyramid.setResolutionLevel(pyramid.getResolutionLevels() - 2);
+        final List<int[]> tiles = new ArrayList<int[]>();
+        final List<String> serialDigests = new ArrayList<String>();
+        final ChecksumProviderFactory cpf = new ChecksumProviderFactoryImpl();
+        Utils.forEachTile(new TileLoopIteration() {
+            public void run(int z, int c, int t, int x, int y, int tileWidth,
+                            int tileHeight, int tileCount) {
+                try
+                {
+                    final byte[] tile = pyramid.getTileDirect(z, c, t, x, y,
+                            tileWidth, tileHeight,
+                            new byte[tileWidth * tileHeight * bytesPerPixel]);
+                    tiles.add(new int[] {z, c, t, x, y, tileWidth, tileHeight});
+                    serialDigests.add(cpf.getProvider(ChecksumType.MD5)
+                            .putBytes(tile).checksumAsString());
+                }
+                catch (IOException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, pyramid, tileWidth, tileHeight);
+
+        pyramid.setReaderPoolSize(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> digests = new ArrayList<Future<String>>();
+            for (final int[] tile : tiles) {
+                digests.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        final byte[] data = pyramid.getTileDirect(tile[0],
+                                tile[1], tile[2], tile[3], tile[4], tile[5],
+                                tile[6], new byte[tile[5] * tile[6] * bytesPerPixel]);
+                        return cpf.getProvider(ChecksumType.MD5)
+                                .putBytes(data).checksumAsString();
+                    }
+                }));
+            }
+            for (int i = 0; i < tiles.size(); i++) {
+                Assert.assertEquals(digests.get(i).get(), serialDigests.get(i));
+            }
+        } finally {
+            executor.shutdown();
+            pyramid.setReaderPoolSize(1);
+        }
+    }
+
 }
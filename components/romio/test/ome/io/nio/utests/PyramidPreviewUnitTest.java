@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package ome.io.nio.utests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import ome.conditions.MissingPyramidException;
+import ome.io.bioformats.BfPyramidPixelBuffer;
+import ome.io.nio.PixelBuffer;
+import ome.io.nio.PixelsService;
+import ome.model.core.Pixels;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the downsampling of the rows into the preview written by
+ * {@link PixelsService#makePyramid(ome.model.core.Pixels)} and which callers
+ * are served the preview while the pyramid is missing or being written.
+ */
+public class PyramidPreviewUnitTest {
+
+    private static final int sizeX = 10;
+
+    private static final int sizeY = 7;
+
+    /** The width and height of the pixels set being pyramided. */
+    private static final int bigSize = 128;
+
+    private static final int factor = 32;
+
+    private String root;
+
+    private Pixels pixels;
+
+    private PixelsService service;
+
+    private String pyramidPath;
+
+    /** The preview read when the first tile of the pyramid is written. */
+    private short[] previewDuringWrite;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        root = PathUtil.getInstance().getTemporaryDataFilePath();
+        pixels = pixels(bigSize);
+        service = new PixelsService(root) {
+            @Override
+            public boolean requiresPixelsPyramid(Pixels pixels) {
+                return true;
+            }
+
+            @Override
+            protected void handleMissingPyramid(Pixels pixels,
+                    String pixelsPyramidFilePath) {
+                throw new MissingPyramidException("Missing pyramid:"
+                        + pixelsPyramidFilePath, 0, pixels.getId());
+            }
+
+            @Override
+            protected BfPyramidPixelBuffer createPyramidPixelBuffer(
+                    final Pixels pixels, String filePath, boolean write) {
+                if (!write || !filePath.equals(pyramidPath)) {
+                    return super.createPyramidPixelBuffer(pixels, filePath,
+                            write);
+                }
+                try {
+                    return new BfPyramidPixelBuffer(pixels, filePath, write) {
+                        @Override
+                        public void setTile(byte[] buffer, Integer z,
+                                Integer c, Integer t, Integer x, Integer y,
+                                Integer w, Integer h) throws IOException {
+                            if (previewDuringWrite == null) {
+                                previewDuringWrite = readPreview();
+                            }
+                            super.setTile(buffer, z, c, t, x, y, w, h);
+                        }
+                    };
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        service.setPyramidPreviewFactor(factor);
+        // Legacy ROMIO data, whose pyramid is still to be created.
+        PixelBuffer romio = service.createPixelBuffer(pixels);
+        try {
+            romio.setPlane(plane(bigSize), 0, 0, 0);
+        } finally {
+            romio.close();
+        }
+        pyramidPath = service.getPixelsPath(pixels.getId())
+                + PixelsService.PYRAMID_SUFFIX;
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File(root));
+    }
+
+    private static Pixels pixels(int size) {
+        Pixels pixels = new Pixels();
+        pixels.setId(1L);
+        pixels.setSizeX(size);
+        pixels.setSizeY(size);
+        pixels.setSizeZ(1);
+        pixels.setSizeC(1);
+        pixels.setSizeT(1);
+        PixelsType type = new PixelsType();
+        type.setValue("uint16");
+        pixels.setPixelsType(type);
+        return pixels;
+    }
+
+    /** Writes a single plane pyramid of the given size. */
+    private static void writePyramid(String path, int size) throws Exception {
+        BfPyramidPixelBuffer pyramid =
+            new BfPyramidPixelBuffer(pixels(size), path, true);
+        try {
+            pyramid.setTile(new byte[size * size * 2], 0, 0, 0, 0, 0, size,
+                    size);
+        } finally {
+            pyramid.close();
+        }
+    }
+
+    /** The value of a pixel is its index in the plane. */
+    private static byte[] plane(int size) {
+        ByteBuffer buf = ByteBuffer.allocate(size * size * 2);
+        ShortBuffer values = buf.asShortBuffer();
+        for (int i = 0; i < size * size; i++) {
+            values.put((short) i);
+        }
+        return buf.array();
+    }
+
+    /** Reads the plane of the preview, asserting that it is served. */
+    private short[] readPreview() throws IOException {
+        Assert.assertFalse(new File(pyramidPath).exists());
+        PixelBuffer buffer = service.getPreviewPixelBuffer(pixels);
+        try {
+            int size = bigSize / factor;
+            Assert.assertEquals(buffer.getSizeX(), size);
+            Assert.assertEquals(buffer.getSizeY(), size);
+            PixelData plane = buffer.getPlane(0, 0, 0);
+            try {
+                short[] values = new short[size * size];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (short) plane.getPixelValue(i);
+                }
+                return values;
+            } finally {
+                plane.dispose();
+            }
+        } finally {
+            buffer.close();
+        }
+    }
+
+    /** The value of a pixel is its index in the plane. */
+    private byte[] tile(int x, int y, int w, int h) {
+        ByteBuffer buf = ByteBuffer.allocate(w * h * 2);
+        ShortBuffer values = buf.asShortBuffer();
+        for (int row = 0; row < h; row++) {
+            for (int column = 0; column < w; column++) {
+                values.put((short) ((y + row) * sizeX + x + column));
+            }
+        }
+        return buf.array();
+    }
+
+    private short[] downsample(int tileWidth, int tileHeight, int factor) {
+        int previewX = (sizeX + factor - 1) / factor;
+        int previewY = (sizeY + factor - 1) / factor;
+        byte[] plane = new byte[previewX * previewY * 2];
+        for (int y = 0; y < sizeY; y += tileHeight) {
+            int h = Math.min(tileHeight, sizeY - y);
+            for (int x = 0; x < sizeX; x += tileWidth) {
+                int w = Math.min(tileWidth, sizeX - x);
+                PixelsService.downsample(tile(x, y, w, h), x, y, w, h, factor,
+                        2, plane, previewX);
+            }
+        }
+        short[] values = new short[previewX * previewY];
+        ByteBuffer.wrap(plane).asShortBuffer().get(values);
+        return values;
+    }
+
+    @Test
+    public void testSingleTile() {
+        Assert.assertEquals(downsample(sizeX, sizeY, 3), new short[] {
+                0, 3, 6, 9,
+                30, 33, 36, 39,
+                60, 63, 66, 69});
+    }
+
+    @Test
+    public void testTilesNotAlignedWithFactor() {
+        Assert.assertEquals(downsample(4, 2, 3), downsample(sizeX, sizeY, 3));
+        Assert.assertEquals(downsample(1, 1, 3), downsample(sizeX, sizeY, 3));
+    }
+
+    @Test
+    public void testFactorLargerThanPlane() {
+        Assert.assertEquals(downsample(4, 4, 32), new short[] {0});
+    }
+
+    @Test
+    public void testPreviewNotServedByDefault() throws Exception {
+        writePyramid(pyramidPath + PixelsService.PREVIEW_SUFFIX,
+                bigSize / factor);
+        try {
+            service.getPixelBuffer(pixels, false);
+            Assert.fail("Expected the pyramid to be missing.");
+        } catch (MissingPyramidException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPreviewServedOnRequest() throws Exception {
+        writePyramid(pyramidPath + PixelsService.PREVIEW_SUFFIX,
+                bigSize / factor);
+        PixelBuffer buffer = service.getPreviewPixelBuffer(pixels);
+        try {
+            Assert.assertEquals(buffer.getSizeX(), bigSize / factor);
+            Assert.assertEquals(buffer.getSizeY(), bigSize / factor);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test(expectedExceptions = MissingPyramidException.class)
+    public void testNoPreviewOnRequest() {
+        service.getPreviewPixelBuffer(pixels);
+    }
+
+    @Test
+    public void testPreviewServedWhilePyramidWritten() throws Exception {
+        service.makePyramid(pixels);
+        Assert.assertEquals(previewDuringWrite, new short[] {
+                0, 32, 64, 96,
+                4096, 4128, 4160, 4192,
+                8192, 8224, 8256, 8288,
+                12288, 12320, 12352, 12384});
+        Assert.assertTrue(new File(pyramidPath).exists());
+        Assert.assertFalse(new File(pyramidPath
+                + PixelsService.PREVIEW_SUFFIX).exists());
+    }
+
+    @Test
+    public void testPyramidServedOverPreview() throws Exception {
+        writePyramid(pyramidPath + PixelsService.PREVIEW_SUFFIX,
+                bigSize / factor);
+        writePyramid(pyramidPath, bigSize);
+        PixelBuffer buffer = service.getPreviewPixelBuffer(pixels);
+        try {
+            Assert.assertEquals(buffer.getSizeX(), bigSize);
+            Assert.assertEquals(buffer.getSizeY(), bigSize);
+        } finally {
+            buffer.close();
+        }
+    }
+
+}
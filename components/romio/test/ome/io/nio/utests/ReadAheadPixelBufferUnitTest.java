@@ -0,0 +1,121 @@
+/*
+ *   Copyright 2017 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package ome.io.nio.utests;
+
+import ome.conditions.ApiUsageException;
+import ome.io.nio.InMemoryPlanarPixelBuffer;
+import ome.io.nio.ReadAheadPixelBuffer;
+import ome.model.core.Pixels;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the read-through caching of {@link ReadAheadPixelBuffer}.
+ *
+ * @since 5.4.0
+ */
+public class ReadAheadPixelBufferUnitTest
+{
+    private Pixels pixels;
+
+    private byte[][][][] planes;
+
+    private ReadAheadPixelBuffer buffer;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        PixelsType pType = new PixelsType();
+        pType.setValue("uint8");
+        pixels = new Pixels();
+        pixels.setSizeX(4);
+        pixels.setSizeY(4);
+        pixels.setSizeZ(2);
+        pixels.setSizeC(1);
+        pixels.setSizeT(1);
+        pixels.setPixelsType(pType);
+        planes = new byte[2][1][1][];
+        for (int z = 0; z < 2; z++)
+        {
+            planes[z][0][0] = new byte[16];
+            for (int i = 0; i < 16; i++)
+            {
+                planes[z][0][0][i] = (byte) (z * 16 + i);
+            }
+        }
+        buffer = new ReadAheadPixelBuffer(pixels,
+                new InMemoryPlanarPixelBuffer(pixels, planes));
+    }
+
+    @Test
+    public void testPlaneIsReadOnce() throws Exception
+    {
+        PixelData first = buffer.getPlane(1, 0, 0);
+        Assert.assertEquals(buffer.size(), 1);
+        Assert.assertEquals(first.getPixelValue(3), 19.0);
+        PixelData second = buffer.getPlane(1, 0, 0);
+        Assert.assertSame(second, first);
+        Assert.assertEquals(buffer.size(), 1);
+        buffer.getPlane(0, 0, 0);
+        Assert.assertEquals(buffer.size(), 2);
+    }
+
+    @Test
+    public void testClear() throws Exception
+    {
+        PixelData first = buffer.getPlane(0, 0, 0);
+        buffer.clear();
+        Assert.assertEquals(buffer.size(), 0);
+        Assert.assertNotSame(buffer.getPlane(0, 0, 0), first);
+    }
+
+    @Test
+    public void testPlaneDirect() throws Exception
+    {
+        byte[] plane = buffer.getPlaneDirect(1, 0, 0, new byte[16]);
+        Assert.assertEquals(plane, planes[1][0][0]);
+        Assert.assertEquals(buffer.size(), 1);
+        // Served from the cache the second time.
+        Assert.assertEquals(buffer.getPlaneDirect(1, 0, 0, new byte[16]),
+                planes[1][0][0]);
+        Assert.assertEquals(buffer.size(), 1);
+    }
+
+    @Test(expectedExceptions = ApiUsageException.class)
+    public void testPlaneDirectWrongSize() throws Exception
+    {
+        buffer.getPlaneDirect(0, 0, 0, new byte[8]);
+    }
+
+    @Test
+    public void testPlaneRegionDirect() throws Exception
+    {
+        byte[] region = buffer.getPlaneRegionDirect(1, 0, 0, 4, 6,
+                new byte[4]);
+        Assert.assertEquals(region, new byte[] { 22, 23, 24, 25 });
+        // The cached plane is not moved by the copy.
+        Assert.assertEquals(buffer.getPlaneDirect(1, 0, 0, new byte[16]),
+                planes[1][0][0]);
+    }
+
+    @Test
+    public void testCloseKeepsData() throws Exception
+    {
+        buffer.getPlane(0, 0, 0);
+        buffer.close();
+        Assert.assertEquals(buffer.size(), 1);
+        Assert.assertEquals(buffer.getSizeX(), 4);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullSource()
+    {
+        new ReadAheadPixelBuffer(pixels, null);
+    }
+}
@@ -10,17 +10,31 @@ package ome.logic;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 
 import ome.api.local.LocalCompress;
 
+/**
+ * Compresses images to JPEG. The {@link ImageWriter}s are expensive to look
+ * up and create, so they are kept in a pool shared by all the instances and
+ * reused, each with its {@link ImageWriteParam}. Images are written through
+ * an in-memory cache rather than the temporary files {@link ImageIO} may use.
+ */
 public class CompressImpl implements LocalCompress {
 
+    /** The idle JPEG encoders, shared by all the instances. */
+    private static final EncoderPool JPEG = new EncoderPool("jpeg",
+            2 * Runtime.getRuntime().availableProcessors());
+
 	/** The default compression quality in fractional percent. */
     private float quality = 0.85F;
 	
@@ -30,24 +44,26 @@ public class CompressImpl implements LocalCompress {
     public void compressToStream(BufferedImage image, OutputStream outputStream)
     	throws IOException
     {
-        // Get a JPEG image writer
-        ImageWriter jpegWriter =
-        	ImageIO.getImageWritersByFormatName("jpeg").next();
-
-        // Setup the compression value from (0.05, 0.75 and 0.95)
-        ImageWriteParam iwp = jpegWriter.getDefaultWriteParam();
-        iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        iwp.setCompressionQuality(quality);
+        // Get a JPEG image writer set up with the compression value
+        // (0.05, 0.75 and 0.95)
+        final Encoder encoder = JPEG.borrow(quality);
 
         // Write the JPEG to our ByteArray stream
     	ImageOutputStream imageOutputStream = null;
+    	boolean reusable = false;
         try {
-        	imageOutputStream = ImageIO.createImageOutputStream(outputStream);
-        	jpegWriter.setOutput(imageOutputStream);
-        	jpegWriter.write(null, new IIOImage(image, null, null), iwp);
+        	imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
+        	encoder.writer.setOutput(imageOutputStream);
+        	encoder.writer.write(null, new IIOImage(image, null, null),
+        	        encoder.param);
+        	reusable = true;
         } finally {
-        	if (imageOutputStream != null)
-        		imageOutputStream.close();
+        	try {
+        		if (imageOutputStream != null)
+        			imageOutputStream.close();
+        	} finally {
+        		JPEG.release(encoder, reusable);
+        	}
         }
     }
 
@@ -66,4 +82,74 @@ public class CompressImpl implements LocalCompress {
 	{
 		return quality;
 	}
+
+    /** An {@link ImageWriter} with its parameters. */
+    static class Encoder {
+
+        final ImageWriter writer;
+
+        final ImageWriteParam param;
+
+        Encoder(ImageWriter writer) {
+            this.writer = writer;
+            this.param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        }
+    }
+
+    /**
+     * Keeps up to a given number of idle encoders of a format. Encoders are
+     * taken from the pool for the time of a single write, created if none is
+     * idle, and disposed of if the pool is full or the write failed.
+     */
+    static class EncoderPool {
+
+        private final String format;
+
+        private final int size;
+
+        private final Queue<Encoder> idle = new ConcurrentLinkedQueue<Encoder>();
+
+        /** The size of {@link #idle}, whose own is linear. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        EncoderPool(String format, int size) {
+            this.format = format;
+            this.size = size;
+        }
+
+        /**
+         * Takes an idle encoder, or creates one, set up for the given
+         * quality.
+         */
+        Encoder borrow(float quality) {
+            Encoder encoder = idle.poll();
+            if (encoder != null) {
+                count.decrementAndGet();
+            } else {
+                encoder = new Encoder(
+                        ImageIO.getImageWritersByFormatName(format).next());
+            }
+            if (encoder.param.getCompressionQuality() != quality) {
+                encoder.param.setCompressionQuality(quality);
+            }
+            return encoder;
+        }
+
+        /**
+         * Returns an encoder to the pool.
+         * @param reusable if the encoder may be used again
+         */
+        void release(Encoder encoder, boolean reusable) {
+            encoder.writer.setOutput(null);
+            if (reusable && count.incrementAndGet() <= size) {
+                idle.offer(encoder);
+            } else {
+                if (reusable) {
+                    count.decrementAndGet();
+                }
+                encoder.writer.dispose();
+            }
+        }
+    }
 }
@@ -16,6 +16,11 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,6 +33,7 @@ import ome.annotations.RolesAllowed;
 import ome.api.ILdap;
 import ome.api.ServiceInterface;
 import ome.conditions.ApiUsageException;
+import ome.conditions.InternalException;
 import ome.conditions.SecurityViolation;
 import ome.conditions.ValidationException;
 import ome.model.internal.Permissions;
@@ -41,6 +47,7 @@ import ome.security.auth.AttributeSet;
 import ome.security.auth.GroupAttributeMapper;
 import ome.security.auth.GroupContextMapper;
 import ome.security.auth.LdapConfig;
+import ome.security.auth.LdapLookupCache;
 import ome.security.auth.NewUserGroupBean;
 import ome.security.auth.NewUserGroupOwnerBean;
 import ome.security.auth.OrgUnitNewUserGroupBean;
@@ -64,6 +71,8 @@ import org.springframework.ldap.filter.EqualsFilter;
 import org.springframework.ldap.filter.Filter;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -98,6 +107,15 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
 
     private OmeroContext appContext;
 
+    /** The number of threads looking up accounts in {@link #discover()} */
+    private int discoverThreads = 1;
+
+    /** Caches the lookups of {@link #synchronizeLdapUser(String)}, may be null */
+    private LdapLookupCache lookups;
+
+    /** {@link #ldap} with its group searches cached by {@link #lookups} */
+    private LdapOperations cachedLdap;
+
     public LdapImpl(ContextSource ctx, LdapOperations ldap, Roles roles,
             LdapConfig config, RoleProvider roleProvider, SqlAction sql) {
         this.ctx = ctx;
@@ -106,6 +124,30 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
         this.roles = roles;
         this.config = config;
         this.provider = roleProvider;
+        this.cachedLdap = ldap;
+    }
+
+    /**
+     * Sets how many LDAP lookups {@link #discover()} and
+     * {@link #discoverGroups()} may run at once.
+     * @param discoverThreads a positive number
+     */
+    public void setDiscoverThreads(int discoverThreads) {
+        if (discoverThreads < 1) {
+            throw new IllegalArgumentException(
+                    "discoverThreads must be positive: " + discoverThreads);
+        }
+        this.discoverThreads = discoverThreads;
+    }
+
+    /**
+     * Sets the cache of the directory lookups made by
+     * {@link #synchronizeLdapUser(String)}.
+     * @param lookups the cache, <code>null</code> for none
+     */
+    public void setLookupCache(LdapLookupCache lookups) {
+        this.lookups = lookups;
+        this.cachedLdap = lookups == null ? ldap : lookups.wrap(ldap);
     }
 
     public void setApplicationContext(ApplicationContext arg0)
@@ -293,10 +335,10 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
 
         Experimenter omeExp = iQuery.findByString(Experimenter.class,
                 "omeName", username);
-        Experimenter ldapExp = findExperimenter(username);
+        Experimenter ldapExp = lookupUserName(username, null);
         String ldapDN = getPersonContextMapper().getDn(ldapExp);
         DistinguishedName dn = new DistinguishedName(ldapDN);
-        GroupLoader loader = new GroupLoader(username, dn);
+        GroupLoader loader = new GroupLoader(username, dn, true);
         List<Long> ldapGroups = loader.getGroups();
         List<Long> ownedGroups = loader.getOwnedGroups();
         List<Object[]> currentGroups = iQuery
@@ -559,6 +601,14 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
         }
 
         GroupLoader(String username, DistinguishedName dn) {
+            this(username, dn, false);
+        }
+
+        /**
+         * @param cached if the lookups may be served by the lookup cache,
+         *            the results then must not be modified.
+         */
+        GroupLoader(String username, DistinguishedName dn, boolean cached) {
             this.username = username;
             this.dn = dn;
 
@@ -586,48 +636,99 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
 
             if ("ou".equals(type)) {
                 bean = new OrgUnitNewUserGroupBean(dn);
-                attrSet = getAttributeSet(username, getPersonContextMapper());
+                attrSet = getAttributeSet(username, null, cached);
             } else if ("filtered_attribute".equals(type)) {
                 bean = new AttributeNewUserGroupBean(data, true, false);
-                attrSet = getAttributeSet(username, getPersonContextMapper(data));
+                attrSet = getAttributeSet(username, data, cached);
             } else if ("attribute".equals(type)) {
                 bean = new AttributeNewUserGroupBean(data, false, false);
-                attrSet = getAttributeSet(username, getPersonContextMapper(data));
+                attrSet = getAttributeSet(username, data, cached);
             } else if ("filtered_dn_attribute".equals(type)) {
                 bean = new AttributeNewUserGroupBean(data, true, true);
-                attrSet = getAttributeSet(username, getPersonContextMapper(data));
+                attrSet = getAttributeSet(username, data, cached);
             } else if ("dn_attribute".equals(type)) {
                 bean = new AttributeNewUserGroupBean(data, false, true);
-                attrSet = getAttributeSet(username, getPersonContextMapper(data));
+                attrSet = getAttributeSet(username, data, cached);
             } else if ("query".equals(type)) {
                 bean = new QueryNewUserGroupBean(data);
-                attrSet = getAttributeSet(username, getPersonContextMapper());
+                attrSet = getAttributeSet(username, null, cached);
             } else if ("bean".equals(type)) {
                 bean = appContext.getBean(data, NewUserGroupBean.class);
                 // Likely, this should be added to the API in order to allow bean
                 // implementations to provide an attribute set.
-                attrSet = getAttributeSet(username, getPersonContextMapper());
+                attrSet = getAttributeSet(username, null, cached);
             } else {
                 throw new RuntimeException("Unknown spec: " + grpSpec);
             }
 
-            groups.addAll(bean.groups(username, config, ldap, provider, attrSet));
+            final LdapOperations ops = cached ? cachedLdap : ldap;
+            groups.addAll(bean.groups(username, config, ops, provider, attrSet));
             if (bean instanceof NewUserGroupOwnerBean) {
                 ownedGroups.addAll(((NewUserGroupOwnerBean) bean).ownerOfGroups(
-                        username, config, ldap, provider, attrSet));
+                        username, config, ops, provider, attrSet));
             }
         }
     }
 
-    private AttributeSet getAttributeSet(String username,
-            PersonContextMapper mapper) {
-        Experimenter exp = mapUserName(username, mapper);
+    /**
+     * Looks up the attributes of a user, with their DN.
+     *
+     * @param username a user's name
+     * @param attr the attribute to load, <code>null</code> for the default
+     * @param cached if the result may be served by the lookup cache
+     * @return the user's attributes
+     */
+    private AttributeSet getAttributeSet(final String username,
+            final String attr, boolean cached) {
+        if (!cached || lookups == null) {
+            return getAttributeSet(mapUserName(username,
+                    getPersonContextMapper(attr)), attr);
+        }
+        // Copied so that the cached set is never modified by the caller.
+        return new AttributeSet(lookups.get(
+                LdapLookupCache.key("attributes", username, attr),
+                new Callable<AttributeSet>() {
+                    public AttributeSet call() {
+                        return getAttributeSet(lookupUserName(username, attr),
+                                attr);
+                    }
+                }));
+    }
+
+    /**
+     * Returns a copy of the attributes of the user with their DN added, as
+     * the given Experimenter may be shared through the lookup cache.
+     */
+    private AttributeSet getAttributeSet(Experimenter exp, String attr) {
+        PersonContextMapper mapper = getPersonContextMapper(attr);
         String dn = mapper.getDn(exp);
-        AttributeSet attrSet = mapper.getAttributeSet(exp);
+        AttributeSet attrSet = new AttributeSet(mapper.getAttributeSet(exp));
         attrSet.put("dn", dn); // For queries
         return attrSet;
     }
 
+    /**
+     * As {@link #mapUserName(String, PersonContextMapper)} but served by the
+     * lookup cache if there is one, hence the result must not be modified.
+     *
+     * @param username a user's name
+     * @param attr the attribute to load, <code>null</code> for the default
+     * @return a non-{@code null} Experimenter
+     */
+    private Experimenter lookupUserName(final String username,
+            final String attr) {
+        if (lookups == null) {
+            return mapUserName(username, getPersonContextMapper(attr));
+        }
+        return lookups.get(LdapLookupCache.key("user", username, attr),
+                new Callable<Experimenter>() {
+                    public Experimenter call() {
+                        return mapUserName(username,
+                                getPersonContextMapper(attr));
+                    }
+                });
+    }
+
     //
     // READS
     //
@@ -703,14 +804,26 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
                         .addIds(Lists.newArrayList(r.getRootId(), r.getGuestId()))
                         .addBoolean("ldap", false));
 
+        List<String> names = Lists.newArrayListWithCapacity(localExperimenters.size());
         for (Experimenter e : localExperimenters) {
-            try {
-                findExperimenter(e.getOmeName());
-            } catch (ApiUsageException aue) {
-                // This user doesn't have an LDAP account
-                continue;
+            names.add(e.getOmeName());
+        }
+        final PersonContextMapper mapper = getPersonContextMapper();
+        boolean[] found = findAll(names, new Predicate<String>() {
+            public boolean apply(String name) {
+                try {
+                    mapUserName(name, mapper);
+                } catch (ApiUsageException aue) {
+                    // This user doesn't have an LDAP account
+                    return false;
+                }
+                return true;
+            }
+        });
+        for (int i = 0; i < found.length; i++) {
+            if (found[i]) {
+                discoveredExperimenters.add(localExperimenters.get(i));
             }
-            discoveredExperimenters.add(e);
         }
         return discoveredExperimenters;
     }
@@ -728,18 +841,73 @@ public class LdapImpl extends AbstractLevel2Service implements ILdap,
                                 r.getSystemGroupId(), r.getUserGroupId()))
                         .addBoolean("ldap", false));
 
+        List<String> names = Lists.newArrayListWithCapacity(localGroups.size());
         for (ExperimenterGroup g : localGroups) {
-            try {
-                findGroup(g.getName());
-            } catch (ApiUsageException aue) {
-                // This group doesn't exist in the LDAP server
-                continue;
+            names.add(g.getName());
+        }
+        final GroupContextMapper mapper = getGroupContextMapper();
+        boolean[] found = findAll(names, new Predicate<String>() {
+            public boolean apply(String name) {
+                try {
+                    mapGroupName(name, mapper);
+                } catch (ApiUsageException aue) {
+                    // This group doesn't exist in the LDAP server
+                    return false;
+                }
+                return true;
+            }
+        });
+        for (int i = 0; i < found.length; i++) {
+            if (found[i]) {
+                discoveredGroups.add(localGroups.get(i));
             }
-            discoveredGroups.add(g);
         }
         return discoveredGroups;
     }
 
+    /**
+     * Looks up the given names in the LDAP server, running up to
+     * {@link #discoverThreads} lookups at once.
+     * @param names the names to look up
+     * @param lookup returns if a name is found
+     * @return if each name is found, in the order of the names
+     */
+    private boolean[] findAll(final List<String> names,
+            final Predicate<String> lookup) {
+        final boolean[] found = new boolean[names.size()];
+        final int threads = Math.min(discoverThreads, names.size());
+        if (threads <= 1) {
+            for (int i = 0; i < found.length; i++) {
+                found[i] = lookup.apply(names.get(i));
+            }
+            return found;
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Boolean>> results =
+                    Lists.newArrayListWithCapacity(names.size());
+            for (final String name : names) {
+                results.add(pool.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        return lookup.apply(name);
+                    }
+                }));
+            }
+            for (int i = 0; i < found.length; i++) {
+                found[i] = results.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted during discovery");
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return found;
+    }
+
     // Helpers
     // =========================================================================
 
@@ -42,12 +42,14 @@ import ome.model.screen.Plate;
 import ome.model.screen.Screen;
 import ome.model.screen.Well;
 import ome.parameters.Parameters;
+import ome.services.query.CollectionCountCache;
 import ome.services.query.PojosFindHierarchiesQueryDefinition;
 import ome.services.query.PojosGetImagesByOptionsQueryDefinition;
 import ome.services.query.PojosGetImagesQueryDefinition;
 import ome.services.query.PojosGetUserImagesQueryDefinition;
 import ome.services.query.PojosLoadHierarchyQueryDefinition;
 import ome.services.query.Query;
+import ome.system.EventContext;
 import ome.tools.HierarchyTransformations;
 import ome.tools.lsid.LsidUtils;
 import ome.util.CBlock;
@@ -60,6 +62,7 @@ import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 
 /**
@@ -80,6 +83,36 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
         return IContainer.class;
     }
 
+    /** The maximum number of ids per collection count query. */
+    private static final int BATCH_SIZE = 512;
+
+    /** Cache of the collection counts, may be <code>null</code>. */
+    private CollectionCountCache countCache;
+
+    /**
+     * Sets the cache of the counts returned by
+     * {@link #getCollectionCount(String, String, Set, Parameters)}.
+     * @param countCache the cache, may be <code>null</code>
+     */
+    public void setCollectionCountCache(CollectionCountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    /**
+     * Invalidates the cached counts affected by the given links.
+     * @param links the links which have been written
+     */
+    private void invalidateCounts(IObject[] links) {
+        if (countCache == null || links == null) {
+            return;
+        }
+        for (IObject link : links) {
+            if (link instanceof ILink) {
+                countCache.invalidateLink(link.getClass().getName());
+            }
+        }
+    }
+
     // ~ READ
     // =========================================================================
 
@@ -596,19 +629,38 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
         checkProperty(type, parsedProperty);
 
         Map<Long, Integer> results = new HashMap<Long, Integer>();
+        if (ids == null || ids.isEmpty()) {
+            return results;
+        }
 
-        String query = "select size(table." + parsedProperty + ") from " + type
-                + " table where table.id = :id";
-        // FIXME: optimize by doing new list(id,size(table.property)) ... group
-        // by id
-        for (Iterator iter = ids.iterator(); iter.hasNext();) {
-            Long id = (Long) iter.next();
-            Query<List<Integer>> q = getQueryFactory().lookup(query,
-                    new Parameters().addId(id));
-            Integer count = iQuery.execute(q).get(0);
-            results.put(id, count);
+        Set<Long> missing = new HashSet<Long>();
+        for (Object id : ids) {
+            missing.add((Long) id);
+        }
+        final EventContext ec = getSecuritySystem().getEventContext();
+        final long userId = ec.getCurrentUserId();
+        final long groupId = ec.getCurrentGroupId();
+        if (countCache != null) {
+            missing = countCache.get(userId, groupId, type, parsedProperty,
+                    missing, results);
         }
 
+        // The counts of a whole batch are loaded at once. size() is kept
+        // rather than a join so that the counts are the same as before.
+        final String query = "select table.id, size(table." + parsedProperty
+                + ") from " + type + " table where table.id in (:ids)";
+        final Map<Long, Integer> loaded = new HashMap<Long, Integer>();
+        for (List<Long> batch : Iterables.partition(missing, BATCH_SIZE)) {
+            Query<List<Object[]>> q = getQueryFactory().lookup(query,
+                    new Parameters().addIds(batch));
+            for (Object[] row : iQuery.execute(q)) {
+                loaded.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        }
+        if (countCache != null) {
+            countCache.put(userId, groupId, type, parsedProperty, loaded);
+        }
+        results.putAll(loaded);
         return results;
     }
 
@@ -652,6 +704,7 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
     @Transactional(readOnly = false)
     public ILink[] link(ILink[] arg0, Parameters arg1) {
         IObject[] retVal = iUpdate.saveAndReturnArray(arg0);
+        invalidateCounts(retVal);
         // IUpdate returns an IObject array here. Can't be cast using (Link[])
         ILink[] links = new ILink[retVal.length];
         System.arraycopy(retVal, 0, links, 0, retVal.length);
@@ -690,6 +743,7 @@ public class PojosImpl extends AbstractLevel2Service implements IContainer {
         for (IObject object : rows) {
             deleteDataObject(object, options);
         }
+        invalidateCounts(rows);
     }
 
     // ~ Helpers
@@ -75,6 +75,15 @@ public class AttributeSet {
         }
     }
 
+    /**
+     * Copies the attributes of another set, which may then be modified
+     * without affecting it.
+     */
+    public AttributeSet(AttributeSet other) {
+        singleProperties.putAll(other.singleProperties);
+        multiProperties.putAll(other.multiProperties);
+    }
+
     public String key(String id) {
         return id.toLowerCase();
     }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.security.auth;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.ldap.core.LdapOperations;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches the results of the LDAP lookups made when synchronizing a user at
+ * login, i.e. the user's entry and attributes and the group searches of the
+ * {@link NewUserGroupBean}s, so that repeated logins do not query the
+ * directory each time. How long the results are kept for is configured by the
+ * omero.ldap.cache.spec setting; failed lookups are not cached.
+ *
+ * Cached values are shared and must not be modified.
+ *
+ * @since 5.4.0
+ */
+public class LdapLookupCache {
+
+    private final Cache<List<Object>, Object> cache;
+
+    /**
+     * @param spec a Guava {@link com.google.common.cache.CacheBuilderSpec},
+     *            e.g. <code>expireAfterWrite=60s,maximumSize=1000</code>
+     */
+    public LdapLookupCache(String spec) {
+        this.cache = CacheBuilder.from(spec).build();
+    }
+
+    /**
+     * Returns the cached result of a lookup, running it if needed.
+     * @param key identifies the lookup, see {@link #key(Object...)}
+     * @param lookup runs the lookup
+     * @return the result of the lookup
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(List<Object> key, Callable<? extends T> lookup) {
+        try {
+            return (T) cache.get(key, lookup);
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (ExecutionError e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Builds a key for {@link #get(List, Callable)}, <code>null</code>
+     * elements being allowed.
+     * @param elements what identifies the lookup
+     * @return See above.
+     */
+    public static List<Object> key(Object... elements) {
+        return Arrays.asList(elements);
+    }
+
+    /**
+     * @return the number of lookups currently cached
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all the cached lookups.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Wraps the given {@link LdapOperations} so that its searches for group
+     * names, i.e. through a {@link GroupAttributeMapper}, are cached. Other
+     * calls are passed through.
+     * @param ldap the operations to wrap
+     * @return See above.
+     */
+    public LdapOperations wrap(final LdapOperations ldap) {
+        return (LdapOperations) Proxy.newProxyInstance(
+                LdapOperations.class.getClassLoader(),
+                new Class<?>[] { LdapOperations.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, final Method method,
+                            final Object[] args) throws Throwable {
+                        if (!isGroupSearch(method, args)) {
+                            return call(ldap, method, args);
+                        }
+                        return get(key("groups", args[0], args[1]),
+                                new Callable<List<Object>>() {
+                                    public List<Object> call() throws Exception {
+                                        final List<?> names = (List<?>)
+                                                LdapLookupCache.call(ldap, method, args);
+                                        return Collections.unmodifiableList(
+                                                new ArrayList<Object>(names));
+                                    }
+                        });
+                    }
+                });
+    }
+
+    private static boolean isGroupSearch(Method method, Object[] args) {
+        return "search".equals(method.getName()) && args != null
+                && args.length == 3 && args[2] instanceof GroupAttributeMapper;
+    }
+
+    private static Object call(LdapOperations ldap, Method method,
+            Object[] args) throws Exception {
+        try {
+            return method.invoke(ldap, args);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            Throwables.propagateIfPossible(cause, Exception.class);
+            throw e;
+        }
+    }
+
+}
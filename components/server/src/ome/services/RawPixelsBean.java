@@ -8,15 +8,22 @@
 package ome.services;
 
 import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 import ome.annotations.RolesAllowed;
 import ome.api.IPixels;
@@ -27,6 +34,7 @@ import ome.conditions.ApiUsageException;
 import ome.conditions.ResourceError;
 import ome.conditions.RootException;
 import ome.conditions.ValidationException;
+import ome.io.bioformats.BfPixelBuffer;
 import ome.io.nio.DimensionsOutOfBoundsException;
 import ome.io.nio.PixelBuffer;
 import ome.io.nio.PixelsService;
@@ -98,6 +106,9 @@ public class RawPixelsBean extends AbstractStatefulBean implements
     /** The server's OMERO data directory. */
     private transient String omeroDataDir;
 
+    /** Executor for reading the tiles of {@link #getTiles(int[][], boolean)} concurrently. */
+    private transient ExecutorService tileExecutor;
+
     /**
      * default constructor
      */
@@ -149,6 +160,16 @@ public class RawPixelsBean extends AbstractStatefulBean implements
         this.sql = sql;
     }
 
+    /**
+     * Tile reading executor Bean injector
+     * @param tileExecutor the executor used to read several tiles
+     * concurrently, may be <code>null</code> for reading serially
+     */
+    public synchronized final void setTileExecutor(ExecutorService tileExecutor) {
+        getBeanHelper().throwIfAlreadySet(this.tileExecutor, tileExecutor);
+        this.tileExecutor = tileExecutor;
+    }
+
     // ~ Lifecycle methods
     // =========================================================================
 
@@ -937,6 +958,133 @@ public class RawPixelsBean extends AbstractStatefulBean implements
         return readBuffer;
     }
 
+    /* (non-Javadoc)
+     * @see ome.api.RawPixelsStore#getTiles(int[][], boolean)
+     */
+    @RolesAllowed("user")
+    public synchronized byte[] getTiles(int[][] tiles, boolean compress)
+    {
+        errorIfNotLoaded();
+
+        if (tiles == null) {
+            throw new ApiUsageException("Tiles cannot be null.");
+        }
+        final int byteWidth = buffer.getByteWidth();
+        final int[] offsets = new int[tiles.length + 1];
+        for (int i = 0; i < tiles.length; i++) {
+            final int[] tile = tiles[i];
+            if (tile == null || tile.length != 7) {
+                throw new ApiUsageException(
+                        "Expecting {z, c, t, x, y, w, h} for tile " + i);
+            }
+            if (tile[5] <= 0 || tile[6] <= 0) {
+                throw new ApiUsageException(
+                        "Expecting a positive width and height for tile " + i);
+            }
+            offsets[i + 1] = RomioPixelBuffer.safeLongToInteger(offsets[i]
+                    + (long) tile[5] * (long) tile[6] * byteWidth);
+        }
+        final byte[] data = new byte[offsets[tiles.length]];
+        try {
+            // Bio-Formats readers backing a BfPixelBuffer are not thread-safe.
+            if (tileExecutor == null || tiles.length < 2
+                    || buffer instanceof BfPixelBuffer) {
+                for (int i = 0; i < tiles.length; i++) {
+                    final byte[] tile = readTile(buffer, tiles[i],
+                            offsets[i + 1] - offsets[i]);
+                    System.arraycopy(tile, 0, data, offsets[i], tile.length);
+                }
+            } else {
+                final PixelBuffer source = buffer;
+                final List<Future<byte[]>> futures =
+                        new ArrayList<Future<byte[]>>(tiles.length);
+                for (int i = 0; i < tiles.length; i++) {
+                    final int[] tile = tiles[i];
+                    final int size = offsets[i + 1] - offsets[i];
+                    futures.add(tileExecutor.submit(new Callable<byte[]>() {
+                        public byte[] call() throws Exception {
+                            return readTile(source, tile, size);
+                        }
+                    }));
+                }
+                for (int i = 0; i < tiles.length; i++) {
+                    final byte[] tile = getTileFuture(futures, i);
+                    System.arraycopy(tile, 0, data, offsets[i], tile.length);
+                }
+            }
+        } catch (Exception e) {
+            handleException(e);
+        }
+        if (!compress) {
+            return data;
+        }
+        return deflate(data);
+    }
+
+    /**
+     * Reads a tile from the given buffer.
+     * @param source the buffer to read from
+     * @param tile the tile as {z, c, t, x, y, w, h}
+     * @param size the size of the tile in bytes
+     * @return the tile data
+     * @throws IOException if the tile cannot be read
+     */
+    private static byte[] readTile(PixelBuffer source, int[] tile, int size)
+            throws IOException {
+        return source.getTileDirect(tile[0], tile[1], tile[2], tile[3],
+                tile[4], tile[5], tile[6], new byte[size]);
+    }
+
+    /**
+     * Waits for a pending tile read, cancelling the remaining ones on failure.
+     * @param futures the pending tile reads
+     * @param index the index of the read to wait for
+     * @return the tile data
+     * @throws Exception the cause of the failure of the read
+     */
+    private static byte[] getTileFuture(List<Future<byte[]>> futures, int index)
+            throws Exception {
+        try {
+            return futures.get(index).get();
+        } catch (ExecutionException e) {
+            for (Future<byte[]> future : futures) {
+                future.cancel(false);
+            }
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            for (Future<byte[]> future : futures) {
+                future.cancel(true);
+            }
+            throw new ResourceError("Interrupted while reading tiles.");
+        }
+    }
+
+    /**
+     * Compresses data with the zlib format.
+     * @param data the data to compress
+     * @return the compressed data
+     */
+    private static byte[] deflate(byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream out =
+                    new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            final byte[] chunk = new byte[65536];
+            while (!deflater.finished()) {
+                final int count = deflater.deflate(chunk);
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
     /* (non-Javadoc)
      * @see ome.api.RawPixelsStore#setTile(byte[], int, int, int, int, int, int, int)
      */
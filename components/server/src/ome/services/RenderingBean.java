@@ -17,6 +17,8 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import ome.annotations.RolesAllowed;
@@ -33,6 +35,7 @@ import ome.conditions.ValidationException;
 import ome.io.nio.InMemoryPlanarPixelBuffer;
 import ome.io.nio.PixelBuffer;
 import ome.io.nio.PixelsService;
+import ome.io.nio.ReadAheadPixelBuffer;
 import ome.model.IObject;
 import ome.model.core.Channel;
 import ome.model.core.OriginalFile;
@@ -105,6 +108,10 @@ public class RenderingBean implements RenderingEngine, Serializable {
     /** Reference to the logger. */
     private static final Logger log = LoggerFactory.getLogger(RenderingBean.class);
 
+    /** The maximum number of planes rendered by one call to
+     * {@link #renderCompressedPlanes(List)}. */
+    public static final int MAX_COMPRESSED_PLANES = 64;
+
     /**
      * Returns the service corresponding to this class.
      * 
@@ -540,27 +547,163 @@ public class RenderingBean implements RenderingEngine, Serializable {
      */
     @RolesAllowed("user")
     public byte[] renderCompressed(PlaneDef pd) {
+        final int[] buf;
+        final int[] size;
         rwl.writeLock().lock();
 
-        ByteArrayOutputStream byteStream = null;
         try {
             final Map<byte[], Integer> overlays = getMasks(pd);
             if (overlays.size() > 0) {
                 renderer.setOverlays(overlays);
             }
-            int stride = pd.getStride();
-            if (stride < 0) stride = 0;
-            stride++;
-            int[] buf = renderAsPackedInt(pd);
-            int sizeX = pixelsObj.getSizeX();
-            int sizeY = pixelsObj.getSizeY();
-            RegionDef region = pd.getRegion();
-            if (region != null) {
-                sizeX = region.getWidth();
-                sizeY = region.getHeight();
+            buf = renderAsPackedInt(pd);
+            size = planeSize(pd);
+        } finally {
+            rwl.writeLock().unlock();
+        }
+        // The rendered buffer is not shared so is compressed unlocked.
+        return compress(buf, size[0], size[1]);
+    }
+
+    /**
+     * Implemented as specified by the {@link RenderingEngine} interface.
+     * The write lock is taken once for the whole series. While a plane is
+     * quantized, the raw data of the next one is read on a background thread
+     * into a {@link ReadAheadPixelBuffer} and the previous plane is
+     * compressed, so only one rendered plane is held at a time. At most
+     * {@link #MAX_COMPRESSED_PLANES} planes are rendered per call.
+     *
+     * @see RenderingEngine#renderCompressedPlanes(List)
+     */
+    @RolesAllowed("user")
+    public byte[][] renderCompressedPlanes(List<PlaneDef> pds) {
+        if (pds == null) {
+            throw new ValidationException("No plane definitions.");
+        }
+        if (pds.size() > MAX_COMPRESSED_PLANES) {
+            throw new ValidationException("At most " + MAX_COMPRESSED_PLANES
+                    + " planes may be rendered at once, not " + pds.size()
+                    + ".");
+        }
+        for (PlaneDef pd : pds) {
+            if (pd == null) {
+                throw new ValidationException("Null plane definition.");
+            }
+        }
+        final byte[][] frames = new byte[pds.size()][];
+        rwl.writeLock().lock();
+
+        Future<ReadAheadPixelBuffer> next = null;
+        try {
+            errorIfInvalidState();
+            if (resolutionLevel != null)
+            {
+                renderer.setResolutionLevel(resolutionLevel);
+            }
+            for (PlaneDef pd : pds) {
+                checkPlaneDef(pd);
+            }
+            // Owned by the renderer, closed with it rather than here.
+            final PixelBuffer source = renderer.getPixels();
+            if (frames.length > 0) {
+                next = readAhead(pds.get(0), source);
+            }
+            for (int i = 0; i < frames.length; i++) {
+                final PlaneDef pd = pds.get(i);
+                final ReadAheadPixelBuffer current = ex.get(next);
+                next = null;
+                if (i + 1 < frames.length) {
+                    next = readAhead(pds.get(i + 1), source);
+                }
+                final Map<byte[], Integer> overlays = getMasks(pd);
+                if (overlays.size() > 0) {
+                    renderer.setOverlays(overlays);
+                }
+                final int[] buf = renderer.renderAsPackedInt(pd, current);
+                current.clear();
+                // Compressed while the next plane is read.
+                final int[] size = planeSize(pd);
+                frames[i] = compress(buf, size[0], size[1]);
+            }
+        } catch (IOException e) {
+            log.error("IO error while rendering.", e);
+            throw new ResourceError(e.getMessage());
+        } catch (QuantizationException e) {
+            log.error("Quantization exception while rendering.", e);
+            throw new InternalException(e.getMessage());
+        } finally {
+            try {
+                if (next != null) {
+                    // Wait for a pending read so that it does not overlap
+                    // with any later use of the buffer.
+                    next.cancel(false);
+                    try {
+                        next.get();
+                    } catch (Exception e) {
+                        log.debug("Discarding read ahead.", e);
+                    }
+                }
+            } finally {
+                rwl.writeLock().unlock();
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Submits the reading of the raw data of the active channels of the
+     * plane selected by <code>pd</code> to the executor.
+     *
+     * @param pd The plane to read.
+     * @param source The buffer of the renderer.
+     * @return The pending buffer holding the data of the plane.
+     */
+    private Future<ReadAheadPixelBuffer> readAhead(final PlaneDef pd,
+            final PixelBuffer source) {
+        final Renderer r = renderer;
+        final Pixels pixels = pixelsObj;
+        return ex.submit(new Callable<ReadAheadPixelBuffer>() {
+            public ReadAheadPixelBuffer call() {
+                ReadAheadPixelBuffer buffer =
+                        new ReadAheadPixelBuffer(pixels, source);
+                r.readAhead(pd, buffer);
+                return buffer;
             }
-            sizeX = sizeX/stride;
-            sizeY = sizeY/stride;
+        });
+    }
+
+    /**
+     * Returns the width and height of a rendered plane.
+     *
+     * @param pd The definition of the rendered plane.
+     * @return See above.
+     */
+    private int[] planeSize(PlaneDef pd) {
+        int stride = pd.getStride();
+        if (stride < 0) stride = 0;
+        stride++;
+        int sizeX = pixelsObj.getSizeX();
+        int sizeY = pixelsObj.getSizeY();
+        RegionDef region = pd.getRegion();
+        if (region != null) {
+            sizeX = region.getWidth();
+            sizeY = region.getHeight();
+        }
+        return new int[] { sizeX/stride, sizeY/stride };
+    }
+
+    /**
+     * Compresses a rendered image. The image is wrapped around the buffer
+     * rather than copied.
+     *
+     * @param buf The packed-integer <i>RGBA</i> rendered image.
+     * @param sizeX The width of the image.
+     * @param sizeY The height of the image.
+     * @return The compressed image.
+     */
+    private byte[] compress(int[] buf, int sizeX, int sizeY) {
+        ByteArrayOutputStream byteStream = null;
+        try {
             BufferedImage image = ImageUtil.createBufferedImage(buf, sizeX,
                     sizeY);
             byteStream = new ByteArrayOutputStream();
@@ -570,7 +713,6 @@ public class RenderingBean implements RenderingEngine, Serializable {
             log.error("Could not compress rendered image.", e);
             throw new ResourceError(e.getMessage());
         } finally {
-            rwl.writeLock().unlock();
             try {
                 if (byteStream != null) {
                     byteStream.close();
@@ -640,37 +782,25 @@ public class RenderingBean implements RenderingEngine, Serializable {
     @RolesAllowed("user")
     public byte[] renderProjectedCompressed(int algorithm, int timepoint,
             int stepping, int start, int end) {
+        final int[] buf;
+        final int sizeX;
+        final int sizeY;
         rwl.writeLock().lock();
 
-        ByteArrayOutputStream byteStream = null;
         try {
             if (resolutionLevel != null)
             {
                 renderer.setResolutionLevel(resolutionLevel);
             }
-            int[] buf = renderProjectedAsPackedInt(algorithm, timepoint,
+            buf = renderProjectedAsPackedInt(algorithm, timepoint,
                     stepping, start, end);
-            int sizeX = pixelsObj.getSizeX();
-            int sizeY = pixelsObj.getSizeY();
-            BufferedImage image = ImageUtil.createBufferedImage(buf, sizeX,
-                    sizeY);
-            byteStream = new ByteArrayOutputStream();
-            compressionSrv.compressToStream(image, byteStream);
-            return byteStream.toByteArray();
-        } catch (IOException e) {
-            log.error("Could not compress rendered image.", e);
-            throw new ResourceError(e.getMessage());
+            sizeX = pixelsObj.getSizeX();
+            sizeY = pixelsObj.getSizeY();
         } finally {
             rwl.writeLock().unlock();
-            try {
-                if (byteStream != null) {
-                    byteStream.close();
-                }
-            } catch (IOException e) {
-                log.error("Could not close byte stream.", e);
-                throw new ResourceError(e.getMessage());
-            }
         }
+        // The rendered buffer is not shared so is compressed unlocked.
+        return compress(buf, sizeX, sizeY);
     }
 
     // ~ Settings
@@ -386,7 +386,8 @@ public class ThumbnailBean extends AbstractLevel2Service
         List<RenderingModel> renderingModels = getRenderingModels();
         QuantumFactory quantumFactory = new QuantumFactory(families);
         // Loading last to try to ensure that the buffer will get closed.
-        PixelBuffer buffer = pixelDataService.getPixelBuffer(pixels, false);
+        // The preview of a pyramid being created is enough for a thumbnail.
+        PixelBuffer buffer = pixelDataService.getPreviewPixelBuffer(pixels);
         renderer = new Renderer(quantumFactory, renderingModels, pixels,
                 settings, buffer, getLuts());
         dirty = false;
@@ -1021,7 +1022,7 @@ public class ThumbnailBean extends AbstractLevel2Service
                     try {
                         if (!ctx.hasSettings(pixelsId)) {
                             try {
-                                pixelDataService.getPixelBuffer(ctx.getPixels(pixelsId), false);
+                                pixelDataService.getPreviewPixelBuffer(ctx.getPixels(pixelsId));
                                 continue;  // No exception, not an in-progress image
                             } catch (ConcurrencyException e) {
                                 log.debug("ConcurrencyException on retrieveThumbnailSet.ctx.hasSettings: pyramid in progress");
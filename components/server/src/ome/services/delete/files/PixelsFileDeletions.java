@@ -49,6 +49,15 @@ public class PixelsFileDeletions extends AbstractFileDeletions {
             final File dir = file.getParentFile();
             final File lockFile = new File(dir, "." + id + PixelsService.PYRAMID_SUFFIX
                 + BfPyramidPixelBuffer.PYR_LOCK_EXT);
+            final File previewFile = new File(pyrFile.getPath()
+                + PixelsService.PREVIEW_SUFFIX);
+            final File previewLockFile = new File(dir, "." + id
+                + PixelsService.PYRAMID_SUFFIX + PixelsService.PREVIEW_SUFFIX
+                + BfPyramidPixelBuffer.PYR_LOCK_EXT);
+            final File metadataFile = new File(filePath
+                + PixelsService.METADATA_SUFFIX);
+            final File filesetMetadataFile = new File(filePath
+                + PixelsService.FILESET_METADATA_SUFFIX);
 
             // Remove the Pyramid file itself
             addLocalFile(file, id);
@@ -56,6 +65,12 @@ public class PixelsFileDeletions extends AbstractFileDeletions {
             addLocalFile(pyrFile, id);
             // Now any lock file
             addLocalFile(lockFile, id);
+            // Now any preview written while the pyramid was created
+            addLocalFile(previewFile, id);
+            addLocalFile(previewLockFile, id);
+            // Now any snapshot of the original metadata
+            addLocalFile(metadataFile, id);
+            addLocalFile(filesetMetadataFile, id);
 
             // Now any tmp files
             FileFilter tmpFileFilter = new WildcardFileFilter("."
@@ -8,6 +8,7 @@ package ome.services.messages;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import ome.model.meta.EventLog;
 import ome.util.messages.InternalMessage;
@@ -29,6 +30,13 @@ public class EventLogsMessage extends InternalMessage {
         this.logs = logs;
     }
 
+    /**
+     * Returns the entity types for which logs were published.
+     */
+    public Set<String> types() {
+        return logs.keySet();
+    }
+
     public Collection<EventLog> matches(String klass, String action) {
         List<EventLog> rv = new ArrayList<EventLog>();
         for (EventLog el : logs.get(klass)) {
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.pixeldata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import ome.util.SqlAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Claims on the pixels sets whose pyramid is being created, so that several
+ * PixelData processes, possibly on different hosts, can share the PIXELDATA
+ * {@link ome.model.meta.EventLog}s without creating the same pyramid twice.
+ *
+ * Each claim is a row of the configuration table named after the pixels set
+ * and recording the owner, a heartbeat and the event log being handled. The
+ * owner refreshes the heartbeat via {@link #heartbeat(SqlAction)} while the
+ * pyramid is created. A claim whose heartbeat is older than the timeout is
+ * considered abandoned, e.g. because its owner was killed, and is taken over
+ * by the next process which claims the same pixels set. Only the time of the
+ * database is used so that the clocks of the hosts do not matter.
+ *
+ * Each method is expected to be invoked in its own short transaction so
+ * that the claims are visible to the other processes immediately.
+ *
+ * @since 5.4.0
+ */
+public class PixelDataClaims {
+
+    private final static Logger log = LoggerFactory.getLogger(PixelDataClaims.class);
+
+    /** Prefix of the names of the claims in the configuration table. */
+    public static final String PREFIX = "PIXELDATA_CLAIM.";
+
+    private static final String SEPARATOR = ";";
+
+    /** Identifies the process, e.g. the server session UUID. */
+    private final String owner;
+
+    /** Time in ms. after which a claim without heartbeat is abandoned. */
+    private final long timeout;
+
+    /** The current value of the claims held, keyed by pixels id. */
+    private final Map<Long, String> claims = new HashMap<Long, String>();
+
+    /**
+     * @param owner identifies this process, must not contain <code>;</code>.
+     * @param timeout the time in ms. after which a claim whose heartbeat
+     *            has not been refreshed may be taken over.
+     */
+    public PixelDataClaims(String owner, long timeout) {
+        if (owner.contains(SEPARATOR)) {
+            throw new IllegalArgumentException("Invalid owner: " + owner);
+        }
+        this.owner = owner;
+        this.timeout = timeout;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the interval in ms. at which {@link #heartbeat(SqlAction)}
+     * should be invoked, i.e. a third of the timeout.
+     */
+    public long getHeartbeatInterval() {
+        return Math.max(timeout / 3, 1);
+    }
+
+    /**
+     * Claims the given pixels set if no other process, nor another thread of
+     * this process, has a live claim on it.
+     * @param sql the action to use.
+     * @param pixelsId the pixels set whose pyramid is to be created.
+     * @param eventLogId the event log being handled.
+     * @return <code>true</code> if the caller may create the pyramid, in
+     *         which case it must {@link #release(SqlAction, long)} the claim.
+     */
+    public synchronized boolean claim(SqlAction sql, long pixelsId,
+            long eventLogId) {
+        if (claims.containsKey(pixelsId)) {
+            return false;
+        }
+        final String name = PREFIX + pixelsId;
+        final long now = sql.now().getTime();
+        final String value = value(now, eventLogId);
+        if (sql.insertConfigValueIfAbsent(name, value) == 1) {
+            claims.put(pixelsId, value);
+            return true;
+        }
+        final String current = sql.configValue(name);
+        if (current == null || !isAbandoned(current, now)) {
+            return false;
+        }
+        if (sql.updateConfigValueIfEquals(name, current, value) == 1) {
+            log.info("Took over abandoned claim on pixels {}: {}", pixelsId,
+                    current);
+            claims.put(pixelsId, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the claim on the given pixels set, if held.
+     * @param sql the action to use.
+     * @param pixelsId the pixels set whose pyramid was handled.
+     */
+    public synchronized void release(SqlAction sql, long pixelsId) {
+        final String value = claims.remove(pixelsId);
+        if (value != null) {
+            sql.delConfigValueIfEquals(PREFIX + pixelsId, value);
+        }
+    }
+
+    /**
+     * Refreshes the heartbeat of all the claims held. Claims which have been
+     * taken over in the meantime are forgotten.
+     * @param sql the action to use.
+     * @return the number of claims held.
+     */
+    public synchronized int heartbeat(SqlAction sql) {
+        if (claims.isEmpty()) {
+            return 0;
+        }
+        final long now = sql.now().getTime();
+        final Iterator<Map.Entry<Long, String>> it =
+                claims.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, String> claim = it.next();
+            final String value = value(now, eventLogId(claim.getValue()));
+            if (sql.updateConfigValueIfEquals(PREFIX + claim.getKey(),
+                    claim.getValue(), value) == 1) {
+                claim.setValue(value);
+            } else {
+                log.warn("Lost claim on pixels {}", claim.getKey());
+                it.remove();
+            }
+        }
+        return claims.size();
+    }
+
+    /**
+     * Returns the pixels and event log ids of the claims which have been
+     * abandoned by their owner so that they can be handled again.
+     * @param sql the action to use.
+     * @return pairs of pixels id and event log id.
+     */
+    public List<long[]> abandoned(SqlAction sql) {
+        final List<long[]> abandoned = new ArrayList<long[]>();
+        final Map<String, String> all = sql.configValuesByPrefix(PREFIX);
+        if (all.isEmpty()) {
+            return abandoned;
+        }
+        final long now = sql.now().getTime();
+        for (Map.Entry<String, String> claim : all.entrySet()) {
+            try {
+                if (isAbandoned(claim.getValue(), now)) {
+                    final long pixelsId = Long.parseLong(
+                            claim.getKey().substring(PREFIX.length()));
+                    abandoned.add(new long[] { pixelsId,
+                            eventLogId(claim.getValue()) });
+                }
+            } catch (RuntimeException e) {
+                log.warn("Ignoring invalid claim {}={}", claim.getKey(),
+                        claim.getValue());
+            }
+        }
+        return abandoned;
+    }
+
+    /**
+     * Returns the number of claims held by this process.
+     */
+    public synchronized int size() {
+        return claims.size();
+    }
+
+    private String value(long heartbeat, long eventLogId) {
+        return owner + SEPARATOR + heartbeat + SEPARATOR + eventLogId;
+    }
+
+    private boolean isAbandoned(String value, long now) {
+        final String[] parts = value.split(SEPARATOR);
+        return now - Long.parseLong(parts[1]) > timeout;
+    }
+
+    private long eventLogId(String value) {
+        return Long.parseLong(value.split(SEPARATOR)[2]);
+    }
+
+}
@@ -8,6 +8,7 @@
 package ome.services.pixeldata;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -16,7 +17,10 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import ome.conditions.InternalException;
@@ -34,14 +38,17 @@ import ome.services.util.Executor;
 import ome.system.EventContext;
 import ome.system.Principal;
 import ome.system.ServiceFactory;
+import ome.system.metrics.Counter;
 import ome.system.metrics.Metrics;
 import ome.system.metrics.NullMetrics;
 import ome.system.metrics.Timer;
+import ome.util.SqlAction;
 
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -73,8 +80,24 @@ public class PixelDataThread extends ExecutionThread implements ApplicationListe
      */
     private final boolean performProcessing;
 
+    /** Times the handling of each claimed {@link EventLog}. */
     private final Timer batchTimer;
 
+    /** Number of {@link EventLog}s loaded but not yet handled. */
+    private final Counter backlog;
+
+    /** Number of {@link EventLog}s skipped as claimed by another worker. */
+    private final Counter skipped;
+
+    /**
+     * Claims shared with the other PixelData processes, <code>null</code>
+     * if this is the only one.
+     */
+    private PixelDataClaims claims;
+
+    /** Refreshes the heartbeat of the {@link #claims}. */
+    private ScheduledExecutorService heartbeat;
+
     /**
      * Uses default {@link Principal} for processing
      */
@@ -158,6 +181,18 @@ public class PixelDataThread extends ExecutionThread implements ApplicationListe
         this.uuid = uuid;
         this.numThreads = numThreads;
         this.batchTimer = metrics.timer(this, "batch");
+        this.backlog = metrics.counter(this, "backlog");
+        this.skipped = metrics.counter(this, "skipped");
+    }
+
+    /**
+     * Spring injector. Enables the claims on the pixels sets so that several
+     * PixelData processes can handle the PIXELDATA {@link EventLog}s.
+     * @param claims the claims, <code>null</code> or with a non-positive
+     * timeout if there is a single PixelData process.
+     */
+    public void setClaims(PixelDataClaims claims) {
+        this.claims = claims != null && claims.getTimeout() > 0 ? claims : null;
     }
 
     /**
@@ -168,12 +203,44 @@ public class PixelDataThread extends ExecutionThread implements ApplicationListe
         sb.append("Initializing PixelDataThread");
         if (performProcessing) {
             sb.append(String.format(" (threads=%s)", numThreads));
+            if (claims != null) {
+                sb.append(String.format(" (claims timeout=%s ms.)",
+                        claims.getTimeout()));
+                startHeartbeat();
+            }
         } else {
             sb.append(" (create events only)");
         }
         log.info(sb.toString());
     }
 
+    private void startHeartbeat() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "PixelDataHeartbeat");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        final long interval = claims.getHeartbeatInterval();
+        heartbeat.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    executor.executeSql(new Executor.SimpleSqlWork(
+                            PixelDataThread.this, "heartbeat") {
+                        @Transactional(readOnly = false)
+                        public Object doWork(SqlAction sql) {
+                            return claims.heartbeat(sql);
+                        }
+                    });
+                } catch (Exception e) {
+                    log.warn("Failed to refresh PixelData claims", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Loads event logs from the {@link PixelDataHandler} processing them
      * all then in a background thread via a {@link ExecutorCompletionService}.
@@ -193,8 +260,16 @@ public class PixelDataThread extends ExecutionThread implements ApplicationListe
             @SuppressWarnings("unchecked")
             List<EventLog> eventLogs = (List<EventLog>)
                     executor.execute(getPrincipal(), work);
+            if (claims != null && eventLogs.size() < numThreads) {
+                // Bounded by the size of the completion queue.
+                List<EventLog> abandoned = abandoned();
+                eventLogs = new ArrayList<EventLog>(eventLogs);
+                eventLogs.addAll(abandoned.subList(0, Math.min(
+                        abandoned.size(), numThreads - eventLogs.size())));
+            }
 
             for (final EventLog log : eventLogs) {
+                backlog.inc();
                 ecs.submit(new Callable<Object>(){
                     @Override
                     public Object call()
@@ -250,17 +325,93 @@ public class PixelDataThread extends ExecutionThread implements ApplicationListe
     }
 
     private Object go(EventLog log) {
-        final Timer.Context timer = batchTimer.time();
         try {
-             executor.execute(getPrincipal(),
-                     new HandleEventLog(log, (PixelDataHandler) work,
-                             this, "handleEventLog"));
-             return log;
+            if (claims != null && !claim(log)) {
+                skipped.inc();
+                return log;
+            }
+            final Timer.Context timer = batchTimer.time();
+            try {
+                executor.execute(getPrincipal(),
+                        new HandleEventLog(log, (PixelDataHandler) work,
+                                this, "handleEventLog"));
+                return log;
+            } finally {
+                timer.stop();
+                if (claims != null) {
+                    release(log);
+                }
+            }
         } finally {
-            timer.stop();
+            backlog.dec();
         }
     }
 
+    /**
+     * Claims the pixels set of the given {@link EventLog} in a transaction
+     * of its own so that the other PixelData processes skip it.
+     * @return <code>true</code> if this thread should handle the event log.
+     */
+    private boolean claim(final EventLog log) {
+        try {
+            return (Boolean) executor.executeSql(new Executor.SimpleSqlWork(
+                    this, "claim", log.getEntityId()) {
+                @Transactional(readOnly = false)
+                public Boolean doWork(SqlAction sql) {
+                    return claims.claim(sql, log.getEntityId(), log.getId());
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Claimed concurrently by another process.
+            return false;
+        }
+    }
+
+    private void release(final EventLog log) {
+        try {
+            executor.executeSql(new Executor.SimpleSqlWork(
+                    this, "release", log.getEntityId()) {
+                @Transactional(readOnly = false)
+                public Object doWork(SqlAction sql) {
+                    claims.release(sql, log.getEntityId());
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            // The claim will be taken over once abandoned.
+            PixelDataThread.log.warn("Failed to release claim on pixels "
+                    + log.getEntityId(), e);
+        }
+    }
+
+    /**
+     * Returns the {@link EventLog}s whose claim was abandoned by another
+     * PixelData process, e.g. because it was killed, so that they are
+     * handled again once the claim is taken over.
+     */
+    private List<EventLog> abandoned() {
+        @SuppressWarnings("unchecked")
+        final List<long[]> ids = (List<long[]>) executor.executeSql(
+                new Executor.SimpleSqlWork(this, "abandoned") {
+                    @Transactional(readOnly = true)
+                    public Object doWork(SqlAction sql) {
+                        return claims.abandoned(sql);
+                    }
+                });
+        final List<EventLog> logs = new ArrayList<EventLog>(ids.size());
+        for (long[] id : ids) {
+            final EventLog el = new EventLog(id[1], true);
+            el.setEntityId(id[0]);
+            el.setEntityType(Pixels.class.getName());
+            el.setAction("PIXELDATA");
+            logs.add(el);
+        }
+        if (!logs.isEmpty()) {
+            log.info("Found {} abandoned PixelData claims", logs.size());
+        }
+        return logs;
+    }
+
     /**
      * Basic handling just logs at ERROR level. Subclasses (especially for
      * testing) can do more.
@@ -275,6 +426,9 @@ public class PixelDataThread extends ExecutionThread implements ApplicationListe
     public void stop() {
         log.info("Shutting down PixelDataThread");
         ((PixelDataHandler) this.work).loader.setStop(true);
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
     }
 
     /**
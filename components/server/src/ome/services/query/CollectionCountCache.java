@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.query;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import ome.model.ILink;
+import ome.services.messages.EventLogsMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Short-lived cache of the link counts returned by
+ * {@link ome.api.IContainer#getCollectionCount(String, String, Set, ome.parameters.Parameters)}.
+ * Tree views request the counts of the same containers over and over; only
+ * the most common link properties are cached. The counts are keyed by the
+ * current user and group so that no count is shared across security
+ * contexts.
+ *
+ * Entries expire after a configurable time and are invalidated whenever an
+ * {@link EventLogsMessage} reports a modification of a link whose parent or
+ * child is of the cached type. Since only the local server publishes these
+ * messages, the expiry time bounds the staleness in a clustered setup.
+ *
+ * The modifications are reported before their transaction commits, so a
+ * concurrent reader may cache a count which is about to change. The affected
+ * types are therefore invalidated both at once and again after the commit.
+ *
+ * @since 5.4.0
+ */
+public class CollectionCountCache implements
+        ApplicationListener<EventLogsMessage> {
+
+    private final static Logger log = LoggerFactory
+            .getLogger(CollectionCountCache.class);
+
+    /** The properties whose counts are cached. */
+    public final static Set<String> PROPERTIES = ImmutableSet.of(
+            "imageLinks", "datasetLinks", "annotationLinks");
+
+    /** Key of a cached count. */
+    static class Key {
+
+        final long userId;
+
+        final long groupId;
+
+        final String type;
+
+        final String property;
+
+        final long id;
+
+        Key(long userId, long groupId, String type, String property, long id) {
+            this.userId = userId;
+            this.groupId = groupId;
+            this.type = type;
+            this.property = property;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return id == k.id && userId == k.userId && groupId == k.groupId
+                    && type.equals(k.type) && property.equals(k.property);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (int) (id ^ (id >>> 32));
+            h = 31 * h + (int) (userId ^ (userId >>> 32));
+            h = 31 * h + (int) (groupId ^ (groupId >>> 32));
+            h = 31 * h + type.hashCode();
+            return 31 * h + property.hashCode();
+        }
+    }
+
+    private final Cache<Key, Integer> counts;
+
+    /** Link types already resolved to the types they affect. */
+    private final Map<String, Set<String>> affected =
+            new HashMap<String, Set<String>>();
+
+    /**
+     * @param timeToLive the time in milliseconds after which a count expires.
+     *            A non-positive value disables the cache.
+     * @param maxSize the maximum number of counts held.
+     */
+    public CollectionCountCache(long timeToLive, long maxSize) {
+        if (timeToLive > 0 && maxSize > 0) {
+            counts = CacheBuilder.newBuilder()
+                    .expireAfterWrite(timeToLive, TimeUnit.MILLISECONDS)
+                    .maximumSize(maxSize)
+                    .build();
+        } else {
+            counts = null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the counts of the given property may be
+     * cached.
+     */
+    public boolean isCached(String property) {
+        return counts != null && PROPERTIES.contains(property);
+    }
+
+    /**
+     * Copies the cached counts into the given map and returns the ids which
+     * were not found.
+     */
+    public Set<Long> get(long userId, long groupId, String type,
+            String property, Collection<Long> ids, Map<Long, Integer> results) {
+        Set<Long> missing = new HashSet<Long>();
+        for (Long id : ids) {
+            Integer count = null;
+            if (isCached(property)) {
+                count = counts.getIfPresent(new Key(userId, groupId,
+                        type, property, id));
+            }
+            if (count == null) {
+                missing.add(id);
+            } else {
+                results.put(id, count);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Caches the given counts if the property is one of {@link #PROPERTIES}.
+     */
+    public void put(long userId, long groupId, String type, String property,
+            Map<Long, Integer> loaded) {
+        if (!isCached(property)) {
+            return;
+        }
+        for (Map.Entry<Long, Integer> entry : loaded.entrySet()) {
+            counts.put(new Key(userId, groupId, type, property,
+                    entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes all the counts of the given type, either a fully qualified or
+     * a simple class name.
+     */
+    public void invalidate(String type) {
+        if (counts == null) {
+            return;
+        }
+        String simple = type.substring(type.lastIndexOf('.') + 1);
+        Iterator<Key> it = counts.asMap().keySet().iterator();
+        while (it.hasNext()) {
+            Key k = it.next();
+            if (k.type.equals(type) || k.type.equals(simple)) {
+                it.remove();
+            }
+        }
+    }
+
+    /** Removes all the counts. */
+    public void invalidateAll() {
+        if (counts != null) {
+            counts.invalidateAll();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(EventLogsMessage elm) {
+        if (counts == null) {
+            return;
+        }
+        for (String type : elm.types()) {
+            invalidateLink(type);
+        }
+    }
+
+    /**
+     * Removes all the counts of the parent and child types of the given link
+     * type, and again once the current transaction, if any, has committed.
+     * Does nothing if the type is not a link.
+     */
+    public void invalidateLink(String linkType) {
+        if (counts == null) {
+            return;
+        }
+        final Set<String> types = affectedTypes(linkType);
+        for (String t : types) {
+            invalidate(t);
+        }
+        if (!types.isEmpty()) {
+            invalidateAfterCommit(types);
+        }
+    }
+
+    /**
+     * Removes all the counts of the given types once the current transaction
+     * has committed. A single synchronization is registered per transaction.
+     */
+    @SuppressWarnings("unchecked")
+    private void invalidateAfterCommit(Set<String> types) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager
+                .getResource(this);
+        if (pending == null) {
+            final Set<String> registered = new HashSet<String>();
+            TransactionSynchronizationManager.bindResource(this, registered);
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCommit() {
+                            for (String t : registered) {
+                                invalidate(t);
+                            }
+                        }
+
+                        @Override
+                        public void afterCompletion(int status) {
+                            TransactionSynchronizationManager
+                                    .unbindResourceIfPossible(
+                                            CollectionCountCache.this);
+                        }
+                    });
+            pending = registered;
+        }
+        pending.addAll(types);
+    }
+
+    /**
+     * Returns the parent and child types of the given link type or an empty
+     * set if the type is not a link.
+     */
+    Set<String> affectedTypes(String linkType) {
+        synchronized (affected) {
+            Set<String> types = affected.get(linkType);
+            if (types == null) {
+                types = new HashSet<String>();
+                try {
+                    Class<?> k = Class.forName(linkType);
+                    if (ILink.class.isAssignableFrom(k)) {
+                        types.add(k.getMethod("getParent").getReturnType()
+                                .getName());
+                        types.add(k.getMethod("getChild").getReturnType()
+                                .getName());
+                    }
+                } catch (Exception e) {
+                    log.debug("Cannot resolve link type " + linkType, e);
+                }
+                affected.put(linkType, types);
+            }
+            return types;
+        }
+    }
+
+}
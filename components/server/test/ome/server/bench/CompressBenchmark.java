@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.server.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ome.logic.CompressImpl;
+import ome.util.ImageUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time {@link CompressImpl} takes to compress a rendered tile
+ * to JPEG for each tile size and quality. The tiles mimic rendered images:
+ * smooth gradients with a little noise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompressBenchmark {
+
+    @Param({"256", "512", "1024"})
+    public int tileSize;
+
+    @Param({"0.5", "0.85", "0.95"})
+    public float quality;
+
+    private CompressImpl compress;
+
+    private BufferedImage image;
+
+    private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        compress = new CompressImpl();
+        compress.setCompressionLevel(quality);
+        final Random random = new Random(tileSize);
+        final int[] buf = new int[tileSize * tileSize];
+        for (int y = 0; y < tileSize; y++) {
+            for (int x = 0; x < tileSize; x++) {
+                final int r = (x * 255 / tileSize + random.nextInt(8)) & 0xff;
+                final int g = (y * 255 / tileSize + random.nextInt(8)) & 0xff;
+                final int b = ((x + y) * 127 / tileSize) & 0xff;
+                buf[y * tileSize + x] = (r << 16) | (g << 8) | b;
+            }
+        }
+        image = ImageUtil.createBufferedImage(buf, tileSize, tileSize);
+    }
+
+    /** Compresses the tile, reusing the encoders of the previous calls. */
+    @Benchmark
+    public int compressToStream() throws IOException {
+        stream.reset();
+        compress.compressToStream(image, stream);
+        return stream.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CompressBenchmark.class.getSimpleName())
+                .forks(1).build()).run();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.server.utests;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import ome.logic.CompressImpl;
+import ome.util.ImageUtil;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the JPEG compression of rendered images by {@link CompressImpl},
+ * which reuses its encoders. Its speed is measured by
+ * {@link ome.server.bench.CompressBenchmark}.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class CompressImplTest {
+
+    /** Returns a rendered image of the given size, packed as by the renderer. */
+    private static int[] render(int size) {
+        final Random random = new Random(size);
+        final int[] buf = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // Smooth gradients with a little noise, as a tile would be.
+                final int r = (x * 255 / size + random.nextInt(8)) & 0xff;
+                final int g = (y * 255 / size + random.nextInt(8)) & 0xff;
+                final int b = ((x + y) * 127 / size) & 0xff;
+                buf[y * size + x] = (r << 16) | (g << 8) | b;
+            }
+        }
+        return buf;
+    }
+
+    private static byte[] compress(CompressImpl compress, int[] buf, int size)
+            throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        compress.compressToStream(ImageUtil.createBufferedImage(buf, size,
+                size), stream);
+        return stream.toByteArray();
+    }
+
+    public void testCompressedImageReadable() throws Exception {
+        final CompressImpl compress = new CompressImpl();
+        final int[] buf = render(64);
+        for (int i = 0; i < 3; i++) {
+            final BufferedImage image = ImageIO.read(new ByteArrayInputStream(
+                    compress(compress, buf, 64)));
+            Assert.assertEquals(image.getWidth(), 64);
+            Assert.assertEquals(image.getHeight(), 64);
+            final int expected = buf[32 * 64 + 32];
+            final int actual = image.getRGB(32, 32);
+            for (int shift = 0; shift < 24; shift += 8) {
+                Assert.assertTrue(Math.abs(((expected >> shift) & 0xff)
+                        - ((actual >> shift) & 0xff)) < 16);
+            }
+        }
+    }
+
+    public void testQualityChangesSize() throws Exception {
+        final CompressImpl low = new CompressImpl();
+        low.setCompressionLevel(0.1F);
+        final CompressImpl high = new CompressImpl();
+        high.setCompressionLevel(0.95F);
+        final int[] buf = render(128);
+        // Alternately, so that the same encoders are used at both qualities.
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(compress(low, buf, 128).length
+                    < compress(high, buf, 128).length);
+        }
+    }
+
+    public void testConcurrentCompression() throws Exception {
+        final int[] buf = render(128);
+        final CompressImpl compress = new CompressImpl();
+        final byte[] expected = compress(compress, buf, 128);
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(new Callable<byte[]>() {
+                    public byte[] call() throws IOException {
+                        return compress(compress, buf, 128);
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                Assert.assertEquals(result.get(), expected);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.ldap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.api.local.LocalQuery;
+import ome.logic.LdapImpl;
+import ome.model.meta.Experimenter;
+import ome.model.meta.ExperimenterGroup;
+import ome.security.SecuritySystem;
+import ome.security.auth.AttributeSet;
+import ome.security.auth.GroupAttributeMapper;
+import ome.security.auth.LdapConfig;
+import ome.security.auth.LdapLookupCache;
+import ome.security.auth.RoleProvider;
+import ome.system.Roles;
+import ome.util.SqlAction;
+
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.LdapOperations;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.core.support.LdapContextSource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the concurrent discovery of LDAP accounts and the caching of the
+ * lookups made at login against the embedded LDAP store of the
+ * <code>testQueryGroup</code> LDIF file.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "ldap")
+public class LdapLookupTest extends MockObjectTestCase {
+
+    private ConfigurableApplicationContext ctx;
+
+    private LdapConfig config;
+
+    private LdapTemplate template;
+
+    private LdapImpl ldap;
+
+    private Mock queryMock;
+
+    /** The number of searches run through {@link #counting(LdapOperations)}. */
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ctx = new ClassPathXmlApplicationContext(
+                "ome/services/ldap/testQueryGroup/test.xml");
+        config = (LdapConfig) ctx.getBean("config");
+        LdapContextSource source = ctx.getBeansOfType(LdapContextSource.class)
+                .values().iterator().next();
+        template = new LdapTemplate(source);
+        searches.set(0);
+
+        Mock role = mock(RoleProvider.class);
+        role.stubs().method("isIgnoreCaseLookup").will(returnValue(false));
+        RoleProvider provider = (RoleProvider) role.proxy();
+        SqlAction sql = (SqlAction) mock(SqlAction.class).proxy();
+        Mock sec = mock(SecuritySystem.class);
+        sec.stubs().method("getSecurityRoles").will(returnValue(new Roles()));
+        queryMock = mock(LocalQuery.class);
+
+        ldap = new LdapImpl(source, template, new Roles(), config, provider,
+                sql);
+        ldap.setQueryService((LocalQuery) queryMock.proxy());
+        ldap.setSecuritySystem((SecuritySystem) sec.proxy());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ctx.close();
+    }
+
+    /** Counts the searches run through the given operations. */
+    private LdapOperations counting(final LdapOperations ops) {
+        return (LdapOperations) Proxy.newProxyInstance(
+                LdapOperations.class.getClassLoader(),
+                new Class<?>[] { LdapOperations.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) throws Throwable {
+                        if ("search".equals(method.getName())) {
+                            searches.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(ops, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    private static Experimenter experimenter(long id, String name) {
+        Experimenter e = new Experimenter(id, true);
+        e.setOmeName(name);
+        return e;
+    }
+
+    private static ExperimenterGroup group(long id, String name) {
+        ExperimenterGroup g = new ExperimenterGroup(id, true);
+        g.setName(name);
+        return g;
+    }
+
+    public void testDiscoverConcurrently() {
+        List<Experimenter> local = Arrays.asList(experimenter(11L, "test1"),
+                experimenter(12L, "test2"), experimenter(13L, "nobody"),
+                experimenter(14L, "Test1"));
+        queryMock.stubs().method("findAllByQuery")
+                .will(returnValue(local));
+
+        List<Experimenter> serial = ldap.discover();
+        assertEquals(1, serial.size());
+        assertEquals("test1", serial.get(0).getOmeName());
+
+        ldap.setDiscoverThreads(3);
+        assertEquals(serial, ldap.discover());
+    }
+
+    public void testDiscoverGroupsConcurrently() {
+        List<ExperimenterGroup> local = Arrays.asList(group(21L, "other"),
+                group(22L, "grp"), group(23L, "Query2"));
+        queryMock.stubs().method("findAllByQuery")
+                .will(returnValue(local));
+
+        ldap.setDiscoverThreads(8);
+        List<ExperimenterGroup> found = ldap.discoverGroups();
+        assertEquals(1, found.size());
+        assertEquals(Long.valueOf(22L), found.get(0).getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGroupSearchesCached() {
+        LdapLookupCache cache = new LdapLookupCache(
+                "expireAfterWrite=60s,maximumSize=100");
+        LdapOperations ops = cache.wrap(counting(template));
+        String filter = config.getGroupFilter().encode();
+
+        List<String> names = ops.search("", filter,
+                new GroupAttributeMapper(config));
+        assertEquals(Arrays.asList("grp"), names);
+        assertEquals(names, ops.search("", filter,
+                new GroupAttributeMapper(config)));
+        assertEquals(1, searches.get());
+
+        // Another filter is another lookup.
+        ops.search("", "(cn=grp)", new GroupAttributeMapper(config));
+        assertEquals(2, searches.get());
+        ops.search("", filter, new GroupAttributeMapper(config));
+        assertEquals(2, searches.get());
+
+        cache.invalidateAll();
+        ops.search("", filter, new GroupAttributeMapper(config));
+        assertEquals(3, searches.get());
+    }
+
+    public void testDisabledCache() {
+        LdapLookupCache cache = new LdapLookupCache("maximumSize=0");
+        LdapOperations ops = cache.wrap(counting(template));
+        String filter = config.getGroupFilter().encode();
+        for (int i = 0; i < 3; i++) {
+            ops.search("", filter, new GroupAttributeMapper(config));
+        }
+        assertEquals(3, searches.get());
+        assertEquals(0, cache.size());
+    }
+
+    public void testFailedLookupsNotCached() {
+        LdapLookupCache cache = new LdapLookupCache("maximumSize=100");
+        LdapOperations ops = cache.wrap(counting(template));
+        for (int i = 0; i < 2; i++) {
+            try {
+                ops.search("", "(cn=grp", new GroupAttributeMapper(config));
+                fail("invalid filter accepted");
+            } catch (RuntimeException e) {
+                // Expected
+            }
+        }
+        assertEquals(2, searches.get());
+        assertEquals(0, cache.size());
+    }
+
+    /** Adding the DN to a copied attribute set leaves the cached one as is. */
+    public void testAttributeSetCopied() {
+        DirContextAdapter entry = new DirContextAdapter();
+        entry.setAttributeValue("cn", "test1");
+        entry.setAttributeValues("memberOf", new String[] { "a", "b" });
+        AttributeSet cached = new AttributeSet(entry);
+        AttributeSet copy = new AttributeSet(cached);
+        copy.put("dn", "cn=test1,ou=attributeTest");
+        assertEquals("test1", copy.getFirst("cn"));
+        assertEquals(2, copy.size("memberOf"));
+        assertEquals("cn=test1,ou=attributeTest", copy.getFirst("dn"));
+        assertEquals(0, cached.size("dn"));
+        // Copied again, as for each lookup served by the cache.
+        new AttributeSet(cached).put("dn", "cn=test1,ou=attributeTest");
+    }
+
+}
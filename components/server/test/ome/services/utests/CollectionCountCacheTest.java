@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.utests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ome.model.containers.Dataset;
+import ome.model.containers.DatasetImageLink;
+import ome.model.containers.Project;
+import ome.model.meta.EventLog;
+import ome.services.messages.EventLogsMessage;
+import ome.services.query.CollectionCountCache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * Tests the cache of the counts returned by
+ * {@link ome.api.IContainer#getCollectionCount}.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class CollectionCountCacheTest {
+
+    private static final String DATASET = Dataset.class.getName();
+
+    private static final String PROJECT = Project.class.getName();
+
+    private Map<Long, Integer> counts(long... idsAndCounts) {
+        Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        for (int i = 0; i < idsAndCounts.length; i += 2) {
+            counts.put(idsAndCounts[i], (int) idsAndCounts[i + 1]);
+        }
+        return counts;
+    }
+
+    private EventLogsMessage message(String type) {
+        Multimap<String, EventLog> logs = ArrayListMultimap.create();
+        EventLog log = new EventLog();
+        log.setEntityType(type);
+        log.setEntityId(1L);
+        log.setAction("INSERT");
+        logs.put(type, log);
+        return new EventLogsMessage(this, logs);
+    }
+
+    public void testCachedCountsAreReturned() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3, 11, 0));
+        Map<Long, Integer> results = new HashMap<Long, Integer>();
+        Set<Long> missing = cache.get(1L, 2L, DATASET, "imageLinks",
+                Arrays.asList(10L, 11L, 12L), results);
+        Assert.assertEquals(missing, Collections.singleton(12L));
+        Assert.assertEquals(results, counts(10, 3, 11, 0));
+    }
+
+    public void testCountsAreNotSharedAcrossContexts() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+        Map<Long, Integer> results = new HashMap<Long, Integer>();
+        Assert.assertEquals(cache.get(1L, 3L, DATASET, "imageLinks",
+                Arrays.asList(10L), results).size(), 1);
+        Assert.assertEquals(cache.get(4L, 2L, DATASET, "imageLinks",
+                Arrays.asList(10L), results).size(), 1);
+        Assert.assertTrue(results.isEmpty());
+    }
+
+    public void testOtherPropertiesAreNotCached() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        Assert.assertFalse(cache.isCached("projectLinks"));
+        cache.put(1L, 2L, DATASET, "projectLinks", counts(10, 3));
+        Map<Long, Integer> results = new HashMap<Long, Integer>();
+        Assert.assertEquals(cache.get(1L, 2L, DATASET, "projectLinks",
+                Arrays.asList(10L), results).size(), 1);
+    }
+
+    public void testDisabledCache() {
+        CollectionCountCache cache = new CollectionCountCache(0, 100);
+        Assert.assertFalse(cache.isCached("imageLinks"));
+        cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+        Map<Long, Integer> results = new HashMap<Long, Integer>();
+        Assert.assertEquals(cache.get(1L, 2L, DATASET, "imageLinks",
+                Arrays.asList(10L), results).size(), 1);
+        cache.onApplicationEvent(message(DatasetImageLink.class.getName()));
+    }
+
+    public void testLinkMessageInvalidatesParentType() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+        cache.put(1L, 2L, "Dataset", "imageLinks", counts(10, 3));
+        cache.put(1L, 2L, PROJECT, "datasetLinks", counts(20, 1));
+        cache.onApplicationEvent(message(DatasetImageLink.class.getName()));
+        Map<Long, Integer> results = new HashMap<Long, Integer>();
+        cache.get(1L, 2L, DATASET, "imageLinks", Arrays.asList(10L), results);
+        cache.get(1L, 2L, "Dataset", "imageLinks", Arrays.asList(10L),
+                results);
+        Assert.assertTrue(results.isEmpty());
+        cache.get(1L, 2L, PROJECT, "datasetLinks", Arrays.asList(20L),
+                results);
+        Assert.assertEquals(results, counts(20, 1));
+    }
+
+    /**
+     * A count cached by a concurrent reader between the modification and the
+     * commit is removed once the transaction has committed.
+     */
+    public void testLinkMessageInvalidatesAgainAfterCommit() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.onApplicationEvent(message(DatasetImageLink.class.getName()));
+            cache.invalidateLink(DatasetImageLink.class.getName());
+            Assert.assertEquals(TransactionSynchronizationManager
+                    .getSynchronizations().size(), 1);
+            cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+            Map<Long, Integer> results = new HashMap<Long, Integer>();
+            cache.get(1L, 2L, DATASET, "imageLinks", Arrays.asList(10L),
+                    results);
+            Assert.assertEquals(results, counts(10, 3));
+            for (TransactionSynchronization sync :
+                    TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+            results.clear();
+            cache.get(1L, 2L, DATASET, "imageLinks", Arrays.asList(10L),
+                    results);
+            Assert.assertTrue(results.isEmpty());
+            Assert.assertNull(TransactionSynchronizationManager
+                    .getResource(cache));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * A count cached between the modification and the commit is removed
+     * even if the cache was empty when the modification was published.
+     */
+    public void testLinkMessageOnEmptyCacheInvalidatesAfterCommit() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.onApplicationEvent(message(DatasetImageLink.class.getName()));
+            Assert.assertEquals(TransactionSynchronizationManager
+                    .getSynchronizations().size(), 1);
+            cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+            for (TransactionSynchronization sync :
+                    TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+            Map<Long, Integer> results = new HashMap<Long, Integer>();
+            cache.get(1L, 2L, DATASET, "imageLinks", Arrays.asList(10L),
+                    results);
+            Assert.assertTrue(results.isEmpty());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    public void testOtherMessagesAreIgnored() {
+        CollectionCountCache cache = new CollectionCountCache(60000, 100);
+        cache.put(1L, 2L, DATASET, "imageLinks", counts(10, 3));
+        cache.onApplicationEvent(message(Dataset.class.getName()));
+        cache.onApplicationEvent(message("ome.model.NoSuchType"));
+        Map<Long, Integer> results = new HashMap<Long, Integer>();
+        cache.get(1L, 2L, DATASET, "imageLinks", Arrays.asList(10L), results);
+        Assert.assertEquals(results, counts(10, 3));
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 University of Dundee & Open Microscopy Environment.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package ome.services.utests;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ome.services.pixeldata.PixelDataClaims;
+import ome.util.SqlAction;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the claims which let several PixelData processes share the
+ * PIXELDATA event logs.
+ *
+ * @since 5.4.0
+ */
+@Test(groups = "unit")
+public class PixelDataClaimsTest {
+
+    private static final long TIMEOUT = 1000;
+
+    /** The configuration table. */
+    private Map<String, String> config;
+
+    /** The time of the database. */
+    private long now;
+
+    private SqlAction sql;
+
+    @BeforeMethod
+    public void setUp() {
+        config = new HashMap<String, String>();
+        now = 100000;
+        sql = (SqlAction) Proxy.newProxyInstance(
+                SqlAction.class.getClassLoader(),
+                new Class<?>[] { SqlAction.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("now")) {
+                            return new Date(now);
+                        } else if (name.equals("configValue")) {
+                            return config.get(args[0]);
+                        } else if (name.equals("insertConfigValueIfAbsent")) {
+                            if (config.containsKey(args[0])) {
+                                return 0;
+                            }
+                            config.put((String) args[0], (String) args[1]);
+                            return 1;
+                        } else if (name.equals("updateConfigValueIfEquals")) {
+                            if (!args[1].equals(config.get(args[0]))) {
+                                return 0;
+                            }
+                            config.put((String) args[0], (String) args[2]);
+                            return 1;
+                        } else if (name.equals("delConfigValueIfEquals")) {
+                            if (!args[1].equals(config.get(args[0]))) {
+                                return 0;
+                            }
+                            config.remove(args[0]);
+                            return 1;
+                        } else if (name.equals("configValuesByPrefix")) {
+                            Map<String, String> values =
+                                    new HashMap<String, String>();
+                            for (Map.Entry<String, String> e : config.entrySet()) {
+                                if (e.getKey().startsWith((String) args[0])) {
+                                    values.put(e.getKey(), e.getValue());
+                                }
+                            }
+                            return values;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+
+    public void testClaimIsExclusive() {
+        PixelDataClaims a = new PixelDataClaims("a", TIMEOUT);
+        PixelDataClaims b = new PixelDataClaims("b", TIMEOUT);
+        Assert.assertTrue(a.claim(sql, 1L, 10L));
+        Assert.assertFalse(a.claim(sql, 1L, 11L));
+        Assert.assertFalse(b.claim(sql, 1L, 10L));
+        Assert.assertTrue(b.claim(sql, 2L, 20L));
+        Assert.assertEquals(a.size(), 1);
+        Assert.assertEquals(config.size(), 2);
+    }
+
+    public void testReleaseAllowsNewClaim() {
+        PixelDataClaims a = new PixelDataClaims("a", TIMEOUT);
+        PixelDataClaims b = new PixelDataClaims("b", TIMEOUT);
+        Assert.assertTrue(a.claim(sql, 1L, 10L));
+        a.release(sql, 1L);
+        Assert.assertTrue(config.isEmpty());
+        Assert.assertTrue(b.claim(sql, 1L, 12L));
+    }
+
+    public void testHeartbeatKeepsClaim() {
+        PixelDataClaims a = new PixelDataClaims("a", TIMEOUT);
+        PixelDataClaims b = new PixelDataClaims("b", TIMEOUT);
+        Assert.assertTrue(a.claim(sql, 1L, 10L));
+        now += TIMEOUT;
+        Assert.assertEquals(a.heartbeat(sql), 1);
+        now += TIMEOUT;
+        Assert.assertTrue(b.abandoned(sql).isEmpty());
+        Assert.assertFalse(b.claim(sql, 1L, 10L));
+    }
+
+    public void testAbandonedClaimIsTakenOver() {
+        PixelDataClaims a = new PixelDataClaims("a", TIMEOUT);
+        PixelDataClaims b = new PixelDataClaims("b", TIMEOUT);
+        Assert.assertTrue(a.claim(sql, 1L, 10L));
+        now += TIMEOUT + 1;
+        List<long[]> abandoned = b.abandoned(sql);
+        Assert.assertEquals(abandoned.size(), 1);
+        Assert.assertEquals(abandoned.get(0), new long[] { 1L, 10L });
+        Assert.assertTrue(b.claim(sql, 1L, 10L));
+        // The previous owner notices and does not remove the new claim.
+        Assert.assertEquals(a.heartbeat(sql), 0);
+        a.release(sql, 1L);
+        Assert.assertEquals(config.size(), 1);
+        Assert.assertTrue(config.values().iterator().next().startsWith("b;"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidOwner() {
+        new PixelDataClaims("a;b", TIMEOUT);
+    }
+
+}
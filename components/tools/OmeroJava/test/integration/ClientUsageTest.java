@@ -4,9 +4,14 @@
  */
 package integration;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 
+import omero.ClientError;
 import omero.RString;
 import omero.client;
 import omero.api.IAdminPrx;
@@ -16,8 +21,10 @@ import omero.model.Experimenter;
 import omero.model.ExperimenterGroup;
 import omero.model.ExperimenterGroupI;
 import omero.model.ExperimenterI;
+import omero.model.OriginalFile;
 import omero.model.PermissionsI;
 import omero.sys.EventContext;
+import omero.util.TransferListener;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -31,6 +38,30 @@ import Ice.UserException;
 @Test
 public class ClientUsageTest extends AbstractServerTest {
 
+    /** The block size used by the transfer tests. */
+    private static final int BLOCK_SIZE = 1024;
+
+    /** Records the progress reported by a transfer. */
+    private static class RecordingListener implements TransferListener {
+
+        final List<Long> transferred = new ArrayList<Long>();
+
+        public void progress(long done, long total) {
+            transferred.add(done);
+        }
+
+        /** Checks that the progress increased up to the given size. */
+        void assertProgress(long size, int calls) {
+            Assert.assertEquals(transferred.size(), calls);
+            long previous = 0;
+            for (Long done : transferred) {
+                Assert.assertTrue(done > previous);
+                previous = done;
+            }
+            Assert.assertEquals(previous, size);
+        }
+    }
+
     /**
      * Closes automatically the session.
      *
@@ -180,4 +211,91 @@ public class ClientUsageTest extends AbstractServerTest {
             /* expected because the client is disconnected */
         }
     }
+
+    /**
+     * Creates a temporary file of the given size with random content.
+     * @param size the size of the file
+     * @return the file
+     * @throws Exception unexpected
+     */
+    private File createFile(int size) throws Exception {
+        File file = File.createTempFile("ClientUsageTest", ".bin");
+        file.deleteOnExit();
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    /**
+     * Uploads the file then downloads it again, checking that the content,
+     * the hash and the progress reported are those expected.
+     * @param size the size of the file
+     * @throws Exception unexpected
+     */
+    private void assertUploadDownload(int size) throws Exception {
+        newUserAndGroup("rw----");
+        File file = createFile(size);
+        byte[] content = Files.readAllBytes(file.toPath());
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        RecordingListener uploaded = new RecordingListener();
+        OriginalFile of = client.upload(file, null, BLOCK_SIZE, 3, uploaded);
+        uploaded.assertProgress(size, blocks);
+        Assert.assertEquals(of.getSize().getValue(), size);
+        Assert.assertEquals(of.getHash().getValue(),
+                sha1(content));
+
+        File copy = File.createTempFile("ClientUsageTest", ".copy");
+        copy.deleteOnExit();
+        RecordingListener downloaded = new RecordingListener();
+        client.download(of.getId().getValue(), copy, BLOCK_SIZE, 2,
+                downloaded);
+        downloaded.assertProgress(size, blocks);
+        Assert.assertEquals(Files.readAllBytes(copy.toPath()), content);
+    }
+
+    /**
+     * Transfers a file of several blocks, more than are kept in flight.
+     * @throws Exception unexpected
+     */
+    public void testUploadDownloadMultipleBlocks() throws Exception {
+        assertUploadDownload(8 * BLOCK_SIZE);
+    }
+
+    /**
+     * Transfers a file whose last block is shorter than the others.
+     * @throws Exception unexpected
+     */
+    public void testUploadDownloadShortFinalBlock() throws Exception {
+        assertUploadDownload(5 * BLOCK_SIZE + 17);
+    }
+
+    /**
+     * Transfers a file shorter than one block.
+     * @throws Exception unexpected
+     */
+    public void testUploadDownloadSingleShortBlock() throws Exception {
+        assertUploadDownload(BLOCK_SIZE - 1);
+    }
+
+    /**
+     * Downloads a file whose hash does not match its content.
+     * @throws Exception unexpected
+     */
+    @Test(expectedExceptions = ClientError.class)
+    public void testDownloadHashMismatch() throws Exception {
+        newUserAndGroup("rw----");
+        File file = createFile(3 * BLOCK_SIZE + 5);
+        OriginalFile of = client.upload(file, null, BLOCK_SIZE,
+                omero.client.DEFAULT_IN_FLIGHT, null);
+        of = (OriginalFile) iQuery.get("OriginalFile", of.getId().getValue());
+        of.setHash(omero.rtypes.rstring(
+                sha1(new byte[1])));
+        iUpdate.saveObject(of);
+
+        File copy = File.createTempFile("ClientUsageTest", ".copy");
+        copy.deleteOnExit();
+        client.download(of.getId().getValue(), copy, BLOCK_SIZE);
+    }
 }
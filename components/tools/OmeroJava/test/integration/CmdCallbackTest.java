@@ -145,7 +145,7 @@ public class CmdCallbackTest extends AbstractServerTest {
         for (int i = 0; i < count; i++) {
             timings[i] = new Timing(3, 2); // 6 ms
         }
-        return run(new DoAll(Arrays.<Request> asList(timings), null));
+        return run(new DoAll(Arrays.<Request> asList(timings), null, false));
     }
 
     @Test
@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.zip.Inflater;
 
 import ome.api.RawPixelsStore;
 import ome.io.nio.RomioPixelBuffer;
@@ -127,6 +128,69 @@ public class RawPixelsStoreTest extends AbstractServerTest {
         Assert.assertEquals(sha1(data), sha1(r));
     }
 
+    /**
+     * Tests to set a plane and retrieve several tiles of it in one call, this
+     * method will test the <code>setPlane</code> and <code>getTiles</code>.
+     *
+     * @throws Exception
+     *             Thrown if an error occurred.
+     */
+    @Test
+    public void testSetPlaneGetTiles() throws Exception {
+        byte[] data = prepareTestByteArray(
+                RomioPixelBuffer.safeLongToInteger(svc.getPlaneSize()), 0);
+        svc.setPlane(data, 0, 0, 0);
+        int w = ModelMockFactory.SIZE_X / 2;
+        int h = ModelMockFactory.SIZE_Y / 2;
+        int[][] tiles = new int[][] {
+                {0, 0, 0, 0, 0, w, h},
+                {0, 0, 0, w, 0, w, h},
+                {0, 0, 0, 0, h, w, h},
+                {0, 0, 0, w, h, w, h}};
+        byte[] r = svc.getTiles(tiles, false);
+        int tileSize = w * h * 2; // UINT16
+        Assert.assertEquals(r.length, tiles.length * tileSize);
+        for (int i = 0; i < tiles.length; i++) {
+            int[] tile = tiles[i];
+            byte[] expected = svc.getTile(tile[0], tile[1], tile[2], tile[3],
+                    tile[4], tile[5], tile[6]);
+            Assert.assertEquals(
+                    Arrays.copyOfRange(r, i * tileSize, (i + 1) * tileSize),
+                    expected);
+        }
+        byte[] compressed = svc.getTiles(tiles, true);
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] inflated = new byte[r.length];
+        Assert.assertEquals(inflater.inflate(inflated), r.length);
+        inflater.end();
+        Assert.assertEquals(inflated, r);
+    }
+
+    /**
+     * Tests that <code>getTiles</code> rejects tiles whose width or height is
+     * not positive.
+     *
+     * @throws Exception
+     *             Thrown if an error occurred.
+     */
+    @Test
+    public void testGetTilesInvalidSize() throws Exception {
+        int[][] sizes = new int[][] {{-1, -1}, {0, 1}, {1, 0}, {-2, 4}};
+        for (int[] size : sizes) {
+            int[][] tiles = new int[][] {
+                    {0, 0, 0, 0, 0, 1, 1},
+                    {0, 0, 0, 0, 0, size[0], size[1]}};
+            try {
+                svc.getTiles(tiles, false);
+                Assert.fail("getTiles() should have rejected a "
+                        + size[0] + "x" + size[1] + " tile.");
+            } catch (ApiUsageException ex) {
+                // expected
+            }
+        }
+    }
+
     /**
      * Tests to set a plane and retrieve it as a hypercube, this method will
      * test the <code>setPlane</code> and <code>getHypercube</code>.
@@ -20,10 +20,12 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import javax.imageio.ImageIO;
+import ome.services.RenderingBean;
 
 import ome.specification.XMLMockObjects;
 import ome.specification.XMLWriter;
@@ -1011,6 +1013,109 @@ public class RenderingEngineTest extends AbstractServerTest {
         re.close();
     }
 
+    /**
+     * Tests to render several planes using the
+     * <code>renderCompressedPlanes</code> method. Each frame must be the one
+     * returned by <code>renderCompressed</code> for the plane at the same
+     * index.
+     *
+     * @throws Exception
+     *             Thrown if an error occurred.
+     */
+    @Test
+    public void testRenderCompressedPlanes() throws Exception {
+        File f = File.createTempFile("testRenderCompressedPlanes", "."
+                + OME_FORMAT);
+        XMLMockObjects xml = new XMLMockObjects();
+        XMLWriter writer = new XMLWriter();
+        writer.writeFile(f, xml.createImage(), true);
+        List<Pixels> pixels = null;
+        try {
+            pixels = importFile(f, OME_FORMAT);
+        } catch (Throwable e) {
+            throw new Exception("cannot import image", e);
+        }
+        Pixels p = pixels.get(0);
+        long id = p.getId().getValue();
+        RenderingEnginePrx re = factory.createRenderingEngine();
+        re.lookupPixels(id);
+        if (!(re.lookupRenderingDef(id))) {
+            re.resetDefaultSettings(true);
+            re.lookupRenderingDef(id);
+        }
+        re.load();
+        // The planes in reverse order, then the default plane again.
+        List<PlaneDef> pDefs = new ArrayList<PlaneDef>();
+        for (int t = p.getSizeT().getValue() - 1; t >= 0; t--) {
+            for (int z = p.getSizeZ().getValue() - 1; z >= 0; z--) {
+                PlaneDef pDef = new PlaneDef();
+                pDef.t = t;
+                pDef.z = z;
+                pDef.slice = omero.romio.XY.value;
+                pDefs.add(pDef);
+            }
+        }
+        PlaneDef pDef = new PlaneDef();
+        pDef.t = re.getDefaultT();
+        pDef.z = re.getDefaultZ();
+        pDef.slice = omero.romio.XY.value;
+        pDefs.add(pDef);
+
+        byte[][] frames = re.renderCompressedPlanes(pDefs);
+        Assert.assertEquals(frames.length, pDefs.size());
+        for (int i = 0; i < frames.length; i++) {
+            Assert.assertEquals(frames[i], re.renderCompressed(pDefs.get(i)));
+            BufferedImage image = createImage(frames[i]);
+            Assert.assertEquals(image.getWidth(), p.getSizeX().getValue());
+            Assert.assertEquals(image.getHeight(), p.getSizeY().getValue());
+        }
+        Assert.assertEquals(re.renderCompressedPlanes(
+                new ArrayList<PlaneDef>()).length, 0);
+        f.delete();
+        re.close();
+    }
+
+    /**
+     * Tests that <code>renderCompressedPlanes</code> rejects more planes than
+     * it renders at once.
+     *
+     * @throws Exception
+     *             Thrown if an error occurred.
+     */
+    @Test(expectedExceptions = omero.ValidationException.class)
+    public void testRenderCompressedPlanesTooMany() throws Exception {
+        File f = File.createTempFile("testRenderCompressedPlanesTooMany", "."
+                + OME_FORMAT);
+        XMLMockObjects xml = new XMLMockObjects();
+        XMLWriter writer = new XMLWriter();
+        writer.writeFile(f, xml.createImage(), true);
+        List<Pixels> pixels = null;
+        try {
+            pixels = importFile(f, OME_FORMAT);
+        } catch (Throwable e) {
+            throw new Exception("cannot import image", e);
+        }
+        f.delete();
+        long id = pixels.get(0).getId().getValue();
+        RenderingEnginePrx re = factory.createRenderingEngine();
+        try {
+            re.lookupPixels(id);
+            if (!(re.lookupRenderingDef(id))) {
+                re.resetDefaultSettings(true);
+                re.lookupRenderingDef(id);
+            }
+            re.load();
+            PlaneDef pDef = new PlaneDef();
+            pDef.t = re.getDefaultT();
+            pDef.z = re.getDefaultZ();
+            pDef.slice = omero.romio.XY.value;
+            re.renderCompressedPlanes(Collections.nCopies(
+                    RenderingBean.MAX_COMPRESSED_PLANES + 1, pDef));
+        } finally {
+            re.close();
+        }
+    }
+
     /**
      * Tests to render a given region of plane using the
      * <code>renderCompressed</code> method. For the comparison between plane
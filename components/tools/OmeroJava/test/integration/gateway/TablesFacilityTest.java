@@ -22,11 +22,13 @@ import java.util.Collection;
 import java.util.Random;
 import java.util.UUID;
 
+import omero.gateway.facility.TableDataReader;
 import omero.gateway.facility.TablesFacility;
 import omero.gateway.model.DatasetData;
 import omero.gateway.model.FileAnnotationData;
 import omero.gateway.model.ProjectData;
 import omero.gateway.model.TableData;
+import omero.gateway.model.TableDataChunk;
 import omero.gateway.model.TableDataColumn;
 
 import org.testng.Assert;
@@ -277,4 +279,71 @@ public class TablesFacilityTest extends GatewayTest {
                 TablesFacility.DEFAULT_MAX_ROWS_TO_FETCH);
     }
 
+    @Test(dependsOnMethods = { "testAddTable" })
+    /**
+     * Read the whole table chunk by chunk and compare to the original data
+     * @throws Exception
+     */
+    public void testTableReader() throws Exception {
+        Object[][] origData = original.getData();
+        TableDataReader reader = tablesFacility.getTableReader(rootCtx,
+                original.getOriginalFileId(), null, 300, 3);
+        try {
+            Assert.assertEquals(reader.getNumberOfRows(), nRows);
+            int row = 0;
+            while (reader.hasNext()) {
+                TableDataChunk chunk = reader.next();
+                Assert.assertTrue(chunk.getNumberOfRows() <= 300);
+                for (int r = 0; r < chunk.getNumberOfRows(); r++, row++) {
+                    Assert.assertEquals(chunk.getRowNumbers()[r], row);
+                    for (int c = 0; c < nCols; c++) {
+                        Class<?> type = reader.getColumns()[c].getType();
+                        if (type.equals(String.class)) {
+                            Assert.assertEquals(chunk.getStrings(c)[r],
+                                    origData[c][row]);
+                        } else if (type.equals(Long.class)) {
+                            Assert.assertEquals(chunk.getLongs(c)[r],
+                                    ((Long) origData[c][row]).longValue());
+                        } else if (type.equals(Double.class)) {
+                            Assert.assertEquals(chunk.getDoubles(c)[r],
+                                    ((Double) origData[c][row]).doubleValue());
+                        } else if (type.equals(Double[].class)) {
+                            Double[] orig = (Double[]) origData[c][row];
+                            double[] read = chunk.getDoubleArrays(c)[r];
+                            Assert.assertEquals(read.length, orig.length);
+                            for (int i = 0; i < orig.length; i++)
+                                Assert.assertEquals(read[i],
+                                        orig[i].doubleValue());
+                        }
+                    }
+                }
+            }
+            Assert.assertEquals(row, nRows);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(dependsOnMethods = { "testAddTable" })
+    /**
+     * Read the rows matching a condition, only from the first column
+     * @throws Exception
+     */
+    public void testTableReaderCondition() throws Exception {
+        TableDataReader reader = tablesFacility.getTableReader(rootCtx,
+                original.getOriginalFileId(), "(column0=='" + searchForThis
+                        + "')", 500, 0, 0);
+        try {
+            Assert.assertEquals(reader.getColumns().length, 1);
+            // Only the first two rows match, the other chunks are skipped.
+            TableDataChunk chunk = reader.next();
+            Assert.assertEquals(chunk.getRowNumbers(), new long[] { 0, 1 });
+            Assert.assertEquals(chunk.getStrings(0),
+                    new String[] { searchForThis, searchForThis });
+            Assert.assertFalse(reader.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
 }